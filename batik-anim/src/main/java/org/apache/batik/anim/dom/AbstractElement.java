@@ -44,10 +44,9 @@ public abstract class AbstractElement
         implements NodeEventTarget, CSSNavigableNode, SVGConstants {
 
     /**
-     * The live attribute values.
+     * The live attribute values, or null if none has been registered.
      */
-    protected transient DoublyIndexedTable liveAttributeValues =
-        new DoublyIndexedTable();
+    protected transient DoublyIndexedTable liveAttributeValues;
 
     /**
      * Creates a new Element object.
@@ -148,23 +147,28 @@ public abstract class AbstractElement
      * @param ln The attribute's local name.
      */
     public LiveAttributeValue getLiveAttributeValue(String ns, String ln) {
-//         if (liveAttributeValues == null) {
-//             return null;
-//         }
+        if (liveAttributeValues == null) {
+            return null;
+        }
         return (LiveAttributeValue)liveAttributeValues.get(ns, ln);
     }
 
     /**
-     * Associates a live attribute value to this element.
+     * Associates a live attribute value to this element.  Nothing is
+     * recorded if the document is static, since its attributes never
+     * change and it is not animated.
      * @param ns The attribute's namespace.
      * @param ln The attribute's local name.
      * @param val The live value.
      */
     public void putLiveAttributeValue(String ns, String ln,
                                       LiveAttributeValue val) {
-//         if (liveAttributeValues == null) {
-//             liveAttributeValues = new SoftDoublyIndexedTable();
-//         }
+        if (ownerDocument != null && ownerDocument.isStatic()) {
+            return;
+        }
+        if (liveAttributeValues == null) {
+            liveAttributeValues = new DoublyIndexedTable();
+        }
         liveAttributeValues.put(ns, ln, val);
     }
 
@@ -250,6 +254,41 @@ public abstract class AbstractElement
         }
     }
 
+    /**
+     * Called when an attribute that has no Attr node has been added or
+     * modified.  The live attribute values are notified with a null
+     * node.
+     */
+    protected void attrValueChanged(String ns, String ln,
+                                    String oldv, String newv) {
+        LiveAttributeValue lav = getLiveAttributeValue(ns, ln);
+        if (lav != null) {
+            if (oldv == null) {
+                lav.attrAdded(null, newv);
+            } else {
+                lav.attrModified(null, oldv, newv);
+            }
+        }
+        // SVG 1.2 'id' and 'xml:id' synchronization, as in
+        // fireDOMAttrModifiedEvent.
+        if (((SVGOMDocument) ownerDocument).isSVG12
+                && ln.equals(SVG_ID_ATTRIBUTE)) {
+            if (ns == null) {
+                if (!hasAttributeNS(XML_NAMESPACE_URI, SVG_ID_ATTRIBUTE)
+                        || !getAttributeNS(XML_NAMESPACE_URI,
+                                           SVG_ID_ATTRIBUTE).equals(newv)) {
+                    setAttributeNS(XML_NAMESPACE_URI, XML_ID_QNAME, newv);
+                }
+            } else if (XML_NAMESPACE_URI.equals(ns)) {
+                if (!hasAttributeNS(null, SVG_ID_ATTRIBUTE)
+                        || !getAttributeNS(null,
+                                           SVG_ID_ATTRIBUTE).equals(newv)) {
+                    setAttributeNS(null, SVG_ID_ATTRIBUTE, newv);
+                }
+            }
+        }
+    }
+
     /**
      * Gets Returns the live attribute value associated with given
      * attribute, if any.
@@ -305,6 +344,10 @@ public abstract class AbstractElement
          */
         public void setUnspecifiedAttribute( String nsURI, String name,
                                              String value ) {
+            if ( getCompactAttributes() == this ) {
+                setAttributeValue( nsURI, name, value, false );
+                return;
+            }
             Attr attr = getOwnerDocument().createAttributeNS( nsURI, name );
             attr.setValue( value );
             ( (AbstractAttr)attr ).setSpecified( false );
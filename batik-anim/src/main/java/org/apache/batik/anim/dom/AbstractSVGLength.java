@@ -18,8 +18,8 @@
  */
 package org.apache.batik.anim.dom;
 
-import org.apache.batik.parser.LengthParser;
 import org.apache.batik.parser.ParseException;
+import org.apache.batik.parser.ParsedValueCache;
 import org.apache.batik.parser.UnitProcessor;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Element;
@@ -224,11 +224,7 @@ public abstract class AbstractSVGLength
      */
     protected void parse(String s) {
         try {
-            LengthParser lengthParser = new LengthParser();
-            UnitProcessor.UnitResolver ur =
-                new UnitProcessor.UnitResolver();
-            lengthParser.setLengthHandler(ur);
-            lengthParser.parse(s);
+            UnitProcessor.UnitResolver ur = ParsedValueCache.getLength(s);
             unitType = ur.unit;
             value = ur.value;
         } catch (ParseException e) {
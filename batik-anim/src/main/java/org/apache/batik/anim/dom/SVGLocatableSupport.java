@@ -79,13 +79,14 @@ public class SVGLocatableSupport {
      */
     public static SVGRect getBBox(Element elt) {
         final SVGOMElement svgelt = (SVGOMElement)elt;
-        SVGContext svgctx = svgelt.getSVGContext();
+        SVGContext svgctx = svgelt.getUpToDateSVGContext();
         if (svgctx == null) return null;
         if (svgctx.getBBox() == null) return null;
 
         return new SVGRect() {
                 public float getX() {
-                    return (float)svgelt.getSVGContext().getBBox().getX();
+                    return (float)svgelt.getUpToDateSVGContext()
+                        .getBBox().getX();
                 }
                 public void setX(float x) throws DOMException {
                     throw svgelt.createDOMException
@@ -93,7 +94,8 @@ public class SVGLocatableSupport {
                          "readonly.rect", null);
                 }
                 public float getY() {
-                    return (float)svgelt.getSVGContext().getBBox().getY();
+                    return (float)svgelt.getUpToDateSVGContext()
+                        .getBBox().getY();
                 }
                 public void setY(float y) throws DOMException {
                     throw svgelt.createDOMException
@@ -101,7 +103,8 @@ public class SVGLocatableSupport {
                          "readonly.rect", null);
                 }
                 public float getWidth() {
-                    return (float)svgelt.getSVGContext().getBBox().getWidth();
+                    return (float)svgelt.getUpToDateSVGContext()
+                        .getBBox().getWidth();
                 }
                 public void setWidth(float width) throws DOMException {
                     throw svgelt.createDOMException
@@ -109,7 +112,8 @@ public class SVGLocatableSupport {
                          "readonly.rect", null);
                 }
                 public float getHeight() {
-                    return (float)svgelt.getSVGContext().getBBox().getHeight();
+                    return (float)svgelt.getUpToDateSVGContext()
+                        .getBBox().getHeight();
                 }
                 public void setHeight(float height) throws DOMException {
                     throw svgelt.createDOMException
@@ -126,7 +130,7 @@ public class SVGLocatableSupport {
         final SVGOMElement svgelt = (SVGOMElement)elt;
         return new AbstractSVGMatrix() {
                 protected AffineTransform getAffineTransform() {
-                    return svgelt.getSVGContext().getCTM();
+                    return svgelt.getUpToDateSVGContext().getCTM();
             }
         };
     }
@@ -138,7 +142,7 @@ public class SVGLocatableSupport {
         final SVGOMElement svgelt  = (SVGOMElement)elt;
         return new AbstractSVGMatrix() {
                 protected AffineTransform getAffineTransform() {
-                    SVGContext context = svgelt.getSVGContext();
+                    SVGContext context = svgelt.getUpToDateSVGContext();
                     AffineTransform ret = context.getGlobalTransform();
                     AffineTransform scrnTrans = context.getScreenTransform();
                     if (scrnTrans != null)
@@ -160,12 +164,12 @@ public class SVGLocatableSupport {
         return new AbstractSVGMatrix() {
                 protected AffineTransform getAffineTransform() {
                     AffineTransform cat = 
-                        currentElt.getSVGContext().getGlobalTransform();
+                        currentElt.getUpToDateSVGContext().getGlobalTransform();
                     if (cat == null) {
                         cat = new AffineTransform();
                     }
                     AffineTransform tat = 
-                        targetElt.getSVGContext().getGlobalTransform();
+                        targetElt.getUpToDateSVGContext().getGlobalTransform();
                     if (tat == null) {
                         tat = new AffineTransform();
                     }
@@ -251,11 +251,10 @@ public class SVGOMAnimatedNumberList
          * Returns the value of the DOM attribute containing the number list.
          */
         protected String getValueAsString() {
-            Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
-            if (attr == null) {
+            if (!element.hasAttributeNS(namespaceURI, localName)) {
                 return defaultValue;
             }
-            return attr.getValue();
+            return element.getAttributeNS(namespaceURI, localName);
         }
 
         /**
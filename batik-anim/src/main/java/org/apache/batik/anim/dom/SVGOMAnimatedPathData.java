@@ -170,6 +170,21 @@ public class SVGOMAnimatedPathData
         return pathSegs;
     }
 
+    /**
+     * Returns the path data the animated value is made of when it is
+     * not animated, or null when it is.  The path can then be built
+     * from the attribute value without creating its path segment list.
+     */
+    public String getUnanimatedPathData() {
+        if (hasAnimVal) {
+            return null;
+        }
+        if (!element.hasAttributeNS(namespaceURI, localName)) {
+            return defaultValue;
+        }
+        return element.getAttributeNS(namespaceURI, localName);
+    }
+
     /**
      * Throws an exception if the path data is malformed.
      */
@@ -311,11 +326,10 @@ public class SVGOMAnimatedPathData
          * Returns the value of the DOM attribute containing the path data.
          */
         protected String getValueAsString() {
-            Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
-            if (attr == null) {
+            if (!element.hasAttributeNS(namespaceURI, localName)) {
                 return defaultValue;
             }
-            return attr.getValue();
+            return element.getAttributeNS(namespaceURI, localName);
         }
 
         /**
@@ -420,11 +434,10 @@ public class SVGOMAnimatedPathData
          * Returns the value of the DOM attribute containing the path data.
          */
         protected String getValueAsString() throws SVGException {
-            Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
-            if (attr == null) {
+            if (!element.hasAttributeNS(namespaceURI, localName)) {
                 return defaultValue;
             }
-            return attr.getValue();
+            return element.getAttributeNS(namespaceURI, localName);
         }
 
         /**
@@ -104,6 +104,21 @@ public class SVGOMAnimatedPoints
         return animVal;
     }
 
+    /**
+     * Returns the points the animated value is made of when it is
+     * not animated, or null when it is.  The shape can then be built
+     * from the attribute value without creating its point list.
+     */
+    public String getUnanimatedPoints() {
+        if (hasAnimVal) {
+            return null;
+        }
+        if (!element.hasAttributeNS(namespaceURI, localName)) {
+            return defaultValue;
+        }
+        return element.getAttributeNS(namespaceURI, localName);
+    }
+
     /**
      * Throws an exception if the points list value is malformed.
      */
@@ -235,11 +250,10 @@ public class SVGOMAnimatedPoints
          * Returns the value of the DOM attribute containing the point list.
          */
         protected String getValueAsString() {
-            Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
-            if (attr == null) {
+            if (!element.hasAttributeNS(namespaceURI, localName)) {
                 return defaultValue;
             }
-            return attr.getValue();
+            return element.getAttributeNS(namespaceURI, localName);
         }
 
         /**
@@ -22,9 +22,7 @@ import org.apache.batik.anim.values.AnimatableRectValue;
 import org.apache.batik.anim.values.AnimatableValue;
 import org.apache.batik.dom.svg.LiveAttributeException;
 import org.apache.batik.dom.svg.SVGOMRect;
-import org.apache.batik.parser.DefaultNumberListHandler;
-import org.apache.batik.parser.NumberListParser;
-import org.apache.batik.parser.ParseException;
+import org.apache.batik.parser.ParsedValueCache;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
@@ -199,35 +197,16 @@ public class SVGOMAnimatedRect
                 return;
             }
 
-            Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
-
-            final String s = attr == null ? defaultValue : attr.getValue();
-            final float[] numbers = new float[4];
-            NumberListParser p = new NumberListParser();
-            p.setNumberListHandler(new DefaultNumberListHandler() {
-                protected int count;
-                public void endNumberList() {
-                    if (count != 4) {
-                        throw new LiveAttributeException
-                            (element, localName,
-                             LiveAttributeException.ERR_ATTRIBUTE_MALFORMED,
-                             s);
-                    }
-                }
-                public void numberValue(float v) throws ParseException {
-                    if (count < 4) {
-                        numbers[count] = v;
-                    }
-                    if (v < 0 && (count == 2 || count == 3)) {
-                        throw new LiveAttributeException
-                            (element, localName,
-                             LiveAttributeException.ERR_ATTRIBUTE_MALFORMED,
-                             s);
-                    }
-                    count++;
-                }
-            });
-            p.parse(s);
+            String s = element.hasAttributeNS(namespaceURI, localName)
+                ? element.getAttributeNS(namespaceURI, localName)
+                : defaultValue;
+            float[] numbers = ParsedValueCache.getNumberList(s);
+            if (numbers.length != 4 || numbers[2] < 0 || numbers[3] < 0) {
+                throw new LiveAttributeException
+                    (element, localName,
+                     LiveAttributeException.ERR_ATTRIBUTE_MALFORMED,
+                     s);
+            }
             x = numbers[0];
             y = numbers[1];
             w = numbers[2];
@@ -102,6 +102,22 @@ public class SVGOMAnimatedTransformList
         return animVal;
     }
 
+    /**
+     * Returns the transform list the animated value is made of when it is
+     * not animated, or null when it is.  The transform can then be
+     * computed from the attribute value without creating its transform
+     * list.
+     */
+    public String getUnanimatedTransformList() {
+        if (hasAnimVal) {
+            return null;
+        }
+        if (!element.hasAttributeNS(namespaceURI, localName)) {
+            return defaultValue;
+        }
+        return element.getAttributeNS(namespaceURI, localName);
+    }
+
     /**
      * Throws an exception if the points list value is malformed.
      */
@@ -231,11 +247,10 @@ public class SVGOMAnimatedTransformList
          * Returns the value of the DOM attribute containing the transform list.
          */
         protected String getValueAsString() {
-            Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
-            if (attr == null) {
+            if (!element.hasAttributeNS(namespaceURI, localName)) {
                 return defaultValue;
             }
-            return attr.getValue();
+            return element.getAttributeNS(namespaceURI, localName);
         }
 
         /**
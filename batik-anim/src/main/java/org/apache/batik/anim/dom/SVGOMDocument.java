@@ -399,6 +399,17 @@ public class SVGOMDocument
         return node.getNodeName().equals(XML_ID_QNAME);
     }
 
+    /**
+     * Returns true if the attribute with the given name represents an
+     * 'id' for this document.
+     */
+    public boolean isId(String ns, String qname) {
+        if (ns == null) {
+            return SVG_ID_ATTRIBUTE.equals(qname);
+        }
+        return qname.equals(XML_ID_QNAME);
+    }
+
     /**
      * Sets the SVG context to use to get SVG specific informations.
      *
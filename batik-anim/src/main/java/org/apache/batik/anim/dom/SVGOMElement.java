@@ -286,12 +286,12 @@ public abstract class SVGOMElement
             return base;
         }
         Element e = (Element) node;
-        Attr attr = e.getAttributeNodeNS(XML_NAMESPACE_URI, XML_BASE_ATTRIBUTE);
-        if (attr != null) {
+        if (e.hasAttributeNS(XML_NAMESPACE_URI, XML_BASE_ATTRIBUTE)) {
+            String b = e.getAttributeNS(XML_NAMESPACE_URI, XML_BASE_ATTRIBUTE);
             if (base == null) {
-                base = attr.getNodeValue();
+                base = b;
             } else {
-                base = new ParsedURL(base, attr.getNodeValue()).toString();
+                base = new ParsedURL(base, b).toString();
             }
         }
         return base;
@@ -315,6 +315,20 @@ public abstract class SVGOMElement
         return svgContext;
     }
 
+    /**
+     * Returns the SVG context once the style changes deferred by the
+     * update batch of the CSS engine, if any, have been applied, so
+     * that the geometry it gives takes them into account.
+     */
+    public SVGContext getUpToDateSVGContext() {
+        AbstractStylableDocument doc = (AbstractStylableDocument) ownerDocument;
+        CSSEngine eng = doc.getCSSEngine();
+        if (eng != null && eng.isUpdateBatch()) {
+            eng.flushInvalidations();
+        }
+        return svgContext;
+    }
+
     // ExtendedNode //////////////////////////////////////////////////
 
     /**
@@ -360,7 +374,7 @@ public abstract class SVGOMElement
             (String ns, String ln, String def) {
         SVGOMAnimatedTransformList v =
             new SVGOMAnimatedTransformList(this, ns, ln, def);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -374,7 +388,7 @@ public abstract class SVGOMElement
             (String ns, String ln, boolean def) {
         SVGOMAnimatedBoolean v =
             new SVGOMAnimatedBoolean(this, ns, ln, def);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -388,7 +402,7 @@ public abstract class SVGOMElement
             (String ns, String ln) {
         SVGOMAnimatedString v =
             new SVGOMAnimatedString(this, ns, ln);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -402,7 +416,7 @@ public abstract class SVGOMElement
             createLiveAnimatedPreserveAspectRatio() {
         SVGOMAnimatedPreserveAspectRatio v =
             new SVGOMAnimatedPreserveAspectRatio(this);
-        liveAttributeValues.put(null, SVG_PRESERVE_ASPECT_RATIO_ATTRIBUTE, v);
+        putLiveAttributeValue(null, SVG_PRESERVE_ASPECT_RATIO_ATTRIBUTE, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -416,7 +430,7 @@ public abstract class SVGOMElement
             createLiveAnimatedMarkerOrientValue(String ns, String ln) {
         SVGOMAnimatedMarkerOrientValue v =
             new SVGOMAnimatedMarkerOrientValue(this, ns, ln);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -430,7 +444,7 @@ public abstract class SVGOMElement
             createLiveAnimatedPathData(String ns, String ln, String def) {
         SVGOMAnimatedPathData v =
             new SVGOMAnimatedPathData(this, ns, ln, def);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -453,7 +467,7 @@ public abstract class SVGOMElement
             (String ns, String ln, float def, boolean allowPercentage) {
         SVGOMAnimatedNumber v =
             new SVGOMAnimatedNumber(this, ns, ln, def, allowPercentage);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -467,7 +481,7 @@ public abstract class SVGOMElement
             (String ns, String ln, String def, boolean canEmpty) {
         SVGOMAnimatedNumberList v =
             new SVGOMAnimatedNumberList(this, ns, ln, def, canEmpty);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -481,7 +495,7 @@ public abstract class SVGOMElement
             (String ns, String ln, String def) {
         SVGOMAnimatedPoints v =
             new SVGOMAnimatedPoints(this, ns, ln, def);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -496,7 +510,7 @@ public abstract class SVGOMElement
              short dir) {
         SVGOMAnimatedLengthList v =
             new SVGOMAnimatedLengthList(this, ns, ln, def, emptyAllowed, dir);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -510,7 +524,7 @@ public abstract class SVGOMElement
             (String ns, String ln, int def) {
         SVGOMAnimatedInteger v =
             new SVGOMAnimatedInteger(this, ns, ln, def);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -524,7 +538,7 @@ public abstract class SVGOMElement
             (String ns, String ln, String[] val, short def) {
         SVGOMAnimatedEnumeration v =
             new SVGOMAnimatedEnumeration(this, ns, ln, val, def);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -538,7 +552,7 @@ public abstract class SVGOMElement
             (String ns, String ln, String val, short dir, boolean nonneg) {
         SVGOMAnimatedLength v =
             new SVGOMAnimatedLength(this, ns, ln, val, dir, nonneg);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -551,7 +565,7 @@ public abstract class SVGOMElement
     protected SVGOMAnimatedRect createLiveAnimatedRect
             (String ns, String ln, String value) {
         SVGOMAnimatedRect v = new SVGOMAnimatedRect(this, ns, ln, value);
-        liveAttributeValues.put(ns, ln, v);
+        putLiveAttributeValue(ns, ln, v);
         v.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
         return v;
@@ -142,8 +142,8 @@ public class SVGOMRadialGradientElement
                 }
             };
 
-        liveAttributeValues.put(null, SVG_FX_ATTRIBUTE, fx);
-        liveAttributeValues.put(null, SVG_FY_ATTRIBUTE, fy);
+        putLiveAttributeValue(null, SVG_FX_ATTRIBUTE, fx);
+        putLiveAttributeValue(null, SVG_FY_ATTRIBUTE, fy);
         AnimatedAttributeListener l =
             ((SVGOMDocument) ownerDocument).getAnimatedAttributeListener();
         fx.addAnimatedAttributeListener(l);
@@ -519,7 +519,7 @@ public class SVGOMSVGElement
      */
     public NodeList getIntersectionList(SVGRect rect,
                                         SVGElement referenceElement) {
-        SVGSVGContext ctx = (SVGSVGContext)getSVGContext();
+        SVGSVGContext ctx = (SVGSVGContext)getUpToDateSVGContext();
         List list = ctx.getIntersectionList(rect, referenceElement);
         return new ListNodeList(list);
     }
@@ -530,7 +530,7 @@ public class SVGOMSVGElement
      */
     public NodeList getEnclosureList(SVGRect rect,
                                      SVGElement referenceElement) {
-        SVGSVGContext ctx = (SVGSVGContext)getSVGContext();
+        SVGSVGContext ctx = (SVGSVGContext)getUpToDateSVGContext();
         List list = ctx.getEnclosureList(rect, referenceElement);
         return new ListNodeList(list);
     }
@@ -540,7 +540,7 @@ public class SVGOMSVGElement
      * SVGSVGElement#checkIntersection(SVGElement,SVGRect)}.
      */
     public boolean checkIntersection(SVGElement element, SVGRect rect) {
-        SVGSVGContext ctx = (SVGSVGContext)getSVGContext();
+        SVGSVGContext ctx = (SVGSVGContext)getUpToDateSVGContext();
         return ctx.checkIntersection(element, rect);
     }
 
@@ -549,7 +549,7 @@ public class SVGOMSVGElement
      * SVGSVGElement#checkEnclosure(SVGElement,SVGRect)}.
      */
     public boolean checkEnclosure(SVGElement element, SVGRect rect) {
-        SVGSVGContext ctx = (SVGSVGContext)getSVGContext();
+        SVGSVGContext ctx = (SVGSVGContext)getUpToDateSVGContext();
         return ctx.checkEnclosure(element, rect);
     }
 
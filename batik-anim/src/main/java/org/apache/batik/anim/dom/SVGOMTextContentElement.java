@@ -150,7 +150,7 @@ public abstract class SVGOMTextContentElement
                 }
             };
 
-        liveAttributeValues.put(null, SVG_TEXT_LENGTH_ATTRIBUTE, textLength);
+        putLiveAttributeValue(null, SVG_TEXT_LENGTH_ATTRIBUTE, textLength);
         textLength.addAnimatedAttributeListener
             (((SVGOMDocument) ownerDocument).getAnimatedAttributeListener());
     }
@@ -377,10 +377,10 @@ public abstract class SVGStylableElement
             cssEngine = eng;
             property = prop;
 
-            Attr attr = getAttributeNodeNS(null, prop);
-            if (attr != null) {
+            if (hasAttributeNS(null, prop)) {
                 value = cssEngine.parsePropertyValue
-                    (SVGStylableElement.this, prop, attr.getValue());
+                    (SVGStylableElement.this, prop,
+                     getAttributeNS(null, prop));
             }
         }
 
@@ -478,10 +478,10 @@ public abstract class SVGStylableElement
             cssEngine = eng;
             property = prop;
 
-            Attr attr = getAttributeNodeNS(null, prop);
-            if (attr != null) {
+            if (hasAttributeNS(null, prop)) {
                 value = cssEngine.parsePropertyValue
-                    (SVGStylableElement.this, prop, attr.getValue());
+                    (SVGStylableElement.this, prop,
+                     getAttributeNS(null, prop));
             }
         }
 
@@ -580,10 +580,10 @@ public abstract class SVGStylableElement
             cssEngine = eng;
             property = prop;
 
-            Attr attr = getAttributeNodeNS(null, prop);
-            if (attr != null) {
+            if (hasAttributeNS(null, prop)) {
                 value = cssEngine.parsePropertyValue
-                    (SVGStylableElement.this, prop, attr.getValue());
+                    (SVGStylableElement.this, prop,
+                     getAttributeNS(null, prop));
             }
         }
 
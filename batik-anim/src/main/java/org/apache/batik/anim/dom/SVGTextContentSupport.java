@@ -45,7 +45,8 @@ public class SVGTextContentSupport {
     {
         final SVGOMElement svgelt = (SVGOMElement)elt;
 
-        return (((SVGTextContent)svgelt.getSVGContext()).getNumberOfChars());
+        return ((SVGTextContent)svgelt.getUpToDateSVGContext())
+            .getNumberOfChars();
     }
 
     /**
@@ -62,7 +63,8 @@ public class SVGTextContentSupport {
                  "",null);
         }
         
-        final SVGTextContent context = (SVGTextContent)svgelt.getSVGContext();
+        final SVGTextContent context =
+            (SVGTextContent)svgelt.getUpToDateSVGContext();
         
         return new SVGRect() {
                 public float getX() {
@@ -131,7 +133,8 @@ public class SVGTextContentSupport {
                  "",null);
         }
         
-        final SVGTextContent context = (SVGTextContent)svgelt.getSVGContext();
+        final SVGTextContent context =
+            (SVGTextContent)svgelt.getUpToDateSVGContext();
 
         return new SVGTextPoint(svgelt){
                 public float getX(){
@@ -169,7 +172,8 @@ public class SVGTextContentSupport {
                  "",null);
         }
         
-        final SVGTextContent context = (SVGTextContent)svgelt.getSVGContext();
+        final SVGTextContent context =
+            (SVGTextContent)svgelt.getUpToDateSVGContext();
 
         return new SVGTextPoint(svgelt){
                 public float getX(){
@@ -206,7 +210,8 @@ public class SVGTextContentSupport {
                  "",null);
         }
         
-        final SVGTextContent context = (SVGTextContent)svgelt.getSVGContext();
+        final SVGTextContent context =
+            (SVGTextContent)svgelt.getUpToDateSVGContext();
 
         context.selectSubString(charnum, nchars);
     }
@@ -225,7 +230,8 @@ public class SVGTextContentSupport {
                  "",null);
         }
         
-        final SVGTextContent context = (SVGTextContent)svgelt.getSVGContext();
+        final SVGTextContent context =
+            (SVGTextContent)svgelt.getUpToDateSVGContext();
         
         return context.getRotationOfChar(charnum);
     }
@@ -238,7 +244,8 @@ public class SVGTextContentSupport {
 
         final SVGOMElement svgelt = (SVGOMElement)elt;
 
-        final SVGTextContent context = (SVGTextContent)svgelt.getSVGContext();
+        final SVGTextContent context =
+            (SVGTextContent)svgelt.getUpToDateSVGContext();
 
         return context.getComputedTextLength();
     }
@@ -258,7 +265,8 @@ public class SVGTextContentSupport {
                  "",null);
         }
         
-        final SVGTextContent context = (SVGTextContent)svgelt.getSVGContext();
+        final SVGTextContent context =
+            (SVGTextContent)svgelt.getUpToDateSVGContext();
 
         return context.getSubStringLength(charnum,nchars);
     }
@@ -271,7 +279,8 @@ public class SVGTextContentSupport {
 
         final SVGOMElement svgelt = (SVGOMElement)elt;
 
-        final SVGTextContent context = (SVGTextContent)svgelt.getSVGContext();
+        final SVGTextContent context =
+            (SVGTextContent)svgelt.getUpToDateSVGContext();
         
         return context.getCharNumAtPosition(x,y);
     }
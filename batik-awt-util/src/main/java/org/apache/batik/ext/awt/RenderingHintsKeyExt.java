@@ -77,9 +77,34 @@ public final class RenderingHintsKeyExt {
     public static final Object VALUE_AVOID_TILE_PAINTING_OFF = new Object();
     public static final Object VALUE_AVOID_TILE_PAINTING_DEFAULT = new Object();
 
+    /**
+     * Hint giving the org.apache.batik.util.WorkerPool that image
+     * operations, such as the Gaussian blur, may use to compute their
+     * data in parallel.  When it is not set they use the calling
+     * thread only.
+     */
+    public static final RenderingHints.Key KEY_WORKER_POOL;
+
+    /**
+     * Hint giving, as a Float, the size in device pixels of the smallest
+     * details to render.  The graphics nodes smaller than this size are
+     * only approximated, and the text whose lines are less tall is drawn
+     * as boxes.  When it is not set everything is rendered in full.
+     */
+    public static final RenderingHints.Key KEY_LEVEL_OF_DETAIL;
+
+    /**
+     * Hint giving the org.apache.batik.gvt.LayerCache where the graphics
+     * nodes that are expensive to paint keep their renderings, to draw
+     * them as images while they do not change.  When it is not set the
+     * nodes are always painted.
+     */
+    public static final RenderingHints.Key KEY_LAYER_CACHE;
+
     static {
         int base = 10100;
         RenderingHints.Key trans=null, aoi=null, bi=null, cs=null, atp=null;
+        RenderingHints.Key wp=null, lod=null, lc=null;
         while (true) {
             int val = base;
 
@@ -89,6 +114,9 @@ public final class RenderingHintsKeyExt {
                 bi    = new BufferedImageHintKey (val++);
                 cs    = new ColorSpaceHintKey    (val++);
                 atp   = new AvoidTilingHintKey   (val++);
+                wp    = new WorkerPoolHintKey    (val++);
+                lod   = new LevelOfDetailHintKey (val++);
+                lc    = new LayerCacheHintKey    (val++);
             } catch (Exception e) {
                 System.err.println
                     ("You have loaded the Batik jar files more than once\n" +
@@ -106,6 +134,9 @@ public final class RenderingHintsKeyExt {
         KEY_BUFFERED_IMAGE      = bi;
         KEY_COLORSPACE          = cs;
         KEY_AVOID_TILE_PAINTING = atp;
+        KEY_WORKER_POOL         = wp;
+        KEY_LEVEL_OF_DETAIL     = lod;
+        KEY_LAYER_CACHE         = lc;
     }
 
     /**
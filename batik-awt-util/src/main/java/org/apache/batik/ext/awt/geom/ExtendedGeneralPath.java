@@ -78,6 +78,80 @@ public class ExtendedGeneralPath implements ExtendedShape, Cloneable {
         path = new GeneralPath(rule, initialCapacity);
     }
 
+    /**
+     * Constructs a new <code>ExtendedGeneralPath</code> object from
+     * arrays of segment types and coordinates, laid out as they are
+     * returned by the {@link ExtendedPathIterator} of the path.  The
+     * arrays are kept by the path, not copied, and must not be modified
+     * afterward.  They must hold what the segment methods of this class
+     * would have stored: a path starting with a moveto, no closepath
+     * following another one, and no arc with a zero radius or ending at
+     * its start point.
+     * @param rule the winding rule
+     * @param types the segment types
+     * @param numSeg the number of segments
+     * @param values the segment coordinates
+     * @param numVals the number of coordinates
+     */
+    public ExtendedGeneralPath(int rule, int[] types, int numSeg,
+                               float[] values, int numVals) {
+        path = new GeneralPath(rule, Math.max(numSeg, numVals / 2));
+        this.types   = types;
+        this.numSeg  = numSeg;
+        this.values  = values;
+        this.numVals = numVals;
+
+        int v = 0;
+        for (int i = 0; i < numSeg; i++) {
+            int type = types[i];
+            if (type != PathIterator.SEG_MOVETO &&
+                type != PathIterator.SEG_CLOSE) {
+                checkMoveTo(i, v);
+            }
+            switch (type) {
+            case PathIterator.SEG_MOVETO:
+                cx = mx = values[v];
+                cy = my = values[v + 1];
+                v += 2;
+                break;
+            case PathIterator.SEG_LINETO:
+                path.lineTo(cx = values[v], cy = values[v + 1]);
+                v += 2;
+                break;
+            case PathIterator.SEG_QUADTO:
+                path.quadTo(values[v], values[v + 1],
+                            cx = values[v + 2], cy = values[v + 3]);
+                v += 4;
+                break;
+            case PathIterator.SEG_CUBICTO:
+                path.curveTo(values[v], values[v + 1],
+                             values[v + 2], values[v + 3],
+                             cx = values[v + 4], cy = values[v + 5]);
+                v += 6;
+                break;
+            case ExtendedPathIterator.SEG_ARCTO:
+                Shape s = createArcShape(cx, cy, values[v], values[v + 1],
+                                         values[v + 2], values[v + 3] != 0,
+                                         values[v + 4] != 0,
+                                         values[v + 5], values[v + 6]);
+                if (s != null) {
+                    path.append(s, true);
+                }
+                cx = values[v + 5];
+                cy = values[v + 6];
+                v += 7;
+                break;
+            case PathIterator.SEG_CLOSE:
+                if (i != 0 && types[i - 1] != PathIterator.SEG_MOVETO) {
+                    path.closePath();
+                }
+                cx = mx;
+                cy = my;
+                break;
+            }
+        }
+    }
+
     /**
      * Constructs a new <code>ExtendedGeneralPath</code> object from
      * an arbitrary <code>Shape</code> object.
@@ -133,13 +207,9 @@ public class ExtendedGeneralPath implements ExtendedShape, Cloneable {
             return;
         }
 
-        Arc2D arc = computeArc(x0, y0, rx, ry, angle,
-                               largeArcFlag, sweepFlag, x, y);
-        if (arc == null) return;
-
-        AffineTransform t = AffineTransform.getRotateInstance
-            (Math.toRadians(angle), arc.getCenterX(), arc.getCenterY());
-        Shape s = t.createTransformedShape(arc);
+        Shape s = createArcShape(x0, y0, rx, ry, angle,
+                                 largeArcFlag, sweepFlag, x, y);
+        if (s == null) return;
         path.append(s, true);
 
         makeRoom(7);
@@ -154,6 +224,25 @@ public class ExtendedGeneralPath implements ExtendedShape, Cloneable {
     }
 
 
+    /**
+     * Returns the rotated arc from (x0, y0) to (x, y) to append to the
+     * enclosed <code>GeneralPath</code>, or null.
+     */
+    private static Shape createArcShape(double x0, double y0,
+                                        float rx, float ry,
+                                        float angle,
+                                        boolean largeArcFlag,
+                                        boolean sweepFlag,
+                                        float x, float y) {
+        Arc2D arc = computeArc(x0, y0, rx, ry, angle,
+                               largeArcFlag, sweepFlag, x, y);
+        if (arc == null) return null;
+
+        AffineTransform t = AffineTransform.getRotateInstance
+            (Math.toRadians(angle), arc.getCenterX(), arc.getCenterY());
+        return t.createTransformedShape(arc);
+    }
+
     /**
      * This constructs an unrotated Arc2D from the SVG specification of an
      * Elliptical arc.  To get the final arc you need to apply a rotation
@@ -343,18 +432,28 @@ public class ExtendedGeneralPath implements ExtendedShape, Cloneable {
      * skipping a close command (if present).
      */
     protected void checkMoveTo() {
-        if (numSeg == 0) return;
+        checkMoveTo(numSeg, numVals);
+    }
+
+    /**
+     * Checks if the command before the given segment was a moveto
+     * command, skipping a close command (if present).
+     * @param seg the index of the segment
+     * @param vals the index of the first coordinate of the segment
+     */
+    private void checkMoveTo(int seg, int vals) {
+        if (seg == 0) return;
 
-        switch(types[numSeg-1]) {
+        switch(types[seg-1]) {
 
         case PathIterator.SEG_MOVETO:
-            path.moveTo(values[numVals-2], values[numVals-1]);
+            path.moveTo(values[vals-2], values[vals-1]);
             break;
 
         case PathIterator.SEG_CLOSE:
-            if (numSeg == 1) return;
-            if (types[numSeg-2] == PathIterator.SEG_MOVETO)
-                path.moveTo(values[numVals-2], values[numVals-1]);
+            if (seg == 1) return;
+            if (types[seg-2] == PathIterator.SEG_MOVETO)
+                path.moveTo(values[vals-2], values[vals-1]);
             break;
 
         default:
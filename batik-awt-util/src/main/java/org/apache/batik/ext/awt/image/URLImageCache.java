@@ -16,10 +16,16 @@
    limitations under the License.
 
 */
-
 package org.apache.batik.ext.awt.image;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.batik.ext.awt.image.renderable.Filter;
+import org.apache.batik.util.CleanerThread;
 import org.apache.batik.util.ParsedURL;
 import org.apache.batik.util.SoftReferenceCache;
 
@@ -34,7 +40,19 @@ import org.apache.batik.util.SoftReferenceCache;
  * </p>
  * <p>
  *   If someone requests a ParsedURL after it has been added but before it has
- *   been put they will be blocked until the put.
+ *   been put they will be blocked until the put.  Requests for different
+ *   ParsedURLs never wait for each other, and requests for images already
+ *   in the cache do not take any lock.
+ * </p>
+ * <p>
+ *   The cache holds at most a given number of images, and drops the least
+ *   recently requested ones to make room for new ones.
+ * </p>
+ * <p>
+ *   The entries are kept in a concurrent map of this class rather than
+ *   in the map of <code>SoftReferenceCache</code>, which is still the
+ *   superclass for compatibility: its <code>*Impl</code> methods do not
+ *   see the images of this cache.
  * </p>
  *
  * @author <a href="mailto:thomas.deweese@kodak.com">Thomas DeWeese</a>
@@ -42,15 +60,50 @@ import org.apache.batik.util.SoftReferenceCache;
  */
 public class URLImageCache extends SoftReferenceCache {
 
+    /**
+     * The default maximum number of images in a cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
     static URLImageCache theCache = new URLImageCache();
 
     public static URLImageCache getDefaultCache() { return theCache; }
 
+    /**
+     * The entries of the cache, indexed by ParsedURL.
+     */
+    protected final ConcurrentMap entries = new ConcurrentHashMap();
+
+    /**
+     * The maximum number of images in the cache.
+     */
+    protected volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * The clock used to order the entries by last use.
+     */
+    protected final AtomicLong clock     = new AtomicLong();
+
+    /**
+     * The number of requests answered from the cache, of requests that
+     * put the caller on the hook and of images dropped.
+     */
+    protected final AtomicLong hits      = new AtomicLong();
+    protected final AtomicLong misses    = new AtomicLong();
+    protected final AtomicLong evictions = new AtomicLong();
+
     /**
      * Let people create there own caches.
      */
     public URLImageCache() { }
 
+    /**
+     * Creates a cache holding at most the given number of images.
+     */
+    public URLImageCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
     /**
      * Check if <code>request(url)</code> will return with a Filter
      * (not putting you on the hook for it).  Note that it is possible
@@ -59,8 +112,19 @@ public class URLImageCache extends SoftReferenceCache {
      * is still possible for request to return NULL, just much less
      * likely (you can always call 'clear' in that case). 
      */
-    public synchronized boolean isPresent(ParsedURL purl) {
-        return super.isPresentImpl(purl);
+    public boolean isPresent(ParsedURL purl) {
+        Entry e = (Entry)entries.get(purl);
+        if (e == null)
+            return false;
+        if (!e.isDone())
+            // It's been requested but hasn't been 'put' yet.
+            return true;
+        if (e.getFilter() != null)
+            return true;
+
+        // Soft reference was cleared, so remove our record of purl.
+        entries.remove(purl, e);
+        return false;
     }
 
     /**
@@ -69,16 +133,51 @@ public class URLImageCache extends SoftReferenceCache {
      * true but between this call and the call to request the
      * soft-reference will be cleared.
      */
-    public synchronized boolean isDone(ParsedURL purl) {
-        return super.isDoneImpl(purl);
+    public boolean isDone(ParsedURL purl) {
+        Entry e = (Entry)entries.get(purl);
+        if ((e == null) || !e.isDone())
+            return false;
+        if (e.getFilter() != null)
+            return true;
+
+        // Soft reference was cleared
+        entries.remove(purl, e);
+        return false;
     }
 
     /**
      * If this returns null then you are now 'on the hook'.
      * to put the Filter associated with ParsedURL into the
      * cache.  */
-    public synchronized Filter request(ParsedURL purl) {
-        return (Filter)super.requestImpl(purl);
+    public Filter request(ParsedURL purl) {
+        for (;;) {
+            Entry e = (Entry)entries.get(purl);
+            if (e == null) {
+                Entry ne = new Entry(purl);
+                e = (Entry)entries.putIfAbsent(purl, ne);
+                if (e == null) {
+                    // So now the caller get's the hot potato.
+                    misses.incrementAndGet();
+                    return null;
+                }
+            }
+
+            // Wait for whoever is on the hook for it.
+            Filter filt = e.await();
+            if (filt != null) {
+                e.lastUse = clock.incrementAndGet();
+                hits.incrementAndGet();
+                return filt;
+            }
+
+            // It was cleared or never made it: take over unless
+            // someone else already did.
+            Entry ne = new Entry(purl);
+            if (entries.replace(purl, e, ne)) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
     }
 
     /**
@@ -86,8 +185,24 @@ public class URLImageCache extends SoftReferenceCache {
      * This is the easiest way to 'get off the hook'.
      * if you didn't indend to get on it.
      */
-    public synchronized void clear(ParsedURL purl) {
-        super.clearImpl(purl);
+    public void clear(ParsedURL purl) {
+        Entry e = (Entry)entries.remove(purl);
+        if (e != null)
+            e.complete(null);
+    }
+
+    /**
+     * Let people flush the cache (remove any cached data).  Pending
+     * requests will be treated as though clear() was called on the
+     * ParsedURL, this should cause them to go and re-read the data.
+     */
+    public void flush() {
+        Iterator i = entries.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry me = (Map.Entry)i.next();
+            i.remove();
+            ((Entry)me.getValue()).complete(null);
+        }
     }
 
     /**
@@ -97,7 +212,182 @@ public class URLImageCache extends SoftReferenceCache {
      * probably cleared or flushed since we were put on the hook
      * for it, so in that case we will do nothing.
      */
-    public synchronized void put(ParsedURL purl, Filter filt) {
-        super.putImpl(purl, filt);
+    public void put(ParsedURL purl, Filter filt) {
+        Entry e = (Entry)entries.get(purl);
+        if (e == null)
+            return;
+        e.lastUse = clock.incrementAndGet();
+        e.complete(filt);
+        trim(e);
+    }
+
+    /**
+     * Returns the maximum number of images in the cache.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of images in the cache.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize <= 0) maxSize = 1;
+        this.maxSize = maxSize;
+        trim(null);
+    }
+
+    /**
+     * Returns the number of images in the cache, counting those being
+     * loaded.
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests that put the caller on the hook.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of images dropped to make room for others.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counts.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * Drops the least recently used images, except <code>keep</code>,
+     * until no more than <code>maxSize</code> are held.  The images
+     * being loaded are never dropped.
+     */
+    protected void trim(Entry keep) {
+        while (entries.size() > maxSize) {
+            Entry lru = null;
+            Iterator i = entries.values().iterator();
+            while (i.hasNext()) {
+                Entry e = (Entry)i.next();
+                if ((e == keep) || !e.isDone())
+                    continue;
+                if ((lru == null) || (e.lastUse < lru.lastUse))
+                    lru = e;
+            }
+            if (lru == null)
+                return;
+            if (entries.remove(lru.purl, lru))
+                evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * An image in the cache, or being loaded.
+     */
+    protected class Entry {
+
+        /**
+         * The ParsedURL of the image.
+         */
+        protected final ParsedURL purl;
+
+        /**
+         * The image, once put.
+         */
+        protected FilterRef ref;
+
+        /**
+         * Whether the image has been put or cleared.
+         */
+        protected boolean done;
+
+        /**
+         * The value of the clock when the image was last used.
+         */
+        protected volatile long lastUse;
+
+        protected Entry(ParsedURL purl) {
+            this.purl = purl;
+        }
+
+        protected synchronized boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Returns the image, or null if it has been cleared, was not
+         * loaded or has not been put yet.
+         */
+        protected synchronized Filter getFilter() {
+            if (ref == null)
+                return null;
+            return (Filter)ref.get();
+        }
+
+        /**
+         * Sets the image and wakes up the threads waiting for it.
+         */
+        protected synchronized void complete(Filter filt) {
+            ref = (filt == null) ? null : new FilterRef(filt, this);
+            done = true;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the image has been put or cleared, and returns it.
+         */
+        protected Filter await() {
+            boolean interrupted = false;
+            Filter filt;
+            synchronized (this) {
+                while (!done) {
+                    try {
+                        // When something is cleared or put we will be notified.
+                        wait();
+                    } catch (InterruptedException ie) {
+                        interrupted = true;
+                    }
+                }
+                filt = (ref == null) ? null : (Filter)ref.get();
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            return filt;
+        }
+    }
+
+    /**
+     * The soft reference to an image, which removes its entry from the
+     * cache when cleared.
+     */
+    protected class FilterRef extends CleanerThread.SoftReferenceCleared {
+
+        protected final Entry entry;
+
+        public FilterRef(Filter filt, Entry entry) {
+            super(filt);
+            this.entry = entry;
+        }
+
+        public void cleared() {
+            entries.remove(entry.purl, entry);
+        }
     }
 }
@@ -284,7 +284,7 @@ public class FilterResRable8Bit extends AbstractRable
         return resScale;
     }
 
-    private RenderedImage getResRed(RenderingHints hints) {
+    private synchronized RenderedImage getResRed(RenderingHints hints) {
         Rectangle2D imageRect = getBounds2D();
         double resScaleX = getFilterResolutionX()/imageRect.getWidth();
         double resScaleY = getFilterResolutionY()/imageRect.getHeight();
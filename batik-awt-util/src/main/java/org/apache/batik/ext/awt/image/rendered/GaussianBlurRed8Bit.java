@@ -32,7 +32,9 @@ import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.util.WorkerPool;
 
 /**
  * This implementation of RenderableImage will render its input
@@ -48,6 +50,7 @@ public class GaussianBlurRed8Bit extends AbstractRed {
     RenderingHints hints;
     ConvolveOp [] convOp = new ConvolveOp [2];
     int dX, dY;
+    WorkerPool pool;
 
     /**
      * Construct a blurred version of <code>src</code>, by blurring with a
@@ -78,6 +81,8 @@ public class GaussianBlurRed8Bit extends AbstractRed {
         this.stdDevX = stdDevX;
         this.stdDevY = stdDevY;
         this.hints   = rh;
+        if (rh != null)
+            pool = (WorkerPool)rh.get(RenderingHintsKeyExt.KEY_WORKER_POOL);
 
         xinset = surroundPixels(stdDevX, rh);
         yinset = surroundPixels(stdDevY, rh);
@@ -304,6 +309,24 @@ public class GaussianBlurRed8Bit extends AbstractRed {
         return wr;
     }
 
+    /**
+     * Minimum number of pixels a box filter pass must cover before it
+     * is split in stripes run in parallel.
+     */
+    static final int PARALLEL_MIN_PIXELS = 128*128;
+
+    /**
+     * Minimum number of rows or columns in a stripe of a pass run in
+     * parallel.
+     */
+    static final int MIN_STRIPE = 16;
+
+    /**
+     * Number of columns filtered together by the vertical pass, so
+     * that it reads and writes the rasters a row at a time.
+     */
+    static final int COLUMN_BLOCK = 128;
+
     private WritableRaster boxFilterH(Raster src, WritableRaster dest,
                                       int skipX, int skipY,
                                       int boxSz, int loc) {
@@ -315,110 +338,8 @@ public class GaussianBlurRed8Bit extends AbstractRed {
         if (w < (2*skipX)+boxSz) return dest;
         if (h < (2*skipY))       return dest;
 
-        final SinglePixelPackedSampleModel srcSPPSM =
-            (SinglePixelPackedSampleModel)src.getSampleModel();
-
-        final SinglePixelPackedSampleModel dstSPPSM =
-            (SinglePixelPackedSampleModel)dest.getSampleModel();
-
-        // Stride is the distance between two consecutive column elements,
-        // in the one-dimention dataBuffer
-        final int srcScanStride = srcSPPSM.getScanlineStride();
-        final int dstScanStride = dstSPPSM.getScanlineStride();
-
-        // Access the integer buffer for each image.
-        DataBufferInt srcDB = (DataBufferInt)src.getDataBuffer();
-        DataBufferInt dstDB = (DataBufferInt)dest.getDataBuffer();
-
-        // Offset defines where in the stack the real data begin
-        final int srcOff
-            = (srcDB.getOffset() +
-               srcSPPSM.getOffset
-               (src.getMinX()-src.getSampleModelTranslateX(),
-                src.getMinY()-src.getSampleModelTranslateY()));
-        final int dstOff
-            = (dstDB.getOffset() +
-               dstSPPSM.getOffset
-               (dest.getMinX()-dest.getSampleModelTranslateX(),
-                dest.getMinY()-dest.getSampleModelTranslateY()));
-
-        // Access the pixel value array
-        final int[] srcPixels  = srcDB.getBankData()[0];
-        final int[] destPixels = dstDB.getBankData()[0];
-
-        final int [] buffer = new int [boxSz];
-        int curr, prev;
-
-          // Fixed point normalization factor (8.24)
-        int scale = (1<<24)/boxSz;
-
-        /*
-         * System.out.println("Info: srcOff: " + srcOff +
-         *                    " x: " + skipX +
-         *                    " y: " + skipY +
-         *                    " w: " + w +
-         *                    " h: " + h +
-         *                    " boxSz " + boxSz +
-         *                    " srcStride: " + srcScanStride);
-         */
-
-        for (int y=skipY; y<(h-skipY); y++) {
-            int sp     = srcOff + y*srcScanStride;
-            int dp     = dstOff + y*dstScanStride;
-            int rowEnd = sp + (w-skipX);
-
-            int k    = 0;
-            int sumA = 0;
-            int sumR = 0;
-            int sumG = 0;
-            int sumB = 0;
-
-            sp += skipX;
-            int end  = sp+boxSz;
-
-            while (sp < end) {
-                curr = buffer[k] = srcPixels[sp];
-                sumA += (curr>>> 24);
-                sumR += (curr >> 16)&0xFF;
-                sumG += (curr >>  8)&0xFF;
-                sumB += (curr      )&0xFF;
-                k++;
-                sp++;
-            }
-
-            dp += skipX + loc;
-            prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
-                                     (((sumR*scale)&0xFF000000)>>>8)  |
-                                     (((sumG*scale)&0xFF000000)>>>16) |
-                                     (((sumB*scale)&0xFF000000)>>>24));
-            dp++;
-            k=0;
-            while (sp < rowEnd) {
-                curr = buffer[k];
-                if (curr == srcPixels[sp]) {
-                    destPixels[dp] = prev;
-                } else {
-                    sumA -= (curr>>> 24);
-                    sumR -= (curr >> 16)&0xFF;
-                    sumG -= (curr >>  8)&0xFF;
-                    sumB -= (curr      )&0xFF;
-
-                    curr = buffer[k] = srcPixels[sp];
-
-                    sumA += (curr>>> 24);
-                    sumR += (curr >> 16)&0xFF;
-                    sumG += (curr >>  8)&0xFF;
-                    sumB += (curr      )&0xFF;
-                    prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
-                                             (((sumR*scale)&0xFF000000)>>>8)  |
-                                             (((sumG*scale)&0xFF000000)>>>16) |
-                                             (((sumB*scale)&0xFF000000)>>>24));
-                }
-                k = (k+1)%boxSz;
-                sp++;
-                dp++;
-            }
-        }
+        runPass(new BoxPassH(src, dest, skipX, skipY, boxSz, loc),
+                skipY, h-skipY, w);
         return dest;
     }
 
@@ -433,113 +354,285 @@ public class GaussianBlurRed8Bit extends AbstractRed {
         if (w < (2*skipX))       return dest;
         if (h < (2*skipY)+boxSz) return dest;
 
-        final SinglePixelPackedSampleModel srcSPPSM =
-            (SinglePixelPackedSampleModel)src.getSampleModel();
-
-        final SinglePixelPackedSampleModel dstSPPSM =
-            (SinglePixelPackedSampleModel)dest.getSampleModel();
-
-        // Stride is the distance between two consecutive column elements,
-        // in the one-dimention dataBuffer
-        final int srcScanStride = srcSPPSM.getScanlineStride();
-        final int dstScanStride = dstSPPSM.getScanlineStride();
-
-        // Access the integer buffer for each image.
-        DataBufferInt srcDB = (DataBufferInt)src.getDataBuffer();
-        DataBufferInt dstDB = (DataBufferInt)dest.getDataBuffer();
-
-        // Offset defines where in the stack the real data begin
-        final int srcOff
-            = (srcDB.getOffset() +
-               srcSPPSM.getOffset
-               (src.getMinX()-src.getSampleModelTranslateX(),
-                src.getMinY()-src.getSampleModelTranslateY()));
-        final int dstOff
-            = (dstDB.getOffset() +
-               dstSPPSM.getOffset
-               (dest.getMinX()-dest.getSampleModelTranslateX(),
-                dest.getMinY()-dest.getSampleModelTranslateY()));
-
-
-        // Access the pixel value array
-        final int[] srcPixels  = srcDB.getBankData()[0];
-        final int[] destPixels = dstDB.getBankData()[0];
-
-        final int [] buffer = new int [boxSz];
-        int curr, prev;
-
-          // Fixed point normalization factor (8.24)
-        final int scale = (1<<24)/boxSz;
-
-        /*
-         * System.out.println("Info: srcOff: " + srcOff +
-         *                    " x: " + skipX +
-         *                    " y: " + skipY +
-         *                    " w: " + w +
-         *                    " h: " + h +
-         *                    " boxSz " + boxSz +
-         *                    " srcStride: " + srcScanStride);
+        runPass(new BoxPassV(src, dest, skipX, skipY, boxSz, loc),
+                skipX, w-skipX, h);
+        return dest;
+    }
+
+    /**
+     * Runs a box filter pass over the rows or columns from
+     * <code>start</code> to <code>end</code>.  When a worker pool is set
+     * and the pass is large enough, they are split in stripes filtered
+     * in parallel.  Each row (or column) is filtered independently of
+     * the others, so the result does not depend on the stripes.
+     * @param len the length of the rows (or columns)
+     */
+    private void runPass(BoxPass pass, int start, int end, int len) {
+        int n = end - start;
+        int stripes = 1;
+        WorkerPool wp = pool;
+        if ((wp != null) && ((long)n*len >= PARALLEL_MIN_PIXELS))
+            stripes = Math.min(wp.getParallelism()*2, n/MIN_STRIPE);
+
+        if (stripes <= 1) {
+            pass.filter(start, end);
+            return;
+        }
+
+        Runnable [] tasks = new Runnable[stripes];
+        for (int i=0; i<stripes; i++) {
+            int s0 = start + (int)((long)n*i/stripes);
+            int s1 = start + (int)((long)n*(i+1)/stripes);
+            tasks[i] = pass.stripe(s0, s1);
+        }
+        wp.invokeAll(tasks);
+    }
+
+    /**
+     * A box filter pass over packed int rasters, where each destination
+     * pixel is the average of <code>boxSz</code> source pixels.  The
+     * running sums are kept in 8.24 fixed point.  The source and the
+     * destination may be the same raster.
+     */
+    abstract static class BoxPass {
+        final int [] srcPixels;
+        final int [] destPixels;
+        final int srcOff, dstOff;
+        final int srcScanStride, dstScanStride;
+        final int w, h;
+        final int skipX, skipY;
+        final int boxSz, loc;
+        final int scale;
+
+        BoxPass(Raster src, WritableRaster dest,
+                int skipX, int skipY, int boxSz, int loc) {
+            final SinglePixelPackedSampleModel srcSPPSM =
+                (SinglePixelPackedSampleModel)src.getSampleModel();
+
+            final SinglePixelPackedSampleModel dstSPPSM =
+                (SinglePixelPackedSampleModel)dest.getSampleModel();
+
+            // Stride is the distance between two consecutive column
+            // elements, in the one-dimention dataBuffer
+            srcScanStride = srcSPPSM.getScanlineStride();
+            dstScanStride = dstSPPSM.getScanlineStride();
+
+            // Access the integer buffer for each image.
+            DataBufferInt srcDB = (DataBufferInt)src.getDataBuffer();
+            DataBufferInt dstDB = (DataBufferInt)dest.getDataBuffer();
+
+            // Offset defines where in the stack the real data begin
+            srcOff = (srcDB.getOffset() +
+                      srcSPPSM.getOffset
+                      (src.getMinX()-src.getSampleModelTranslateX(),
+                       src.getMinY()-src.getSampleModelTranslateY()));
+            dstOff = (dstDB.getOffset() +
+                      dstSPPSM.getOffset
+                      (dest.getMinX()-dest.getSampleModelTranslateX(),
+                       dest.getMinY()-dest.getSampleModelTranslateY()));
+
+            // Access the pixel value array
+            srcPixels  = srcDB.getBankData()[0];
+            destPixels = dstDB.getBankData()[0];
+
+            this.w     = src.getWidth();
+            this.h     = src.getHeight();
+            this.skipX = skipX;
+            this.skipY = skipY;
+            this.boxSz = boxSz;
+            this.loc   = loc;
+
+              // Fixed point normalization factor (8.24)
+            this.scale = (1<<24)/boxSz;
+        }
+
+        /**
+         * Filters the rows (or columns) from <code>from</code> to
+         * <code>to</code>, exclusive.
          */
+        abstract void filter(int from, int to);
 
-        for (int x=skipX; x<(w-skipX); x++) {
-            int sp = srcOff + x;
-            int dp = dstOff + x;
-            int colEnd = sp + (h-skipY)*srcScanStride;
-
-            int k=0;
-            int sumA = 0;
-            int sumR = 0;
-            int sumG = 0;
-            int sumB = 0;
-
-            sp += skipY*srcScanStride;
-            int end  = sp+(boxSz*srcScanStride);
-
-            while (sp < end) {
-                curr = buffer[k] = srcPixels[sp];
-                sumA += (curr>>> 24);
-                sumR += (curr >> 16)&0xFF;
-                sumG += (curr >>  8)&0xFF;
-                sumB += (curr      )&0xFF;
-                k++;
-                sp+=srcScanStride;
-            }
+        /**
+         * Returns a task filtering the given rows (or columns).
+         */
+        Runnable stripe(final int from, final int to) {
+            return new Runnable() {
+                    public void run() {
+                        filter(from, to);
+                    }
+                };
+        }
+    }
 
+    /**
+     * The horizontal box filter pass, over a range of rows.
+     */
+    static final class BoxPassH extends BoxPass {
 
-            dp += (skipY + loc)*dstScanStride;
-            prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
-                                     (((sumR*scale)&0xFF000000)>>>8)  |
-                                     (((sumG*scale)&0xFF000000)>>>16) |
-                                     (((sumB*scale)&0xFF000000)>>>24));
-            dp+=dstScanStride;
-            k=0;
-            while (sp < colEnd) {
-                curr = buffer[k];
-                if (curr == srcPixels[sp]) {
-                    destPixels[dp] = prev;
-                } else {
-                    sumA -= (curr>>> 24);
-                    sumR -= (curr >> 16)&0xFF;
-                    sumG -= (curr >>  8)&0xFF;
-                    sumB -= (curr      )&0xFF;
+        BoxPassH(Raster src, WritableRaster dest,
+                 int skipX, int skipY, int boxSz, int loc) {
+            super(src, dest, skipX, skipY, boxSz, loc);
+        }
 
+        void filter(int y0, int y1) {
+            final int [] srcPixels  = this.srcPixels;
+            final int [] destPixels = this.destPixels;
+            final int boxSz = this.boxSz;
+            final int scale = this.scale;
+            final int [] buffer = new int [boxSz];
+            int curr, prev;
+
+            for (int y=y0; y<y1; y++) {
+                int sp     = srcOff + y*srcScanStride;
+                int dp     = dstOff + y*dstScanStride;
+                int rowEnd = sp + (w-skipX);
+
+                int k    = 0;
+                int sumA = 0;
+                int sumR = 0;
+                int sumG = 0;
+                int sumB = 0;
+
+                sp += skipX;
+                int end  = sp+boxSz;
+
+                while (sp < end) {
                     curr = buffer[k] = srcPixels[sp];
-
                     sumA += (curr>>> 24);
                     sumR += (curr >> 16)&0xFF;
                     sumG += (curr >>  8)&0xFF;
                     sumB += (curr      )&0xFF;
-                    prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
-                                             (((sumR*scale)&0xFF000000)>>>8)  |
-                                             (((sumG*scale)&0xFF000000)>>>16) |
-                                             (((sumB*scale)&0xFF000000)>>>24));
+                    k++;
+                    sp++;
+                }
+
+                dp += skipX + loc;
+                prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
+                                         (((sumR*scale)&0xFF000000)>>>8)  |
+                                         (((sumG*scale)&0xFF000000)>>>16) |
+                                         (((sumB*scale)&0xFF000000)>>>24));
+                dp++;
+                k=0;
+                while (sp < rowEnd) {
+                    curr = buffer[k];
+                    if (curr == srcPixels[sp]) {
+                        destPixels[dp] = prev;
+                    } else {
+                        sumA -= (curr>>> 24);
+                        sumR -= (curr >> 16)&0xFF;
+                        sumG -= (curr >>  8)&0xFF;
+                        sumB -= (curr      )&0xFF;
+
+                        curr = buffer[k] = srcPixels[sp];
+
+                        sumA += (curr>>> 24);
+                        sumR += (curr >> 16)&0xFF;
+                        sumG += (curr >>  8)&0xFF;
+                        sumB += (curr      )&0xFF;
+                        prev = destPixels[dp] =
+                            (( (sumA*scale)&0xFF000000)       |
+                             (((sumR*scale)&0xFF000000)>>>8)  |
+                             (((sumG*scale)&0xFF000000)>>>16) |
+                             (((sumB*scale)&0xFF000000)>>>24));
+                    }
+                    k = (k+1==boxSz) ? 0 : k+1;
+                    sp++;
+                    dp++;
+                }
+            }
+        }
+    }
+
+    /**
+     * The vertical box filter pass, over a range of columns.  The
+     * columns are filtered by blocks of <code>COLUMN_BLOCK</code>, a row
+     * at a time, with one running sum per column, so that the rasters
+     * are read and written in memory order.
+     */
+    static final class BoxPassV extends BoxPass {
+
+        BoxPassV(Raster src, WritableRaster dest,
+                 int skipX, int skipY, int boxSz, int loc) {
+            super(src, dest, skipX, skipY, boxSz, loc);
+        }
+
+        void filter(int x0, int x1) {
+            final int [] srcPixels  = this.srcPixels;
+            final int [] destPixels = this.destPixels;
+            final int boxSz = this.boxSz;
+            final int scale = this.scale;
+            final int bw0 = Math.min(COLUMN_BLOCK, x1-x0);
+
+            // The source rows in the box, as a ring of boxSz rows.
+            final int [] buffer = new int [boxSz*bw0];
+            final int [] sumA = new int [bw0];
+            final int [] sumR = new int [bw0];
+            final int [] sumG = new int [bw0];
+            final int [] sumB = new int [bw0];
+            // The last value written in each column.
+            final int [] last = new int [bw0];
+            int curr, prev;
+
+            for (int bx=x0; bx<x1; bx+=bw0) {
+                final int bw = Math.min(bw0, x1-bx);
+
+                for (int i=0; i<bw; i++) {
+                    sumA[i] = sumR[i] = sumG[i] = sumB[i] = 0;
+                }
+
+                int bp = 0;
+                for (int y=skipY; y<skipY+boxSz; y++) {
+                    int sp = srcOff + y*srcScanStride + bx;
+                    for (int i=0; i<bw; i++) {
+                        curr = buffer[bp++] = srcPixels[sp++];
+                        sumA[i] += (curr>>> 24);
+                        sumR[i] += (curr >> 16)&0xFF;
+                        sumG[i] += (curr >>  8)&0xFF;
+                        sumB[i] += (curr      )&0xFF;
+                    }
+                }
+
+                int dp = dstOff + (skipY+loc)*dstScanStride + bx;
+                for (int i=0; i<bw; i++) {
+                    last[i] = destPixels[dp+i] =
+                        (( (sumA[i]*scale)&0xFF000000)       |
+                         (((sumR[i]*scale)&0xFF000000)>>>8)  |
+                         (((sumG[i]*scale)&0xFF000000)>>>16) |
+                         (((sumB[i]*scale)&0xFF000000)>>>24));
+                }
+
+                int k = 0;
+                for (int y=skipY+boxSz; y<h-skipY; y++) {
+                    int sp = srcOff + y*srcScanStride + bx;
+                    dp += dstScanStride;
+                    bp = k*bw;
+                    for (int i=0; i<bw; i++) {
+                        prev = buffer[bp];
+                        curr = srcPixels[sp];
+                        if (curr == prev) {
+                            destPixels[dp+i] = last[i];
+                        } else {
+                            int a = (sumA[i] += (curr>>> 24) - (prev>>> 24));
+                            int r = (sumR[i] += ((curr >> 16)&0xFF)
+                                                - ((prev >> 16)&0xFF));
+                            int g = (sumG[i] += ((curr >>  8)&0xFF)
+                                                - ((prev >>  8)&0xFF));
+                            int b = (sumB[i] += ((curr      )&0xFF)
+                                                - ((prev      )&0xFF));
+                            buffer[bp] = curr;
+                            last[i] = destPixels[dp+i] =
+                                (( (a*scale)&0xFF000000)       |
+                                 (((r*scale)&0xFF000000)>>>8)  |
+                                 (((g*scale)&0xFF000000)>>>16) |
+                                 (((b*scale)&0xFF000000)>>>24));
+                        }
+                        bp++;
+                        sp++;
+                    }
+                    k = (k+1==boxSz) ? 0 : k+1;
                 }
-                k = (k+1)%boxSz;
-                sp+=srcScanStride;
-                dp+=dstScanStride;
             }
         }
-        return dest;
     }
 
     protected static ColorModel fixColorModel(CachableRed src) {
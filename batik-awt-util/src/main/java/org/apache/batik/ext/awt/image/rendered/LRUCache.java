@@ -21,6 +21,10 @@ package org.apache.batik.ext.awt.image.rendered;
 import org.apache.batik.util.DoublyLinkedList;
 
 /**
+ * A least recently used cache.  It holds at most a given number of
+ * objects and, counting the objects that implement {@link LRUSizedObj},
+ * at most a given number of bytes.  It also keeps the hit, miss and
+ * eviction counts reported by its users.
  *
  * @version $Id$
  */
@@ -50,12 +54,25 @@ public class LRUCache {
         void    lruRemove();
         }
 
+    /**
+     * Interface for objects participating in the LRU Cache that know
+     * how much memory they hold.
+     */
+        public interface LRUSizedObj extends LRUObj {
+        /**
+         * Returns the number of bytes held by this object.  It is
+         * read each time the object is added to the cache.
+         */
+        long    lruSize();
+        }
+
     /**
      * Interface for nodes in the LRU cache, basicly nodes in a doubly
      * linked list.
      */
         public class LRUNode extends DoublyLinkedList.Node {
                 private   LRUObj  obj  = null;
+                private   long    size = 0;
                 public    LRUObj  getObj ()               { return obj; }
                 protected void    setObj (LRUObj  newObj) {
                         if (obj != null) obj.lruRemove();
@@ -67,7 +84,13 @@ public class LRUCache {
 
         private DoublyLinkedList free    = null;
         private DoublyLinkedList used    = null;
-        private int     maxSize = 0;
+        private int     maxSize  = 0;
+        private long    maxBytes = Long.MAX_VALUE;
+        private long    usedBytes = 0;
+
+        private long    hits      = 0;
+        private long    misses    = 0;
+        private long    evictions = 0;
 
         public LRUCache(int size) {
                 if (size <= 0) size=1;
@@ -75,11 +98,17 @@ public class LRUCache {
 
                 free = new DoublyLinkedList();
                 used = new DoublyLinkedList();
+        }
 
-                while (size > 0) {
-                        free.add(new LRUNode());
-                        size--;
-                }
+        /**
+         * Creates a cache bounded by the number of bytes held by its
+         * objects rather than by their number.
+         * @param maxBytes the maximum number of bytes
+         */
+        public static LRUCache withMaxBytes(long maxBytes) {
+                LRUCache cache = new LRUCache(Integer.MAX_VALUE);
+                cache.setMaxBytes(maxBytes);
+                return cache;
         }
 
         public int getUsed() {
@@ -87,36 +116,116 @@ public class LRUCache {
         }
 
         public synchronized void setSize(int newSz) {
+                if (newSz <= 0) newSz = 1;
 
-                if (maxSize < newSz) {  // list grew...
+                for (int i=used.getSize(); i>newSz; i--)
+                        evict();
+                while ((free.getSize() > 0) &&
+                       (used.getSize() + free.getSize() > newSz))
+                        free.pop();
 
-                        for (int i=maxSize; i<newSz; i++)
-                                free.add(new LRUNode());
+                maxSize = newSz;
+        }
 
-                } else if (maxSize > newSz) {
+        /**
+         * Returns the maximum number of objects in this cache.
+         */
+        public synchronized int getSize() {
+                return maxSize;
+        }
 
-                        for (int i=used.getSize(); i>newSz; i--) {
-                                LRUNode nde = (LRUNode)used.getTail();
-                                used.remove(nde);
-                                nde.setObj(null);
-                        }
-                }
+        /**
+         * Sets the maximum number of bytes held by the objects in this
+         * cache.  The most recently added object is always kept, even
+         * if it is larger than that.
+         */
+        public synchronized void setMaxBytes(long newBytes) {
+                if (newBytes <= 0) newBytes = 1;
+                maxBytes = newBytes;
+                trim(null);
+        }
 
-                maxSize = newSz;
+        /**
+         * Returns the maximum number of bytes held by the objects in
+         * this cache.
+         */
+        public synchronized long getMaxBytes() {
+                return maxBytes;
+        }
+
+        /**
+         * Returns the number of bytes held by the objects in this cache.
+         */
+        public synchronized long getUsedBytes() {
+                return usedBytes;
+        }
+
+        /**
+         * Records that an object was found in the cache.
+         */
+        public synchronized void recordHit() {
+                hits++;
+        }
+
+        /**
+         * Records that an object had to be computed because it was not
+         * in the cache.
+         */
+        public synchronized void recordMiss() {
+                misses++;
+        }
+
+        /**
+         * Returns the number of hits recorded.
+         */
+        public synchronized long getHits() {
+                return hits;
+        }
+
+        /**
+         * Returns the number of misses recorded.
+         */
+        public synchronized long getMisses() {
+                return misses;
+        }
+
+        /**
+         * Returns the number of objects dropped from this cache to make
+         * room for others.
+         */
+        public synchronized long getEvictions() {
+                return evictions;
+        }
+
+        /**
+         * Resets the hit, miss and eviction counts.
+         */
+        public synchronized void resetStatistics() {
+                hits      = 0;
+                misses    = 0;
+                evictions = 0;
         }
 
         public synchronized void flush() {
+                int n = used.getSize();
+                long bytes = usedBytes;
                 while (used.getSize() > 0) {
                         LRUNode nde = (LRUNode)used.pop();
+                        nde.size = 0;
                         nde.setObj(null);
                         free.add(nde);
                 }
+                usedBytes = 0;
+                usageChanged(-n, -bytes);
         }
 
         public synchronized void remove(LRUObj obj) {
                 LRUNode nde = obj.lruGet();
                 if (nde == null) return;
                 used.remove(nde);
+                usedBytes -= nde.size;
+                usageChanged(-1, -nde.size);
+                nde.size = 0;
                 nde.setObj(null);
                 free.add(nde);
         }
@@ -130,21 +239,88 @@ public class LRUCache {
         public synchronized void add(LRUObj obj) {
                 LRUNode nde = obj.lruGet();
 
-                // already linked in...
                 if (nde != null) {
+                        // already linked in...
                         used.touch(nde);
-                        return;
-                }
+                } else {
+                        if (used.getSize() >= maxSize)
+                                evict();
 
-                if (free.getSize() > 0) {
-                        nde = (LRUNode)free.pop();
+                        // Nodes are only allocated when needed so that
+                        // a cache bounded by bytes can be very large.
+                        if (free.getSize() > 0)
+                                nde = (LRUNode)free.pop();
+                        else
+                                nde = new LRUNode();
                         nde.setObj(obj);
                         used.add(nde);
-                } else {
-                        nde = (LRUNode)used.getTail();
-                        nde.setObj(obj);
-                        used.touch(nde);
+                        usageChanged(1, 0);
                 }
+
+                // The object may hold a different amount of memory than
+                // when it was last added.
+                long sz = 0;
+                if (obj instanceof LRUSizedObj)
+                        sz = ((LRUSizedObj)obj).lruSize();
+                usedBytes += sz - nde.size;
+                usageChanged(0, sz - nde.size);
+                nde.size   = sz;
+                trim(nde);
+        }
+
+        /**
+         * Drops the least recently used object, unless it is
+         * <code>keep</code>.
+         * @param keep the object to keep, or null
+         * @return true if an object was dropped
+         */
+        protected synchronized boolean evictLeastRecentlyUsed(LRUObj keep) {
+                if (used.getSize() == 0)
+                        return false;
+                LRUNode nde = (LRUNode)used.getTail();
+                if (nde.getObj() == keep)
+                        return false;
+                evict();
+                return true;
+        }
+
+        /**
+         * Called, with the lock of this cache held, each time objects
+         * are added to or dropped from this cache, or their size
+         * changes.
+         * @param objects the change of the number of objects
+         * @param bytes the change of the number of bytes
+         */
+        protected void usageChanged(int objects, long bytes) {
+        }
+
+        /**
+         * Drops the least recently used objects, except
+         * <code>keep</code>, until no more than <code>maxBytes</code>
+         * are used.
+         */
+        private void trim(LRUNode keep) {
+                while (usedBytes > maxBytes) {
+                        LRUNode nde = (LRUNode)used.getTail();
+                        if ((nde == null) || (nde == keep))
+                                return;
+                        evict();
+                }
+        }
+
+        /**
+         * Drops the least recently used object.
+         */
+        private void evict() {
+                LRUNode nde = (LRUNode)used.getTail();
+                if (nde == null) return;
+                used.remove(nde);
+                usedBytes -= nde.size;
+                usageChanged(-1, -nde.size);
+                nde.size = 0;
+                nde.setObj(null);
+                free.add(nde);
+                evictions++;
         }
 
         protected synchronized void print() {
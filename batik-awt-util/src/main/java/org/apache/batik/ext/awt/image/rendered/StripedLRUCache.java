@@ -0,0 +1,226 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An LRU cache split into several independently locked segments, so
+ * that threads working on different objects seldom wait for each
+ * other.  An object always goes to the same segment.  The limits on the
+ * number of objects and of bytes apply to the whole cache: when they
+ * are exceeded, the least recently used objects of the segments are
+ * dropped in turn, so the objects dropped are only approximately the
+ * least recently used ones of the whole cache.  No more than one
+ * segment lock is held at a time.
+ *
+ * @version $Id$
+ */
+public class StripedLRUCache extends LRUCache {
+
+    /**
+     * The segments of this cache.
+     */
+    protected LRUCache[] segments;
+
+    /**
+     * The maximum number of objects in the whole cache.
+     */
+    protected volatile int maxSize = Integer.MAX_VALUE;
+
+    /**
+     * The maximum number of bytes held by the objects of the whole
+     * cache.
+     */
+    protected volatile long maxBytes = Long.MAX_VALUE;
+
+    /**
+     * The number of objects in the whole cache.
+     */
+    protected AtomicInteger objectCount = new AtomicInteger();
+
+    /**
+     * The number of bytes held by the objects of the whole cache.
+     */
+    protected AtomicLong byteCount = new AtomicLong();
+
+    /**
+     * The segment where the next object is dropped.
+     */
+    protected AtomicInteger nextEviction = new AtomicInteger();
+
+    /**
+     * Creates a cache bounded by the number of bytes held by its
+     * objects.
+     * @param maxBytes the maximum number of bytes
+     * @param nSegments the number of segments
+     */
+    public StripedLRUCache(long maxBytes, int nSegments) {
+        super(1);
+        if (nSegments <= 0) nSegments = 1;
+        segments = new LRUCache[nSegments];
+        for (int i = 0; i < nSegments; i++) {
+            segments[i] = new Segment();
+        }
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Returns the segment of the given object.
+     */
+    protected LRUCache getSegment(Object o) {
+        int h = System.identityHashCode(o);
+        h ^= (h >>> 16);
+        h ^= (h >>> 7);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Drops the least recently used objects of the segments in turn,
+     * except <code>keep</code>, until the limits of the whole cache
+     * are respected.
+     * @param keep the object to keep, or null
+     */
+    protected void trim(LRUObj keep) {
+        int failed = 0;
+        while ((objectCount.get() > maxSize || byteCount.get() > maxBytes) &&
+               (failed < segments.length)) {
+            int i = (nextEviction.getAndIncrement() & 0x7fffffff)
+                % segments.length;
+            if (segments[i].evictLeastRecentlyUsed(keep))
+                failed = 0;
+            else
+                failed++;
+        }
+    }
+
+    public int getUsed() {
+        return objectCount.get();
+    }
+
+    public void setSize(int newSz) {
+        if (newSz <= 0) newSz = 1;
+        maxSize = newSz;
+        trim(null);
+    }
+
+    public int getSize() {
+        return maxSize;
+    }
+
+    public void setMaxBytes(long newBytes) {
+        if (newBytes <= 0) newBytes = 1;
+        maxBytes = newBytes;
+        trim(null);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getUsedBytes() {
+        return byteCount.get();
+    }
+
+    // The hits and misses are counted in the segment of the current
+    // thread, to spread the updates over the segment locks.
+
+    public void recordHit() {
+        getSegment(Thread.currentThread()).recordHit();
+    }
+
+    public void recordMiss() {
+        getSegment(Thread.currentThread()).recordMiss();
+    }
+
+    public long getHits() {
+        long n = 0;
+        for (int i = 0; i < segments.length; i++) {
+            n += segments[i].getHits();
+        }
+        return n;
+    }
+
+    public long getMisses() {
+        long n = 0;
+        for (int i = 0; i < segments.length; i++) {
+            n += segments[i].getMisses();
+        }
+        return n;
+    }
+
+    public long getEvictions() {
+        long n = 0;
+        for (int i = 0; i < segments.length; i++) {
+            n += segments[i].getEvictions();
+        }
+        return n;
+    }
+
+    public void resetStatistics() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].resetStatistics();
+        }
+    }
+
+    public void flush() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].flush();
+        }
+    }
+
+    public void remove(LRUObj obj) {
+        getSegment(obj).remove(obj);
+    }
+
+    public void touch(LRUObj obj) {
+        getSegment(obj).touch(obj);
+    }
+
+    public void add(LRUObj obj) {
+        getSegment(obj).add(obj);
+        trim(obj);
+    }
+
+    /**
+     * A segment, which reports its usage to the whole cache.  It has no
+     * limits of its own.
+     */
+    protected class Segment extends LRUCache {
+
+        public Segment() {
+            super(Integer.MAX_VALUE);
+        }
+
+        protected void usageChanged(int objects, long bytes) {
+            if (objects != 0)
+                objectCount.addAndGet(objects);
+            if (bytes != 0)
+                byteCount.addAndGet(bytes);
+        }
+    }
+
+    protected void print() {
+        for (int i = 0; i < segments.length; i++) {
+            System.out.println("Segment " + i + ':');
+            segments[i].print();
+        }
+    }
+}
@@ -21,14 +21,46 @@ package org.apache.batik.ext.awt.image.rendered;
 import java.awt.image.RenderedImage;
 
 /**
+ * This class creates the tile stores of the rendered images, which
+ * by default all share a single LRU cache.  The shared cache is
+ * bounded by the number of bytes of the tiles it holds, and is split
+ * into segments so that concurrent renderings seldom contend for it.
  *
  * @version $Id$
  */
 public class TileCache {
-        private static LRUCache cache = new LRUCache(50);
+        /**
+         * The default number of bytes held by the shared cache: the
+         * size of 50 default tiles of 128x128 ARGB pixels.
+         */
+        public static final long DEFAULT_MAX_BYTES = 50L * 128 * 128 * 4;
 
+        /**
+         * The number of segments of the shared cache.
+         */
+        public static final int SEGMENTS = 8;
+
+        private static LRUCache cache =
+            new StripedLRUCache(DEFAULT_MAX_BYTES, SEGMENTS);
+
+        /**
+         * Sets the maximum total number of tiles in the shared cache,
+         * over all its segments.
+         */
         public static void setSize(int sz) { cache.setSize(sz); }
 
+        /**
+         * Sets the maximum number of bytes held by the tiles of the
+         * shared cache.
+         */
+        public static void setMaxBytes(long sz) { cache.setMaxBytes(sz); }
+
+        /**
+         * Returns the shared cache, which gives access to its hit, miss
+         * and eviction counts.
+         */
+        public static LRUCache getCache() { return cache; }
+
         public static TileStore getTileGrid(int minTileX, int minTileY,
                                        int xSz, int ySz, TileGenerator src) {
                 return new TileGrid(minTileX, minTileY, xSz, ySz, src, cache);
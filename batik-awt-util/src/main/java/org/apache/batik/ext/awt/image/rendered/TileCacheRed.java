@@ -40,6 +40,19 @@ public class TileCacheRed extends AbstractTiledRed {
         super(cr, null);
     }
 
+    /**
+     * Place the results of computations of cr into the given tile cache
+     * instead of the global one.
+     * @param cr The operation to cache results from.
+     * @param cache The cache to hold the tiles.
+     */
+    public TileCacheRed(CachableRed cr, LRUCache cache) {
+        super();
+        init(cr, cr.getBounds(), cr.getColorModel(), cr.getSampleModel(),
+             cr.getTileGridXOffset(), cr.getTileGridYOffset(),
+             new TileMap(this, cache), null);
+    }
+
     /**
      * Place the results of computations of cr into the global tile cache.
      * @param cr The operation to cache results from.
@@ -64,25 +64,24 @@ public class TileGrid implements TileStore {
         if (ras == null) {
             // Clearing entry.
             if (row == null) return;
-            item = row[x];
-            if (item == null) return;
+            synchronized (row) {
+                item = row[x];
+                if (item == null) return;
 
-            row[x] = null;
+                row[x] = null;
+            }
             cache.remove(item);
             return;
         }
 
-        if (row != null) {
+        if (row == null)
+            row = createRow(y);
+        synchronized (row) {
             item = row[x];
             if (item == null) {
                 item = new TileLRUMember();
                 row[x] = item;
             }
-        } else {
-            row = new TileLRUMember[xSz];
-            item = new TileLRUMember();
-            row[x] = item;
-            rasters[y] = row;
         }
         item.setRaster(ras);
 
@@ -112,6 +111,20 @@ public class TileGrid implements TileStore {
         return ret;
     }
 
+    /**
+     * Returns row <code>y</code> of the grid, creating it if needed.
+     * Rows are created under a lock so that tiles of the same row can
+     * be requested from several threads without losing cache entries.
+     */
+    private synchronized TileLRUMember [] createRow(int y) {
+        TileLRUMember [] row = rasters[y];
+        if (row == null) {
+            row = new TileLRUMember[xSz];
+            rasters[y] = row;
+        }
+        return row;
+    }
+
     public Raster getTile(int x, int y) {
         x-=minTileX;
         y-=minTileY;
@@ -125,25 +138,22 @@ public class TileGrid implements TileStore {
         Raster       ras  = null;
         TileLRUMember [] row  = rasters[y];
         TileLRUMember    item = null;
-        if (row != null) {
+        if (row == null)
+            row = createRow(y);
+        synchronized (row) {
             item = row[x];
-            if (item != null)
-                ras = item.retrieveRaster();
-            else {
+            if (item == null) {
                 item = new TileLRUMember();
                 row[x] = item;
             }
-        } else {
-            row = new TileLRUMember[xSz];
-            rasters[y] = row;
-            item = new TileLRUMember();
-            row[x] = item;
         }
+        ras = item.retrieveRaster();
 
         if (ras == null) {
             if (DEBUG) System.out.println("Generating: ("+(x+minTileX)+", "+
                                           (y+minTileY) + ")");
             if (COUNT) synchronized (TileGrid.class) { misses++; }
+            cache.recordMiss();
             ras = source.genTile(x+minTileX, y+minTileY);
 
             // In all likelyhood the contents of this tile is junk!
@@ -153,6 +163,8 @@ public class TileGrid implements TileStore {
                 return ras;
 
             item.setRaster(ras);
+        } else {
+            cache.recordHit();
         }
 
         // Update the item's position in the cache..
@@ -18,6 +18,7 @@
  */
 package org.apache.batik.ext.awt.image.rendered;
 
+import  java.awt.image.DataBuffer;
 import  java.awt.image.Raster;
 import  java.lang.ref.Reference;
 import  java.lang.ref.SoftReference;
@@ -29,9 +30,12 @@ import  java.lang.ref.SoftReference;
  * reference allowing for the recovery of the tile when the JVM is
  * not under memory pressure
  *
+ * The methods are synchronized since the cache may drop the tile from
+ * a thread while it is being retrieved by another one.
+ *
  * @version $Id$
  */
-public class TileLRUMember implements LRUCache.LRUObj {
+public class TileLRUMember implements LRUCache.LRUSizedObj {
     private static final boolean DEBUG = false;
 
         protected LRUCache.LRUNode myNode  = null;
@@ -44,12 +48,12 @@ public class TileLRUMember implements LRUCache.LRUObj {
             setRaster(ras);
         }
 
-        public void setRaster(Raster ras) {
+        public synchronized void setRaster(Raster ras) {
             hRaster = ras;
             wRaster = new SoftReference(ras);
         }
 
-        public boolean checkRaster() {
+        public synchronized boolean checkRaster() {
             if (hRaster != null) return true;
 
             if ((wRaster       != null) &&
@@ -58,7 +62,7 @@ public class TileLRUMember implements LRUCache.LRUObj {
             return false;
         }
 
-        public Raster retrieveRaster() {
+        public synchronized Raster retrieveRaster() {
             if (hRaster != null) return hRaster;
             if (wRaster == null) return null;
 
@@ -70,12 +74,23 @@ public class TileLRUMember implements LRUCache.LRUObj {
             return hRaster;
         }
 
-        public LRUCache.LRUNode lruGet()         { return myNode; }
-        public void lruSet(LRUCache.LRUNode nde) { myNode = nde; }
-        public void lruRemove()                  {
+        public synchronized LRUCache.LRUNode lruGet()         { return myNode; }
+        public synchronized void lruSet(LRUCache.LRUNode nde) { myNode = nde; }
+        public synchronized void lruRemove()                  {
             myNode  = null;
             hRaster = null;
             if (DEBUG) System.out.println("Removing");
         }
+
+        /**
+         * Returns the size in bytes of the data of the tile held by this
+         * member, or zero if it is only softly referenced.
+         */
+        public synchronized long lruSize() {
+            if (hRaster == null) return 0;
+            DataBuffer db = hRaster.getDataBuffer();
+            return ((long)db.getSize() * db.getNumBanks() *
+                    DataBuffer.getDataTypeSize(db.getDataType())) / 8;
+        }
 }
 
@@ -27,6 +27,9 @@ import org.apache.batik.util.CleanerThread;
 import org.apache.batik.util.HaltingThread;
 
 /**
+ * This is a HashMap based implementation of the TileStore.  The map
+ * is synchronized, so tiles can be requested from several threads;
+ * tiles are generated outside of the lock.
  *
  * @version $Id$
  */
@@ -45,8 +48,11 @@ public class TileMap implements TileStore {
             public void cleared() {
                 if (DEBUG) System.err.println("Cleaned: " + this);
                 TileMap tm = (TileMap)parent.get();
-                if (tm != null)
-                    tm.rasters.remove(pt);
+                if (tm != null) {
+                    synchronized (tm.rasters) {
+                        tm.rasters.remove(pt);
+                    }
+                }
             }
         }
 
@@ -56,7 +62,7 @@ public class TileMap implements TileStore {
             this.pt     = pt;
         }
 
-        public void setRaster(Raster ras) {
+        public synchronized void setRaster(Raster ras) {
             hRaster = ras;
             wRaster = new RasterSoftRef(ras);
         }
@@ -76,20 +82,25 @@ public class TileMap implements TileStore {
 
         if (ras == null) {
             // Clearing entry...
-            Object o = rasters.remove(pt);
+            Object o;
+            synchronized (rasters) {
+                o = rasters.remove(pt);
+            }
             if (o != null)
                 cache.remove((TileMapLRUMember)o);
             return;
         }
 
-        Object o = rasters.get(pt);
         TileMapLRUMember item;
-        if (o == null) {
-            item = new TileMapLRUMember(this, pt, ras);
-            rasters.put(pt, item);
-        } else {
-            item = (TileMapLRUMember)o;
-            item.setRaster(ras);
+        synchronized (rasters) {
+            Object o = rasters.get(pt);
+            if (o == null) {
+                item = new TileMapLRUMember(this, pt, ras);
+                rasters.put(pt, item);
+            } else {
+                item = (TileMapLRUMember)o;
+                item.setRaster(ras);
+            }
         }
 
         cache.add(item);
@@ -100,7 +111,10 @@ public class TileMap implements TileStore {
     // If it is not currently in the cache it returns null.
     public Raster getTileNoCompute(int x, int y) {
         Point pt = new Point(x, y);
-        Object o = rasters.get(pt);
+        Object o;
+        synchronized (rasters) {
+            o = rasters.get(pt);
+        }
         if (o == null)
             return null;
 
@@ -118,7 +132,10 @@ public class TileMap implements TileStore {
 
         Raster       ras  = null;
         Point pt = new Point(x, y);
-        Object o = rasters.get(pt);
+        Object o;
+        synchronized (rasters) {
+            o = rasters.get(pt);
+        }
         TileMapLRUMember item = null;
         if (o != null) {
             item = (TileMapLRUMember)o;
@@ -129,6 +146,7 @@ public class TileMap implements TileStore {
             if (DEBUG) System.out.println("Generating: ("+(x)+", "+
                                           (y) + ")");
             if (COUNT) synchronized (TileMap.class) { misses++; }
+            cache.recordMiss();
             ras = source.genTile(x, y);
 
             // In all likelyhood the contents of this tile is junk!
@@ -137,12 +155,19 @@ public class TileMap implements TileStore {
             if (HaltingThread.hasBeenHalted())
                 return ras;
 
-            if (item != null)
-                item.setRaster(ras);
-            else  {
-                item = new TileMapLRUMember(this, pt, ras);
-                rasters.put(pt, item);
+            synchronized (rasters) {
+                // Another thread may have added the tile meanwhile.
+                o = rasters.get(pt);
+                if (o != null) {
+                    item = (TileMapLRUMember)o;
+                    item.setRaster(ras);
+                } else {
+                    item = new TileMapLRUMember(this, pt, ras);
+                    rasters.put(pt, item);
+                }
             }
+        } else {
+            cache.recordHit();
         }
 
         // Update the item's position in the cache..
@@ -0,0 +1,91 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.CSSStylableElement;
+import org.apache.batik.css.engine.StyleMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Node;
+
+/**
+ * Measures the CSS cascade: the cascaded style map of every element of
+ * a sample is computed again by its {@link CSSEngine}.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CSSCascadeBenchmark {
+
+    @Param({"anne.svg", "mapSpain.svg", "batikLogo.svg", "henryV.svg"})
+    public String sample;
+
+    protected BridgeContext ctx;
+    protected SVGOMDocument document;
+    protected CSSEngine engine;
+
+    @Setup
+    public void setup() throws IOException {
+        document = (SVGOMDocument)Samples.parse(sample);
+        ctx = Samples.createBridgeContext();
+        // Building the tree sets up the CSS engine of the document.
+        Samples.build(ctx, document);
+        engine = document.getCSSEngine();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.dispose();
+    }
+
+    @Benchmark
+    public void cascade(Blackhole bh) {
+        cascade(document.getDocumentElement(), bh);
+    }
+
+    /**
+     * Computes the cascaded style maps of the given subtree.
+     */
+    protected void cascade(Node n, Blackhole bh) {
+        if (n instanceof CSSStylableElement) {
+            StyleMap sm = engine.getCascadedStyleMap
+                ((CSSStylableElement)n, null);
+            bh.consume(sm);
+        }
+        for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+            cascade(c, bh);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.apps.rasterizer.DestinationType;
+import org.apache.batik.apps.rasterizer.SVGConverter;
+import org.apache.batik.apps.rasterizer.SVGConverterException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the whole parse, build, render and encode pipeline: a set
+ * of samples is converted to PNG files by {@link SVGConverter}, with
+ * one or several conversion threads.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConverterBenchmark {
+
+    /**
+     * The samples converted by each invocation.
+     */
+    protected static final String[] SAMPLES = {
+        "anne.svg", "mapSpain.svg", "batikLogo.svg", "barChart.svg",
+        "gradients.svg", "sunRise.svg", "textRotate.svg", "batikFX.svg"
+    };
+
+    @Param({"1", "4"})
+    public int threads;
+
+    protected String[] sources;
+    protected File dst;
+
+    @Setup
+    public void setup() throws IOException {
+        sources = new String[SAMPLES.length];
+        for (int i = 0; i < SAMPLES.length; i++) {
+            sources[i] = Samples.getFile(SAMPLES[i]).getPath();
+        }
+        dst = File.createTempFile("batik-bench", "");
+        dst.delete();
+        dst.mkdirs();
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = dst.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+        }
+        dst.delete();
+    }
+
+    @Benchmark
+    public void convert() throws SVGConverterException {
+        SVGConverter c = new SVGConverter();
+        c.setDestinationType(DestinationType.PNG);
+        c.setSources(sources);
+        c.setDst(dst);
+        c.setThreads(threads);
+        c.execute();
+    }
+}
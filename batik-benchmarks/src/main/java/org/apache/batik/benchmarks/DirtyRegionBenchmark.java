@@ -0,0 +1,132 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Dimension2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.ext.awt.geom.RectListManager;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.DynamicRenderer;
+import org.apache.batik.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the frame time of {@link DynamicRenderer#repaint} when an
+ * animation touches several disjoint regions of a sample, with and
+ * without a {@link WorkerPool}.  The regions are the cells of a grid
+ * spread over the image, as the dirty regions of the moving objects of
+ * the scripted samples.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DirtyRegionBenchmark {
+
+    @Param({"starfield.svg", "3D.svg", "batikFX.svg", "anne.svg"})
+    public String sample;
+
+    /**
+     * The width of the rendered image, the height keeps the aspect
+     * ratio of the sample.
+     */
+    @Param({"1024"})
+    public int width;
+
+    /**
+     * The number of disjoint regions repainted by a frame.
+     */
+    @Param({"4", "16"})
+    public int regions;
+
+    /**
+     * The number of threads rendering, 1 for no worker pool.
+     */
+    @Param({"1", "4"})
+    public int threads;
+
+    protected BridgeContext ctx;
+    protected DynamicRenderer renderer;
+    protected WorkerPool pool;
+    protected List areas;
+
+    @Setup
+    public void setup() throws IOException {
+        ctx = Samples.createBridgeContext();
+        GraphicsNode root = Samples.build(ctx, Samples.parse(sample));
+        Dimension2D size = Samples.getDocumentSize(ctx);
+        double scale = width / size.getWidth();
+        int height = (int)Math.ceil(size.getHeight() * scale);
+
+        renderer = new DynamicRenderer();
+        if (threads > 1) {
+            pool = new WorkerPool(threads - 1);
+            renderer.setWorkerPool(pool);
+        }
+        renderer.setDoubleBuffered(false);
+        renderer.setTree(root);
+        renderer.setTransform(AffineTransform.getScaleInstance(scale, scale));
+        renderer.updateOffScreen(width, height);
+
+        // A grid of regions of half the cell size, in the middle
+        // of their cells so that they do not touch.
+        int n = (int)Math.ceil(Math.sqrt(regions));
+        int cw = width / n;
+        int ch = height / n;
+        areas = new ArrayList(regions);
+        for (int i = 0; i < regions; i++) {
+            int x = (i % n) * cw + cw / 4;
+            int y = (i / n) * ch + ch / 4;
+            areas.add(new Rectangle(x, y, cw / 2, ch / 2));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.dispose();
+        if (pool != null) {
+            pool.dispose();
+        }
+        ctx.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage frame() {
+        RectListManager rlm = new RectListManager(areas);
+        renderer.repaint(rlm);
+        return renderer.getOffScreen();
+    }
+}
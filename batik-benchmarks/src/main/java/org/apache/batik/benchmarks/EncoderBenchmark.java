@@ -0,0 +1,105 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Dimension2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.ext.awt.image.codec.png.PNGEncodeParam;
+import org.apache.batik.ext.awt.image.codec.png.PNGImageEncoder;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.JPEGTranscoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the encoding of a rendered sample by
+ * {@link PNGImageEncoder} and {@link JPEGTranscoder}.  The encoded
+ * bytes are discarded.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EncoderBenchmark {
+
+    @Param({"anne.svg", "mapSpain.svg"})
+    public String sample;
+
+    @Param({"1024"})
+    public int width;
+
+    protected BufferedImage image;
+    protected BufferedImage opaqueImage;
+    protected JPEGTranscoder jpeg;
+
+    @Setup
+    public void setup() throws IOException {
+        BridgeContext ctx = Samples.createBridgeContext();
+        StaticRenderer renderer = new StaticRenderer();
+        try {
+            renderer.setTree(Samples.build(ctx, Samples.parse(sample)));
+            Dimension2D size = Samples.getDocumentSize(ctx);
+            double scale = width / size.getWidth();
+            int height = (int)Math.ceil(size.getHeight() * scale);
+            renderer.setTransform
+                (AffineTransform.getScaleInstance(scale, scale));
+            renderer.updateOffScreen(width, height);
+            renderer.repaint(new Rectangle(0, 0, width, height));
+            image = renderer.getOffScreen();
+        } finally {
+            renderer.dispose();
+            ctx.dispose();
+        }
+
+        jpeg = new JPEGTranscoder();
+        jpeg.addTranscodingHint(JPEGTranscoder.KEY_QUALITY, new Float(0.8f));
+        opaqueImage = jpeg.createImage(image.getWidth(), image.getHeight());
+        opaqueImage.createGraphics().drawImage(image, 0, 0, null);
+    }
+
+    @Benchmark
+    public void png() throws IOException {
+        PNGEncodeParam params = PNGEncodeParam.getDefaultEncodeParam(image);
+        PNGImageEncoder encoder =
+            new PNGImageEncoder(new Samples.NullOutputStream(), params);
+        encoder.encode(image);
+    }
+
+    @Benchmark
+    public void jpeg() throws TranscoderException {
+        TranscoderOutput output =
+            new TranscoderOutput(new Samples.NullOutputStream());
+        jpeg.writeImage(opaqueImage, output);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.ext.awt.image.rendered.MorphologyOp;
+import org.apache.batik.ext.awt.image.rendered.TurbulencePatternRed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the morphology operator and the turbulence pattern filter
+ * primitives.  The Gaussian blur is measured by
+ * {@link GaussianBlurBenchmark}.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FilterBenchmark {
+
+    /**
+     * The width and height of the filtered images.
+     */
+    @Param({"512"})
+    public int size;
+
+    @Param({"3"})
+    public int radius;
+
+    protected BufferedImage source;
+    protected BufferedImage dest;
+
+    @Setup
+    public void setup() {
+        source = new BufferedImage(size, size,
+                                   BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = source.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                           RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, Color.red, size, size,
+                                     new Color(0, 0, 255, 128)));
+        g.fill(new Ellipse2D.Float(size / 8f, size / 8f,
+                                   size * 3 / 4f, size * 3 / 4f));
+        g.dispose();
+        dest = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    @Benchmark
+    public BufferedImage dilate() {
+        return new MorphologyOp(radius, radius, true).filter(source, dest);
+    }
+
+    @Benchmark
+    public BufferedImage erode() {
+        return new MorphologyOp(radius, radius, false).filter(source, dest);
+    }
+
+    @Benchmark
+    public Raster turbulence() {
+        TurbulencePatternRed t = new TurbulencePatternRed
+            (0.05, 0.05, 4, 0, false, null, new AffineTransform(),
+             new Rectangle(0, 0, size, size),
+             ColorSpace.getInstance(ColorSpace.CS_LINEAR_RGB), true);
+        return t.getData();
+    }
+}
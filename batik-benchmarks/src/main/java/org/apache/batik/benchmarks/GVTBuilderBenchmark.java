@@ -0,0 +1,69 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.gvt.GraphicsNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.svg.SVGDocument;
+
+/**
+ * Measures {@link org.apache.batik.bridge.GVTBuilder#build} on the
+ * samples.  A static document can be built several times, each time
+ * with a new bridge context.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GVTBuilderBenchmark {
+
+    @Param({"anne.svg", "mapSpain.svg", "batikLogo.svg", "henryV.svg"})
+    public String sample;
+
+    protected SVGDocument document;
+
+    @Setup
+    public void setup() throws IOException {
+        document = Samples.parse(sample);
+    }
+
+    @Benchmark
+    public void build(Blackhole bh) {
+        BridgeContext ctx = Samples.createBridgeContext();
+        try {
+            GraphicsNode root = Samples.build(ctx, document);
+            bh.consume(root);
+        } finally {
+            ctx.dispose();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.ext.awt.image.rendered.BufferedImageCachableRed;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.rendered.GaussianBlurRed8Bit;
+import org.apache.batik.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link GaussianBlurRed8Bit} over a range of standard
+ * deviations, on the calling thread only and with a
+ * {@link WorkerPool} given by the
+ * <code>RenderingHintsKeyExt.KEY_WORKER_POOL</code> hint.  Deviations
+ * below 2 use a convolution, the others three box blurs.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GaussianBlurBenchmark {
+
+    /**
+     * The width and height of the blurred image.  The blur result is
+     * smaller by about three deviations on each side.
+     */
+    @Param({"1024"})
+    public int size;
+
+    @Param({"1", "2", "5", "10", "25", "50", "100"})
+    public double stdDeviation;
+
+    /**
+     * The number of threads blurring, 1 for no worker pool.
+     */
+    @Param({"1", "4"})
+    public int threads;
+
+    protected CachableRed source;
+    protected RenderingHints hints;
+    protected WorkerPool pool;
+
+    @Setup
+    public void setup() {
+        BufferedImage bi = new BufferedImage(size, size,
+                                             BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = bi.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                           RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, Color.red, size, size,
+                                     new Color(0, 0, 255, 128)));
+        g.fill(new Ellipse2D.Float(size / 8f, size / 8f,
+                                   size * 3 / 4f, size * 3 / 4f));
+        g.dispose();
+        source = new BufferedImageCachableRed(bi);
+
+        hints = new RenderingHints(null);
+        if (threads > 1) {
+            pool = new WorkerPool(threads - 1);
+            hints.put(RenderingHintsKeyExt.KEY_WORKER_POOL, pool);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+
+    @Benchmark
+    public Raster blur() {
+        GaussianBlurRed8Bit blur =
+            new GaussianBlurRed8Bit(source, stdDeviation, hints);
+        return blur.getData();
+    }
+}
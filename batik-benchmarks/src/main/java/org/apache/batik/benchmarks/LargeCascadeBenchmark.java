@@ -0,0 +1,152 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.CSSStylableElement;
+import org.apache.batik.css.engine.StyleMap;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Node;
+
+/**
+ * Measures the CSS cascade of a large generated document styled by a
+ * large style sheet, made mostly of class rules like the style sheets
+ * of a design system, with some id, element and descendant rules.
+ * The cost of the cascade should depend little on the number of rules,
+ * since the selectors are indexed by their rightmost id, class or
+ * element name.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LargeCascadeBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int rules;
+
+    @Param({"10000", "50000"})
+    public int elements;
+
+    protected BridgeContext ctx;
+    protected SVGOMDocument document;
+    protected CSSEngine engine;
+
+    @Setup
+    public void setup() throws IOException {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        document = (SVGOMDocument)f.createDocument
+            ("http://example.org/cascade.svg",
+             new StringReader(createDocument(rules, elements)));
+        ctx = Samples.createBridgeContext();
+        Samples.build(ctx, document);
+        engine = document.getCSSEngine();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.dispose();
+    }
+
+    @Benchmark
+    public void cascade(Blackhole bh) {
+        cascade(document.getDocumentElement(), bh);
+    }
+
+    /**
+     * Computes the cascaded style maps of the given subtree.
+     */
+    protected void cascade(Node n, Blackhole bh) {
+        if (n instanceof CSSStylableElement) {
+            StyleMap sm = engine.getCascadedStyleMap
+                ((CSSStylableElement)n, null);
+            bh.consume(sm);
+        }
+        for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+            cascade(c, bh);
+        }
+    }
+
+    /**
+     * Returns the source of a document with the given numbers of rules
+     * and of shapes.  The shapes are grouped by ten.
+     */
+    public static String createDocument(int rules, int elements) {
+        StringBuffer sb = new StringBuffer(elements * 80 + rules * 40);
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'")
+          .append(" width='1000' height='1000'>\n")
+          .append("<style type='text/css'><![CDATA[\n")
+          .append("rect { stroke-width: 1 }\n")
+          .append("g > circle { stroke: black }\n");
+        for (int i = 0; i < rules; i++) {
+            switch (i % 8) {
+            case 0:
+                sb.append("#s").append(i).append(" { stroke: red }\n");
+                break;
+            case 1:
+                sb.append("g.c").append(i).append(" .c").append(i + 1)
+                  .append(" { opacity: 0.5 }\n");
+                break;
+            case 2:
+                sb.append("rect.c").append(i).append(".v").append(i % 5)
+                  .append(" { fill-opacity: 0.5 }\n");
+                break;
+            default:
+                sb.append(".c").append(i).append(" { fill: rgb(")
+                  .append(i % 256).append(',').append(i / 256 % 256)
+                  .append(",0) }\n");
+            }
+        }
+        sb.append("]]></style>\n");
+        for (int i = 0; i < elements; i++) {
+            int c = (i * 31) % rules;
+            if (i % 10 == 0) {
+                sb.append("<g class='c").append(c).append("'>\n");
+            }
+            sb.append((i % 3 == 0) ? "<circle r='2'" : "<rect width='4' height='4'")
+              .append(" id='s").append(i).append("' class='c").append(c)
+              .append(" v").append(i % 5).append("' x='").append(i % 1000)
+              .append("' y='").append(i / 1000).append("'/>\n");
+            if (i % 10 == 9 || i == elements - 1) {
+                sb.append("</g>\n");
+            }
+        }
+        sb.append("</svg>\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Shape;
+import java.awt.geom.GeneralPath;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.parser.AWTPathParser;
+import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.PathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the building of a shape from path data by a
+ * {@link PathParser} reporting to an {@link AWTPathProducer}, and by an
+ * {@link AWTPathParser}.  The path data looks like the outlines of a
+ * map: relative lines and a few curves, with coordinates of a few
+ * decimals.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathParserBenchmark {
+
+    /**
+     * The number of segments of the path.
+     */
+    @Param({"100", "10000", "1000000"})
+    public int segments;
+
+    protected String pathData;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(0);
+        StringBuffer sb = new StringBuffer("M1024.5,768.25");
+        for (int i = 0; i < segments; i++) {
+            if (i % 500 == 499) {
+                sb.append("zM");
+                sb.append(coordinate(r, 100000)).append(',');
+                sb.append(coordinate(r, 100000));
+            } else if (i % 10 == 0) {
+                sb.append('c');
+                for (int j = 0; j < 6; j++) {
+                    sb.append(j == 0 ? "" : " ").append(coordinate(r, 1000));
+                }
+            } else {
+                sb.append(i % 10 == 1 ? "l" : " ");
+                sb.append(coordinate(r, 1000)).append(',');
+                sb.append(coordinate(r, 1000));
+            }
+        }
+        sb.append('z');
+        pathData = sb.toString();
+    }
+
+    /**
+     * Returns a coordinate between -max and max, with up to three
+     * decimals.
+     */
+    protected static String coordinate(Random r, int max) {
+        return String.valueOf((r.nextInt(2 * max * 1000) - max * 1000)
+                              / 1000.0);
+    }
+
+    @Benchmark
+    public Shape handler() {
+        PathParser p = new PathParser();
+        AWTPathProducer app = new AWTPathProducer();
+        app.setWindingRule(GeneralPath.WIND_NON_ZERO);
+        p.setPathHandler(app);
+        p.parse(pathData);
+        return app.getShape();
+    }
+
+    @Benchmark
+    public Shape arrays() {
+        return AWTPathParser.createShape(pathData, GeneralPath.WIND_NON_ZERO);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Dimension2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link StaticRenderer#repaint} of a whole sample, with and
+ * without a {@link WorkerPool}.  The renderer caches are flushed before
+ * each repaint so that everything is painted again.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RendererBenchmark {
+
+    @Param({"anne.svg", "mapSpain.svg", "batikLogo.svg", "batikFX.svg"})
+    public String sample;
+
+    /**
+     * The width of the rendered image, the height keeps the aspect
+     * ratio of the sample.
+     */
+    @Param({"1024"})
+    public int width;
+
+    /**
+     * The number of threads rendering, 1 for no worker pool.
+     */
+    @Param({"1", "4"})
+    public int threads;
+
+    protected BridgeContext ctx;
+    protected StaticRenderer renderer;
+    protected WorkerPool pool;
+    protected Rectangle area;
+
+    @Setup
+    public void setup() throws IOException {
+        ctx = Samples.createBridgeContext();
+        GraphicsNode root = Samples.build(ctx, Samples.parse(sample));
+        Dimension2D size = Samples.getDocumentSize(ctx);
+        double scale = width / size.getWidth();
+        int height = (int)Math.ceil(size.getHeight() * scale);
+
+        renderer = new StaticRenderer();
+        if (threads > 1) {
+            pool = new WorkerPool(threads - 1);
+            renderer.setWorkerPool(pool);
+        }
+        renderer.setTree(root);
+        renderer.setTransform(AffineTransform.getScaleInstance(scale, scale));
+        renderer.updateOffScreen(width, height);
+        area = new Rectangle(0, 0, width, height);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.dispose();
+        if (pool != null) {
+            pool.dispose();
+        }
+        ctx.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage repaint() {
+        renderer.flush();
+        renderer.repaint(area);
+        return renderer.getOffScreen();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.geom.Dimension2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.DocumentLoader;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgent;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.w3c.dom.svg.SVGDocument;
+
+/**
+ * Access to the documents of the <code>samples/</code> directory used
+ * by the benchmarks.  The directory is given by the
+ * <code>batik.samples</code> system property, and defaults to the one
+ * of the source tree when the benchmarks are run from their module.
+ *
+ * @version $Id$
+ */
+public class Samples {
+
+    /**
+     * The system property giving the samples directory.
+     */
+    public static final String SAMPLES_PROPERTY = "batik.samples";
+
+    /**
+     * The samples directory used when the property is not set.
+     */
+    public static final String DEFAULT_SAMPLES = "../samples";
+
+    /**
+     * This class provides static methods only.
+     */
+    protected Samples() {
+    }
+
+    /**
+     * Returns the file of the given sample.
+     * @param name the name of the sample, relative to the samples
+     *        directory, like <code>"anne.svg"</code>
+     */
+    public static File getFile(String name) throws IOException {
+        String dir = System.getProperty(SAMPLES_PROPERTY, DEFAULT_SAMPLES);
+        File f = new File(dir, name);
+        if (!f.isFile()) {
+            throw new IOException("Sample not found: " + f.getPath()
+                                  + " (set -D" + SAMPLES_PROPERTY + ")");
+        }
+        return f;
+    }
+
+    /**
+     * Returns the URI of the given sample.
+     */
+    public static String getURI(String name) throws IOException {
+        return getFile(name).toURI().toString();
+    }
+
+    /**
+     * Parses the given sample.
+     */
+    public static SVGDocument parse(String name) throws IOException {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        return (SVGDocument)f.createDocument(getURI(name));
+    }
+
+    /**
+     * Creates a static bridge context for the given document.
+     */
+    public static BridgeContext createBridgeContext() {
+        UserAgent ua = new UserAgentAdapter();
+        return new BridgeContext(ua, new DocumentLoader(ua));
+    }
+
+    /**
+     * Builds the GVT tree of the given document.
+     * @param ctx the bridge context to use, or null to create one
+     */
+    public static GraphicsNode build(BridgeContext ctx, SVGDocument doc) {
+        if (ctx == null) {
+            ctx = createBridgeContext();
+        }
+        return new GVTBuilder().build(ctx, doc);
+    }
+
+    /**
+     * Returns the size of the document the given context was built for.
+     */
+    public static Dimension2D getDocumentSize(BridgeContext ctx) {
+        return ctx.getDocumentSize();
+    }
+
+    /**
+     * An output stream discarding what is written, so the encoder
+     * benchmarks only measure the encoding.
+     */
+    public static class NullOutputStream extends OutputStream {
+        public void write(int b) {
+        }
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.util.WorkerPool;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the building of the GVT tree of the large generated document
+ * of {@link LargeCascadeBenchmark}, when the styles of all its elements
+ * are computed first with a pool of the given number of threads.  With
+ * no thread, the styles are computed one element at a time while the
+ * tree is built; with one thread, they are all computed first by the
+ * calling thread.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StylePrecomputeBenchmark {
+
+    @Param({"1000"})
+    public int rules;
+
+    @Param({"10000", "50000"})
+    public int elements;
+
+    @Param({"0", "1", "2", "4"})
+    public int threads;
+
+    protected String source;
+    protected WorkerPool pool;
+    protected BridgeContext ctx;
+    protected SVGOMDocument document;
+
+    @Setup
+    public void setup() {
+        source = LargeCascadeBenchmark.createDocument(rules, elements);
+        if (threads > 0) {
+            pool = new WorkerPool(threads - 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void parse() throws IOException {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        document = (SVGOMDocument)f.createDocument
+            ("http://example.org/cascade.svg", new StringReader(source));
+        ctx = Samples.createBridgeContext();
+        ctx.setWorkerPool(pool);
+    }
+
+    @TearDown(Level.Invocation)
+    public void dispose() {
+        ctx.dispose();
+    }
+
+    @Benchmark
+    public GraphicsNode build() {
+        return Samples.build(ctx, document);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.util.SVGConstants;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Measures the update of a dynamic document by a script that changes
+ * several style related attributes of each of its shapes per frame,
+ * like a dashboard refreshing its data.  With update batches, the
+ * styles of each shape are computed again once per frame.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StyleUpdateBenchmark {
+
+    @Param({"500", "2000"})
+    public int elements;
+
+    @Param({"false", "true"})
+    public boolean batch;
+
+    protected BridgeContext ctx;
+    protected CSSEngine engine;
+    protected NodeList shapes;
+    protected NodeList groups;
+    protected int frame;
+
+    @Setup
+    public void setup() throws IOException {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        SVGOMDocument doc = (SVGOMDocument)f.createDocument
+            ("http://example.org/dashboard.svg",
+             new StringReader(createDocument(elements)));
+        ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDynamicState(BridgeContext.DYNAMIC);
+        new GVTBuilder().build(ctx, doc);
+        engine = doc.getCSSEngine();
+        shapes = doc.getElementsByTagNameNS
+            (SVGConstants.SVG_NAMESPACE_URI, SVGConstants.SVG_RECT_TAG);
+        groups = doc.getElementsByTagNameNS
+            (SVGConstants.SVG_NAMESPACE_URI, SVGConstants.SVG_G_TAG);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.dispose();
+    }
+
+    @Benchmark
+    public void frame() {
+        int f = frame++;
+        if (batch) {
+            engine.beginUpdateBatch();
+        }
+        for (int i = shapes.getLength() - 1; i >= 0; i--) {
+            Element e = (Element)shapes.item(i);
+            e.setAttribute("fill", "rgb(" + ((i + f) % 256) + ",0,0)");
+            e.setAttribute("fill-opacity", "0." + ((i + f) % 10));
+            e.setAttribute("style", "stroke-width:" + ((i * f) % 5));
+            e.setAttribute("class", ((i + f) % 3 == 0) ? "on" : "off");
+        }
+        for (int i = groups.getLength() - 1; i >= 0; i--) {
+            Element e = (Element)groups.item(i);
+            e.setAttribute("class", ((i + f) % 2 == 0) ? "hot" : "");
+            e.setAttribute("font-size", String.valueOf(10 + (i + f) % 5));
+        }
+        if (batch) {
+            engine.endUpdateBatch();
+        }
+    }
+
+    /**
+     * Returns the source of a document with the given number of
+     * shapes, grouped by ten.
+     */
+    public static String createDocument(int elements) {
+        StringBuffer sb = new StringBuffer(elements * 80);
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'")
+          .append(" width='1000' height='1000'>\n")
+          .append("<style type='text/css'><![CDATA[\n")
+          .append(".on { stroke: black; stroke-width: 2 }\n")
+          .append("g.hot rect { opacity: 0.5 }\n")
+          .append("]]></style>\n");
+        for (int i = 0; i < elements; i++) {
+            if (i % 10 == 0) {
+                sb.append("<g font-size='12'>\n");
+            }
+            sb.append("<rect x='").append(i % 100 * 10)
+              .append("' y='").append(i / 100 * 10)
+              .append("' width='8' height='8' fill='red'/>\n");
+            if (i % 10 == 9 || i == elements - 1) {
+                sb.append("</g>\n");
+            }
+        }
+        sb.append("</svg>\n");
+        return sb.toString();
+    }
+}
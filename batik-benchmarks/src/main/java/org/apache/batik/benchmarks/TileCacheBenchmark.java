@@ -0,0 +1,137 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.ext.awt.image.rendered.AbstractRed;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.rendered.LRUCache;
+import org.apache.batik.ext.awt.image.rendered.StripedLRUCache;
+import org.apache.batik.ext.awt.image.rendered.TileCacheRed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the tile cache when it is used by many rendering threads at
+ * once, comparing a single {@link LRUCache} with a
+ * {@link StripedLRUCache}.  The cache is smaller than the image so
+ * that tiles are evicted and computed again.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class TileCacheBenchmark {
+
+    @Param({"plain", "striped"})
+    public String cache;
+
+    /**
+     * The number of tiles the cache can hold, out of 256.
+     */
+    @Param({"64", "512"})
+    public int cachedTiles;
+
+    protected LRUCache lru;
+    protected TileCacheRed red;
+    protected int tileCount;
+
+    @Setup
+    public void setup() {
+        long maxBytes = cachedTiles * 64L * 64 * 4;
+        if ("striped".equals(cache)) {
+            lru = new StripedLRUCache(maxBytes, 8);
+        } else {
+            lru = LRUCache.withMaxBytes(maxBytes);
+        }
+        red = new TileCacheRed(new PatternRed(1024, 64), lru);
+        tileCount = red.getNumXTiles() * red.getNumYTiles();
+    }
+
+    @TearDown
+    public void tearDown() {
+        lru.flush();
+    }
+
+    @Benchmark
+    public Raster getTile() {
+        int t = (int)(Thread.currentThread().getId() * 31
+                      + System.nanoTime()) & 0x7fffffff;
+        t %= tileCount;
+        return red.getTile(t % red.getNumXTiles(), t / red.getNumXTiles());
+    }
+
+    /**
+     * A source computing a simple pattern in square tiles.
+     */
+    protected static class PatternRed extends AbstractRed {
+
+        public PatternRed(int size, int tileSize) {
+            ColorModel cm = GraphicsUtil.sRGB_Unpre;
+            SampleModel sm = cm.createCompatibleSampleModel(tileSize,
+                                                            tileSize);
+            init((CachableRed)null, new Rectangle(0, 0, size, size),
+                 cm, sm, 0, 0, null);
+        }
+
+        public Raster getTile(int tileX, int tileY) {
+            return copyData(makeTile(tileX, tileY));
+        }
+
+        public WritableRaster copyData(WritableRaster wr) {
+            SinglePixelPackedSampleModel sppsm =
+                (SinglePixelPackedSampleModel)wr.getSampleModel();
+            DataBufferInt db = (DataBufferInt)wr.getDataBuffer();
+            int[] pixels = db.getBankData()[0];
+            int scan = sppsm.getScanlineStride();
+            int x0 = wr.getMinX();
+            int y0 = wr.getMinY();
+            int base = db.getOffset() + sppsm.getOffset
+                (x0 - wr.getSampleModelTranslateX(),
+                 y0 - wr.getSampleModelTranslateY());
+            for (int y = 0; y < wr.getHeight(); y++) {
+                int sp = base + y * scan;
+                for (int x = 0; x < wr.getWidth(); x++) {
+                    pixels[sp + x] = 0xff000000
+                        | (((x0 + x) ^ (y0 + y)) * 0x010101 & 0xffffff);
+                }
+            }
+            return wr;
+        }
+    }
+}
@@ -37,6 +37,8 @@ import org.apache.batik.ext.awt.geom.SegmentList;
 import org.apache.batik.gvt.CanvasGraphicsNode;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.parser.ParseException;
+import org.apache.batik.parser.ParsedValueCache;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -171,10 +173,23 @@ public abstract class AbstractGraphicsNodeBridge extends AnimatableSVGBridge
             SVGOMAnimatedTransformList atl =
                 (SVGOMAnimatedTransformList) te.getTransform();
             if (atl.isSpecified()) {
-                atl.check();
-                AbstractSVGTransformList tl =
-                    (AbstractSVGTransformList) te.getTransform().getAnimVal();
-                at.concatenate(tl.getAffineTransform());
+                AffineTransform t = null;
+                String s = atl.getUnanimatedTransformList();
+                if (s != null) {
+                    // A malformed transform list is parsed again below,
+                    // to report the error as usual.
+                    try {
+                        t = ParsedValueCache.getTransform(s);
+                    } catch (ParseException ex) {
+                    }
+                }
+                if (t == null) {
+                    atl.check();
+                    AbstractSVGTransformList tl = (AbstractSVGTransformList)
+                        te.getTransform().getAnimVal();
+                    t = tl.getAffineTransform();
+                }
+                at.concatenate(t);
             }
 
             // motion animation
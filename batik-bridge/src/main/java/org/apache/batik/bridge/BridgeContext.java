@@ -64,6 +64,7 @@ import org.apache.batik.util.CleanerThread;
 import org.apache.batik.util.ParsedURL;
 import org.apache.batik.util.SVGConstants;
 import org.apache.batik.util.Service;
+import org.apache.batik.util.WorkerPool;
 import org.apache.batik.util.XMLConstants;
 
 import org.w3c.dom.Document;
@@ -234,6 +235,11 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      */
     protected int dynamicStatus = STATIC;
 
+    /**
+     * The pool used to compute the styles of a static document.
+     */
+    protected WorkerPool workerPool;
+
     /**
      * The update manager.
      */
@@ -645,6 +651,25 @@ public class BridgeContext implements ErrorConstants, CSSContext {
         dynamicStatus = status;
     }
 
+    /**
+     * Returns the pool used to compute the styles of a static document
+     * before its GVT tree is built, or null.
+     */
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * Sets the pool used to compute, in parallel, the styles of all
+     * the elements of a static document before its GVT tree is built.
+     * By default, no pool is set and the styles are computed when the
+     * bridges need them.  Call this method before the build phase.
+     * @param pool the pool, or null
+     */
+    public void setWorkerPool(WorkerPool pool) {
+        workerPool = pool;
+    }
+
     /**
      * Sets the document as DYNAMIC if <code>dynamic</code> is true
      * STATIC otherwise.
@@ -0,0 +1,482 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.batik.dom.util.DocumentDescriptor;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A cache of parsed documents that can be shared by several
+ * {@link DocumentLoader}s, and so by several bridge contexts, for
+ * instance to avoid loading and parsing again the external resources
+ * used by every document rendered by a server.
+ *
+ * <p>The cache holds its own copy of each document, which is never
+ * handed out: the loaders get a deep clone of it, that they are free to
+ * modify.  The memory held by a document is estimated from its number
+ * of elements, and the cache drops documents, in the order chosen by
+ * its {@link EvictionPolicy}, to keep the total below a given number of
+ * bytes.</p>
+ *
+ * <p>The cache does not check whether a document has changed since it
+ * was loaded: {@link #remove} or {@link #clear} must be called for
+ * that.</p>
+ *
+ * @version $Id$
+ */
+public class DocumentCache {
+
+    /**
+     * The estimated number of bytes held by an element of a parsed
+     * document, including its attributes and text.
+     */
+    public static final long ELEMENT_SIZE = 1024;
+
+    /**
+     * The default maximum number of bytes held by a cache.
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * The cache used by default by the document loaders.
+     */
+    protected static DocumentCache defaultCache;
+
+    /**
+     * Returns the cache used by default by the new document loaders,
+     * or null if they do not share their documents, which is the
+     * default.
+     */
+    public static synchronized DocumentCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Sets the cache used by default by the new document loaders.
+     * @param cache the cache, or null if the new loaders should not
+     *        share their documents
+     */
+    public static synchronized void setDefault(DocumentCache cache) {
+        defaultCache = cache;
+    }
+
+    /**
+     * The entries of this cache, indexed by URI.
+     */
+    protected Map entries = new ConcurrentHashMap();
+
+    /**
+     * The policy choosing the documents to drop.
+     */
+    protected EvictionPolicy policy;
+
+    /**
+     * The maximum number of bytes held by the documents.
+     */
+    protected long maxBytes;
+
+    /**
+     * The estimated number of bytes held by the documents.
+     */
+    protected long usedBytes;
+
+    /**
+     * The number of documents found in the cache.
+     */
+    protected long hits;
+
+    /**
+     * The number of documents not found in the cache.
+     */
+    protected long misses;
+
+    /**
+     * The number of documents dropped to make room for others.
+     */
+    protected long evictions;
+
+    /**
+     * Creates a new DocumentCache of {@link #DEFAULT_MAX_BYTES} that
+     * drops the least recently used documents first.
+     */
+    public DocumentCache() {
+        this(DEFAULT_MAX_BYTES, new LRUPolicy());
+    }
+
+    /**
+     * Creates a new DocumentCache.
+     * @param maxBytes the maximum number of bytes held by the documents
+     * @param policy the policy choosing the documents to drop
+     */
+    public DocumentCache(long maxBytes, EvictionPolicy policy) {
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+
+    /**
+     * Returns a copy of the document with the given URI, or null if it
+     * is not in the cache.
+     * @param uri the URI of the document
+     * @param desc the descriptor to fill with the locations of the
+     *        elements of the returned document, or null
+     */
+    public Document get(String uri, DocumentDescriptor desc) {
+        Entry e = (Entry)entries.get(uri);
+        synchronized (this) {
+            if (e == null || e.removed) {
+                misses++;
+                return null;
+            }
+            hits++;
+            policy.accessed(e);
+        }
+        return e.copy(desc);
+    }
+
+    /**
+     * Puts a copy of the given document into the cache, replacing any
+     * document with the same URI.
+     * @param uri the URI of the document
+     * @param doc the document, which is not modified
+     * @param desc the locations of the elements of the document
+     */
+    public void put(String uri, Document doc, DocumentDescriptor desc) {
+        long size = estimateSize(doc, desc);
+        if (size > getMaxBytes()) {
+            return;
+        }
+        Entry e = new Entry(uri, size);
+        e.desc = new DocumentDescriptor();
+        e.document = copy(doc, desc, e.desc);
+
+        synchronized (this) {
+            Entry old = (Entry)entries.put(uri, e);
+            if (old != null) {
+                drop(old);
+            }
+            usedBytes += size;
+            policy.added(e);
+            trim();
+        }
+    }
+
+    /**
+     * Removes the document with the given URI from the cache.
+     */
+    public synchronized void remove(String uri) {
+        Entry e = (Entry)entries.remove(uri);
+        if (e != null) {
+            drop(e);
+        }
+    }
+
+    /**
+     * Removes all the documents from the cache.
+     */
+    public synchronized void clear() {
+        Iterator it = entries.values().iterator();
+        while (it.hasNext()) {
+            drop((Entry)it.next());
+        }
+        entries.clear();
+    }
+
+    /**
+     * Returns the maximum number of bytes held by the documents.
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes held by the documents.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    /**
+     * Returns the estimated number of bytes held by the documents.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the number of documents in the cache.
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of documents found in the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of documents not found in the cache.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of documents dropped to make room for others.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the estimated number of bytes held by the given document.
+     * @param doc the document
+     * @param desc the locations of the elements of the document, which
+     *        also give their number
+     */
+    protected long estimateSize(Document doc, DocumentDescriptor desc) {
+        return (desc.getNumberOfElements() + 1) * ELEMENT_SIZE;
+    }
+
+    /**
+     * Drops documents until no more than <code>maxBytes</code> are held.
+     */
+    protected void trim() {
+        while (usedBytes > maxBytes) {
+            Entry e = policy.victim();
+            if (e == null) {
+                return;
+            }
+            entries.remove(e.uri);
+            drop(e);
+            evictions++;
+        }
+    }
+
+    /**
+     * Accounts for the removal of the given entry.
+     */
+    protected void drop(Entry e) {
+        if (!e.removed) {
+            e.removed = true;
+            usedBytes -= e.size;
+            policy.removed(e);
+        }
+    }
+
+    /**
+     * Returns a deep clone of the given document.
+     * @param doc the document to clone
+     * @param desc the locations of the elements of <code>doc</code>
+     * @param result the descriptor to fill with the locations of the
+     *        elements of the clone, or null
+     */
+    protected static Document copy(Document doc,
+                                   DocumentDescriptor desc,
+                                   DocumentDescriptor result) {
+        Document clone = (Document)doc.cloneNode(true);
+        if (desc != null && result != null) {
+            copyLocations(doc.getDocumentElement(),
+                          clone.getDocumentElement(),
+                          desc, result);
+        }
+        return clone;
+    }
+
+    /**
+     * Copies the locations of the elements of a tree to the matching
+     * elements of its clone.
+     */
+    protected static void copyLocations(Element src, Element dst,
+                                        DocumentDescriptor from,
+                                        DocumentDescriptor to) {
+        Element root = src;
+        while (src != null && dst != null) {
+            int line = from.getLocationLine(src);
+            if (line != 0) {
+                to.setLocation(dst, line, from.getLocationColumn(src));
+            }
+            Element sc = firstChildElement(src);
+            Element dc = firstChildElement(dst);
+            if (sc != null && dc != null) {
+                src = sc;
+                dst = dc;
+                continue;
+            }
+            while (src != root) {
+                sc = nextSiblingElement(src);
+                dc = nextSiblingElement(dst);
+                if (sc != null && dc != null) {
+                    break;
+                }
+                src = (Element)src.getParentNode();
+                dst = (Element)dst.getParentNode();
+            }
+            if (src == root) {
+                return;
+            }
+            src = sc;
+            dst = dc;
+        }
+    }
+
+    private static Element firstChildElement(Node n) {
+        for (n = n.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element)n;
+            }
+        }
+        return null;
+    }
+
+    private static Element nextSiblingElement(Node n) {
+        for (n = n.getNextSibling(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element)n;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A document held by the cache.
+     */
+    public static class Entry {
+
+        /**
+         * The URI of the document.
+         */
+        protected String uri;
+
+        /**
+         * The estimated number of bytes held by the document.
+         */
+        protected long size;
+
+        /**
+         * The copy of the document held by the cache.
+         */
+        protected Document document;
+
+        /**
+         * The locations of the elements of the document.
+         */
+        protected DocumentDescriptor desc;
+
+        /**
+         * Whether this entry has been removed from the cache.
+         */
+        protected boolean removed;
+
+        protected Entry(String uri, long size) {
+            this.uri = uri;
+            this.size = size;
+        }
+
+        /**
+         * Returns the URI of the document.
+         */
+        public String getURI() {
+            return uri;
+        }
+
+        /**
+         * Returns the estimated number of bytes held by the document.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns a deep clone of the document.  The copies are made one
+         * at a time since reading a DOM tree is not guaranteed to be
+         * thread safe.
+         */
+        protected synchronized Document copy(DocumentDescriptor result) {
+            return DocumentCache.copy(document, desc, result);
+        }
+    }
+
+    /**
+     * Chooses the documents dropped from a cache.  The methods are
+     * called with the lock of the cache held.
+     */
+    public interface EvictionPolicy {
+
+        /**
+         * Called when an entry is added to the cache.
+         */
+        void added(Entry e);
+
+        /**
+         * Called when the document of an entry is returned by the cache.
+         */
+        void accessed(Entry e);
+
+        /**
+         * Called when an entry is removed from the cache.
+         */
+        void removed(Entry e);
+
+        /**
+         * Returns the entry to drop to make room in the cache, or null
+         * if none should be dropped.
+         */
+        Entry victim();
+    }
+
+    /**
+     * A policy dropping the least recently used documents first.
+     */
+    public static class LRUPolicy implements EvictionPolicy {
+
+        /**
+         * The entries, from the least to the most recently used.
+         */
+        protected LinkedHashMap order = new LinkedHashMap(16, 0.75f, true);
+
+        public void added(Entry e) {
+            order.put(e, e);
+        }
+
+        public void accessed(Entry e) {
+            order.get(e);
+        }
+
+        public void removed(Entry e) {
+            order.remove(e);
+        }
+
+        public Entry victim() {
+            Iterator it = order.keySet().iterator();
+            return it.hasNext() ? (Entry)it.next() : null;
+        }
+    }
+}
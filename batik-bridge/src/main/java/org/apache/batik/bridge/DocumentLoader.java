@@ -59,6 +59,11 @@ public class DocumentLoader {
      */
     protected UserAgent userAgent;
 
+    /**
+     * The cache shared with other loaders, or null.
+     */
+    protected DocumentCache sharedCache;
+
     /**
      * Constructs a new <code>DocumentLoader</code>.
      */
@@ -73,6 +78,26 @@ public class DocumentLoader {
         documentFactory = new SAXSVGDocumentFactory
             (userAgent.getXMLParserClassName(), true);
         documentFactory.setValidating(userAgent.isXMLParserValidating());
+        sharedCache = DocumentCache.getDefault();
+    }
+
+    /**
+     * Returns the cache this loader shares with other loaders, or null.
+     */
+    public DocumentCache getSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * Sets the cache this loader shares with other loaders.  The
+     * documents not in the cache of this loader are taken from the
+     * shared cache when possible, and the documents this loader parses
+     * are added to it.  The loaders are given the
+     * {@link DocumentCache#getDefault() default cache} when created.
+     * @param cache the shared cache, or null to not share the documents
+     */
+    public void setSharedCache(DocumentCache cache) {
+        sharedCache = cache;
     }
 
     public Document checkCache(String uri) {
@@ -100,18 +125,16 @@ public class DocumentLoader {
      */
     public Document loadDocument(String uri) throws IOException {
         Document ret = checkCache(uri);
+        if (ret != null)
+            return ret;
+        ret = checkSharedCache(uri);
         if (ret != null)
             return ret;
 
         SVGDocument document = documentFactory.createSVGDocument(uri);
 
         DocumentDescriptor desc = documentFactory.getDocumentDescriptor();
-        DocumentState state = new DocumentState(uri, document, desc);
-        synchronized (cacheMap) {
-            cacheMap.put(uri, state);
-        }
-
-        return state.getDocument();
+        return addDocument(uri, document, desc);
     }
 
     /**
@@ -123,16 +146,50 @@ public class DocumentLoader {
     public Document loadDocument(String uri, InputStream is)
         throws IOException {
         Document ret = checkCache(uri);
+        if (ret != null)
+            return ret;
+        ret = checkSharedCache(uri);
         if (ret != null)
             return ret;
 
         SVGDocument document = documentFactory.createSVGDocument(uri, is);
 
         DocumentDescriptor desc = documentFactory.getDocumentDescriptor();
+        return addDocument(uri, document, desc);
+    }
+
+    /**
+     * Returns a copy of the document with the given URI taken from the
+     * shared cache, or null if it is not there.
+     */
+    protected Document checkSharedCache(String uri) {
+        DocumentCache cache = sharedCache;
+        if (cache == null)
+            return null;
+        DocumentDescriptor desc = new DocumentDescriptor();
+        Document document = cache.get(uri, desc);
+        if (document == null)
+            return null;
+        DocumentState state = new DocumentState(uri, document, desc);
+        synchronized (cacheMap) {
+            cacheMap.put(uri, state);
+        }
+        return document;
+    }
+
+    /**
+     * Adds a newly parsed document to the cache of this loader and to
+     * the shared cache.
+     */
+    protected Document addDocument(String uri, Document document,
+                                   DocumentDescriptor desc) {
         DocumentState state = new DocumentState(uri, document, desc);
         synchronized (cacheMap) {
             cacheMap.put(uri, state);
         }
+        DocumentCache cache = sharedCache;
+        if (cache != null)
+            cache.put(uri, document, desc);
 
         return state.getDocument();
     }
@@ -18,11 +18,14 @@
  */
 package org.apache.batik.bridge;
 
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.dom.AbstractDocument;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.RootGraphicsNode;
 import org.apache.batik.util.HaltingThread;
 import org.apache.batik.util.SVGConstants;
+import org.apache.batik.util.WorkerPool;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -50,6 +53,13 @@ public class GVTBuilder implements SVGConstants {
      * the GVT tree
      */
     public GraphicsNode build(BridgeContext ctx, Document document) {
+        // a static document can be made interactive, but neither
+        // its scripts nor its animations can modify it
+        if (ctx.isDynamic() && document instanceof AbstractDocument
+                && ((AbstractDocument)document).isStatic()) {
+            ctx.setDynamicState(BridgeContext.INTERACTIVE);
+        }
+
         // the bridge context is now associated to one document
         ctx.setDocument(document);
         ctx.initializeDocument(document);
@@ -57,6 +67,16 @@ public class GVTBuilder implements SVGConstants {
         // inform the bridge context the builder to use
         ctx.setGVTBuilder(this);
 
+        // compute all the styles at once if the document won't change
+        WorkerPool pool = ctx.getWorkerPool();
+        Element root = document.getDocumentElement();
+        if (pool != null && !ctx.isDynamic() && root != null) {
+            CSSEngine eng = ctx.getCSSEngineForElement(root);
+            if (eng != null) {
+                eng.precomputeStyles(pool);
+            }
+        }
+
         // build the GVT tree
         DocumentBridge dBridge = ctx.getDocumentBridge();
         RootGraphicsNode rootNode = null;
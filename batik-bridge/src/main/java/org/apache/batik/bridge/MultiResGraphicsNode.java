@@ -212,7 +212,14 @@ public class MultiResGraphicsNode
         return bounds;
     }
 
-    public GraphicsNode getGraphicsNode(int idx) {
+    /**
+     * Returns the GraphicsNode for the source at <code>idx</code>,
+     * building it if needed.  This is synchronized since the node may
+     * be painted by several threads at the same time; the build itself
+     * locks the bridge context, which other nodes of the same document
+     * share.
+     */
+    public synchronized GraphicsNode getGraphicsNode(int idx) {
         if (srcs[idx] != null) {
             Object o = srcs[idx].get();
             if (o != null) 
@@ -220,9 +227,11 @@ public class MultiResGraphicsNode
         }
         
         try {
-            GVTBuilder builder = ctx.getGVTBuilder();
             GraphicsNode gn;
-            gn = builder.build(ctx, srcElems[idx]);
+            synchronized (ctx) {
+                GVTBuilder builder = ctx.getGVTBuilder();
+                gn = builder.build(ctx, srcElems[idx]);
+            }
             srcs[idx] = new SoftReference(gn);
             return gn;
         } catch (Exception ex) { ex.printStackTrace();  }
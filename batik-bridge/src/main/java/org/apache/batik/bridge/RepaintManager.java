@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Iterator;
 import java.util.Collection;
 
+import org.apache.batik.gvt.renderer.DynamicRenderer;
 import org.apache.batik.gvt.renderer.ImageRenderer;
 import org.apache.batik.ext.awt.geom.RectListManager;
 
@@ -113,6 +114,51 @@ public class RepaintManager {
         renderer.clearOffScreen();
     }
 
+    /**
+     * Returns true if the renderer can move its rendering to the given
+     * user to device transform, keeping the pixels already rendered.
+     * @param u2d The user to device transform.
+     * @param dbr Whether the double buffering should be used.
+     * @param width The offscreen buffer width.
+     * @param height The offscreen buffer height.
+     */
+    public boolean isScrollable(AffineTransform u2d,
+                                boolean dbr,
+                                int width,
+                                int height) {
+        if (!(renderer instanceof DynamicRenderer) ||
+            (renderer.isDoubleBuffered() != dbr)) {
+            return false;
+        }
+        return ((DynamicRenderer)renderer).isScrollable(u2d, width, height);
+    }
+
+    /**
+     * Moves the rendering to the given user to device transform,
+     * repainting only the newly exposed areas.  Everything is repainted
+     * if the rendering cannot be moved after all.
+     * @param u2d The user to device transform.
+     * @param width The offscreen buffer width.
+     * @param height The offscreen buffer height.
+     * @return the list of the rectangles to repaint, that is the whole
+     *         offscreen buffer since it moved.
+     */
+    public Collection scrollRendering(AffineTransform u2d,
+                                      int width,
+                                      int height) {
+        Rectangle r = new Rectangle(0, 0, width, height);
+        if (!((DynamicRenderer)renderer).scroll(u2d, width, height)) {
+            renderer.setTransform(u2d);
+            renderer.updateOffScreen(width, height);
+            renderer.clearOffScreen();
+            RectListManager rlm = new RectListManager(r);
+            renderer.repaint(rlm);
+        }
+        List l = new ArrayList(1);
+        l.add(r);
+        return l;
+    }
+
     /**
      * Returns the renderer's offscreen, i.e., the current state as rendered
      * by the associated renderer.
@@ -30,6 +30,7 @@ import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.font.GVTFontFace;
 import org.apache.batik.gvt.font.Glyph;
 import org.apache.batik.gvt.text.TextPaintInfo;
+import org.apache.batik.parser.AWTPathParser;
 import org.apache.batik.parser.AWTPathProducer;
 import org.apache.batik.parser.ParseException;
 import org.apache.batik.parser.PathParser;
@@ -91,24 +92,28 @@ public class SVGGlyphElementBridge extends AbstractSVGBridge
         String d = glyphElement.getAttributeNS(null, SVG_D_ATTRIBUTE);
         Shape dShape = null;
         if (d.length() != 0) {
-            AWTPathProducer app = new AWTPathProducer();
             // Glyph is supposed to use properties from text element.
-            app.setWindingRule(CSSUtilities.convertFillRule(textElement));
+            int wr = CSSUtilities.convertFillRule(textElement);
+            Shape shape;
             try {
-                PathParser pathParser = new PathParser();
-                pathParser.setPathHandler(app);
-                pathParser.parse(d);
-            } catch (ParseException pEx) {
-                throw new BridgeException(ctx, glyphElement,
-                                          pEx, ERR_ATTRIBUTE_VALUE_MALFORMED,
-                                          new Object [] {SVG_D_ATTRIBUTE});
-            } finally {
-                // transform the shape into the correct coord system
-                Shape shape = app.getShape();
-                Shape transformedShape
-                    = scaleTransform.createTransformedShape(shape);
-                dShape = transformedShape;
+                shape = AWTPathParser.createShape(d, wr);
+            } catch (ParseException ex) {
+                // Parses the path data again to report the error.
+                AWTPathProducer app = new AWTPathProducer();
+                app.setWindingRule(wr);
+                try {
+                    PathParser pathParser = new PathParser();
+                    pathParser.setPathHandler(app);
+                    pathParser.parse(d);
+                } catch (ParseException pEx) {
+                    throw new BridgeException
+                        (ctx, glyphElement, pEx, ERR_ATTRIBUTE_VALUE_MALFORMED,
+                         new Object [] {SVG_D_ATTRIBUTE});
+                }
+                shape = app.getShape();
             }
+            // transform the shape into the correct coord system
+            dShape = scaleTransform.createTransformedShape(shape);
         }
 
         // process any glyph children
@@ -31,7 +31,9 @@ import org.apache.batik.dom.svg.SVGAnimatedPathDataSupport;
 import org.apache.batik.dom.svg.SVGPathContext;
 import org.apache.batik.ext.awt.geom.PathLength;
 import org.apache.batik.gvt.ShapeNode;
+import org.apache.batik.parser.AWTPathParser;
 import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.ParseException;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.svg.SVGPathSegList;
@@ -82,10 +84,22 @@ public class SVGPathElementBridge extends SVGDecoratedShapeElementBridge
                               ShapeNode shapeNode) {
 
         SVGOMPathElement pe = (SVGOMPathElement) e;
+        SVGOMAnimatedPathData _d = pe.getAnimatedPathData();
+        String d = _d.getUnanimatedPathData();
+        if (d != null) {
+            // Malformed path data is parsed again below, to report the
+            // error as usual.
+            try {
+                shapeNode.setShape(AWTPathParser.createShape
+                                   (d, CSSUtilities.convertFillRule(e)));
+                return;
+            } catch (ParseException ex) {
+            }
+        }
+
         AWTPathProducer app = new AWTPathProducer();
         try {
             // 'd' attribute - required
-            SVGOMAnimatedPathData _d = pe.getAnimatedPathData();
             _d.check();
             SVGPathSegList p = _d.getAnimatedPathSegList();
             app.setWindingRule(CSSUtilities.convertFillRule(e));
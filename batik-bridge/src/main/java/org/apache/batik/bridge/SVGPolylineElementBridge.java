@@ -28,6 +28,8 @@ import org.apache.batik.css.engine.SVGCSSEngine;
 import org.apache.batik.dom.svg.LiveAttributeException;
 import org.apache.batik.gvt.ShapeNode;
 import org.apache.batik.parser.AWTPolylineProducer;
+import org.apache.batik.parser.ParseException;
+import org.apache.batik.parser.ParsedValueCache;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.svg.SVGPoint;
@@ -78,8 +80,25 @@ public class SVGPolylineElementBridge extends SVGDecoratedShapeElementBridge {
                               ShapeNode shapeNode) {
 
         SVGOMPolylineElement pe = (SVGOMPolylineElement) e;
+        SVGOMAnimatedPoints _points = pe.getSVGOMAnimatedPoints();
+        String s = _points.getUnanimatedPoints();
+        if (s != null) {
+            // Malformed points are parsed again below, to report the
+            // error as usual.
+            try {
+                float[] pts = ParsedValueCache.getPoints(s);
+                if (pts.length == 0) {
+                    shapeNode.setShape(DEFAULT_SHAPE);
+                } else {
+                    shapeNode.setShape(AWTPolylineProducer.createShape
+                                       (pts, CSSUtilities.convertFillRule(e)));
+                }
+                return;
+            } catch (ParseException ex) {
+            }
+        }
+
         try {
-            SVGOMAnimatedPoints _points = pe.getSVGOMAnimatedPoints();
             _points.check();
             SVGPointList pl = _points.getAnimatedPoints();
             int size = pl.getNumberOfItems();
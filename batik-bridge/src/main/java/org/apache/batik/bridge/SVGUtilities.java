@@ -32,10 +32,10 @@ import org.apache.batik.dom.AbstractNode;
 import org.apache.batik.dom.util.XLinkSupport;
 import org.apache.batik.dom.util.XMLSupport;
 import org.apache.batik.gvt.GraphicsNode;
-import org.apache.batik.parser.AWTTransformProducer;
 import org.apache.batik.parser.ClockHandler;
 import org.apache.batik.parser.ClockParser;
 import org.apache.batik.parser.ParseException;
+import org.apache.batik.parser.ParsedValueCache;
 import org.apache.batik.util.ParsedURL;
 import org.apache.batik.util.SVG12Constants;
 import org.apache.batik.util.SVGConstants;
@@ -1163,7 +1163,8 @@ public abstract class SVGUtilities implements SVGConstants, ErrorConstants {
                                                    String transform,
                                                    BridgeContext ctx) {
         try {
-            return AWTTransformProducer.createAffineTransform(transform);
+            return new AffineTransform
+                (ParsedValueCache.getTransform(transform));
         } catch (ParseException pEx) {
             throw new BridgeException(ctx, e, pEx, ERR_ATTRIBUTE_VALUE_MALFORMED,
                                       new Object[] {attr, transform, pEx });
@@ -18,7 +18,10 @@
  */
 package org.apache.batik.bridge;
 
+import java.awt.AlphaComposite;
+import java.awt.Composite;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
@@ -46,6 +49,12 @@ public class TextNode extends AbstractGraphicsNode implements Selectable {
         AttributedCharacterIterator.Attribute PAINT_INFO =
         GVTAttributedCharacterIterator.TextAttribute.PAINT_INFO;
 
+    /**
+     * The number of characters from which the rendering of a text node
+     * is kept in a LayerCache.
+     */
+    public static final int LAYER_CACHE_MIN_LENGTH = 128;
+
     /**
      * Location of this text node (inherited, independent of explicit
      * X and Y attributes applied to children).
@@ -239,8 +248,10 @@ public class TextNode extends AbstractGraphicsNode implements Selectable {
      */
     public Rectangle2D getPrimitiveBounds(){
         if (primitiveBounds == null) {
-            if (aci != null) {
-                primitiveBounds = textPainter.getBounds2D(this);
+            synchronized (this) {
+                if ((primitiveBounds == null) && (aci != null)) {
+                    primitiveBounds = textPainter.getBounds2D(this);
+                }
             }
         }
         return primitiveBounds;
@@ -254,8 +265,10 @@ public class TextNode extends AbstractGraphicsNode implements Selectable {
      */
     public Rectangle2D getGeometryBounds(){
         if (geometryBounds == null){
-            if (aci != null) {
-                geometryBounds = textPainter.getGeometryBounds(this);
+            synchronized (this) {
+                if ((geometryBounds == null) && (aci != null)) {
+                    geometryBounds = textPainter.getGeometryBounds(this);
+                }
             }
         }
         return geometryBounds;
@@ -275,8 +288,10 @@ public class TextNode extends AbstractGraphicsNode implements Selectable {
      */
     public Shape getOutline() {
         if (outline == null) {
-            if (aci != null) {
-                outline = textPainter.getOutline(this);
+            synchronized (this) {
+                if ((outline == null) && (aci != null)) {
+                    outline = textPainter.getOutline(this);
+                }
             }
         }
         return outline;
@@ -398,8 +413,87 @@ public class TextNode extends AbstractGraphicsNode implements Selectable {
         if (clip != null && !(clip instanceof GeneralPath)) {
             g2d.setClip(new GeneralPath(clip));
         }
-        // Paint the text
-        textPainter.paint(this, g2d);
+        // Paint the text. The text painter walks the shared attributed
+        // character iterator and fills lazy layout caches, so a text
+        // node is painted by one thread at a time.
+        synchronized (this) {
+            if (!paintTextBoxes(g2d)) {
+                textPainter.paint(this, g2d);
+            }
+        }
+    }
+
+    /**
+     * Returns true if this node is expensive enough to paint for its
+     * rendering to be kept in a LayerCache.  This is the case of the
+     * text of at least {@link #LAYER_CACHE_MIN_LENGTH} characters, whose
+     * glyphs are costly to paint again.
+     */
+    protected boolean isLayerCacheable() {
+        AttributedCharacterIterator a = aci;
+        return super.isLayerCacheable() ||
+            (a != null &&
+             a.getEndIndex() - a.getBeginIndex() >= LAYER_CACHE_MIN_LENGTH);
+    }
+
+    /**
+     * Paints the text runs as boxes, at a quarter of their opacity, which
+     * is about the part of the boxes covered by the glyphs, when their
+     * lines are less tall than the level of detail of the given
+     * Graphics2D.
+     *
+     * @param g2d the Graphics2D to use
+     * @return false if the text has to be painted in full
+     */
+    protected boolean paintTextBoxes(Graphics2D g2d) {
+        float lod = getLevelOfDetail(g2d);
+        List runs = textRuns;
+        if (lod <= 0 || runs == null) {
+            return false;
+        }
+        double scale =
+            Math.sqrt(Math.abs(g2d.getTransform().getDeterminant()));
+        for (int i = 0; i < runs.size(); i++) {
+            StrokingTextPainter.TextRun run =
+                (StrokingTextPainter.TextRun)runs.get(i);
+            Rectangle2D b = run.getLayout().getBounds2D();
+            if (b != null && b.getHeight() * scale >= lod) {
+                return false;
+            }
+        }
+
+        Composite defaultComposite = g2d.getComposite();
+        for (int i = 0; i < runs.size(); i++) {
+            StrokingTextPainter.TextRun run =
+                (StrokingTextPainter.TextRun)runs.get(i);
+            Rectangle2D b = run.getLayout().getBounds2D();
+            AttributedCharacterIterator runaci = run.getACI();
+            runaci.first();
+            TextPaintInfo tpi = (TextPaintInfo)runaci.getAttribute(PAINT_INFO);
+            if (b == null || tpi == null || !tpi.visible) {
+                continue;
+            }
+            Paint paint = tpi.fillPaint;
+            if (paint == null) {
+                paint = tpi.strokePaint;
+            }
+            if (paint == null) {
+                continue;
+            }
+            Composite c = defaultComposite;
+            if (tpi.composite != null) {
+                c = tpi.composite;
+            }
+            if (c instanceof AlphaComposite) {
+                AlphaComposite ac = (AlphaComposite)c;
+                c = ac.derive(ac.getAlpha() / 4);
+            }
+            g2d.setComposite(c);
+            g2d.setPaint(paint);
+            g2d.fill(b);
+        }
+        g2d.setComposite(defaultComposite);
+        return true;
     }
 
     //
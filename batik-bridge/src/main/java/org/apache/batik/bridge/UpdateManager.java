@@ -33,6 +33,7 @@ import org.apache.batik.anim.dom.SVGOMDocument;
 import org.apache.batik.bridge.svg12.DefaultXBLManager;
 import org.apache.batik.bridge.svg12.SVG12BridgeContext;
 import org.apache.batik.bridge.svg12.SVG12ScriptingEnvironment;
+import org.apache.batik.css.engine.CSSEngine;
 import org.apache.batik.dom.events.AbstractEvent;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.RootGraphicsNode;
@@ -144,6 +145,18 @@ public class UpdateManager  {
      */
     protected int minRepaintTime;
 
+    /**
+     * Whether the style changes made by a runnable are applied once it
+     * has returned rather than after each modification.
+     */
+    protected boolean styleBatching = true;
+
+    /**
+     * The CSS engines whose update batch was started by the running
+     * runnable.
+     */
+    protected CSSEngine[] batchedEngines;
+
     /**
      * Creates a new update manager.
      * @param ctx The bridge context.
@@ -186,6 +199,27 @@ public class UpdateManager  {
         minRepaintTime = MIN_REPAINT_TIME;
     }
 
+    /**
+     * Tells whether the style changes made by a runnable are applied
+     * once it has returned.
+     */
+    public boolean isStyleBatching() {
+        return styleBatching;
+    }
+
+    /**
+     * Sets whether the style changes made by a runnable are applied
+     * once it has returned, which is the default, or after each
+     * modification of the document.  Batching avoids computing the
+     * styles of an element again for every attribute a script or an
+     * animation changes.  The computed styles, and the geometry given
+     * by the SVG DOM, such as getBBox or getIntersectionList, apply the
+     * deferred changes first, so scripts still see up to date values.
+     */
+    public void setStyleBatching(boolean b) {
+        styleBatching = b;
+    }
+
     public int getMinRepaintTime() {
         return minRepaintTime;
     }
@@ -493,6 +527,53 @@ public class UpdateManager  {
         updateRendering(l, cpt);
     }
 
+    /**
+     * Updates the rendering buffer for a user to device transform that
+     * only moves the rendering, keeping the pixels already rendered and
+     * painting only the newly exposed areas.  Only to be called from the
+     * update thread.
+     * @param u2d The user to device transform.
+     * @param dbr Whether the double buffering should be used.
+     * @param cpt If the canvas painting transform should be cleared
+     *            when the update completes
+     * @param width The offscreen buffer width.
+     * @param height The offscreen buffer height.
+     * @return false if the rendering cannot be moved, in which case
+     *         nothing was done and {@link #updateRendering(AffineTransform,
+     *         boolean,boolean,Shape,int,int)} must be used.
+     */
+    public boolean scrollRendering(AffineTransform u2d,
+                                   boolean dbr,
+                                   boolean cpt,
+                                   int width,
+                                   int height) {
+        if (!repaintManager.isScrollable(u2d, dbr, width, height)) {
+            return false;
+        }
+        try {
+            UpdateManagerEvent ev = new UpdateManagerEvent
+                (this, repaintManager.getOffScreen(), null);
+            fireEvent(updateStartedDispatcher, ev);
+
+            Collection c = repaintManager.scrollRendering(u2d, width, height);
+            List l = new ArrayList(c);
+
+            ev = new UpdateManagerEvent
+                (this, repaintManager.getOffScreen(), l, cpt);
+            fireEvent(updateCompletedDispatcher, ev);
+        } catch (ThreadDeath td) {
+            UpdateManagerEvent ev = new UpdateManagerEvent
+                (this, null, null);
+            fireEvent(updateFailedDispatcher, ev);
+            throw td;
+        } catch (Throwable t) {
+            UpdateManagerEvent ev = new UpdateManagerEvent
+                (this, null, null);
+            fireEvent(updateFailedDispatcher, ev);
+        }
+        return true;
+    }
+
     /**
      * Updates the rendering buffer.
      * @param areas List of areas of interest in rederer space units.
@@ -588,6 +669,7 @@ public class UpdateManager  {
      * 'SVGSVGElement.forceRedraw()' method.
      */
     public void forceRepaint() {
+        flushStyleUpdates();
         if (!updateTracker.hasChanged()) {
             // No changes, nothing to repaint.
             outOfDateTime = 0;
@@ -602,6 +684,80 @@ public class UpdateManager  {
         outOfDateTime = 0;
     }
 
+    /**
+     * Starts an update batch on the CSS engines of the managed
+     * documents.
+     */
+    protected void beginStyleUpdates() {
+        if (!styleBatching || batchedEngines != null) {
+            return;
+        }
+        // The child contexts are asked for every time: the secondary
+        // ones are dropped once the SVGLoad event is dispatched, and
+        // resource documents may be loaded later.
+        BridgeContext[] children = null;
+        if (bridgeContext != null) {
+            children = bridgeContext.getChildContexts();
+        }
+        int n = (children == null) ? 0 : children.length;
+        CSSEngine[] engines = new CSSEngine[n + 1];
+        engines[0] = getCSSEngine(document);
+        for (int i = 0; i < n; i++) {
+            BridgeContext resCtx = children[i];
+            if (resCtx != null) {
+                engines[i + 1] = getCSSEngine(resCtx.getDocument());
+            }
+        }
+        for (int i = 0; i <= n; i++) {
+            if (engines[i] != null) {
+                engines[i].beginUpdateBatch();
+            }
+        }
+        batchedEngines = engines;
+    }
+
+    /**
+     * Ends the update batch started by {@link #beginStyleUpdates()},
+     * which computes the styles of the modified elements again.
+     */
+    protected void endStyleUpdates() {
+        CSSEngine[] engines = batchedEngines;
+        if (engines == null) {
+            return;
+        }
+        batchedEngines = null;
+        for (int i = 0; i < engines.length; i++) {
+            if (engines[i] != null) {
+                engines[i].endUpdateBatch();
+            }
+        }
+    }
+
+    /**
+     * Applies the style changes deferred by the current update batch.
+     */
+    protected void flushStyleUpdates() {
+        CSSEngine[] engines = batchedEngines;
+        if (engines == null) {
+            return;
+        }
+        for (int i = 0; i < engines.length; i++) {
+            if (engines[i] != null) {
+                engines[i].flushInvalidations();
+            }
+        }
+    }
+
+    /**
+     * Returns the CSS engine of the given document, or null.
+     */
+    protected static CSSEngine getCSSEngine(Document doc) {
+        if (doc instanceof SVGOMDocument) {
+            return ((SVGOMDocument) doc).getCSSEngine();
+        }
+        return null;
+    }
+
     protected class SuspensionInfo {
         /**
          * The index of this redraw suspension
@@ -858,6 +1014,12 @@ public class UpdateManager  {
                 if (outOfDateTime == 0)
                     outOfDateTime = System.currentTimeMillis();
             }
+            try {
+                beginStyleUpdates();
+            } catch (RuntimeException e) {
+                // The runnable is still run, only without batching.
+                e.printStackTrace();
+            }
         }
 
 
@@ -866,6 +1028,7 @@ public class UpdateManager  {
          * has returned.
          */
         public void runnableInvoked(RunnableQueue rq, Runnable r) {
+            endStyleUpdates();
             if (running && !(r instanceof NoRepaintRunnable)) {
                 repaint();
             }
@@ -328,6 +328,12 @@ public class PNGImageEncoder extends ImageEncoderImpl {
         cs.close();
     }
 
+    /**
+     * The number of rows encoded at a time from an image made of a
+     * single row of tiles.
+     */
+    private static final int STRIP_HEIGHT = 64;
+
     private byte[] prevRow = null;
     private byte[] currRow = null;
 
@@ -341,18 +347,23 @@ public class PNGImageEncoder extends ImageEncoderImpl {
                             int xOffset,     int yOffset,
                             int xSkip,       int ySkip)
         throws IOException {
-        int minX   = ras.getMinX();
-        int minY   = ras.getMinY();
-        int width  = ras.getWidth();
-        int height = ras.getHeight();
-
-        xOffset *= numBands;
-        xSkip   *= numBands;
+        int bytesPerRow = startPass(xOffset, xSkip);
+        if (bytesPerRow == 0) {
+            return;
+        }
+        encodeRows(os, ras, xOffset, yOffset, xSkip, ySkip, bytesPerRow);
+    }
 
+    /**
+     * Allocates the row buffers for a pass and returns the number of
+     * bytes in each row of the pass, which is zero for an empty pass.
+     */
+    private int startPass(int xOffset, int xSkip) {
         int samplesPerByte = 8/bitDepth;
-
         int numSamples = width*numBands;
-        int[] samples = new int[numSamples];
+
+        xOffset *= numBands;
+        xSkip   *= numBands;
 
         int pixels = (numSamples - xOffset + xSkip - 1)/xSkip;
         int bytesPerRow = pixels*numBands;
@@ -363,7 +374,7 @@ public class PNGImageEncoder extends ImageEncoderImpl {
         }
 
         if (bytesPerRow == 0) {
-            return;
+            return 0;
         }
 
         currRow = new byte[bytesPerRow + bpp];
@@ -371,6 +382,32 @@ public class PNGImageEncoder extends ImageEncoderImpl {
 
         filteredRows = new byte[5][bytesPerRow + bpp];
 
+        return bytesPerRow;
+    }
+
+    /**
+     * Encodes the rows of <code>ras</code> that belong to the current
+     * pass.  The previous row is kept between calls, so a pass can be
+     * encoded from several consecutive strips of rows.
+     */
+    private void encodeRows(OutputStream os, Raster ras,
+                            int xOffset,     int yOffset,
+                            int xSkip,       int ySkip,
+                            int bytesPerRow)
+        throws IOException {
+        int minX   = ras.getMinX();
+        int minY   = ras.getMinY();
+        int width  = ras.getWidth();
+        int height = ras.getHeight();
+
+        xOffset *= numBands;
+        xSkip   *= numBands;
+
+        int samplesPerByte = 8/bitDepth;
+
+        int numSamples = width*numBands;
+        int[] samples = new int[numSamples];
+
         int maxValue = (1 << bitDepth) - 1;
 
         for (int row = minY + yOffset; row < minY + height; row += ySkip) {
@@ -450,41 +487,11 @@ public class PNGImageEncoder extends ImageEncoderImpl {
         DeflaterOutputStream dos =
             new DeflaterOutputStream(ios, new Deflater(9));
 
-        // Future work - don't convert entire image to a Raster It
-        // might seem that you could just call image.getData() but
-        // 'BufferedImage.subImage' doesn't appear to set the Width
-        // and height properly of the Child Raster, so the Raster
-        // you get back here appears larger than it should.
-        // This solves that problem by bounding the raster to the
-        // image's bounds...
-        Raster ras = image.getData(new Rectangle(image.getMinX(),
-                                                 image.getMinY(),
-                                                 image.getWidth(),
-                                                 image.getHeight()));
-        // System.out.println("Image: [" +
-        //                    image.getMinY()  + ", " +
-        //                    image.getMinX()  + ", " +
-        //                    image.getWidth()  + ", " +
-        //                    image.getHeight() + "]");
-        // System.out.println("Ras: [" +
-        //                    ras.getMinX()  + ", " +
-        //                    ras.getMinY()  + ", " +
-        //                    ras.getWidth()  + ", " +
-        //                    ras.getHeight() + "]");
-
-        if (skipAlpha) {
-            int numBands = ras.getNumBands() - 1;
-            int[] bandList = new int[numBands];
-            for (int i = 0; i < numBands; i++) {
-                bandList[i] = i;
-            }
-            ras = ras.createChild(0, 0,
-                                  ras.getWidth(), ras.getHeight(),
-                                  0, 0,
-                                  bandList);
-        }
-
         if (interlace) {
+            // The passes go over the whole image several times, so it
+            // is converted to a single Raster.
+            Raster ras = getData(image.getMinY(), image.getHeight());
+
             // Interlacing pass 1
             encodePass(dos, ras, 0, 0, 8, 8);
             // Interlacing pass 2
@@ -500,7 +507,31 @@ public class PNGImageEncoder extends ImageEncoderImpl {
             // Interlacing pass 7
             encodePass(dos, ras, 0, 1, 1, 2);
         } else {
-            encodePass(dos, ras, 0, 0, 1, 1);
+            // The image is converted and encoded a strip of rows at a
+            // time, following its rows of tiles, so that an image which
+            // computes its tiles on demand is never held in memory as
+            // a whole.
+            int bytesPerRow = startPass(0, 1);
+            if (bytesPerRow != 0) {
+                int y    = image.getMinY();
+                int maxY = y + image.getHeight();
+                int th   = image.getTileHeight();
+                int tgy  = image.getTileGridYOffset();
+                if (th >= image.getHeight()) {
+                    th  = STRIP_HEIGHT;
+                    tgy = y;
+                }
+                while (y < maxY) {
+                    int off = (y - tgy) % th;
+                    if (off < 0) {
+                        off += th;
+                    }
+                    int y1 = Math.min(y + th - off, maxY);
+                    Raster ras = getData(y, y1 - y);
+                    encodeRows(dos, ras, 0, 0, 1, 1, bytesPerRow);
+                    y = y1;
+                }
+            }
         }
 
         dos.finish();
@@ -509,6 +540,33 @@ public class PNGImageEncoder extends ImageEncoderImpl {
         ios.close();
     }
 
+    /**
+     * Returns the given rows of the image, without the alpha band if
+     * it is not written.
+     */
+    private Raster getData(int y, int h) {
+        // It might seem that you could just call image.getData() but
+        // 'BufferedImage.subImage' doesn't appear to set the Width
+        // and height properly of the Child Raster, so the Raster
+        // you get back here appears larger than it should.
+        // This solves that problem by bounding the raster to the
+        // image's bounds...
+        Raster ras = image.getData(new Rectangle(image.getMinX(), y,
+                                                 image.getWidth(), h));
+        if (skipAlpha) {
+            int numBands = ras.getNumBands() - 1;
+            int[] bandList = new int[numBands];
+            for (int i = 0; i < numBands; i++) {
+                bandList[i] = i;
+            }
+            ras = ras.createChild(ras.getMinX(), ras.getMinY(),
+                                  ras.getWidth(), ras.getHeight(),
+                                  ras.getMinX(), ras.getMinY(),
+                                  bandList);
+        }
+        return ras;
+    }
+
     private void writeIEND() throws IOException {
         ChunkStream cs = new ChunkStream("IEND");
         cs.writeToStream(dataOutput);
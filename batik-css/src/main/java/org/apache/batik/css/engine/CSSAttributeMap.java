@@ -0,0 +1,54 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import org.w3c.dom.NamedNodeMap;
+
+/**
+ * An interface for the attribute maps that can give the names and the
+ * values of their attributes without creating their Attr nodes.  The
+ * CSS engine reads the attributes of the elements through it when it
+ * is implemented by the map returned by {@link
+ * org.w3c.dom.Node#getAttributes()}.
+ *
+ * @version $Id$
+ */
+public interface CSSAttributeMap extends NamedNodeMap {
+
+    /**
+     * Returns the namespace URI of the attribute at the given index.
+     */
+    String getNamespaceURI(int index);
+
+    /**
+     * Returns the qualified name of the attribute at the given index.
+     */
+    String getName(int index);
+
+    /**
+     * Returns the local name of the attribute at the given index, or
+     * its qualified name if it has no namespace URI.
+     */
+    String getLocalName(int index);
+
+    /**
+     * Returns the value of the attribute at the given index.
+     */
+    String getValue(int index);
+}
@@ -23,8 +23,11 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.batik.css.engine.sac.CSSConditionFactory;
@@ -38,6 +41,8 @@ import org.apache.batik.css.engine.value.ValueManager;
 import org.apache.batik.css.parser.ExtendedParser;
 import org.apache.batik.util.CSSConstants;
 import org.apache.batik.util.ParsedURL;
+import org.apache.batik.util.WorkerPool;
+import org.apache.batik.util.XMLConstants;
 
 import org.w3c.css.sac.CSSException;
 import org.w3c.css.sac.DocumentHandler;
@@ -318,6 +323,39 @@ public abstract class CSSEngine {
      */
     protected boolean styleSheetRemoved;
 
+    /**
+     * The maximum number of previous siblings looked at to find a
+     * style map an element can share.
+     */
+    protected static final int MAX_SHARING_CANDIDATES = 8;
+
+    /**
+     * The minimum number of elements whose rules are matched by a
+     * task of {@link #precomputeStyles(WorkerPool)}.
+     */
+    protected static final int PRECOMPUTE_CHUNK_SIZE = 256;
+
+    /**
+     * Whether the elements share their style maps when possible.
+     */
+    protected boolean styleSharing = true;
+
+    /**
+     * The number of update batches in progress.
+     */
+    protected int updateBatches;
+
+    /**
+     * The invalidations deferred to the end of the current update
+     * batch, indexed by element, in the order of the first change.
+     */
+    protected Map pendingInvalidations;
+
+    /**
+     * Whether the deferred invalidations are being applied.
+     */
+    protected boolean flushingInvalidations;
+
     /**
      * The right sibling of the last removed node.
      */
@@ -510,6 +548,7 @@ public abstract class CSSEngine {
      */
     public void dispose() {
         setCSSEngineUserAgent(null);
+        pendingInvalidations = null;
         disposeStyleMaps(document.getDocumentElement());
         if (document instanceof EventTarget) {
             // Detach the mutation events listeners.
@@ -618,6 +657,135 @@ public abstract class CSSEngine {
         userStyleSheet = ss;
     }
 
+    /**
+     * Sets whether the elements share their style maps when possible.
+     * The elements having the same parent, name, style attributes and
+     * attributes used by the selectors are given the same map, unless
+     * a selector depends on the position of the elements or on their
+     * state, like the sibling selectors and the pseudo-classes.  The
+     * map is copied when it has to be modified for one of them.
+     */
+    public void setStyleSharing(boolean b) {
+        styleSharing = b;
+    }
+
+    /**
+     * Tells whether the elements share their style maps when possible.
+     */
+    public boolean isStyleSharing() {
+        return styleSharing;
+    }
+
+    /**
+     * Starts a batch of updates.  Until the matching call to {@link
+     * #endUpdateBatch()}, the changes made to the document only mark
+     * the elements whose style is out of date: the styles are computed
+     * again, and the CSSEngineEvents fired, once per element at the
+     * end of the batch.  They are also brought up to date before a
+     * computed value is returned by {@link #getComputedStyle}.
+     * Batches can be nested.
+     */
+    public void beginUpdateBatch() {
+        updateBatches++;
+    }
+
+    /**
+     * Ends a batch of updates started by {@link #beginUpdateBatch()},
+     * and applies the deferred invalidations if it was the outermost
+     * one.
+     */
+    public void endUpdateBatch() {
+        if (updateBatches == 0) {
+            throw new IllegalStateException("No update batch in progress");
+        }
+        if (--updateBatches == 0) {
+            flushInvalidations();
+        }
+    }
+
+    /**
+     * Tells whether a batch of updates is in progress.
+     */
+    public boolean isUpdateBatch() {
+        return updateBatches > 0;
+    }
+
+    /**
+     * Applies the invalidations deferred by the current update batch.
+     */
+    public void flushInvalidations() {
+        if (flushingInvalidations) {
+            return;
+        }
+        flushingInvalidations = true;
+        try {
+            while (pendingInvalidations != null) {
+                Map m = pendingInvalidations;
+                pendingInvalidations = null;
+                Iterator it = m.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry e = (Map.Entry)it.next();
+                    PendingInvalidation pi =
+                        (PendingInvalidation)e.getValue();
+                    invalidateProperties((Node)e.getKey(), null,
+                                         pi.updated, pi.recascade);
+                }
+            }
+        } finally {
+            flushingInvalidations = false;
+        }
+    }
+
+    /**
+     * Records an invalidation to apply at the end of the update batch,
+     * merging it with the ones already recorded for the same element.
+     */
+    protected void deferInvalidation(CSSStylableElement elt,
+                                     int[] properties,
+                                     boolean[] updated,
+                                     boolean recascade) {
+        if (pendingInvalidations == null) {
+            pendingInvalidations = new LinkedHashMap();
+        }
+        PendingInvalidation pi =
+            (PendingInvalidation)pendingInvalidations.get(elt);
+        if (pi == null) {
+            pi = new PendingInvalidation(getNumberOfProperties());
+            pendingInvalidations.put(elt, pi);
+        }
+        if (updated != null) {
+            for (int i = 0; i < updated.length; i++) {
+                pi.updated[i] |= updated[i];
+            }
+        }
+        if (properties != null) {
+            for (int i = 0; i < properties.length; i++) {
+                pi.updated[properties[i]] = true;
+            }
+        }
+        pi.recascade |= recascade;
+    }
+
+    /**
+     * The invalidation of an element deferred by an update batch.
+     */
+    protected static class PendingInvalidation {
+
+        /**
+         * The properties known to have changed.
+         */
+        public boolean[] updated;
+
+        /**
+         * Whether the style sheets must be applied again.
+         */
+        public boolean recascade;
+
+        public PendingInvalidation(int n) {
+            updated = new boolean[n];
+        }
+    }
+
     /**
      * Returns the ValueManagers.
      */
@@ -713,21 +881,30 @@ public abstract class CSSEngine {
      */
     public StyleMap getCascadedStyleMap(CSSStylableElement elt,
                                         String pseudo) {
+        return getCascadedStyleMap(elt, pseudo, matchRules(elt, pseudo));
+    }
+
+    /**
+     * Returns the cascaded style of the given element/pseudo-element.
+     * @param elt The stylable element.
+     * @param pseudo Optional pseudo-element string (null if none).
+     * @param matched The style sheet rules matching the element.
+     */
+    protected StyleMap getCascadedStyleMap(CSSStylableElement elt,
+                                           String pseudo,
+                                           MatchedRules matched) {
         int props = getNumberOfProperties();
         final StyleMap result = new StyleMap(props);
 
         // Apply the user-agent style-sheet to the result.
-        if (userAgentStyleSheet != null) {
-            ArrayList rules = new ArrayList();
-            addMatchingRules(rules, userAgentStyleSheet, elt, pseudo);
-            addRules(elt, pseudo, result, rules, StyleMap.USER_AGENT_ORIGIN);
+        if (matched.userAgentRules != null) {
+            putRules(result, matched.userAgentRules,
+                     StyleMap.USER_AGENT_ORIGIN);
         }
 
         // Apply the user properties style-sheet to the result.
-        if (userStyleSheet != null) {
-            ArrayList rules = new ArrayList();
-            addMatchingRules(rules, userStyleSheet, elt, pseudo);
-            addRules(elt, pseudo, result, rules, StyleMap.USER_ORIGIN);
+        if (matched.userRules != null) {
+            putRules(result, matched.userRules, StyleMap.USER_ORIGIN);
         }
 
         element = elt;
@@ -758,12 +935,12 @@ public abstract class CSSEngine {
                 NamedNodeMap attrs = elt.getAttributes();
                 int len = attrs.getLength();
                 for (int i = 0; i < len; i++) {
-                    Node attr = attrs.item(i);
-                    String an = attr.getNodeName();
+                    String an = getAttributeName(attrs, i);
                     if (nonCSSPresentationalHints.contains(an)) {
+                        String av = getAttributeValue(attrs, i);
                         try {
                             LexicalUnit lu;
-                            lu = parser.parsePropertyValue(attr.getNodeValue());
+                            lu = parser.parsePropertyValue(av);
                             ph.property(an, lu, false);
                         } catch (Exception e) {
                             String m = e.getMessage();
@@ -772,7 +949,7 @@ public abstract class CSSEngine {
                                         documentURI.toString());
                             String s = Messages.formatMessage
                                 ("property.syntax.error.at",
-                                 new Object[] { u, an, attr.getNodeValue(), m});
+                                 new Object[] { u, an, av, m});
                             DOMException de = new DOMException(DOMException.SYNTAX_ERR, s);
                             if (userAgent == null) throw de;
                             userAgent.displayError(de);
@@ -782,23 +959,9 @@ public abstract class CSSEngine {
             }
 
             // Apply the document style-sheets to the result.
-            CSSEngine eng = cssContext.getCSSEngineForElement(elt);
-            List snodes = eng.getStyleSheetNodes();
-            int slen = snodes.size();
-            if (slen > 0) {
-                ArrayList rules = new ArrayList();
-                for (int i = 0; i < slen; i++) {
-                    CSSStyleSheetNode ssn = (CSSStyleSheetNode)snodes.get(i);
-                    StyleSheet ss = ssn.getCSSStyleSheet();
-                    if (ss != null &&
-                        (!ss.isAlternate() ||
-                         ss.getTitle() == null ||
-                         ss.getTitle().equals(alternateStyleSheet)) &&
-                        mediaMatch(ss.getMedia())) {
-                        addMatchingRules(rules, ss, elt, pseudo);
-                    }
-                }
-                addRules(elt, pseudo, result, rules, StyleMap.AUTHOR_ORIGIN);
+            if (matched.authorRules != null) {
+                putRules(result, matched.authorRules,
+                         StyleMap.AUTHOR_ORIGIN);
             }
 
             // Apply the inline style to the result.
@@ -830,12 +993,16 @@ public abstract class CSSEngine {
             }
 
             // Apply the override rules to the result.
+            result.setShareable(pseudo == null);
             StyleDeclarationProvider p =
                 elt.getOverrideStyleDeclarationProvider();
             if (p != null) {
                 StyleDeclaration over = p.getStyleDeclaration();
                 if (over != null) {
                     int ol = over.size();
+                    if (ol > 0) {
+                        result.setShareable(false);
+                    }
                     for (int i = 0; i < ol; i++) {
                         int idx = over.getIndex(i);
                         Value value = over.getValue(i);
@@ -856,6 +1023,172 @@ public abstract class CSSEngine {
         return result;
     }
 
+    /**
+     * Returns the rules of the style sheets that match the given
+     * element/pseudo-element, sorted by specificity.  This only reads
+     * the document, so it can be called from several threads once the
+     * style sheets have been looked up.
+     */
+    protected MatchedRules matchRules(CSSStylableElement elt,
+                                      String pseudo) {
+        MatchedRules result = new MatchedRules();
+        if (userAgentStyleSheet != null) {
+            ArrayList rules = new ArrayList();
+            addMatchingRules(rules, userAgentStyleSheet, elt, pseudo);
+            sortRules(rules, elt, pseudo);
+            result.userAgentRules = rules;
+        }
+        if (userStyleSheet != null) {
+            ArrayList rules = new ArrayList();
+            addMatchingRules(rules, userStyleSheet, elt, pseudo);
+            sortRules(rules, elt, pseudo);
+            result.userRules = rules;
+        }
+        CSSEngine eng = cssContext.getCSSEngineForElement(elt);
+        List snodes = eng.getStyleSheetNodes();
+        int slen = snodes.size();
+        if (slen > 0) {
+            ArrayList rules = new ArrayList();
+            for (int i = 0; i < slen; i++) {
+                CSSStyleSheetNode ssn = (CSSStyleSheetNode)snodes.get(i);
+                StyleSheet ss = ssn.getCSSStyleSheet();
+                if (isActive(ss)) {
+                    addMatchingRules(rules, ss, elt, pseudo);
+                }
+            }
+            sortRules(rules, elt, pseudo);
+            result.authorRules = rules;
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether the rules of the given document style sheet apply.
+     */
+    protected boolean isActive(StyleSheet ss) {
+        return ss != null &&
+            (!ss.isAlternate() ||
+             ss.getTitle() == null ||
+             ss.getTitle().equals(alternateStyleSheet)) &&
+            mediaMatch(ss.getMedia());
+    }
+
+    /**
+     * Computes the style maps of all the elements of the document that
+     * do not have one yet, before they are needed.  The selectors of
+     * the style sheets are matched against groups of elements in
+     * parallel; the style maps are then built in document order by
+     * the calling thread, which also attaches them to the elements, so
+     * that no other thread ever sees them before they are complete.
+     * The document must not be modified during this call.  Errors in
+     * the style of elements that are never rendered are also reported.
+     * @param pool the pool that matches the selectors, or null to
+     *        match them on the calling thread
+     */
+    public void precomputeStyles(WorkerPool pool) {
+        // This also builds on this thread the selector indexes of all
+        // the style sheets, which the tasks would build lazily.
+        List si = getSharingSelectorIndexes();
+        final List indexes = styleSharing ? si : null;
+
+        List l = new ArrayList();
+        findUnstyledElements(document.getDocumentElement(), l);
+        final CSSStylableElement[] elts = new CSSStylableElement[l.size()];
+        l.toArray(elts);
+        final MatchedRules[] matched = new MatchedRules[elts.length];
+
+        int n = elts.length;
+        int tasks = 1;
+        if (pool != null) {
+            tasks = Math.min(pool.getParallelism() * 4,
+                             n / PRECOMPUTE_CHUNK_SIZE + 1);
+        }
+        Runnable[] rs = new Runnable[tasks];
+        for (int t = 0; t < tasks; t++) {
+            final int start = (int)((long)n * t / tasks);
+            final int end = (int)((long)n * (t + 1) / tasks);
+            rs[t] = new Runnable() {
+                    public void run() {
+                        for (int i = start; i < end; i++) {
+                            // Skip the elements likely to share the
+                            // style of a previous sibling.
+                            if (indexes == null ||
+                                findStyleSibling(elts[i], indexes,
+                                                 false) == null) {
+                                matched[i] = matchRules(elts[i], null);
+                            }
+                        }
+                    }
+                };
+        }
+        if (pool == null) {
+            rs[0].run();
+        } else {
+            pool.invokeAll(rs);
+        }
+
+        for (int i = 0; i < n; i++) {
+            CSSStylableElement elt = elts[i];
+            // The rules were matched if no sibling has the same style.
+            StyleMap sm = null;
+            if (matched[i] == null) {
+                sm = findSharedStyleMap(elt);
+            }
+            if (sm == null) {
+                MatchedRules m = matched[i];
+                if (m == null) {
+                    m = matchRules(elt, null);
+                }
+                sm = getCascadedStyleMap(elt, null, m);
+            }
+            elt.setComputedStyleMap(null, sm);
+            matched[i] = null;
+        }
+    }
+
+    /**
+     * Adds to the given list, in document order, the elements of the
+     * given subtree that are styled by this engine and do not have a
+     * style map yet.
+     */
+    protected void findUnstyledElements(Node n, List l) {
+        if (n instanceof CSSStylableElement) {
+            CSSStylableElement elt = (CSSStylableElement)n;
+            if (elt.getComputedStyleMap(null) == null &&
+                cssContext.getCSSEngineForElement(elt) == this) {
+                l.add(elt);
+            }
+        }
+        for (Node c = getCSSFirstChild(n);
+             c != null;
+             c = getCSSNextSibling(c)) {
+            if (c.getNodeType() == Node.ELEMENT_NODE) {
+                findUnstyledElements(c, l);
+            }
+        }
+    }
+
+    /**
+     * The rules of the style sheets that match an element.
+     */
+    protected static class MatchedRules {
+
+        /**
+         * The rules of the user agent style sheet, or null.
+         */
+        public ArrayList userAgentRules;
+
+        /**
+         * The rules of the user style sheet, or null.
+         */
+        public ArrayList userRules;
+
+        /**
+         * The rules of the document style sheets, or null.
+         */
+        public ArrayList authorRules;
+    }
+
     /**
      * Returns the computed style of the given element/pseudo for the
      * property corresponding to the given index.
@@ -863,9 +1196,17 @@ public abstract class CSSEngine {
     public Value getComputedStyle(CSSStylableElement elt,
                                   String pseudo,
                                   int propidx) {
+        if (pendingInvalidations != null) {
+            flushInvalidations();
+        }
         StyleMap sm = elt.getComputedStyleMap(pseudo);
         if (sm == null) {
-            sm = getCascadedStyleMap(elt, pseudo);
+            if (pseudo == null) {
+                sm = findSharedStyleMap(elt);
+            }
+            if (sm == null) {
+                sm = getCascadedStyleMap(elt, pseudo);
+            }
             elt.setComputedStyleMap(pseudo, sm);
         }
 
@@ -892,6 +1233,14 @@ public abstract class CSSEngine {
             // Maybe is it a relative value.
             result = vm.computeValue(elt, pseudo, this, propidx,
                                      sm, result);
+            if (sm.isShared() &&
+                (sm.isBlockWidthRelative(propidx) ||
+                 sm.isBlockHeightRelative(propidx))) {
+                // The value depends on the viewport of the element,
+                // which the other elements may not have.
+                sm = sm.copy();
+                elt.setComputedStyleMap(pseudo, sm);
+            }
         }
         if (value == null) {
             sm.putValue(propidx, result);
@@ -907,6 +1256,243 @@ public abstract class CSSEngine {
         return result;
     }
 
+    /**
+     * Returns the style map of a previous sibling of the given element
+     * that the element can share, or null.
+     */
+    protected StyleMap findSharedStyleMap(CSSStylableElement elt) {
+        if (!styleSharing || hasOverrideStyle(elt)) {
+            return null;
+        }
+        List indexes = getSharingSelectorIndexes();
+        if (indexes == null) {
+            return null;
+        }
+        CSSStylableElement ce = findStyleSibling(elt, indexes, true);
+        if (ce == null) {
+            return null;
+        }
+        StyleMap sm = ce.getComputedStyleMap(null);
+        sm.setShared(true);
+        return sm;
+    }
+
+    /**
+     * Returns the selector indexes of the style sheets, or null if the
+     * elements cannot share their style maps because a selector
+     * depends on the position or the state of the elements.
+     */
+    protected List getSharingSelectorIndexes() {
+        List indexes = new ArrayList(4);
+        if (userAgentStyleSheet != null) {
+            indexes.add(userAgentStyleSheet.getSelectorIndex());
+        }
+        if (userStyleSheet != null) {
+            indexes.add(userStyleSheet.getSelectorIndex());
+        }
+        List snodes = getStyleSheetNodes();
+        for (int i = 0; i < snodes.size(); i++) {
+            StyleSheet ss =
+                ((CSSStyleSheetNode)snodes.get(i)).getCSSStyleSheet();
+            if (ss != null) {
+                indexes.add(ss.getSelectorIndex());
+            }
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            if (((SelectorIndex)indexes.get(i)).isStateDependent()) {
+                return null;
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns a previous sibling of the given element that has the same
+     * style, or null.
+     * @param elt the element
+     * @param indexes the selector indexes of the style sheets
+     * @param computed whether the sibling must have a computed style
+     *        map that can be shared and no override style; when false,
+     *        only the document is read
+     */
+    protected CSSStylableElement findStyleSibling(CSSStylableElement elt,
+                                                  List indexes,
+                                                  boolean computed) {
+        CSSStylableElement parent = getParentCSSStylableElement(elt);
+        if (parent == null ||
+            cssContext.getCSSEngineForElement(elt) != this) {
+            return null;
+        }
+        int n = 0;
+        for (Node c = getCSSPreviousSibling(elt);
+             c != null && n < MAX_SHARING_CANDIDATES;
+             c = getCSSPreviousSibling(c)) {
+            if (c.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            n++;
+            if (!(c instanceof CSSStylableElement)) {
+                continue;
+            }
+            CSSStylableElement ce = (CSSStylableElement)c;
+            StyleMap sm = null;
+            if (computed) {
+                sm = ce.getComputedStyleMap(null);
+                if (sm == null || !sm.isShareable()) {
+                    continue;
+                }
+            }
+            if (!elt.getNodeName().equals(ce.getNodeName()) ||
+                !sameNamespace(elt.getNamespaceURI(), ce.getNamespaceURI()) ||
+                getParentCSSStylableElement(ce) != parent ||
+                !sameStyleAttributes(elt, ce, indexes) ||
+                !sameStyleAttributes(ce, elt, indexes)) {
+                continue;
+            }
+            if (computed &&
+                (hasBlockRelativeValues(sm) || hasOverrideStyle(ce))) {
+                continue;
+            }
+            return ce;
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether the given map has computed values relative to the
+     * viewport of its element.
+     */
+    protected boolean hasBlockRelativeValues(StyleMap sm) {
+        for (int i = getNumberOfProperties() - 1; i >= 0; --i) {
+            if (sm.isBlockWidthRelative(i) || sm.isBlockHeightRelative(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether the given element has override style properties.
+     */
+    protected boolean hasOverrideStyle(CSSStylableElement elt) {
+        StyleDeclarationProvider p =
+            elt.getOverrideStyleDeclarationProvider();
+        if (p == null) {
+            return false;
+        }
+        StyleDeclaration over = p.getStyleDeclaration();
+        return over != null && over.size() > 0;
+    }
+
+    /**
+     * Tells whether the attributes of <code>e1</code> the style of an
+     * element depends on are all present in <code>e2</code> with the
+     * same values.  The DOM is only read.
+     * @param indexes the selector indexes of the style sheets
+     */
+    protected boolean sameStyleAttributes(Element e1, Element e2,
+                                          List indexes) {
+        // getAttributes() may create the map of an element without
+        // attributes, which must not happen on the threads of
+        // precomputeStyles.
+        if (!e1.hasAttributes()) {
+            return true;
+        }
+        NamedNodeMap attrs = e1.getAttributes();
+        int len = attrs.getLength();
+        for (int i = 0; i < len; i++) {
+            String ns, ln;
+            if (attrs instanceof CSSAttributeMap) {
+                CSSAttributeMap map = (CSSAttributeMap)attrs;
+                ns = map.getNamespaceURI(i);
+                ln = map.getLocalName(i);
+            } else {
+                Node a = attrs.item(i);
+                ns = a.getNamespaceURI();
+                ln = a.getLocalName();
+                if (ln == null) {
+                    ln = a.getNodeName();
+                }
+            }
+            if (!isStyleAttribute(getAttributeName(attrs, i), ns, ln,
+                                  indexes)) {
+                continue;
+            }
+            String v = e2.getAttributeNS(ns, ln);
+            if (!getAttributeValue(attrs, i).equals(v) ||
+                (v.length() == 0 && !e2.hasAttributeNS(ns, ln))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the qualified name of the attribute at the given index,
+     * without creating its Attr node if the map allows it.
+     */
+    protected static String getAttributeName(NamedNodeMap attrs, int i) {
+        if (attrs instanceof CSSAttributeMap) {
+            return ((CSSAttributeMap)attrs).getName(i);
+        }
+        return attrs.item(i).getNodeName();
+    }
+
+    /**
+     * Returns the value of the attribute at the given index, without
+     * creating its Attr node if the map allows it.
+     */
+    protected static String getAttributeValue(NamedNodeMap attrs, int i) {
+        if (attrs instanceof CSSAttributeMap) {
+            return ((CSSAttributeMap)attrs).getValue(i);
+        }
+        return attrs.item(i).getNodeValue();
+    }
+
+    /**
+     * Tells whether the style of an element depends on the attribute
+     * with the given name.
+     */
+    protected boolean isStyleAttribute(String name, String ns, String ln,
+                                       List indexes) {
+        if (XMLConstants.XML_NAMESPACE_URI.equals(ns)) {
+            // xml:base, xml:lang...
+            return true;
+        }
+        if (styleLocalName != null && ln.equals(styleLocalName) &&
+            sameNamespace(ns, styleNamespaceURI)) {
+            return true;
+        }
+        if (nonCSSPresentationalHints != null &&
+            nonCSSPresentationalHints.contains(name)) {
+            return true;
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            if (((SelectorIndex)indexes.get(i)).getAttributes().contains(ln)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameNamespace(String ns1, String ns2) {
+        return (ns1 == null) ? ns2 == null : ns1.equals(ns2);
+    }
+
+    /**
+     * Returns the computed style map of the given element, after having
+     * made sure it is not shared with other elements, so that it can be
+     * modified.
+     */
+    protected StyleMap getWritableStyleMap(CSSStylableElement elt) {
+        StyleMap sm = elt.getComputedStyleMap(null);
+        if (sm != null && sm.isShared()) {
+            sm = sm.copy();
+            elt.setComputedStyleMap(null, sm);
+        }
+        return sm;
+    }
+
     /**
      * Returns the document CSSStyleSheetNodes in a list. This list is
      * updated as the document is modified.
@@ -1300,35 +1886,34 @@ public abstract class CSSEngine {
 
     /**
      * Adds the rules matching the element/pseudo-element of given style
-     * sheet to the list.
+     * sheet to the list.  Only the selectors the index of the sheet
+     * gives for the element are tested.
      */
     protected void addMatchingRules(List rules,
                                     StyleSheet ss,
                                     Element elt,
                                     String pseudo) {
-        int len = ss.getSize();
-        for (int i = 0; i < len; i++) {
-            Rule r = ss.getRule(i);
-            switch (r.getType()) {
-            case StyleRule.TYPE:
-                StyleRule style = (StyleRule)r;
-                SelectorList sl = style.getSelectorList();
-                int slen = sl.getLength();
-                for (int j = 0; j < slen; j++) {
-                    ExtendedSelector s = (ExtendedSelector)sl.item(j);
-                    if (s.match(elt, pseudo)) {
-                        rules.add(style);
+        SelectorIndex si = ss.getSelectorIndex();
+        int[] candidates = si.getCandidates(elt);
+        MediaRule[] media = null;
+        boolean mediaMatch = true;
+        for (int i = 0; i < candidates.length; i++) {
+            int c = candidates[i];
+            MediaRule[] m = si.getMediaRules(c);
+            if (m != null) {
+                if (m != media) {
+                    media = m;
+                    mediaMatch = true;
+                    for (int j = 0; mediaMatch && j < m.length; j++) {
+                        mediaMatch = mediaMatch(m[j].getMediaList());
                     }
                 }
-                break;
-
-            case MediaRule.TYPE:
-            case ImportRule.TYPE:
-                MediaRule mr = (MediaRule)r;
-                if (mediaMatch(mr.getMediaList())) {
-                    addMatchingRules(rules, mr, elt, pseudo);
+                if (!mediaMatch) {
+                    continue;
                 }
-                break;
+            }
+            if (si.getSelector(c).match(elt, pseudo)) {
+                rules.add(si.getRule(c));
             }
         }
     }
@@ -1342,6 +1927,13 @@ public abstract class CSSEngine {
                             ArrayList rules,
                             short origin) {
         sortRules(rules, elt, pseudo);
+        putRules(sm, rules, origin);
+    }
+
+    /**
+     * Adds the given rules, already sorted, to a stylemap.
+     */
+    protected void putRules(StyleMap sm, List rules, short origin) {
         int rlen = rules.size();
 
         if (origin == StyleMap.AUTHOR_ORIGIN) {
@@ -1972,6 +2564,11 @@ public abstract class CSSEngine {
         if (style == null)
             return;  // Nothing to invalidate.
 
+        if (updateBatches > 0 && !flushingInvalidations) {
+            deferInvalidation(elt, properties, updated, recascade);
+            return;
+        }
+
         boolean [] diffs = new boolean[getNumberOfProperties()];
         if (updated != null) {
             System.arraycopy( updated, 0, diffs, 0, updated.length );
@@ -2044,7 +2641,7 @@ public abstract class CSSEngine {
         if (!(node instanceof CSSStylableElement))
             return;
         CSSStylableElement elt = (CSSStylableElement)node;
-        StyleMap style = elt.getComputedStyleMap(null);
+        StyleMap style = getWritableStyleMap(elt);
         if (style != null) {
             boolean[] updated =
                 styleDeclarationUpdateHandler.updatedProperties;
@@ -2317,7 +2914,8 @@ public abstract class CSSEngine {
                 if (name.equals(styleLocalName)) {
                     // The style declaration attribute has been modified.
                     inlineStyleAttributeUpdated
-                        (elt, style, attrChange, prevValue, newValue);
+                        (elt, getWritableStyleMap(elt), attrChange,
+                         prevValue, newValue);
                     return;
                 }
             }
@@ -2330,7 +2928,8 @@ public abstract class CSSEngine {
                         // The 'name' attribute which represents a non CSS
                         // presentational hint has been modified.
                         nonCSSPresentationalHintUpdated
-                            (elt, style, name, attrChange, newValue);
+                            (elt, getWritableStyleMap(elt), name,
+                             attrChange, newValue);
                         return;
                     }
                 }
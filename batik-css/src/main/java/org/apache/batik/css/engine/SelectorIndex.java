@@ -0,0 +1,445 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.batik.css.engine.sac.AbstractCombinatorCondition;
+import org.apache.batik.css.engine.sac.AbstractDescendantSelector;
+import org.apache.batik.css.engine.sac.AbstractSiblingSelector;
+import org.apache.batik.css.engine.sac.CSSAndCondition;
+import org.apache.batik.css.engine.sac.CSSClassCondition;
+import org.apache.batik.css.engine.sac.CSSConditionalSelector;
+import org.apache.batik.css.engine.sac.CSSElementSelector;
+import org.apache.batik.css.engine.sac.CSSIdCondition;
+import org.apache.batik.css.engine.sac.CSSLangCondition;
+import org.apache.batik.css.engine.sac.CSSPseudoClassCondition;
+import org.apache.batik.css.engine.sac.ExtendedSelector;
+
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.dom.Element;
+
+/**
+ * This class indexes the selectors of a style sheet by the id, class or
+ * element name their rightmost simple selector requires, so that an
+ * element only has to be tested against the selectors that can match it.
+ *
+ * <p>The selectors of the style rules of the sheet and of its nested
+ * media and import rules are numbered in document order, which is the
+ * order the matching rules must be applied in.</p>
+ *
+ * @version $Id$
+ */
+public class SelectorIndex {
+
+    /**
+     * An empty list of selectors.
+     */
+    protected static final int[] EMPTY = new int[0];
+
+    /**
+     * The style rule of each selector.
+     */
+    protected StyleRule[] rules;
+
+    /**
+     * The selectors.
+     */
+    protected ExtendedSelector[] selectors;
+
+    /**
+     * The media rules enclosing each selector, from the outermost, or
+     * null.  The selectors of a media rule share the same array.
+     */
+    protected MediaRule[][] mediaRules;
+
+    /**
+     * The number of selectors.
+     */
+    protected int size;
+
+    /**
+     * The selectors requiring an id, indexed by id.
+     */
+    protected Map ids = new HashMap();
+
+    /**
+     * The selectors requiring a class, indexed by class.
+     */
+    protected Map classes = new HashMap();
+
+    /**
+     * The selectors requiring an element name, indexed by name.
+     */
+    protected Map names = new HashMap();
+
+    /**
+     * The selectors that can match any element.
+     */
+    protected int[] universal;
+
+    /**
+     * The names of the attributes the selectors depend on.
+     */
+    protected Set attributes = new HashSet();
+
+    /**
+     * Whether a selector depends on more than the attributes and the
+     * ancestors of the element, like the sibling selectors and the
+     * pseudo-classes.
+     */
+    protected boolean stateDependent;
+
+    /**
+     * Creates the index of the given style sheet.
+     */
+    public SelectorIndex(StyleSheet ss) {
+        rules = new StyleRule[16];
+        selectors = new ExtendedSelector[16];
+        mediaRules = new MediaRule[16][];
+        Map universalMap = new HashMap();
+        addRules(ss, null, universalMap);
+        universal = toArray((IntList)universalMap.get(""));
+        ids = toArrays(ids);
+        classes = toArrays(classes);
+        names = toArrays(names);
+    }
+
+    /**
+     * Returns the number of selectors.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the style rule of the given selector.
+     */
+    public StyleRule getRule(int i) {
+        return rules[i];
+    }
+
+    /**
+     * Returns the given selector.
+     */
+    public ExtendedSelector getSelector(int i) {
+        return selectors[i];
+    }
+
+    /**
+     * Returns the names of the attributes the selectors depend on.
+     */
+    public Set getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Tells whether a selector depends on more than the attributes and
+     * the ancestors of the elements.  Two elements with the same
+     * parent and the same attributes match the same selectors when
+     * this returns false.
+     */
+    public boolean isStateDependent() {
+        return stateDependent;
+    }
+
+    /**
+     * Returns the media rules enclosing the given selector, or null.
+     */
+    public MediaRule[] getMediaRules(int i) {
+        return mediaRules[i];
+    }
+
+    /**
+     * Returns, in increasing order, the numbers of the selectors that
+     * can match the given element.  The returned array must not be
+     * modified.
+     */
+    public int[] getCandidates(Element elt) {
+        int[][] lists = new int[4][];
+        int n = 0;
+        if (universal.length > 0) {
+            lists[n++] = universal;
+        }
+        if (!names.isEmpty()) {
+            String name = (elt.getPrefix() == null)
+                ? elt.getNodeName()
+                : elt.getLocalName();
+            int[] l = (int[])names.get(name);
+            if (l != null) {
+                lists[n++] = l;
+            }
+        }
+        if (elt instanceof CSSStylableElement) {
+            CSSStylableElement se = (CSSStylableElement)elt;
+            if (!ids.isEmpty()) {
+                int[] l = (int[])ids.get(se.getXMLId());
+                if (l != null) {
+                    lists[n++] = l;
+                }
+            }
+            if (!classes.isEmpty()) {
+                String cls = se.getCSSClass();
+                int len = cls.length();
+                int i = 0;
+                while (i < len) {
+                    while (i < len && Character.isSpaceChar(cls.charAt(i))) {
+                        i++;
+                    }
+                    int start = i;
+                    while (i < len && !Character.isSpaceChar(cls.charAt(i))) {
+                        i++;
+                    }
+                    if (i > start) {
+                        int[] l = (int[])classes.get(cls.substring(start, i));
+                        if (l != null) {
+                            if (n == lists.length) {
+                                int[][] t = new int[n * 2][];
+                                System.arraycopy(lists, 0, t, 0, n);
+                                lists = t;
+                            }
+                            lists[n++] = l;
+                        }
+                    }
+                }
+            }
+        }
+
+        switch (n) {
+        case 0:
+            return EMPTY;
+        case 1:
+            return lists[0];
+        }
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            total += lists[i].length;
+        }
+        int[] result = new int[total];
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(lists[i], 0, result, pos, lists[i].length);
+            pos += lists[i].length;
+        }
+        Arrays.sort(result);
+        // A class may be given more than once.
+        int len = 1;
+        for (int i = 1; i < total; i++) {
+            if (result[i] != result[len - 1]) {
+                result[len++] = result[i];
+            }
+        }
+        if (len < total) {
+            int[] t = new int[len];
+            System.arraycopy(result, 0, t, 0, len);
+            result = t;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the selectors of the given style sheet to the index.
+     */
+    protected void addRules(StyleSheet ss, MediaRule[] media,
+                            Map universalMap) {
+        int len = ss.getSize();
+        for (int i = 0; i < len; i++) {
+            Rule r = ss.getRule(i);
+            switch (r.getType()) {
+            case StyleRule.TYPE:
+                StyleRule style = (StyleRule)r;
+                SelectorList sl = style.getSelectorList();
+                int slen = sl.getLength();
+                for (int j = 0; j < slen; j++) {
+                    ExtendedSelector s = (ExtendedSelector)sl.item(j);
+                    add(style, s, media, universalMap);
+                }
+                break;
+
+            case MediaRule.TYPE:
+            case ImportRule.TYPE:
+                MediaRule mr = (MediaRule)r;
+                MediaRule[] m;
+                if (media == null) {
+                    m = new MediaRule[] { mr };
+                } else {
+                    m = new MediaRule[media.length + 1];
+                    System.arraycopy(media, 0, m, 0, media.length);
+                    m[media.length] = mr;
+                }
+                addRules(mr, m, universalMap);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds a selector to the index.
+     */
+    protected void add(StyleRule rule, ExtendedSelector s, MediaRule[] media,
+                       Map universalMap) {
+        if (size == rules.length) {
+            int n = size * 2;
+            StyleRule[] r = new StyleRule[n];
+            System.arraycopy(rules, 0, r, 0, size);
+            rules = r;
+            ExtendedSelector[] t = new ExtendedSelector[n];
+            System.arraycopy(selectors, 0, t, 0, size);
+            selectors = t;
+            MediaRule[][] m = new MediaRule[n][];
+            System.arraycopy(mediaRules, 0, m, 0, size);
+            mediaRules = m;
+        }
+        rules[size] = rule;
+        selectors[size] = s;
+        mediaRules[size] = media;
+        s.fillAttributeSet(attributes);
+
+        Selector ss = s;
+        for (;;) {
+            if (ss instanceof AbstractDescendantSelector) {
+                ss = ((AbstractDescendantSelector)ss).getSimpleSelector();
+            } else if (ss instanceof AbstractSiblingSelector) {
+                ss = ((AbstractSiblingSelector)ss).getSiblingSelector();
+                stateDependent = true;
+            } else {
+                break;
+            }
+        }
+        if (ss instanceof CSSConditionalSelector
+                && isStateDependent
+                    (((CSSConditionalSelector)ss).getCondition())) {
+            stateDependent = true;
+        }
+        Map map = universalMap;
+        String key = "";
+        if (ss instanceof CSSConditionalSelector) {
+            CSSConditionalSelector cs = (CSSConditionalSelector)ss;
+            Condition c = cs.getCondition();
+            String k = findKey(c, true);
+            if (k != null) {
+                map = ids;
+                key = k;
+            } else if ((k = findKey(c, false)) != null) {
+                map = classes;
+                key = k;
+            } else {
+                ss = cs.getSimpleSelector();
+            }
+        }
+        if (map == universalMap && ss instanceof CSSElementSelector) {
+            String name = ((CSSElementSelector)ss).getLocalName();
+            if (name != null) {
+                map = names;
+                key = name;
+            }
+        }
+        IntList l = (IntList)map.get(key);
+        if (l == null) {
+            l = new IntList();
+            map.put(key, l);
+        }
+        l.add(size++);
+    }
+
+    /**
+     * Returns the value of an id or class condition required by the
+     * given condition, or null.
+     */
+    protected static String findKey(Condition c, boolean id) {
+        if (c instanceof CSSAndCondition) {
+            CSSAndCondition ac = (CSSAndCondition)c;
+            String k = findKey(ac.getFirstCondition(), id);
+            if (k != null) {
+                return k;
+            }
+            return findKey(ac.getSecondCondition(), id);
+        }
+        if (id && c instanceof CSSIdCondition) {
+            return ((CSSIdCondition)c).getValue();
+        }
+        if (!id && c instanceof CSSClassCondition) {
+            return ((CSSClassCondition)c).getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether the given condition depends on more than the
+     * attributes of an element.
+     */
+    protected static boolean isStateDependent(Condition c) {
+        if (c instanceof AbstractCombinatorCondition) {
+            AbstractCombinatorCondition cc = (AbstractCombinatorCondition)c;
+            return isStateDependent(cc.getFirstCondition())
+                || isStateDependent(cc.getSecondCondition());
+        }
+        return c instanceof CSSPseudoClassCondition
+            || c instanceof CSSLangCondition;
+    }
+
+    /**
+     * Replaces the lists of a map by arrays.
+     */
+    protected static Map toArrays(Map m) {
+        Map result = new HashMap(m.size() * 2 + 1);
+        Iterator it = m.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry e = (Map.Entry)it.next();
+            result.put(e.getKey(), toArray((IntList)e.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the content of the given list, or an empty array.
+     */
+    protected static int[] toArray(IntList l) {
+        if (l == null) {
+            return EMPTY;
+        }
+        int[] result = new int[l.size];
+        System.arraycopy(l.values, 0, result, 0, l.size);
+        return result;
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    protected static class IntList {
+        protected int[] values = new int[4];
+        protected int size;
+
+        public void add(int v) {
+            if (size == values.length) {
+                int[] t = new int[size * 2];
+                System.arraycopy(values, 0, t, 0, size);
+                values = t;
+            }
+            values[size++] = v;
+        }
+    }
+}
@@ -72,6 +72,18 @@ public class StyleMap {
      */
     protected boolean fixedCascadedValues;
 
+    /**
+     * Whether this map only depends on the parent, the attributes and
+     * the ancestors of its element, so that it can be shared with the
+     * elements having the same ones.
+     */
+    protected boolean shareable;
+
+    /**
+     * Whether this map is used by more than one element.
+     */
+    protected boolean shared;
+
     /**
      * Creates a new StyleMap.
      */
@@ -94,6 +106,46 @@ public class StyleMap {
         fixedCascadedValues = b;
     }
 
+    /**
+     * Tells whether this map can be shared with other elements.
+     */
+    public boolean isShareable() {
+        return shareable;
+    }
+
+    /**
+     * Sets whether this map can be shared with other elements.
+     */
+    public void setShareable(boolean b) {
+        shareable = b;
+    }
+
+    /**
+     * Tells whether this map is used by more than one element, in which
+     * case it must be copied before being modified for one of them.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Sets whether this map is used by more than one element.
+     */
+    public void setShared(boolean b) {
+        shared = b;
+    }
+
+    /**
+     * Returns a copy of this map, which is neither shared nor shareable.
+     */
+    public StyleMap copy() {
+        StyleMap sm = new StyleMap(0);
+        sm.values = (Value[])values.clone();
+        sm.masks = (short[])masks.clone();
+        sm.fixedCascadedValues = fixedCascadedValues;
+        return sm;
+    }
+
     /**
      * Returns the value at the given index, null if unspecified.
      */
@@ -58,6 +58,11 @@ public class StyleSheet {
      */
     protected String title;
 
+    /**
+     * The index of the selectors of this sheet, built on demand.
+     */
+    protected volatile SelectorIndex selectorIndex;
+
     /**
      * Sets the media to use to compute the styles.
      */
@@ -134,6 +139,7 @@ public class StyleSheet {
     public void clear() {
         size = 0;
         rules = new Rule[10];
+        invalidateSelectorIndex();
     }
 
     /**
@@ -146,6 +152,30 @@ public class StyleSheet {
             rules = t;
         }
         rules[size++] = r;
+        invalidateSelectorIndex();
+    }
+
+    /**
+     * Returns the index of the selectors of this sheet and of its
+     * nested sheets.
+     */
+    public SelectorIndex getSelectorIndex() {
+        SelectorIndex si = selectorIndex;
+        if (si == null) {
+            si = new SelectorIndex(this);
+            selectorIndex = si;
+        }
+        return si;
+    }
+
+    /**
+     * Discards the selector index of this sheet and of the sheets
+     * containing it.
+     */
+    protected void invalidateSelectorIndex() {
+        for (StyleSheet ss = this; ss != null; ss = ss.parent) {
+            ss.selectorIndex = null;
+        }
     }
 
     /**
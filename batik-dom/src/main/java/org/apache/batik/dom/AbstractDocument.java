@@ -42,6 +42,7 @@ import org.apache.batik.i18n.Localizable;
 import org.apache.batik.i18n.LocalizableSupport;
 import org.apache.batik.util.CleanerThread;
 import org.apache.batik.util.DOMConstants;
+import org.apache.batik.util.DoublyIndexedTable;
 import org.apache.batik.util.SoftDoublyIndexedTable;
 import org.apache.batik.util.XMLConstants;
 
@@ -126,6 +127,12 @@ public abstract class AbstractDocument
      */
     protected transient boolean eventsEnabled;
 
+    /**
+     * Whether this document is only rendered, neither scripted nor
+     * animated.
+     */
+    protected transient boolean isStatic;
+
     /**
      * The ElementsByTagName lists.
      */
@@ -136,6 +143,29 @@ public abstract class AbstractDocument
      */
     protected transient WeakHashMap elementsByTagNamesNS;
 
+    /**
+     * The value returned by the element index for the names that no
+     * element has.
+     */
+    protected static final Node[] EMPTY_ELEMENTS = new Node[0];
+
+    /**
+     * The elements of the document tree by qualified name, or null if
+     * they must be collected again.
+     */
+    protected transient HashMap elementIndex;
+
+    /**
+     * The elements of the document tree by namespace URI and local
+     * name, or null if they must be collected again.
+     */
+    protected transient DoublyIndexedTable elementIndexNS;
+
+    /**
+     * All the elements of the document tree, in document order.
+     */
+    protected transient Node[] allElements;
+
     /**
      * Input encoding of this document.
      */
@@ -258,6 +288,52 @@ public abstract class AbstractDocument
         eventsEnabled = b;
     }
 
+    /**
+     * Tests whether this document is only rendered, neither scripted
+     * nor animated.
+     */
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    /**
+     * Sets whether this document is only rendered, neither scripted nor
+     * animated.  The elements created while it is set do not keep what
+     * they would need to follow the modifications of their attributes,
+     * like the live values of the SVG DOM, so their attributes should
+     * not change once they have been read.
+     */
+    public void setStatic(boolean b) {
+        isStatic = b;
+    }
+
+    /**
+     * Releases the memory that the elements of the tree reserved for
+     * the attributes that could be added to them.  It is meant for the
+     * documents that are not modified once built.
+     */
+    public void trimToSize() {
+        Node n = getFirstChild();
+        while (n != null) {
+            if (n instanceof AbstractElement) {
+                ((AbstractElement)n).trimToSize();
+            }
+            Node c = n.getFirstChild();
+            if (c == null) {
+                while (n != null && n.getNextSibling() == null) {
+                    n = n.getParentNode();
+                    if (n == this) {
+                        n = null;
+                    }
+                }
+                if (n != null) {
+                    c = n.getNextSibling();
+                }
+            }
+            n = c;
+        }
+    }
+
     /**
      * <b>DOM</b>: Implements {@link org.w3c.dom.Node#getNodeName()}.
      * @return "#document".
@@ -451,6 +527,15 @@ public abstract class AbstractDocument
      */
     public abstract boolean isId(Attr node);
 
+    /**
+     * Returns whether the attribute with the given namespace URI and
+     * qualified name is an ID attribute.  It is used for the attributes
+     * that have no Attr node, and must agree with {@link #isId(Attr)}.
+     */
+    public boolean isId(String ns, String qname) {
+        return isId(createAttributeNS(ns, qname));
+    }
+
     /**
      * <b>DOM</b>: Implements {@link
      * org.w3c.dom.Document#getElementById(String)}.
@@ -686,6 +771,121 @@ public abstract class AbstractDocument
         t.put(ns, ln, l);
     }
 
+    /**
+     * Returns the elements of the document tree with the given
+     * qualified name, or all of them if the name is <code>"*"</code>,
+     * in document order.  The returned array must not be modified.
+     */
+    public Node[] getIndexedElementsByTagName(String name) {
+        if (elementIndex == null) {
+            buildElementIndex();
+        }
+        if (name.equals("*")) {
+            return allElements;
+        }
+        Object o = elementIndex.get(name);
+        return (o == null) ? EMPTY_ELEMENTS : (Node[])o;
+    }
+
+    /**
+     * Returns the elements of the document tree with the given
+     * namespace URI and local name, in document order, or null if the
+     * index cannot answer because only one of the names is
+     * <code>"*"</code>.  The returned array must not be modified.
+     */
+    public Node[] getIndexedElementsByTagNameNS(String ns, String ln) {
+        boolean anyNS = "*".equals(ns);
+        boolean anyName = ln.equals("*");
+        if (anyNS != anyName) {
+            return null;
+        }
+        if (elementIndex == null) {
+            buildElementIndex();
+        }
+        if (anyNS) {
+            return allElements;
+        }
+        Object o = elementIndexNS.get(ns, ln);
+        return (o == null) ? EMPTY_ELEMENTS : (Node[])o;
+    }
+
+    /**
+     * Drops the element index, after an element was added to or removed
+     * from the tree.
+     */
+    public void invalidateElementIndex() {
+        elementIndex = null;
+        elementIndexNS = null;
+        allElements = null;
+    }
+
+    /**
+     * Collects the elements of the document tree by name, with a single
+     * traversal.
+     */
+    protected void buildElementIndex() {
+        HashMap byName = new HashMap();
+        DoublyIndexedTable byNameNS = new DoublyIndexedTable();
+        List all = new ArrayList();
+        Node n = getFirstChild();
+        while (n != null) {
+            if (n.getNodeType() == ELEMENT_NODE) {
+                all.add(n);
+                String ns = n.getNamespaceURI();
+                String nm = n.getNodeName();
+                String ln = (ns == null) ? nm : n.getLocalName();
+                List l = (List)byName.get(nm);
+                if (l == null) {
+                    byName.put(nm, l = new ArrayList());
+                }
+                l.add(n);
+                l = (List)byNameNS.get(ns, ln);
+                if (l == null) {
+                    byNameNS.put(ns, ln, l = new ArrayList());
+                }
+                l.add(n);
+            }
+            Node c = n.getFirstChild();
+            if (c == null) {
+                while (n != null && n.getNextSibling() == null) {
+                    n = n.getParentNode();
+                    if (n == this) {
+                        n = null;
+                    }
+                }
+                if (n != null) {
+                    c = n.getNextSibling();
+                }
+            }
+            n = c;
+        }
+        Iterator it = byName.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry e = (Map.Entry)it.next();
+            List l = (List)e.getValue();
+            e.setValue(l.toArray(new Node[l.size()]));
+        }
+        it = byNameNS.iterator();
+        while (it.hasNext()) {
+            DoublyIndexedTable.Entry e = (DoublyIndexedTable.Entry)it.next();
+            List l = (List)e.getValue();
+            byNameNS.put(e.getKey1(), e.getKey2(),
+                         l.toArray(new Node[l.size()]));
+        }
+        allElements = (Node[])all.toArray(new Node[all.size()]);
+        elementIndexNS = byNameNS;
+        elementIndex = byName;
+    }
+
+    /**
+     * Called when a child node has been added.
+     */
+    protected void nodeAdded(Node n) {
+        if (n.getNodeType() == ELEMENT_NODE) {
+            invalidateElementIndex();
+        }
+    }
+
     // DocumentEvent /////////////////////////////////////////////////////////
 
     /**
@@ -770,6 +970,9 @@ public abstract class AbstractDocument
      * Notifies this document that a node will be removed.
      */
     public void nodeToBeRemoved(Node node) {
+        if (node.getNodeType() == ELEMENT_NODE) {
+            invalidateElementIndex();
+        }
         if (traversalSupport != null) {
             traversalSupport.nodeToBeRemoved(node);
         }
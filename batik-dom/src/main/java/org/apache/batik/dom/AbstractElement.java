@@ -20,8 +20,10 @@ package org.apache.batik.dom;
 
 import java.io.Serializable;
 
+import org.apache.batik.css.engine.CSSAttributeMap;
 import org.apache.batik.dom.events.DOMMutationEvent;
 import org.apache.batik.dom.util.DOMUtilities;
+import org.apache.batik.dom.util.XMLSupport;
 import org.apache.batik.util.XMLConstants;
 
 import org.w3c.dom.Attr;
@@ -113,6 +115,9 @@ public abstract class AbstractElement
      * <b>DOM</b>: Implements {@link org.w3c.dom.Element#hasAttribute(String)}.
      */
     public boolean hasAttribute( String name ) {
+        if ( attributes instanceof NamedNodeHashMap ) {
+            return ( (NamedNodeHashMap)attributes ).indexOf( null, name ) != -1;
+        }
         return attributes != null && attributes.getNamedItem( name ) != null;
     }
 
@@ -123,6 +128,11 @@ public abstract class AbstractElement
         if ( attributes == null ) {
           return "";
         }
+        if ( attributes instanceof NamedNodeHashMap ) {
+            NamedNodeHashMap map = (NamedNodeHashMap)attributes;
+            int i = map.indexOf( null, name );
+            return ( i == -1 ) ? "" : map.getValue( i );
+        }
         Attr attr = (Attr)attributes.getNamedItem( name );
         return ( attr == null ) ? "" : attr.getValue();
     }
@@ -135,6 +145,11 @@ public abstract class AbstractElement
         if (attributes == null) {
             attributes = createAttributes();
         }
+        NamedNodeHashMap map = getCompactAttributes();
+        if (map != null) {
+            map.setAttributeValue(null, name, value, true);
+            return;
+        }
         Attr attr = getAttributeNode(name);
         if (attr == null) {
             attr = getOwnerDocument().createAttribute(name);
@@ -222,6 +237,10 @@ public abstract class AbstractElement
         if ( namespaceURI != null && namespaceURI.length() == 0 ) {
             namespaceURI = null;
         }
+        if ( attributes instanceof NamedNodeHashMap ) {
+            return ( (NamedNodeHashMap)attributes ).indexOf( namespaceURI,
+                                                             localName ) != -1;
+        }
         return attributes != null &&
                 attributes.getNamedItemNS( namespaceURI, localName ) != null;
     }
@@ -237,6 +256,11 @@ public abstract class AbstractElement
         if ( namespaceURI != null && namespaceURI.length() == 0 ) {
             namespaceURI = null;
         }
+        if ( attributes instanceof NamedNodeHashMap ) {
+            NamedNodeHashMap map = (NamedNodeHashMap)attributes;
+            int i = map.indexOf( namespaceURI, localName );
+            return ( i == -1 ) ? "" : map.getValue( i );
+        }
         Attr attr = (Attr)attributes.getNamedItemNS( namespaceURI, localName );
         return ( attr == null ) ? "" : attr.getValue();
     }
@@ -255,6 +279,11 @@ public abstract class AbstractElement
         if (namespaceURI != null && namespaceURI.length() == 0) {
             namespaceURI = null;
         }
+        NamedNodeHashMap map = getCompactAttributes();
+        if (map != null) {
+            map.setAttributeValue(namespaceURI, qualifiedName, value, true);
+            return;
+        }
         Attr attr = getAttributeNodeNS(namespaceURI, qualifiedName);
         if (attr == null) {
             attr = getOwnerDocument().createAttributeNS(namespaceURI,
@@ -444,6 +473,11 @@ public abstract class AbstractElement
             return;
         }
         AbstractDocument ad = getCurrentDocument();
+        ad.invalidateElementIndex();
+        if (ad.elementsByTagNames == null && ad.elementsByTagNamesNS == null) {
+            // No list has been requested, so none needs invalidating.
+            return;
+        }
         String ns = node.getNamespaceURI();
         String nm = node.getNodeName();
         String ln = (ns == null) ? node.getNodeName() : node.getLocalName();
@@ -497,6 +531,30 @@ public abstract class AbstractElement
         return new NamedNodeHashMap();
     }
 
+    /**
+     * Releases the memory reserved for the attributes that could be
+     * added to this element.
+     */
+    protected void trimToSize() {
+        if (attributes instanceof NamedNodeHashMap) {
+            ((NamedNodeHashMap)attributes).trimToSize();
+        }
+    }
+
+    /**
+     * Returns the attribute list if attributes can be set without
+     * creating their Attr nodes, or null.  This is the case while the
+     * document does not dispatch mutation events, since nothing can then
+     * observe the nodes.
+     */
+    protected NamedNodeHashMap getCompactAttributes() {
+        if (!(attributes instanceof NamedNodeHashMap) ||
+            getCurrentDocument().getEventsEnabled()) {
+            return null;
+        }
+        return (NamedNodeHashMap)attributes;
+    }
+
     /**
      * Exports this node to the given document.
      * @param n The clone node.
@@ -504,21 +562,7 @@ public abstract class AbstractElement
      */
     protected Node export(Node n, AbstractDocument d) {
         super.export(n, d);
-        AbstractElement ae = (AbstractElement)n;
-        if (attributes != null) {
-            NamedNodeMap map = attributes;
-            for (int i = map.getLength() - 1; i >= 0; i--) {
-                AbstractAttr aa = (AbstractAttr)map.item(i);
-                if (aa.getSpecified()) {
-                    Attr attr = (Attr)aa.deepExport(aa.cloneNode(false), d);
-                    if (aa instanceof AbstractAttrNS) {
-                        ae.setAttributeNodeNS(attr);
-                    } else {
-                        ae.setAttributeNode(attr);
-                    }
-                }
-            }
-        }
+        exportAttributes((AbstractElement)n, d);
         return n;
     }
 
@@ -529,21 +573,7 @@ public abstract class AbstractElement
      */
     protected Node deepExport(Node n, AbstractDocument d) {
         super.deepExport(n, d);
-        AbstractElement ae = (AbstractElement)n;
-        if (attributes != null) {
-            NamedNodeMap map = attributes;
-            for (int i = map.getLength() - 1; i >= 0; i--) {
-                AbstractAttr aa = (AbstractAttr)map.item(i);
-                if (aa.getSpecified()) {
-                    Attr attr = (Attr)aa.deepExport(aa.cloneNode(false), d);
-                    if (aa instanceof AbstractAttrNS) {
-                        ae.setAttributeNodeNS(attr);
-                    } else {
-                        ae.setAttributeNode(attr);
-                    }
-                }
-            }
-        }
+        exportAttributes((AbstractElement)n, d);
         return n;
     }
 
@@ -553,18 +583,7 @@ public abstract class AbstractElement
      */
     protected Node copyInto(Node n) {
         super.copyInto(n);
-        AbstractElement ae = (AbstractElement)n;
-        if (attributes != null) {
-            NamedNodeMap map = attributes;
-            for (int i = map.getLength() - 1; i >= 0; i--) {
-                AbstractAttr aa = (AbstractAttr)map.item(i).cloneNode(true);
-                if (aa instanceof AbstractAttrNS) {
-                    ae.setAttributeNodeNS(aa);
-                } else {
-                    ae.setAttributeNode(aa);
-                }
-            }
-        }
+        copyAttributes((AbstractElement)n);
         return n;
     }
 
@@ -574,19 +593,86 @@ public abstract class AbstractElement
      */
     protected Node deepCopyInto(Node n) {
         super.deepCopyInto(n);
-        AbstractElement ae = (AbstractElement)n;
-        if (attributes != null) {
-            NamedNodeMap map = attributes;
-            for (int i = map.getLength() - 1; i >= 0; i--) {
-                AbstractAttr aa = (AbstractAttr)map.item(i).cloneNode(true);
+        copyAttributes((AbstractElement)n);
+        return n;
+    }
+
+    /**
+     * Exports the specified attributes of this element to the given
+     * element.  The attributes that have no Attr node are exported
+     * without creating one, when possible.
+     * @param ae The clone element.
+     * @param d The destination document.
+     */
+    protected void exportAttributes(AbstractElement ae, AbstractDocument d) {
+        if (attributes == null || attributes.getLength() == 0) {
+            return;
+        }
+        if (ae.attributes == null) {
+            ae.attributes = ae.createAttributes();
+        }
+        NamedNodeMap map = attributes;
+        NamedNodeHashMap values = (map instanceof NamedNodeHashMap)
+            ? ae.getCompactAttributes()
+            : null;
+        int len = map.getLength();
+        for (int i = 0; i < len; i++) {
+            if (values != null && !((NamedNodeHashMap)map).hasNode(i)) {
+                NamedNodeHashMap m = (NamedNodeHashMap)map;
+                if (m.getSpecified(i)) {
+                    values.setAttributeValue(m.getNamespaceURI(i),
+                                             m.getName(i),
+                                             m.getValue(i),
+                                             true);
+                }
+                continue;
+            }
+            AbstractAttr aa = (AbstractAttr)map.item(i);
+            if (aa.getSpecified()) {
+                Attr attr = (Attr)aa.deepExport(aa.cloneNode(false), d);
                 if (aa instanceof AbstractAttrNS) {
-                    ae.setAttributeNodeNS(aa);
+                    ae.setAttributeNodeNS(attr);
                 } else {
-                    ae.setAttributeNode(aa);
+                    ae.setAttributeNode(attr);
                 }
             }
         }
-        return n;
+    }
+
+    /**
+     * Copies the attributes of this element into the given element.  The
+     * attributes that have no Attr node are copied without creating one,
+     * when possible.
+     * @param ae The clone element.
+     */
+    protected void copyAttributes(AbstractElement ae) {
+        if (attributes == null || attributes.getLength() == 0) {
+            return;
+        }
+        if (ae.attributes == null) {
+            ae.attributes = ae.createAttributes();
+        }
+        NamedNodeMap map = attributes;
+        NamedNodeHashMap values = (map instanceof NamedNodeHashMap)
+            ? ae.getCompactAttributes()
+            : null;
+        int len = map.getLength();
+        for (int i = 0; i < len; i++) {
+            if (values != null && !((NamedNodeHashMap)map).hasNode(i)) {
+                NamedNodeHashMap m = (NamedNodeHashMap)map;
+                values.setAttributeValue(m.getNamespaceURI(i),
+                                         m.getName(i),
+                                         m.getValue(i),
+                                         m.getSpecified(i));
+                continue;
+            }
+            AbstractAttr aa = (AbstractAttr)map.item(i).cloneNode(true);
+            if (aa instanceof AbstractAttrNS) {
+                ae.setAttributeNodeNS(aa);
+            } else {
+                ae.setAttributeNode(aa);
+            }
+        }
     }
 
     /**
@@ -680,6 +766,20 @@ public abstract class AbstractElement
     protected void attrRemoved(Attr node, String oldv) {
     }
 
+    /**
+     * Called when an attribute that has no Attr node has been added or
+     * modified.
+     * @param ns The attribute's namespace URI.
+     * @param ln The attribute's local name, or its qualified name if it
+     *        has no namespace URI.
+     * @param oldv The old value of the attribute, or null if it has been
+     *        added.
+     * @param newv The new value of the attribute.
+     */
+    protected void attrValueChanged(String ns, String ln,
+                                    String oldv, String newv) {
+    }
+
     // ElementTraversal //////////////////////////////////////////////////////
 
     /**
@@ -749,10 +849,19 @@ public abstract class AbstractElement
     /**
      * An implementation of the {@link org.w3c.dom.NamedNodeMap}.
      *
+     * <p>The attributes are kept in parallel arrays, in the order they
+     * were added.  An attribute set while the document does not dispatch
+     * mutation events, as it is while a document is parsed, is only
+     * stored as its names and value: its Attr node is created the first
+     * time a DOM method returns it.  Attributes are looked up by a
+     * linear scan of their keys, which is the fastest for the few
+     * attributes of most elements, or through a hash index once there
+     * are more than INDEX_THRESHOLD of them.</p>
+     *
      * <br>This Map is not Thread-safe, concurrent updates or reading while updating may give
      * unexpected results.
      */
-    public class NamedNodeHashMap implements NamedNodeMap, Serializable {
+    public class NamedNodeHashMap implements CSSAttributeMap, Serializable {
 
         /**
          * The initial capacity
@@ -760,9 +869,53 @@ public abstract class AbstractElement
         protected static final int INITIAL_CAPACITY = 3;
 
         /**
-         * The underlying array
+         * The number of entries above which they are looked up through
+         * the index table instead of a linear scan of the keys.
+         */
+        protected static final int INDEX_THRESHOLD = 8;
+
+        /**
+         * The namespace URIs of the attributes.
          */
-        protected Entry[] table;
+        protected String[] namespaceURIs;
+
+        /**
+         * The qualified names of the attributes.
+         */
+        protected String[] names;
+
+        /**
+         * The keys of the attributes: their local names, or their
+         * qualified names if they have no namespace URI.
+         */
+        protected String[] keys;
+
+        /**
+         * The values of the attributes that have no Attr node.
+         */
+        protected String[] values;
+
+        /**
+         * Whether the attributes that have no Attr node were not
+         * specified in the original document, or null if all of them
+         * were.
+         */
+        protected boolean[] unspecified;
+
+        /**
+         * The Attr nodes of the attributes, or null if none has been
+         * created.
+         */
+        protected Node[] nodes;
+
+        /**
+         * The index table of the keys, or null while there are no more
+         * than INDEX_THRESHOLD entries.  It is an open addressing table
+         * of the positions of the entries plus one, with zero for free
+         * slots, at most half full.  It is only written when the map is
+         * modified, so that concurrent lookups never change it.
+         */
+        protected int[] table;
 
         /**
          * The number of entries
@@ -773,7 +926,6 @@ public abstract class AbstractElement
          * Creates a new NamedNodeHashMap object.
          */
         public NamedNodeHashMap() {
-                  table = new Entry[INITIAL_CAPACITY];
         }
 
         /**
@@ -812,20 +964,7 @@ public abstract class AbstractElement
             if ( index < 0 || index >= count ) {
                 return null;
             }
-            int j = 0;
-            for ( int i = 0; i < table.length; i++ ) {
-                Entry e = table[ i ];
-                if ( e == null ) {
-                    continue;
-                }
-                do {
-                    if ( j++ == index ) {
-                        return e.value;
-                    }
-                    e = e.next;
-                } while ( e != null );
-            }
-            return null;
+            return getNode( index );
         }
 
         /**
@@ -921,6 +1060,155 @@ public abstract class AbstractElement
             return result;
     }
 
+        /**
+         * Sets the value of an attribute without creating its Attr node
+         * if it has none.  The attribute is added if it is not in the
+         * map.  This must only be called while the document does not
+         * dispatch mutation events, since no event is fired.
+         *
+         * @param ns The attribute namespace URI, or null.
+         * @param qname The attribute's qualified name.
+         * @param value The attribute's value.
+         * @param specified Whether the attribute was specified in the
+         *        original document.
+         */
+        public void setAttributeValue( String ns, String qname, String value,
+                                       boolean specified )
+                throws DOMException {
+            if ( specified && isReadonly() ) {
+                throw createDOMException
+                        ( DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                                "readonly.node.map",
+                                new Object[]{} );
+            }
+            if ( value == null ) {
+                value = "";
+            }
+            String ln = ( ns == null ) ? qname : DOMUtilities.getLocalName( qname );
+            int i = indexOf( ns, ln );
+            if ( i != -1 ) {
+                AbstractAttr a = ( nodes == null ) ? null : (AbstractAttr)nodes[ i ];
+                if ( a != null ) {
+                    a.setNodeValue( value );
+                    a.setSpecified( specified );
+                    return;
+                }
+                String oldv = values[ i ];
+                values[ i ] = value;
+                setSpecified( i, specified );
+                if ( ownerDocument.isId( ns, names[ i ] ) ) {
+                    ownerDocument.updateIdEntry( AbstractElement.this,
+                                                 oldv, value );
+                }
+                attrValueChanged( ns, ln, oldv, value );
+                return;
+            }
+
+            checkName( ns, qname );
+            if ( ns != null ) {
+                ns = ns.intern();
+                ln = ln.intern();
+            }
+            qname = qname.intern();
+            if ( ns == null ) {
+                ln = qname;
+            }
+            i = add( ns, qname, ln );
+            values[ i ] = value;
+            setSpecified( i, specified );
+            if ( ownerDocument.isId( ns, qname ) ) {
+                ownerDocument.addIdEntry( AbstractElement.this, value );
+            }
+            attrValueChanged( ns, ln, null, value );
+        }
+
+        /**
+         * Returns the namespace URI of the attribute at the given index.
+         */
+        public String getNamespaceURI( int index ) {
+            return namespaceURIs[ index ];
+        }
+
+        /**
+         * Returns the qualified name of the attribute at the given index.
+         */
+        public String getName( int index ) {
+            Node n = ( nodes == null ) ? null : nodes[ index ];
+            return ( n == null ) ? names[ index ] : n.getNodeName();
+        }
+
+        /**
+         * Returns the local name of the attribute at the given index, or
+         * its qualified name if it has no namespace URI.
+         */
+        public String getLocalName( int index ) {
+            return keys[ index ];
+        }
+
+        /**
+         * Returns the value of the attribute at the given index.
+         */
+        public String getValue( int index ) {
+            Node n = ( nodes == null ) ? null : nodes[ index ];
+            return ( n == null ) ? values[ index ] : n.getNodeValue();
+        }
+
+        /**
+         * Tells whether the attribute at the given index was specified in
+         * the original document.
+         */
+        public boolean getSpecified( int index ) {
+            Node n = ( nodes == null ) ? null : nodes[ index ];
+            if ( n != null ) {
+                return ( (Attr)n ).getSpecified();
+            }
+            return unspecified == null || !unspecified[ index ];
+        }
+
+        /**
+         * Tells whether the Attr node of the attribute at the given index
+         * has been created.
+         */
+        public boolean hasNode( int index ) {
+            return nodes != null && nodes[ index ] != null;
+        }
+
+        /**
+         * Returns the index of the attribute with the given key, or -1.
+         */
+        public int indexOf( String ns, String nm ) {
+            if ( nm == null ) {
+                return -1;
+            }
+            int h = nm.hashCode();
+            int[] t = table;
+            if ( t != null ) {
+                int mask = t.length - 1;
+                for ( int j = ( h ^ ( h >>> 16 ) ) & mask; t[ j ] != 0;
+                      j = ( j + 1 ) & mask ) {
+                    int i = t[ j ] - 1;
+                    String k = keys[ i ];
+                    if ( k == nm || ( k.hashCode() == h && k.equals( nm ) ) ) {
+                        String s = namespaceURIs[ i ];
+                        if ( s == ns || ( s != null && s.equals( ns ) ) ) {
+                            return i;
+                        }
+                    }
+                }
+                return -1;
+            }
+            for ( int i = 0; i < count; i++ ) {
+                String k = keys[ i ];
+                if ( k == nm || ( k.hashCode() == h && k.equals( nm ) ) ) {
+                    String s = namespaceURIs[ i ];
+                    if ( s == ns || ( s != null && s.equals( ns ) ) ) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
         /**
          * Checks the validity of a node to add.
          */
@@ -945,21 +1233,45 @@ public abstract class AbstractElement
             }
         }
 
+        /**
+         * Checks the name of an attribute added without Attr node, as
+         * the Attr constructors do.
+         */
+        protected void checkName( String ns, String qname ) {
+            if ( !ownerDocument.getStrictErrorChecking() ) {
+                return;
+            }
+            if ( !DOMUtilities.isValidName( qname ) ) {
+                throw createDOMException( DOMException.INVALID_CHARACTER_ERR,
+                        "xml.name",
+                        new Object[]{qname} );
+            }
+            if ( ns == null ) {
+                return;
+            }
+            String prefix = DOMUtilities.getPrefix( qname );
+            if ( ( prefix != null
+                   && ( ( "xml".equals( prefix ) &&
+                          !XMLSupport.XML_NAMESPACE_URI.equals( ns ) ) ||
+                        ( "xmlns".equals( prefix ) &&
+                          !XMLSupport.XMLNS_NAMESPACE_URI.equals( ns ) ) ) )
+                 || ( prefix == null && "xmlns".equals( qname ) &&
+                      !XMLSupport.XMLNS_NAMESPACE_URI.equals( ns ) ) ) {
+                throw createDOMException( DOMException.NAMESPACE_ERR,
+                        "namespace.uri",
+                        new Object[]{new Integer( ATTRIBUTE_NODE ),
+                                qname, ns} );
+            }
+        }
+
         /**
          * Gets the value of a variable
          *
          * @return the value or null
          */
         protected Node get( String ns, String nm ) {
-            int hash = hashCode( ns, nm ) & 0x7FFFFFFF;
-            int index = hash % table.length;
-
-            for ( Entry e = table[ index ]; e != null; e = e.next ) {
-                if ( ( e.hash == hash ) && e.match( ns, nm ) ) {
-                    return e.value;
-                }
-            }
-            return null;
+            int i = indexOf( ns, nm );
+            return ( i == -1 ) ? null : getNode( i );
         }
 
         /**
@@ -968,27 +1280,18 @@ public abstract class AbstractElement
          * @return the old value or null
          */
         protected Node put( String ns, String nm, Node value ) {
-            int hash = hashCode( ns, nm ) & 0x7FFFFFFF;
-            int index = hash % table.length;
-
-            for ( Entry e = table[ index ]; e != null; e = e.next ) {
-                if ( ( e.hash == hash ) && e.match( ns, nm ) ) {
-                    Node old = e.value;
-                    e.value = value;
-                    return old;
-                }
+            int i = indexOf( ns, nm );
+            if ( i != -1 ) {
+                Node old = getNode( i );
+                nodes[ i ] = value;
+                names[ i ] = value.getNodeName();
+                return old;
             }
-
-            // The key is not in the hash table
-            int len = table.length;
-            if ( count++ >= ( len - ( len >> 2 ) ) ) {
-                // more than 75% loaded: grow
-                rehash();
-                index = hash % table.length;
+            i = add( ns, value.getNodeName(), nm );
+            if ( nodes == null ) {
+                nodes = new Node[ keys.length ];
             }
-
-            Entry e = new Entry( hash, ns, nm, value, table[ index ] );
-            table[ index ] = e;
+            nodes[ i ] = value;
             return null;
         }
 
@@ -998,109 +1301,172 @@ public abstract class AbstractElement
          * @return the value or null.
          */
         protected Node remove( String ns, String nm ) {
-            int hash = hashCode( ns, nm ) & 0x7FFFFFFF;
-            int index = hash % table.length;
-
-            Entry p = null;
-            for ( Entry e = table[ index ]; e != null; e = e.next ) {
-                if ( ( e.hash == hash ) && e.match( ns, nm ) ) {
-                    Node result = e.value;
-                    if ( p == null ) {
-                        table[ index ] = e.next;
-                    } else {
-                        p.next = e.next;
-                    }
-                    count--;
-                    return result;
+            int i = indexOf( ns, nm );
+            if ( i == -1 ) {
+                return null;
+            }
+            Node result = getNode( i );
+            int n = count - i - 1;
+            if ( n > 0 ) {
+                System.arraycopy( namespaceURIs, i + 1, namespaceURIs, i, n );
+                System.arraycopy( names, i + 1, names, i, n );
+                System.arraycopy( keys, i + 1, keys, i, n );
+                System.arraycopy( values, i + 1, values, i, n );
+                System.arraycopy( nodes, i + 1, nodes, i, n );
+                if ( unspecified != null ) {
+                    System.arraycopy( unspecified, i + 1, unspecified, i, n );
                 }
-                p = e;
             }
-            return null;
+            count--;
+            namespaceURIs[ count ] = null;
+            names[ count ] = null;
+            keys[ count ] = null;
+            values[ count ] = null;
+            nodes[ count ] = null;
+            if ( unspecified != null ) {
+                unspecified[ count ] = false;
+            }
+            // The following entries have moved.
+            rebuildTable();
+            return result;
         }
 
         /**
-         * Rehash and grow the table.
+         * Returns the Attr node of the attribute at the given index,
+         * creating it if needed.
          */
-        protected void rehash () {
-            Entry[] oldTable = table;
-
-            table = new Entry[oldTable.length * 2 + 1];
-
-            for (int i = oldTable.length-1; i >= 0; i--) {
-                for (Entry old = oldTable[i]; old != null;) {
-                    Entry e = old;
-                    old = old.next;
-
-                    int index = e.hash % table.length;
-                    e.next = table[index];
-                    table[index] = e;
-                }
+        protected Node getNode( int index ) {
+            if ( nodes == null ) {
+                nodes = new Node[ keys.length ];
+            }
+            Node n = nodes[ index ];
+            if ( n == null ) {
+                AbstractAttr a = (AbstractAttr)getOwnerDocument().
+                    createAttributeNS( namespaceURIs[ index ], names[ index ] );
+                a.setNodeValue( values[ index ] );
+                a.setSpecified( getSpecified( index ) );
+                a.setOwnerElement( AbstractElement.this );
+                nodes[ index ] = n = a;
+                values[ index ] = null;
             }
+            return n;
         }
 
         /**
-         * Computes a hash code corresponding to the given strings.
+         * Appends an entry to the arrays, growing them if needed.
+         *
+         * @return the index of the entry.
          */
-        protected int hashCode(String ns, String nm) {
-            int result = (ns == null) ? 0 : ns.hashCode();
-            return result ^ nm.hashCode();
+        protected int add( String ns, String name, String key ) {
+            if ( keys == null ) {
+                namespaceURIs = new String[ INITIAL_CAPACITY ];
+                names = new String[ INITIAL_CAPACITY ];
+                keys = new String[ INITIAL_CAPACITY ];
+                values = new String[ INITIAL_CAPACITY ];
+            } else if ( count == keys.length ) {
+                resize( count * 2 );
+            }
+            namespaceURIs[ count ] = ns;
+            names[ count ] = name;
+            keys[ count ] = key;
+            count++;
+            if ( table == null || count * 2 > table.length ) {
+                rebuildTable();
+            } else {
+                addToTable( count - 1 );
+            }
+            return count - 1;
         }
-    }
-
-    /**
-     * To manage collisions in the attributes map.
-     * Implements a linked list of <code>Node</code>-objects.
-     */
-    protected static class Entry implements Serializable {
-
-        /**
-         * The hash code, must not change after creation.
-         */
-        public int hash;       // should be final - would that break Serialization?
 
         /**
-         * The namespace URI
+         * Builds the index table of the entries if there are more than
+         * INDEX_THRESHOLD of them, or drops it.
          */
-        public String namespaceURI;
-
-        /**
-         * The node name.
-         */
-        public String name;
+        protected void rebuildTable() {
+            if ( count <= INDEX_THRESHOLD ) {
+                table = null;
+                return;
+            }
+            int len = 32;
+            while ( len < count * 4 ) {
+                len <<= 1;
+            }
+            table = new int[ len ];
+            for ( int i = 0; i < count; i++ ) {
+                addToTable( i );
+            }
+        }
 
         /**
-         * The value
+         * Adds the entry at the given index to the index table.
          */
-        public Node value;
+        protected void addToTable( int index ) {
+            int mask = table.length - 1;
+            int h = keys[ index ].hashCode();
+            int j = ( h ^ ( h >>> 16 ) ) & mask;
+            while ( table[ j ] != 0 ) {
+                j = ( j + 1 ) & mask;
+            }
+            table[ j ] = index + 1;
+        }
 
         /**
-         * The next entry
+         * Shrinks the arrays to the number of entries.
          */
-        public Entry next;
+        public void trimToSize() {
+            if ( count == 0 ) {
+                namespaceURIs = null;
+                names = null;
+                keys = null;
+                values = null;
+                unspecified = null;
+                nodes = null;
+                table = null;
+            } else if ( count < keys.length ) {
+                resize( count );
+            }
+        }
 
         /**
-         * Creates a new entry
+         * Copies the entries to arrays of the given length.
          */
-        public Entry(int hash, String ns, String nm, Node value, Entry next) {
-            this.hash = hash;
-            this.namespaceURI = ns;
-            this.name = nm;
-            this.value = value;
-            this.next = next;
+        protected void resize( int len ) {
+            String[] t = new String[ len ];
+            System.arraycopy( namespaceURIs, 0, t, 0, count );
+            namespaceURIs = t;
+            t = new String[ len ];
+            System.arraycopy( names, 0, t, 0, count );
+            names = t;
+            t = new String[ len ];
+            System.arraycopy( keys, 0, t, 0, count );
+            keys = t;
+            t = new String[ len ];
+            System.arraycopy( values, 0, t, 0, count );
+            values = t;
+            if ( nodes != null ) {
+                Node[] nt = new Node[ len ];
+                System.arraycopy( nodes, 0, nt, 0, count );
+                nodes = nt;
+            }
+            if ( unspecified != null ) {
+                boolean[] bt = new boolean[ len ];
+                System.arraycopy( unspecified, 0, bt, 0, count );
+                unspecified = bt;
+            }
         }
 
         /**
-         * Whether this entry match the given keys.
+         * Records whether the attribute at the given index, which has no
+         * Attr node, was specified in the original document.
          */
-        public boolean match(String ns, String nm) {
-            if (namespaceURI != null) {
-                if (!namespaceURI.equals(ns)) {
-                    return false;
+        protected void setSpecified( int index, boolean specified ) {
+            if ( unspecified == null ) {
+                if ( specified ) {
+                    return;
                 }
-            } else if (ns != null) {
-                return false;
+                unspecified = new boolean[ keys.length ];
             }
-            return name.equals(nm);
+            unspecified[ index ] = !specified;
         }
     }
 
@@ -563,6 +563,12 @@ public abstract class AbstractParentNode extends AbstractNode {
          * Initializes the list.
          */
         protected void initialize() {
+            if (AbstractParentNode.this instanceof AbstractDocument) {
+                AbstractDocument ad = (AbstractDocument)AbstractParentNode.this;
+                table = ad.getIndexedElementsByTagName(name);
+                size = table.length;
+                return;
+            }
             size = 0;
             for (Node n = AbstractParentNode.this.getFirstChild();
                  n != null;
@@ -626,7 +632,7 @@ public abstract class AbstractParentNode extends AbstractNode {
             if (size == -1) {
                 initialize();
             }
-            if (table == null || index < 0 || index > size) {
+            if (table == null || index < 0 || index >= size) {
                 return null;
             }
             return table[index];
@@ -668,6 +674,16 @@ public abstract class AbstractParentNode extends AbstractNode {
          * Initializes the list.
          */
         protected void initialize() {
+            if (AbstractParentNode.this instanceof AbstractDocument) {
+                AbstractDocument ad = (AbstractDocument)AbstractParentNode.this;
+                Node[] t = ad.getIndexedElementsByTagNameNS(namespaceURI,
+                                                            localName);
+                if (t != null) {
+                    table = t;
+                    size = t.length;
+                    return;
+                }
+            }
             size = 0;
             for (Node n = AbstractParentNode.this.getFirstChild();
                  n != null;
@@ -698,10 +714,12 @@ public abstract class AbstractParentNode extends AbstractNode {
             if (s1 == null && s2 == null) {
                 return true;
             }
-            if (s1 == null || s2 == null) {
+            if (s1 == null) {
                 return false;
             }
             if (s1.equals("*")) {
+                // Also the elements in no namespace, as the document
+                // element index does.
                 return true;
             }
             return s1.equals(s2);
@@ -732,6 +750,13 @@ public abstract class AbstractParentNode extends AbstractNode {
          */
         protected int elementChildren;
 
+        /**
+         * The children in an array, for indexed access, or null if it
+         * must be built again.  It is kept up to date by {@link #append}
+         * and dropped by the other modifications.
+         */
+        protected transient Node[] table;
+
         /**
          * Creates a new ChildNodes object.
          */
@@ -745,19 +770,22 @@ public abstract class AbstractParentNode extends AbstractNode {
             if (index < 0 || index >= children) {
                 return null;
             }
-            if (index < (children >> 1)) {
+            if (index == 0) {
+                return firstChild;
+            }
+            if (index == children - 1) {
+                return lastChild;
+            }
+            if (table == null) {
+                Node[] t = new Node[children + (children >> 1)];
                 Node n = firstChild;
-                for (int i = 0; i < index; i++) {
+                for (int i = 0; i < children; i++) {
+                    t[i] = n;
                     n = n.getNextSibling();
                 }
-                return n;
-            } else {
-                Node n = lastChild;
-                for (int i = children - 1; i > index; i--) {
-                    n = n.getPreviousSibling();
-                }
-                return n;
+                table = t;
             }
+            return table[index];
         }
 
         /**
@@ -780,6 +808,14 @@ public abstract class AbstractParentNode extends AbstractNode {
               n.setPreviousSibling(lastChild);
             }
             lastChild = n;
+            if (table != null) {
+                if (children == table.length) {
+                    Node[] t = new Node[children * 2];
+                    System.arraycopy(table, 0, t, 0, children);
+                    table = t;
+                }
+                table[children] = n;
+            }
             children++;
             if (n.getNodeType() == Node.ELEMENT_NODE) {
                 elementChildren++;
@@ -794,6 +830,7 @@ public abstract class AbstractParentNode extends AbstractNode {
             if (r == null) {
                 return append(n);
             }
+            table = null;
 
             if (r == firstChild) {
                 firstChild.setPreviousSibling(n);
@@ -843,6 +880,7 @@ public abstract class AbstractParentNode extends AbstractNode {
          * Replaces a node in the tree by an other.
          */
         public ExtendedNode replace(ExtendedNode n, ExtendedNode o) {
+            table = null;
             if (o == firstChild) {
                 ExtendedNode t = (ExtendedNode)firstChild.getNextSibling();
                 n.setNextSibling(t);
@@ -909,6 +947,7 @@ public abstract class AbstractParentNode extends AbstractNode {
          * Removes the given node from the tree.
          */
         public ExtendedNode remove(ExtendedNode n) {
+            table = null;
             if (n == firstChild) {
                 if (n == lastChild) {
                     firstChild = null;
@@ -89,6 +89,14 @@ public class GenericDocument
         return ATTR_ID.equals(node.getNodeName());
     }
 
+    /**
+     * Returns true if the attribute with the given name represents an
+     * 'id' for this document.
+     */
+    public boolean isId(String ns, String qname) {
+        return ns == null && ATTR_ID.equals(qname);
+    }
+
     /**
      * <b>DOM</b>: Implements {@link
      * org.w3c.dom.Document#createElement(String)}.
@@ -18,10 +18,19 @@
  */
 package org.apache.batik.dom.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
 import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -48,6 +57,8 @@ import org.xml.sax.ext.LexicalHandler;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
 
+import org.apache.batik.dom.AbstractDocument;
+import org.apache.batik.util.EncodingUtilities;
 import org.apache.batik.util.HaltingThread;
 import org.apache.batik.util.XMLConstants;
 
@@ -140,6 +151,17 @@ public class SAXDocumentFactory
      */
     protected boolean isValidating;
 
+    /**
+     * Whether the documents created are static.
+     */
+    protected boolean isStatic;
+
+    /**
+     * Whether the documents are parsed with a {@link ScannerParser} when
+     * possible.
+     */
+    protected boolean isXMLScannerEnabled;
+
     /**
      * Whether the document just parsed was standalone.
      */
@@ -205,6 +227,123 @@ public class SAXDocumentFactory
         }
     }
 
+    /**
+     * An input stream that keeps the bytes read from another one, so
+     * that they can be read again.  It does not close the other stream.
+     */
+    protected static class RecordingInputStream extends FilterInputStream {
+
+        /**
+         * The blocks of bytes read.
+         */
+        protected List blocks = new LinkedList();
+
+        /**
+         * The current block.
+         */
+        protected byte[] block = new byte[4096];
+
+        /**
+         * The number of bytes in the current block.
+         */
+        protected int count;
+
+        /**
+         * Creates a new RecordingInputStream.
+         * @param in The stream to read.
+         */
+        public RecordingInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Reads a byte.
+         */
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                if (count == block.length) {
+                    nextBlock();
+                }
+                block[count++] = (byte) b;
+            }
+            return b;
+        }
+
+        /**
+         * Reads bytes into an array.
+         */
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            for (int i = 0; i < n; ) {
+                if (count == block.length) {
+                    nextBlock();
+                }
+                int m = Math.min(n - i, block.length - count);
+                System.arraycopy(b, off + i, block, count, m);
+                count += m;
+                i += m;
+            }
+            return n;
+        }
+
+        /**
+         * Skips bytes, keeping them.
+         */
+        public long skip(long n) throws IOException {
+            byte[] b = new byte[(int) Math.min(n, 4096)];
+            int r = read(b, 0, b.length);
+            return (r == -1) ? 0 : r;
+        }
+
+        /**
+         * Marks are not supported.
+         */
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Does nothing, since marks are not supported.
+         */
+        public void mark(int readlimit) {
+        }
+
+        /**
+         * Throws an IOException, since marks are not supported.
+         */
+        public void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        /**
+         * Does not close the other stream.
+         */
+        public void close() {
+        }
+
+        /**
+         * Starts a new block, twice as large as the current one, up to
+         * one megabyte.
+         */
+        protected void nextBlock() {
+            blocks.add(new ByteArrayInputStream(block, 0, count));
+            block = new byte[Math.min(block.length * 2, 1 << 20)];
+            count = 0;
+        }
+
+        /**
+         * Returns a stream of the bytes read so far, followed by the
+         * remaining bytes of the other stream.
+         */
+        public InputStream getRecordedStream() {
+            List l = new ArrayList(blocks);
+            l.add(new ByteArrayInputStream(block, 0, count));
+            l.add(in);
+            return new SequenceInputStream(Collections.enumeration(l));
+        }
+    }
+
     /**
      * Various elements encountered prior to real document root element.
      * List of PreInfo objects.
@@ -419,6 +558,32 @@ public class SAXDocumentFactory
      */
     protected Document createDocument(InputSource is)
         throws IOException {
+        if (isXMLScannerEnabled && !isValidating) {
+            is = scan(is);
+        }
+        if (is != null) {
+            parse(is);
+        }
+
+        if (isStatic && document instanceof AbstractDocument) {
+            ((AbstractDocument)document).trimToSize();
+        }
+
+        currentNode  = null;
+        Document ret = document;
+        document     = null;
+        doctype      = null;
+        locator      = null;
+        parser       = null;
+        return ret;
+    }
+
+    /**
+     * Parses a document with a SAX parser.
+     * @param is  The document input source.
+     * @exception IOException if an error occured while reading the document.
+     */
+    protected void parse(InputSource is) throws IOException {
         try {
             if (parserClassName != null) {
                 parser = XMLReaderFactory.createXMLReader(parserClassName);
@@ -458,14 +623,79 @@ public class SAXDocumentFactory
             }
             throw new SAXIOException(e);
         }
+    }
 
-        currentNode  = null;
-        Document ret = document;
-        document     = null;
-        doctype      = null;
-        locator      = null;
-        parser       = null;
-        return ret;
+    /**
+     * Parses a document with a {@link ScannerParser}.  The bytes read
+     * from the input source are kept, so that the document can be given
+     * to a SAX parser if the scanner cannot parse it.  Only the UTF-8
+     * documents are parsed from bytes.
+     * @param is  The document input source.
+     * @return null if the document was parsed, or an input source with
+     *         the same content to parse with a SAX parser.
+     * @exception IOException if an error occured while reading the document.
+     */
+    protected InputSource scan(InputSource is) throws IOException {
+        Reader r = is.getCharacterStream();
+        InputStream in = is.getByteStream();
+        String enc = is.getEncoding();
+        if ((r == null && in == null) ||
+            (r == null && enc != null &&
+             !"UTF8".equals(EncodingUtilities.javaEncoding(enc)))) {
+            // Let the SAX parser open or decode the document.
+            return is;
+        }
+
+        InputSource result = new InputSource();
+        result.setSystemId(is.getSystemId());
+        result.setPublicId(is.getPublicId());
+        result.setEncoding(enc);
+
+        RecordingInputStream rin = null;
+        Reader dr;
+        if (r != null) {
+            StringBuffer sb = new StringBuffer();
+            char[] buf = new char[8192];
+            try {
+                int n;
+                while ((n = r.read(buf)) != -1) {
+                    sb.append(buf, 0, n);
+                }
+            } finally {
+                r.close();
+            }
+            String s = sb.toString();
+            result.setCharacterStream(new StringReader(s));
+            dr = new StringReader(s);
+        } else {
+            rin = new RecordingInputStream(in);
+            PushbackInputStream pin = new PushbackInputStream(rin, 3);
+            byte[] bom = new byte[3];
+            int len = 0;
+            int n;
+            while (len < 3 && (n = pin.read(bom, len, 3 - len)) != -1) {
+                len += n;
+            }
+            if (len != 3 || (bom[0] & 0xFF) != 0xEF ||
+                (bom[1] & 0xFF) != 0xBB || (bom[2] & 0xFF) != 0xBF) {
+                // Not a UTF-8 byte order mark.
+                pin.unread(bom, 0, len);
+            }
+            // The decoder reports the malformed input.
+            dr = new InputStreamReader
+                (pin, Charset.forName("UTF-8").newDecoder());
+        }
+
+        if (new ScannerParser(this).parse(dr, r == null && enc == null)) {
+            if (in != null) {
+                in.close();
+            }
+            return null;
+        }
+        if (rin != null) {
+            result.setByteStream(rin.getRecordedStream());
+        }
+        return result;
     }
 
     /**
@@ -504,6 +734,45 @@ public class SAXDocumentFactory
         return isValidating;
     }
 
+    /**
+     * Sets whether the documents created by this factory are static
+     * (see {@link AbstractDocument#setStatic(boolean)}).  A static
+     * document is built without the bookkeeping needed to follow the
+     * modifications of its attributes, and without the room reserved
+     * to add attributes to its elements.  It suits the documents that
+     * are only rendered, without scripts or animations.  This applies
+     * to the documents that extend {@link AbstractDocument}.
+     */
+    public void setStatic(boolean isStatic) {
+        this.isStatic = isStatic;
+    }
+
+    /**
+     * Returns whether the documents created by this factory are static.
+     */
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    /**
+     * Sets whether the documents are parsed with a {@link ScannerParser},
+     * built on the XML scanner of Batik, instead of a SAX parser, when
+     * they are not validated.  The documents the scanner cannot parse,
+     * such as the ones with an internal DTD subset, and the malformed
+     * ones, are parsed again with the SAX parser.
+     */
+    public void setXMLScannerEnabled(boolean b) {
+        isXMLScannerEnabled = b;
+    }
+
+    /**
+     * Returns whether the documents are parsed with a {@link
+     * ScannerParser} when possible.
+     */
+    public boolean isXMLScannerEnabled() {
+        return isXMLScannerEnabled;
+    }
+
     /**
      * Sets a custom error handler.
      */
@@ -639,6 +908,9 @@ public class SAXDocumentFactory
         if (currentNode == null) {
             implementation = getDOMImplementation(version);
             document = implementation.createDocument(nsURI, rawName, doctype);
+            if (isStatic && document instanceof AbstractDocument) {
+                ((AbstractDocument)document).setStatic(true);
+            }
             Iterator i = preInfo.iterator();
             currentNode = e = document.getDocumentElement();
             while (i.hasNext()) {
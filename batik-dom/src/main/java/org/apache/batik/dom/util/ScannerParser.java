@@ -0,0 +1,1069 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+
+import org.apache.batik.util.EncodingUtilities;
+import org.apache.batik.util.XMLConstants;
+import org.apache.batik.util.io.NormalizingReader;
+import org.apache.batik.xml.LexicalUnits;
+import org.apache.batik.xml.XMLException;
+import org.apache.batik.xml.XMLScanner;
+
+import org.w3c.dom.DOMException;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * A small non-validating XML parser, built on {@link XMLScanner}, that
+ * reports a document to the handler methods of a {@link
+ * SAXDocumentFactory}, without going through a SAX parser.
+ *
+ * <p>It only parses the documents that have no internal DTD subset, and
+ * so no entity other than the predefined ones, and ignores the external
+ * DTD, as the SAX parser used by the factory does.  The attributes of a
+ * start tag are given to the factory through this object, and the text
+ * is given straight from the buffer of the scanner.</p>
+ *
+ * <p>{@link #parse} returns false when the document uses a feature this
+ * parser does not support, or is not well-formed: the document must
+ * then be parsed again by a SAX parser, which also reports the errors.
+ * The lines reported by the {@link Locator} are the ones of the SAX
+ * parser, but the columns may differ by one for the start tags with
+ * attribute values spanning several lines.</p>
+ *
+ * @version $Id$
+ */
+public class ScannerParser implements Attributes, Locator {
+
+    /**
+     * The factory the document is reported to.
+     */
+    protected SAXDocumentFactory factory;
+
+    /**
+     * The scanner.
+     */
+    protected XMLScanner scanner;
+
+    /**
+     * The type of the current lexical unit.
+     */
+    protected int type;
+
+    /**
+     * The names of the open elements.
+     */
+    protected String[] elements = new String[32];
+
+    /**
+     * The number of open elements.
+     */
+    protected int depth;
+
+    /**
+     * The names of the attributes of the current start tag.
+     */
+    protected String[] attributeNames = new String[16];
+
+    /**
+     * The values of the attributes of the current start tag.
+     */
+    protected String[] attributeValues = new String[16];
+
+    /**
+     * The number of attributes of the current start tag.
+     */
+    protected int attributeCount;
+
+    /**
+     * The buffer used to build the attribute values.
+     */
+    protected StringBuffer valueBuffer = new StringBuffer();
+
+    /**
+     * The names already read, interned as the SAX parsers do, in an
+     * open addressing table.
+     */
+    protected String[] symbols = new String[512];
+
+    /**
+     * The number of names in the symbol table.
+     */
+    protected int symbolCount;
+
+    /**
+     * The reader of the document.
+     */
+    protected DocumentReader reader;
+
+    /**
+     * Whether the document was decoded as UTF-8, and so must not declare
+     * another encoding.
+     */
+    protected boolean isUTF8;
+
+    /**
+     * The line and column of the end of the last start tag.
+     */
+    protected int line, column;
+
+    /**
+     * Creates a new ScannerParser.
+     * @param f The factory to report the document to.
+     */
+    public ScannerParser(SAXDocumentFactory f) {
+        factory = f;
+    }
+
+    /**
+     * Parses a document and reports it to the factory.  The reader is
+     * not closed.
+     * @param r The reader of the document.
+     * @param utf8 Whether the document was decoded as UTF-8 because its
+     *        encoding is unknown, so that its encoding declaration, if
+     *        any, must be UTF-8.
+     * @return false if the document must be parsed again by a SAX parser.
+     * @exception InterruptedIOException if the current thread was
+     *            halted while the document was parsed.
+     */
+    public boolean parse(Reader r, boolean utf8)
+        throws InterruptedIOException {
+        isUTF8 = utf8;
+        try {
+            reader = new DocumentReader(r);
+            scanner = new XMLScanner(reader);
+            factory.setDocumentLocator(this);
+            factory.startDocument();
+            type = scanner.next();
+            if (type == LexicalUnits.XML_DECL_START) {
+                parseXMLDecl();
+            }
+            parseMisc();
+            if (type == LexicalUnits.DOCTYPE_START) {
+                parseDoctype();
+                parseMisc();
+            }
+            if (type != LexicalUnits.START_TAG) {
+                return false;
+            }
+            parseElement();
+            parseMisc();
+            if (type != LexicalUnits.EOF) {
+                return false;
+            }
+            factory.endDocument();
+            return true;
+        } catch (Unsupported e) {
+            return false;
+        } catch (XMLException e) {
+            if (e.getException() instanceof InterruptedIOException) {
+                throw (InterruptedIOException) e.getException();
+            }
+            return false;
+        } catch (DOMException e) {
+            return false;
+        } catch (SAXException e) {
+            if (e.getException() instanceof InterruptedIOException) {
+                throw (InterruptedIOException) e.getException();
+            }
+            return false;
+        } finally {
+            scanner = null;
+            reader = null;
+        }
+    }
+
+    /**
+     * Parses the XML declaration.
+     */
+    protected void parseXMLDecl() throws SAXException {
+        next();
+        skipSpaces();
+        if (type != LexicalUnits.VERSION_IDENTIFIER) {
+            throw UNSUPPORTED;
+        }
+        String version = readPseudoAttribute();
+        if (!version.equals(XMLConstants.XML_VERSION_10)) {
+            // XML 1.1 normalizes more line breaks than the scanner.
+            throw UNSUPPORTED;
+        }
+        if (type == LexicalUnits.ENCODING_IDENTIFIER) {
+            String encoding = readPseudoAttribute();
+            if (isUTF8 && !"UTF8".equals
+                (EncodingUtilities.javaEncoding(encoding))) {
+                throw UNSUPPORTED;
+            }
+        }
+        if (type == LexicalUnits.STANDALONE_IDENTIFIER) {
+            String standalone = readPseudoAttribute();
+            if (standalone.equals("yes")) {
+                factory.isStandalone = true;
+            } else if (!standalone.equals("no")) {
+                throw UNSUPPORTED;
+            }
+        }
+        if (type != LexicalUnits.PI_END) {
+            throw UNSUPPORTED;
+        }
+        factory.xmlVersion = version;
+        next();
+    }
+
+    /**
+     * Reads the value of a pseudo attribute of the XML declaration, and
+     * the spaces that follow it.
+     */
+    protected String readPseudoAttribute() {
+        next();
+        skipSpaces();
+        if (type != LexicalUnits.EQ) {
+            throw UNSUPPORTED;
+        }
+        next();
+        skipSpaces();
+        if (type != LexicalUnits.STRING) {
+            throw UNSUPPORTED;
+        }
+        String result = getValue();
+        next();
+        skipSpaces();
+        return result;
+    }
+
+    /**
+     * Parses the comments, processing instructions and spaces outside
+     * the document element.
+     */
+    protected void parseMisc() throws SAXException {
+        for (;;) {
+            switch (type) {
+            case LexicalUnits.S:
+                next();
+                break;
+            case LexicalUnits.COMMENT:
+                comment();
+                break;
+            case LexicalUnits.PI_START:
+                parsePI();
+                break;
+            default:
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses the document type declaration.
+     */
+    protected void parseDoctype() throws SAXException {
+        next();
+        if (type != LexicalUnits.S) {
+            throw UNSUPPORTED;
+        }
+        next();
+        if (type != LexicalUnits.NAME) {
+            throw UNSUPPORTED;
+        }
+        String name = getSymbol();
+        String publicId = null;
+        String systemId = null;
+        next();
+        if (type == LexicalUnits.S) {
+            next();
+            switch (type) {
+            case LexicalUnits.PUBLIC_IDENTIFIER:
+                publicId = normalizePublicId(readExternalId());
+                if (type != LexicalUnits.S) {
+                    throw UNSUPPORTED;
+                }
+                next();
+                if (type != LexicalUnits.STRING) {
+                    throw UNSUPPORTED;
+                }
+                systemId = getValue();
+                next();
+                break;
+            case LexicalUnits.SYSTEM_IDENTIFIER:
+                systemId = readExternalId();
+            }
+            skipSpaces();
+        }
+        if (type != LexicalUnits.END_CHAR) {
+            // An internal subset may declare entities and attributes.
+            throw UNSUPPORTED;
+        }
+        factory.startDTD(name, publicId, systemId);
+        factory.endDTD();
+        next();
+    }
+
+    /**
+     * Reads the literal that follows a PUBLIC or SYSTEM keyword.
+     */
+    protected String readExternalId() {
+        next();
+        if (type != LexicalUnits.S) {
+            throw UNSUPPORTED;
+        }
+        next();
+        if (type != LexicalUnits.STRING) {
+            throw UNSUPPORTED;
+        }
+        String result = getValue();
+        next();
+        return result;
+    }
+
+    /**
+     * Normalizes the spaces of the given public identifier, as the SAX
+     * parsers do.
+     */
+    protected String normalizePublicId(String id) {
+        StringBuffer sb = new StringBuffer(id.length());
+        boolean space = false;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c == ' ' || c == 0xA) {
+                space = sb.length() > 0;
+            } else if (c < 0x80 && PUBLIC_ID_CHARS.indexOf(c) != -1) {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                sb.append(c);
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses a processing instruction.
+     */
+    protected void parsePI() throws SAXException {
+        String target = getSymbol();
+        String data = "";
+        next();
+        if (type == LexicalUnits.S) {
+            next();
+            if (type == LexicalUnits.PI_DATA) {
+                data = getValue();
+                next();
+            }
+        }
+        if (type != LexicalUnits.PI_END) {
+            throw UNSUPPORTED;
+        }
+        factory.processingInstruction(target, data);
+        next();
+    }
+
+    /**
+     * Reports a comment.
+     */
+    protected void comment() throws SAXException {
+        char[] buf = scanner.getBuffer();
+        int off = scanner.getStart() + scanner.getStartOffset();
+        int end = scanner.getEnd() + scanner.getEndOffset();
+        checkCharacters(buf, off, end);
+        factory.comment(buf, off, end - off);
+        next();
+    }
+
+    /**
+     * Parses the document element and its content.
+     */
+    protected void parseElement() throws SAXException {
+        for (;;) {
+            switch (type) {
+            case LexicalUnits.START_TAG:
+                String name = getSymbol();
+                parseAttributes();
+                // The scanner has read one character past the tag.
+                if (reader.column == 0 && reader.line > 1) {
+                    line = reader.line - 1;
+                    column = reader.lastColumn + 1;
+                } else {
+                    line = reader.line;
+                    column = reader.column;
+                }
+                factory.startElement(null, null, name, this);
+                checkPrefixes(name);
+                if (type == LexicalUnits.EMPTY_ELEMENT_END) {
+                    factory.endElement(null, null, name);
+                    if (depth == 0) {
+                        next();
+                        return;
+                    }
+                } else {
+                    if (depth == elements.length) {
+                        String[] t = new String[depth * 2];
+                        System.arraycopy(elements, 0, t, 0, depth);
+                        elements = t;
+                    }
+                    elements[depth++] = name;
+                }
+                next();
+                break;
+
+            case LexicalUnits.END_TAG:
+                name = getSymbol();
+                if (name != elements[--depth]) {
+                    throw UNSUPPORTED;
+                }
+                next();
+                skipSpaces();
+                if (type != LexicalUnits.END_CHAR) {
+                    throw UNSUPPORTED;
+                }
+                factory.endElement(null, null, name);
+                next();
+                if (depth == 0) {
+                    return;
+                }
+                break;
+
+            case LexicalUnits.CHARACTER_DATA:
+                characters(true);
+                next();
+                break;
+
+            case LexicalUnits.CHARACTER_REFERENCE:
+                valueBuffer.setLength(0);
+                appendCharacterReference(valueBuffer);
+                characters(valueBuffer);
+                next();
+                break;
+
+            case LexicalUnits.ENTITY_REFERENCE:
+                valueBuffer.setLength(0);
+                appendEntityReference(valueBuffer);
+                characters(valueBuffer);
+                next();
+                break;
+
+            case LexicalUnits.CDATA_START:
+                factory.startCDATA();
+                next();
+                if (type != LexicalUnits.CHARACTER_DATA) {
+                    throw UNSUPPORTED;
+                }
+                characters(false);
+                next();
+                if (type != LexicalUnits.SECTION_END) {
+                    throw UNSUPPORTED;
+                }
+                factory.endCDATA();
+                next();
+                break;
+
+            case LexicalUnits.COMMENT:
+                comment();
+                break;
+
+            case LexicalUnits.PI_START:
+                parsePI();
+                break;
+
+            default:
+                throw UNSUPPORTED;
+            }
+        }
+    }
+
+    /**
+     * Reads the attributes of a start tag, up to its end.
+     */
+    protected void parseAttributes() {
+        attributeCount = 0;
+        next();
+        while (type == LexicalUnits.S) {
+            next();
+            if (type != LexicalUnits.NAME) {
+                break;
+            }
+            String name = getSymbol();
+            for (int i = 0; i < attributeCount; i++) {
+                if (attributeNames[i] == name) {
+                    throw UNSUPPORTED;
+                }
+            }
+            next();
+            skipSpaces();
+            if (type != LexicalUnits.EQ) {
+                throw UNSUPPORTED;
+            }
+            next();
+            skipSpaces();
+            String value;
+            if (type == LexicalUnits.STRING) {
+                value = getAttributeValue();
+                next();
+            } else if (type == LexicalUnits.FIRST_ATTRIBUTE_FRAGMENT) {
+                StringBuffer sb = valueBuffer;
+                sb.setLength(0);
+                loop: for (;;) {
+                    switch (type) {
+                    case LexicalUnits.FIRST_ATTRIBUTE_FRAGMENT:
+                    case LexicalUnits.ATTRIBUTE_FRAGMENT:
+                    case LexicalUnits.LAST_ATTRIBUTE_FRAGMENT:
+                        appendAttributeValue(sb);
+                        break;
+                    case LexicalUnits.CHARACTER_REFERENCE:
+                        appendCharacterReference(sb);
+                        break;
+                    case LexicalUnits.ENTITY_REFERENCE:
+                        appendEntityReference(sb);
+                        break;
+                    default:
+                        break loop;
+                    }
+                    next();
+                }
+                value = sb.toString();
+            } else {
+                throw UNSUPPORTED;
+            }
+            if (attributeCount == attributeNames.length) {
+                int len = attributeCount * 2;
+                String[] t = new String[len];
+                System.arraycopy(attributeNames, 0, t, 0, attributeCount);
+                attributeNames = t;
+                t = new String[len];
+                System.arraycopy(attributeValues, 0, t, 0, attributeCount);
+                attributeValues = t;
+            }
+            attributeNames[attributeCount] = name;
+            attributeValues[attributeCount++] = value;
+        }
+        if (type != LexicalUnits.END_CHAR &&
+            type != LexicalUnits.EMPTY_ELEMENT_END) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    /**
+     * Checks that the prefixes of the names of the element just
+     * started and of its attributes are declared.
+     */
+    protected void checkPrefixes(String name) {
+        checkPrefix(name);
+        for (int i = 0; i < attributeCount; i++) {
+            String aname = attributeNames[i];
+            if (aname.startsWith("xmlns:")) {
+                if (attributeValues[i].length() == 0) {
+                    throw UNSUPPORTED;
+                }
+            } else {
+                checkPrefix(aname);
+            }
+        }
+    }
+
+    /**
+     * Checks that the prefix of the given name is declared.
+     */
+    protected void checkPrefix(String name) {
+        int idx = name.indexOf(':');
+        if (idx != -1 &&
+            factory.namespaces.get(name.substring(0, idx)) == null) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    /**
+     * Reports the current character data to the factory.
+     * @param text Whether the data is not in a CDATA section, and so
+     *        must contain no ']]&gt;'.
+     */
+    protected void characters(boolean text) throws SAXException {
+        char[] buf = scanner.getBuffer();
+        int off = scanner.getStart() + scanner.getStartOffset();
+        int end = scanner.getEnd() + scanner.getEndOffset();
+        checkCharacters(buf, off, end);
+        if (text) {
+            for (int i = off + 2; i < end; i++) {
+                if (buf[i] == '>' && buf[i - 1] == ']' && buf[i - 2] == ']') {
+                    throw UNSUPPORTED;
+                }
+            }
+        }
+        factory.characters(buf, off, end - off);
+    }
+
+    /**
+     * Checks that the given characters are allowed in a document.
+     * The carriage returns were already normalized by the reader.
+     */
+    protected void checkCharacters(char[] buf, int off, int end) {
+        for (int i = off; i < end; i++) {
+            char c = buf[i];
+            if (c < 0x20 ? c != 0x9 && c != 0xA : c >= 0xFFFE) {
+                throw UNSUPPORTED;
+            }
+        }
+    }
+
+    /**
+     * Reports the content of the given buffer to the factory.
+     */
+    protected void characters(StringBuffer sb) throws SAXException {
+        int len = sb.length();
+        char[] t = new char[len];
+        sb.getChars(0, len, t, 0);
+        factory.characters(t, 0, len);
+    }
+
+    /**
+     * Returns the value of the current attribute string, normalized.
+     */
+    protected String getAttributeValue() {
+        char[] buf = scanner.getBuffer();
+        int off = scanner.getStart() + scanner.getStartOffset();
+        int end = scanner.getEnd() + scanner.getEndOffset();
+        for (int i = off; i < end; i++) {
+            char c = buf[i];
+            if (c < 0x20 || c >= 0xFFFE) {
+                valueBuffer.setLength(0);
+                appendAttributeValue(valueBuffer);
+                return valueBuffer.toString();
+            }
+        }
+        return new String(buf, off, end - off);
+    }
+
+    /**
+     * Appends the current attribute value fragment to the given buffer,
+     * with its spaces normalized.
+     */
+    protected void appendAttributeValue(StringBuffer sb) {
+        char[] buf = scanner.getBuffer();
+        int off = scanner.getStart() + scanner.getStartOffset();
+        int end = scanner.getEnd() + scanner.getEndOffset();
+        for (int i = off; i < end; i++) {
+            char c = buf[i];
+            if (c < 0x20) {
+                if (c != 0x9 && c != 0xA) {
+                    throw UNSUPPORTED;
+                }
+                c = ' ';
+            } else if (c >= 0xFFFE) {
+                throw UNSUPPORTED;
+            }
+            sb.append(c);
+        }
+    }
+
+    /**
+     * Appends the character the current character reference refers to.
+     */
+    protected void appendCharacterReference(StringBuffer sb) {
+        char[] buf = scanner.getBuffer();
+        int off = scanner.getStart() + scanner.getStartOffset();
+        int end = scanner.getEnd() + scanner.getEndOffset();
+        int c = 0;
+        if (buf[off] == 'x') {
+            for (int i = off + 1; i < end && c <= 0x10FFFF; i++) {
+                c = c * 16 + Character.digit(buf[i], 16);
+            }
+        } else {
+            for (int i = off; i < end && c <= 0x10FFFF; i++) {
+                c = c * 10 + buf[i] - '0';
+            }
+        }
+        if (c < 0x20 ? (c != 0x9 && c != 0xA && c != 0xD)
+                     : (c >= 0xD800 && c <= 0xDFFF) ||
+                       c == 0xFFFE || c == 0xFFFF || c > 0x10FFFF) {
+            throw UNSUPPORTED;
+        }
+        if (c >= 0x10000) {
+            c -= 0x10000;
+            sb.append((char) (0xD800 + (c >> 10)));
+            sb.append((char) (0xDC00 + (c & 0x3FF)));
+        } else {
+            sb.append((char) c);
+        }
+    }
+
+    /**
+     * Appends the character the current entity reference refers to,
+     * which must be one of the predefined entities.
+     */
+    protected void appendEntityReference(StringBuffer sb) {
+        String name = getValue();
+        if (name.equals("lt")) {
+            sb.append('<');
+        } else if (name.equals("gt")) {
+            sb.append('>');
+        } else if (name.equals("amp")) {
+            sb.append('&');
+        } else if (name.equals("quot")) {
+            sb.append('"');
+        } else if (name.equals("apos")) {
+            sb.append('\'');
+        } else {
+            throw UNSUPPORTED;
+        }
+    }
+
+    /**
+     * Returns the value of the current lexical unit.
+     */
+    protected String getValue() {
+        char[] buf = scanner.getBuffer();
+        int off = scanner.getStart() + scanner.getStartOffset();
+        int end = scanner.getEnd() + scanner.getEndOffset();
+        if (end < off) {
+            // The document ends in the middle of the lexical unit.
+            throw UNSUPPORTED;
+        }
+        checkCharacters(buf, off, end);
+        return new String(buf, off, end - off);
+    }
+
+    /**
+     * Returns the value of the current lexical unit, which is a name,
+     * from the symbol table.
+     */
+    protected String getSymbol() {
+        char[] buf = scanner.getBuffer();
+        int off = scanner.getStart() + scanner.getStartOffset();
+        int len = scanner.getEnd() + scanner.getEndOffset() - off;
+        if (len <= 0) {
+            throw UNSUPPORTED;
+        }
+        int h = 0;
+        for (int i = 0; i < len; i++) {
+            h = 31 * h + buf[off + i];
+        }
+        int mask = symbols.length - 1;
+        int i = h & mask;
+        String s;
+        loop: while ((s = symbols[i]) != null) {
+            if (s.length() == len) {
+                for (int j = 0; j < len; j++) {
+                    if (s.charAt(j) != buf[off + j]) {
+                        i = (i + 1) & mask;
+                        continue loop;
+                    }
+                }
+                return s;
+            }
+            i = (i + 1) & mask;
+        }
+        s = new String(buf, off, len).intern();
+        symbols[i] = s;
+        if (++symbolCount * 2 > symbols.length) {
+            String[] old = symbols;
+            symbols = new String[old.length * 2];
+            mask = symbols.length - 1;
+            for (int j = 0; j < old.length; j++) {
+                if (old[j] != null) {
+                    int k = old[j].hashCode() & mask;
+                    while (symbols[k] != null) {
+                        k = (k + 1) & mask;
+                    }
+                    symbols[k] = old[j];
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Skips the current lexical unit if it is a space.
+     */
+    protected void skipSpaces() {
+        if (type == LexicalUnits.S) {
+            next();
+        }
+    }
+
+    /**
+     * Advances to the next lexical unit, discarding the previous ones.
+     */
+    protected void next() {
+        scanner.clearBuffer();
+        type = scanner.next();
+    }
+
+    // Attributes ////////////////////////////////////////////////////////////
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getLength()}.
+     */
+    public int getLength() {
+        return attributeCount;
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getURI(int)}.  The
+     * factory resolves the namespaces itself.
+     */
+    public String getURI(int index) {
+        return "";
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getLocalName(int)}.
+     */
+    public String getLocalName(int index) {
+        String name = getQName(index);
+        return (name == null) ? null : name.substring(name.indexOf(':') + 1);
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getQName(int)}.
+     */
+    public String getQName(int index) {
+        return (index < 0 || index >= attributeCount)
+            ? null
+            : attributeNames[index];
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getType(int)}.
+     */
+    public String getType(int index) {
+        return (index < 0 || index >= attributeCount) ? null : "CDATA";
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getValue(int)}.
+     */
+    public String getValue(int index) {
+        return (index < 0 || index >= attributeCount)
+            ? null
+            : attributeValues[index];
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getIndex(String,String)}.
+     */
+    public int getIndex(String uri, String localName) {
+        return -1;
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getIndex(String)}.
+     */
+    public int getIndex(String qName) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributeNames[i].equals(qName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getType(String,String)}.
+     */
+    public String getType(String uri, String localName) {
+        return getType(getIndex(uri, localName));
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getType(String)}.
+     */
+    public String getType(String qName) {
+        return getType(getIndex(qName));
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getValue(String,String)}.
+     */
+    public String getValue(String uri, String localName) {
+        return getValue(getIndex(uri, localName));
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Attributes#getValue(String)}.
+     */
+    public String getValue(String qName) {
+        return getValue(getIndex(qName));
+    }
+
+    // Locator ///////////////////////////////////////////////////////////////
+
+    /**
+     * <b>SAX</b>: Implements {@link Locator#getPublicId()}.
+     */
+    public String getPublicId() {
+        return null;
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Locator#getSystemId()}.
+     */
+    public String getSystemId() {
+        return null;
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Locator#getLineNumber()}.
+     */
+    public int getLineNumber() {
+        return line;
+    }
+
+    /**
+     * <b>SAX</b>: Implements {@link Locator#getColumnNumber()}.
+     */
+    public int getColumnNumber() {
+        return column;
+    }
+
+    /**
+     * A reader that normalizes the line breaks of another reader, and
+     * that keeps the length of the previous line, so that the position
+     * reported for a start tag does not depend on the character that
+     * follows it.
+     */
+    protected static class DocumentReader extends NormalizingReader {
+
+        /**
+         * The underlying reader.
+         */
+        protected Reader reader;
+
+        /**
+         * The characters read from the underlying reader.
+         */
+        protected char[] buffer = new char[8192];
+
+        /**
+         * The position of the next character in the buffer.
+         */
+        protected int position;
+
+        /**
+         * The number of characters in the buffer.
+         */
+        protected int count;
+
+        /**
+         * Whether the last character read was a carriage return.
+         */
+        protected boolean afterCR;
+
+        /**
+         * The current line and column.
+         */
+        protected int line = 1, column;
+
+        /**
+         * The length of the previous line.
+         */
+        protected int lastColumn;
+
+        /**
+         * Creates a new DocumentReader.
+         * @param r The underlying reader.
+         */
+        public DocumentReader(Reader r) {
+            reader = r;
+        }
+
+        /**
+         * Reads a single character.
+         */
+        public int read() throws IOException {
+            for (;;) {
+                if (position == count) {
+                    count = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (count == -1) {
+                        count = 0;
+                        return -1;
+                    }
+                }
+                char c = buffer[position++];
+                switch (c) {
+                case 10:
+                    if (afterCR) {
+                        afterCR = false;
+                        continue;
+                    }
+                    break;
+                case 13:
+                    afterCR = true;
+                    break;
+                default:
+                    afterCR = false;
+                    column++;
+                    return c;
+                }
+                lastColumn = column;
+                column = 0;
+                line++;
+                return 10;
+            }
+        }
+
+        /**
+         * Returns the current line in the stream.
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Returns the current column in the stream.
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        /**
+         * Closes the underlying reader.
+         */
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * The exception thrown when the document must be parsed by a SAX
+     * parser.  It is shared since it carries no information.
+     */
+    protected static class Unsupported extends RuntimeException {
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * The characters allowed in public identifiers, besides the spaces.
+     */
+    protected static final String PUBLIC_ID_CHARS =
+        "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789" +
+        "-'()+,./:=?;!*#@$_%";
+
+    /**
+     * The instance of {@link Unsupported}.
+     */
+    protected static final Unsupported UNSUPPORTED = new Unsupported();
+}
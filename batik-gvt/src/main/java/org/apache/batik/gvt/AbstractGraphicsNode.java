@@ -23,10 +23,12 @@ import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.Shape;
+import java.awt.color.ColorSpace;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.lang.ref.WeakReference;
 import java.util.Iterator;
 import java.util.List;
@@ -35,10 +37,12 @@ import java.util.Map;
 import javax.swing.event.EventListenerList;
 
 import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.renderable.ClipRable;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.gvt.event.GraphicsNodeChangeEvent;
 import org.apache.batik.gvt.event.GraphicsNodeChangeListener;
+import org.apache.batik.gvt.filter.BackgroundRable8Bit;
 import org.apache.batik.gvt.filter.GraphicsNodeRable;
 import org.apache.batik.gvt.filter.GraphicsNodeRable8Bit;
 import org.apache.batik.gvt.filter.Mask;
@@ -132,6 +136,11 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      */
     protected WeakReference weakRef;
 
+    /**
+     * The rendering of this node kept in a LayerCache, or null.
+     */
+    protected volatile LayerCache.Layer layer;
+
     /**
      * Internal Cache: node bounds
      */
@@ -443,6 +452,21 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
         Rectangle2D bounds = getBounds();
         if (bounds == null) return;
 
+        // The nodes smaller than the level of detail are approximated.
+        float lod = getLevelOfDetail(g2d);
+        if (lod > 0 && isSmallerThan(g2d, bounds, lod)) {
+            paintApproximation(g2d, bounds);
+            return;
+        }
+
+        // The nodes that are expensive to paint are drawn from their
+        // layer when they did not change.
+        LayerCache layerCache = getLayerCache(g2d);
+        if (layerCache != null && isLayerCacheable() &&
+            paintLayer(g2d, layerCache)) {
+            return;
+        }
+
         // Set up graphic context. It is important to setup the
         // transform first, because the clip is defined in this node's
         // user space.
@@ -586,6 +610,252 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
         System.out.flush();
     }
 
+    /**
+     * Returns the level of detail of the given Graphics2D, that is the
+     * size in device pixels of the smallest details to render, or 0 if
+     * everything is rendered in full.
+     *
+     * @see RenderingHintsKeyExt#KEY_LEVEL_OF_DETAIL
+     */
+    protected static float getLevelOfDetail(Graphics2D g2d) {
+        Object lod =
+            g2d.getRenderingHint(RenderingHintsKeyExt.KEY_LEVEL_OF_DETAIL);
+        if (lod instanceof Float) {
+            return ((Float)lod).floatValue();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if the given bounds of this node are smaller than the
+     * given size in both directions, once painted on the given
+     * Graphics2D.
+     *
+     * @param g2d the Graphics2D to use
+     * @param bounds the bounds in the user space of this node
+     * @param size the size in device pixels
+     */
+    protected boolean isSmallerThan(Graphics2D g2d, Rectangle2D bounds,
+                                    float size) {
+        AffineTransform at = g2d.getTransform();
+        if (transform != null) {
+            at.concatenate(transform);
+        }
+        double w = bounds.getWidth();
+        double h = bounds.getHeight();
+        return Math.abs(at.getScaleX()) * w + Math.abs(at.getShearX()) * h < size
+            && Math.abs(at.getShearY()) * w + Math.abs(at.getScaleY()) * h < size;
+    }
+
+    /**
+     * Paints an approximation of this node, when it is smaller than the
+     * level of detail of the rendering.  The transform and the composite
+     * of this node are applied, but not its clip, mask and filter.
+     *
+     * @param g2d the Graphics2D to use
+     * @param bounds the bounds of this node
+     */
+    protected void paintApproximation(Graphics2D g2d, Rectangle2D bounds) {
+        AffineTransform defaultTransform = null;
+        Composite defaultComposite = null;
+        if (transform != null) {
+            defaultTransform = g2d.getTransform();
+            g2d.transform(transform);
+        }
+        if (composite != null) {
+            defaultComposite = g2d.getComposite();
+            g2d.setComposite(composite);
+        }
+
+        Shape curClip = g2d.getClip();
+        if (curClip == null || bounds.intersects(curClip.getBounds2D())) {
+            approximatePrimitivePaint(g2d);
+        }
+
+        if (defaultTransform != null) {
+            g2d.setTransform(defaultTransform);
+        }
+        if (defaultComposite != null) {
+            g2d.setComposite(defaultComposite);
+        }
+    }
+
+    /**
+     * Paints an approximation of this node without applying Filter, Mask,
+     * Composite, and clip.  By default the node is painted in full.
+     *
+     * @param g2d the Graphics2D to use
+     */
+    protected void approximatePrimitivePaint(Graphics2D g2d) {
+        primitivePaint(g2d);
+    }
+
+    /**
+     * Returns the LayerCache of the given Graphics2D, or null if the
+     * nodes are always painted.
+     *
+     * @see RenderingHintsKeyExt#KEY_LAYER_CACHE
+     */
+    protected static LayerCache getLayerCache(Graphics2D g2d) {
+        Object lc = g2d.getRenderingHint(RenderingHintsKeyExt.KEY_LAYER_CACHE);
+        if (lc instanceof LayerCache) {
+            return (LayerCache)lc;
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if this node is expensive enough to paint for its
+     * rendering to be kept in a LayerCache.  By default this is the case
+     * of the nodes painted through an offscreen buffer and of the nodes
+     * with an antialiased clip that is not a rectangle, but not of the
+     * nodes clipped by a viewport.
+     */
+    protected boolean isLayerCacheable() {
+        return isOffscreenBufferNeeded() ||
+            (clip != null && clip.getUseAntialiasedClip() &&
+             !(clip.getClipPath() instanceof Rectangle2D));
+    }
+
+    /**
+     * Paints this node from its layer in the given cache, rendering the
+     * layer first if this node changed or if the transform or the
+     * rendering hints of the Graphics2D differ.  The layer is the
+     * rendering of this node in device space, so it can be reused for
+     * any whole pixel translation.
+     *
+     * @param g2d the Graphics2D to use
+     * @param cache the cache holding the layers
+     * @return false if the layer cannot be used and this node must be
+     *         painted, for instance because it is too large for the cache
+     */
+    protected boolean paintLayer(Graphics2D g2d, LayerCache cache) {
+        // The layer is drawn with SrcOver, which is only right if that
+        // is how this node would be drawn.
+        Composite c = (composite != null) ? composite : g2d.getComposite();
+        if (!(c instanceof AlphaComposite) ||
+            ((AlphaComposite)c).getRule() != AlphaComposite.SRC_OVER ||
+            (composite == null && ((AlphaComposite)c).getAlpha() != 1)) {
+            return false;
+        }
+        Object val = g2d.getRenderingHint(RenderingHintsKeyExt.KEY_TRANSCODING);
+        if ((val == RenderingHintsKeyExt.VALUE_TRANSCODING_PRINTING) ||
+            (val == RenderingHintsKeyExt.VALUE_TRANSCODING_VECTOR)) {
+            return false;
+        }
+        ColorSpace cs = GraphicsUtil.getDestinationColorSpace(g2d);
+        if (cs != null && !cs.isCS_sRGB()) {
+            return false;
+        }
+
+        // The layer is rendered without the whole pixel translation.
+        AffineTransform g2dAt = g2d.getTransform();
+        double tx = Math.floor(g2dAt.getTranslateX());
+        double ty = Math.floor(g2dAt.getTranslateY());
+        AffineTransform at = AffineTransform.getTranslateInstance(-tx, -ty);
+        at.concatenate(g2dAt);
+        Rectangle2D db = getTransformedBounds(at);
+        if (db == null) {
+            return true;
+        }
+        Shape g2dClip = g2d.getClip();
+        if (g2dClip != null) {
+            Rectangle2D cb = at.createTransformedShape(g2dClip).getBounds2D();
+            if (!db.intersects(cb)) {
+                return true;
+            }
+        }
+
+        RenderingHints rh = g2d.getRenderingHints();
+        rh.remove(RenderingHintsKeyExt.KEY_LAYER_CACHE);
+        rh.remove(RenderingHintsKeyExt.KEY_AREA_OF_INTEREST);
+        rh.remove(RenderingHintsKeyExt.KEY_BUFFERED_IMAGE);
+
+        LayerCache.Layer l = layer;
+        BufferedImage image = null;
+        if (l != null && l.matches(at, rh)) {
+            image = cache.getImage(l);
+        }
+        if (image == null) {
+            int x0 = (int)Math.floor(db.getMinX()) - 1;
+            int y0 = (int)Math.floor(db.getMinY()) - 1;
+            int w = (int)Math.ceil(db.getMaxX()) + 1 - x0;
+            int h = (int)Math.ceil(db.getMaxY()) + 1 - y0;
+            if (!cache.canHold((long)w * h * 4) || usesBackground(filter)) {
+                return false;
+            }
+            cache.recordMiss();
+
+            // The Graphics2D of the layer has no LayerCache, so this node
+            // is painted as usual.
+            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D lg = GraphicsUtil.createGraphics(image, rh);
+            lg.transform(new AffineTransform
+                         (at.getScaleX(), at.getShearY(),
+                          at.getShearX(), at.getScaleY(),
+                          g2dAt.getTranslateX() - (tx + x0),
+                          g2dAt.getTranslateY() - (ty + y0)));
+            paint(lg);
+            lg.dispose();
+            if (HaltingThread.hasBeenHalted()) {
+                return true;
+            }
+
+            if (l != null) {
+                l.discard();
+            }
+            l = new LayerCache.Layer(image, x0, y0, at, rh);
+            cache.add(l);
+            layer = l;
+        }
+
+        Composite defaultComposite = g2d.getComposite();
+        g2d.setTransform(AffineTransform.getTranslateInstance(tx, ty));
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.drawImage(image, l.getX(), l.getY(), null);
+        g2d.setComposite(defaultComposite);
+        g2d.setTransform(g2dAt);
+        return true;
+    }
+
+    /**
+     * Returns true if the given filter uses the background image, which
+     * depends on the nodes painted before this one.
+     */
+    protected static boolean usesBackground(Filter f) {
+        if (f == null) {
+            return false;
+        }
+        if (f instanceof BackgroundRable8Bit) {
+            return true;
+        }
+        List sources = f.getSources();
+        if (sources != null) {
+            Iterator i = sources.iterator();
+            while (i.hasNext()) {
+                Object src = i.next();
+                if (src instanceof Filter && usesBackground((Filter)src)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Discards the layers of this node and of its ancestors, which
+     * contain the rendering of this node.
+     */
+    protected void invalidateLayers() {
+        for (AbstractGraphicsNode n = this; n != null; n = n.parent) {
+            LayerCache.Layer l = n.layer;
+            if (l != null) {
+                n.layer = null;
+                l.discard();
+            }
+        }
+    }
+
     /**
      * Returns true of an offscreen buffer is needed to render this node, false
      * otherwise.
@@ -657,6 +927,8 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
 
     public void fireGraphicsNodeChangeStarted
         (GraphicsNodeChangeEvent changeStartedEvent) {
+        invalidateLayers();
+
         // If we had per node listeners we would fire them here...
 
         RootGraphicsNode rootGN = getRoot();
@@ -679,6 +951,9 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
                 (this, GraphicsNodeChangeEvent.CHANGE_COMPLETED);
         }
 
+        // A layer painted during the change is discarded too.
+        invalidateLayers();
+
         // If we had per node listeners we would fire them here...
 
         RootGraphicsNode rootGN = getRoot();
@@ -751,6 +1026,11 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
             parent.invalidateGeometryCache();
         }
         bounds = null;
+        LayerCache.Layer l = layer;
+        if (l != null) {
+            layer = null;
+            l.discard();
+        }
     }
 
     /**
@@ -764,34 +1044,39 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
             // The painted region, before cliping, masking and compositing is
             // either the area painted by the primitive paint or the area
             // painted by the filter.
+            Rectangle2D b;
             if(filter == null){
-                bounds = getPrimitiveBounds();
+                b = getPrimitiveBounds();
             } else {
-                bounds = filter.getBounds2D();
+                b = filter.getBounds2D();
             }
             // Factor in the clipping area, if any
-            if(bounds != null){
+            if(b != null){
                 if (clip != null) {
                     Rectangle2D clipR = clip.getClipPath().getBounds2D();
-                    if (clipR.intersects(bounds))
-                        Rectangle2D.intersect(bounds, clipR, bounds);
+                    if (clipR.intersects(b))
+                        Rectangle2D.intersect(b, clipR, b);
                 }
                 // Factor in the mask, if any
                 if (mask != null) {
                     Rectangle2D maskR = mask.getBounds2D();
-                    if (maskR.intersects(bounds))
-                        Rectangle2D.intersect(bounds, maskR, bounds);
+                    if (maskR.intersects(b))
+                        Rectangle2D.intersect(b, maskR, b);
                 }
             }
 
-            bounds = normalizeRectangle(bounds);
+            // Only publish the bounds once complete, since other
+            // threads may be painting this node at the same time.
+            b = normalizeRectangle(b);
 
             // Check If we should halt early.
             if (HaltingThread.hasBeenHalted()) {
                 // The Thread has been 'halted'.
                 // Invalidate any cached values and proceed.
                 invalidateGeometryCache();
+                return b;
             }
+            bounds = b;
         }
 
         return bounds;
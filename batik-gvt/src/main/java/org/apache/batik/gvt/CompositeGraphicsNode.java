@@ -23,6 +23,7 @@ import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.Collection;
@@ -48,6 +49,38 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
     public static final Rectangle2D VIEWPORT  = new Rectangle();
     public static final Rectangle2D NULL_RECT = new Rectangle();
 
+    /**
+     * The default number of children from which the children of a
+     * composite graphics node are indexed.
+     */
+    public static final int DEFAULT_SPATIAL_INDEX_THRESHOLD = 64;
+
+    /**
+     * The number of children from which the children of a composite
+     * graphics node are indexed.
+     */
+    protected static volatile int spatialIndexThreshold =
+        DEFAULT_SPATIAL_INDEX_THRESHOLD;
+
+    /**
+     * Sets the number of children from which the bounds of the children
+     * of a composite graphics node are put in a {@link SpatialIndex}, so
+     * that painting a part of the node and hit testing only look at the
+     * children concerned.  <code>Integer.MAX_VALUE</code> disables the
+     * indexes.
+     */
+    public static void setSpatialIndexThreshold(int threshold) {
+        spatialIndexThreshold = threshold;
+    }
+
+    /**
+     * Returns the number of children from which the children of a
+     * composite graphics node are indexed.
+     */
+    public static int getSpatialIndexThreshold() {
+        return spatialIndexThreshold;
+    }
+
     /**
      * The children of this composite graphics node.
      */
@@ -90,6 +123,16 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
      */
     private Shape outline;
 
+    /**
+     * Internal Cache: the index of the bounds of the children.
+     */
+    private volatile SpatialIndex paintIndex;
+
+    /**
+     * Internal Cache: the index of the sensitive bounds of the children.
+     */
+    private volatile SpatialIndex hitIndex;
+
     /**
      * Constructs a new empty <code>CompositeGraphicsNode</code>.
      */
@@ -153,6 +196,25 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
         // Thread.currentThread() is potentially expensive, so reuse my instance in hasBeenHalted()
         Thread currentThread = Thread.currentThread();
 
+        int[] painted = getPaintedChildren(g2d);
+        if (painted != null) {
+            // Paint only the children that intersect the clip
+            for (int j=0; j < painted.length && painted[j] >= 0; ++j) {
+                if (HaltingThread.hasBeenHalted( currentThread ))
+                    return;
+
+                int i = painted[j];
+                if (i >= count) {
+                    break;
+                }
+                GraphicsNode node = children[i];
+                if (node != null) {
+                    node.paint(g2d);
+                }
+            }
+            return;
+        }
+
         // Paint children
         for (int i=0; i < count; ++i) {
             if (HaltingThread.hasBeenHalted( currentThread ))
@@ -167,6 +229,118 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
         }
     }
 
+    /**
+     * Returns the positions of the children that may be painted through
+     * the clip of the given Graphics2D, in increasing order and followed
+     * by -1 if the array is not full, or null if all the children have
+     * to be painted.
+     */
+    protected int[] getPaintedChildren(Graphics2D g2d) {
+        if (count < spatialIndexThreshold) {
+            return null;
+        }
+        Shape clip = g2d.getClip();
+        if (clip == null) {
+            return null;
+        }
+        Rectangle2D cb = clip.getBounds2D();
+        Rectangle2D pb = getPrimitiveBounds();
+        if (pb == null || cb.contains(pb)) {
+            return null;
+        }
+
+        // The clip is widened by a device pixel, to account for the
+        // rounding of the bounds and the stroke normalization.
+        AffineTransform inv;
+        try {
+            inv = g2d.getTransform().createInverse();
+        } catch (NoninvertibleTransformException e) {
+            return null;
+        }
+        double dx = Math.abs(inv.getScaleX()) + Math.abs(inv.getShearX());
+        double dy = Math.abs(inv.getShearY()) + Math.abs(inv.getScaleY());
+
+        SpatialIndex index = getPaintIndex();
+        if (index == null) {
+            return null;
+        }
+        return index.query(cb.getMinX() - dx, cb.getMinY() - dy,
+                           cb.getMaxX() + dx, cb.getMaxY() + dy, null);
+    }
+
+    /**
+     * Returns the index of the bounds of the children, or null if it
+     * could not be built.
+     */
+    protected SpatialIndex getPaintIndex() {
+        SpatialIndex index = paintIndex;
+        if (index != null) {
+            return index;
+        }
+
+        Thread currentThread = Thread.currentThread();
+        int n = count;
+        Rectangle2D[] bounds = new Rectangle2D[n];
+        for (int i = 0; i < n; i++) {
+            GraphicsNode node = children[i];
+            if (node != null) {
+                bounds[i] = node.getTransformedBounds(IDENTITY);
+            }
+            if (((i & 0x0F) == 0) && HaltingThread.hasBeenHalted( currentThread ))
+                return null;
+        }
+        if (HaltingThread.hasBeenHalted( currentThread )) {
+            return null;
+        }
+        index = new SpatialIndex(bounds, n);
+        paintIndex = index;
+        return index;
+    }
+
+    /**
+     * Returns the index of the sensitive bounds of the children, or null
+     * if the children are not indexed.
+     */
+    protected SpatialIndex getHitIndex() {
+        if (count < spatialIndexThreshold) {
+            return null;
+        }
+        SpatialIndex index = hitIndex;
+        if (index != null) {
+            return index;
+        }
+
+        int n = count;
+        Rectangle2D[] bounds = new Rectangle2D[n];
+        for (int i = 0; i < n; i++) {
+            GraphicsNode node = children[i];
+            if (node != null) {
+                bounds[i] = node.getTransformedSensitiveBounds(IDENTITY);
+            }
+        }
+        index = new SpatialIndex(bounds, n);
+        hitIndex = index;
+        return index;
+    }
+
+    /**
+     * Returns the positions of the children whose sensitive bounds may
+     * contain the given point, in increasing order and followed by -1 if
+     * the array is not full, or null if the children are not indexed.
+     */
+    protected int[] getHitChildren(Point2D p) {
+        SpatialIndex index = getHitIndex();
+        if (index == null) {
+            return null;
+        }
+        // The point is widened to account for the rounding of the bounds.
+        double x = p.getX();
+        double y = p.getY();
+        double dx = (1 + Math.abs(x)) * 1e-6;
+        double dy = (1 + Math.abs(y)) * 1e-6;
+        return index.query(x - dx, y - dy, x + dx, y + dy, null);
+    }
+
     //
     // Event support methods
     //
@@ -187,6 +361,8 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
         primitiveBounds = null;
         sensitiveBounds = null;
         outline = null;
+        paintIndex = null;
+        hitIndex = null;
     }
 
     /**
@@ -218,18 +394,12 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
             return null;
         }
 
-        primitiveBounds = bounds;
-
+        // The bounds are only published once complete, since other
+        // threads may be painting this node at the same time.
         while (i < count) {
             Rectangle2D ctb = children[i++].getTransformedBounds(IDENTITY);
             if (ctb != null) {
-                if (primitiveBounds == null) {
-                    // another thread has set the primitive bounds to null,
-                    // need to recall this function
-                    return null;
-                } else {
-                    primitiveBounds.add(ctb);
-                }
+                bounds.add(ctb);
             }
 
             if (((i & 0x0F) == 0) && HaltingThread.hasBeenHalted( currentThread ))
@@ -241,7 +411,9 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
             // The Thread has been halted.
             // Invalidate any cached values and proceed.
             invalidateGeometryCache();
+            return bounds;
         }
+        primitiveBounds = bounds;
         return primitiveBounds;
     }
 
@@ -321,23 +493,20 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
         if (geometryBounds == null) {
             // System.err.println("geometryBounds are null");
             int i=0;
-            while(geometryBounds == null && i < count){
-                geometryBounds =
+            Rectangle2D bounds = null;
+            while(bounds == null && i < count){
+                bounds =
                 children[i++].getTransformedGeometryBounds (IDENTITY);
             }
 
             while (i<count) {
                 Rectangle2D cgb = children[i++].getTransformedGeometryBounds(IDENTITY);
                 if (cgb != null) {
-                    if (geometryBounds == null) {
-                        // another thread has set the geometry bounds to null,
-                        // need to recall this function
-                        return getGeometryBounds();
-                    } else {
-                        geometryBounds.add(cgb);
-                    }
+                    bounds.add(cgb);
                 }
             }
+            geometryBounds = bounds;
+            return bounds;
         }
 
         return geometryBounds;
@@ -393,24 +562,21 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
 
         // System.out.println("sensitiveBoundsBounds are null");
         int i=0;
-        while(sensitiveBounds == null && i < count){
-            sensitiveBounds =
+        Rectangle2D bounds = null;
+        while(bounds == null && i < count){
+            bounds =
                 children[i++].getTransformedSensitiveBounds(IDENTITY);
         }
 
         while (i<count) {
             Rectangle2D cgb = children[i++].getTransformedSensitiveBounds(IDENTITY);
             if (cgb != null) {
-                if (sensitiveBounds == null)
-                    // another thread has set the geometry bounds to null,
-                    // need to recall this function
-                    return getSensitiveBounds();
-
-                sensitiveBounds.add(cgb);
+                bounds.add(cgb);
             }
         }
 
-        return sensitiveBounds;
+        sensitiveBounds = bounds;
+        return bounds;
     }
 
     /**
@@ -460,9 +626,18 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
     public boolean contains(Point2D p) {
         Rectangle2D bounds = getSensitiveBounds();
         if (count > 0 && bounds != null && bounds.contains(p)) {
+            int[] hit = getHitChildren(p);
             Point2D pt = null;
             Point2D cp = null; // Propagated to children
-            for (int i=0; i < count; ++i) {
+            int n = (hit != null) ? hit.length : count;
+            for (int j=0; j < n; ++j) {
+                int i = j;
+                if (hit != null) {
+                    i = hit[j];
+                    if (i < 0 || i >= count) {
+                        break;
+                    }
+                }
                 AffineTransform t = children[i].getInverseTransform();
                 if(t != null){
                     pt = t.transform(p, pt);
@@ -489,10 +664,25 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
     public GraphicsNode nodeHitAt(Point2D p) {
         Rectangle2D bounds = getSensitiveBounds();
         if (count > 0 && bounds != null && bounds.contains(p)) {
+            int[] hit = getHitChildren(p);
+            int n = count;
+            if (hit != null) {
+                n = 0;
+                while (n < hit.length && hit[n] >= 0) {
+                    n++;
+                }
+            }
             // Go backward because the children are in rendering order
             Point2D pt = null;
             Point2D cp = null; // Propagated to children
-            for (int i=count-1; i >= 0; --i) {
+            for (int j=n-1; j >= 0; --j) {
+                int i = j;
+                if (hit != null) {
+                    i = hit[j];
+                    if (i >= count) {
+                        continue;
+                    }
+                }
                 AffineTransform t = children[i].getInverseTransform();
                 if(t != null){
                     pt = t.transform(p, pt);
@@ -0,0 +1,352 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A cache of the renderings of the graphics nodes that are expensive to
+ * paint, such as the nodes with a filter, a mask or a clip, so that they
+ * are drawn as images when nothing in them changed.
+ *
+ * <p>The cache is used by the nodes painted on a Graphics2D that has it
+ * as the <code>RenderingHintsKeyExt.KEY_LAYER_CACHE</code> hint.  Each
+ * node keeps its own {@link Layer}: the rendering of the node in device
+ * space, for a given device transform, up to whole pixel translations,
+ * and for given rendering hints.  The layers of a node and of its
+ * ancestors are discarded when a <code>GraphicsNodeChangeEvent</code> is
+ * fired for the node.</p>
+ *
+ * <p>The cache bounds the number of bytes held by its layers, and
+ * discards the least recently used layers to stay within that bound.
+ * It can be shared by several threads and renderers.</p>
+ *
+ * @version $Id$
+ */
+public class LayerCache {
+
+    /**
+     * The default maximum number of bytes held by a cache: 16 MB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * The cache shared by the renderers by default.
+     */
+    protected static LayerCache defaultCache;
+
+    /**
+     * Returns the cache shared by the renderers by default, bounded to
+     * {@link #DEFAULT_MAX_BYTES}.
+     */
+    public static synchronized LayerCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new LayerCache(DEFAULT_MAX_BYTES);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * The layers held by this cache, from the least recently used one.
+     */
+    protected LinkedHashMap layers = new LinkedHashMap(16, 0.75f, true);
+
+    /**
+     * The maximum number of bytes held by the layers.
+     */
+    protected long maxBytes;
+
+    /**
+     * The number of bytes held by the layers.
+     */
+    protected long usedBytes;
+
+    /**
+     * The number of layers that were reused.
+     */
+    protected long hits;
+
+    /**
+     * The number of layers that had to be rendered.
+     */
+    protected long misses;
+
+    /**
+     * The number of layers discarded to stay within the maximum number
+     * of bytes.
+     */
+    protected long evictions;
+
+    /**
+     * Creates a new LayerCache.
+     * @param maxBytes the maximum number of bytes held by the layers
+     */
+    public LayerCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the maximum number of bytes held by the layers.
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes held by the layers.  The least
+     * recently used layers are discarded if needed.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Returns the number of bytes held by the layers.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the number of layers held by this cache.
+     */
+    public synchronized int getSize() {
+        return layers.size();
+    }
+
+    /**
+     * Returns the number of layers that were reused.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of layers that had to be rendered.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of layers discarded to stay within the maximum
+     * number of bytes.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counts.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Discards all the layers.
+     */
+    public synchronized void flush() {
+        Iterator i = layers.keySet().iterator();
+        while (i.hasNext()) {
+            ((Layer)i.next()).image = null;
+        }
+        layers.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Returns true if a layer of the given number of bytes can be held
+     * by this cache.  A layer may use at most a quarter of the cache.
+     */
+    public synchronized boolean canHold(long bytes) {
+        return bytes <= maxBytes / 4;
+    }
+
+    /**
+     * Records that a layer had to be rendered.
+     */
+    public synchronized void recordMiss() {
+        misses++;
+    }
+
+    /**
+     * Returns the image of the given layer, or null if it was discarded.
+     * The layer becomes the most recently used one.
+     */
+    public synchronized BufferedImage getImage(Layer layer) {
+        if (layer.image == null) {
+            return null;
+        }
+        layers.get(layer);
+        hits++;
+        return layer.image;
+    }
+
+    /**
+     * Adds the given layer to this cache, discarding the least recently
+     * used layers if needed.
+     */
+    public synchronized void add(Layer layer) {
+        if (layer.image == null || layers.containsKey(layer)) {
+            return;
+        }
+        layer.cache = this;
+        layers.put(layer, layer);
+        usedBytes += layer.getBytes();
+        evict();
+    }
+
+    /**
+     * Discards the given layer.
+     */
+    public synchronized void remove(Layer layer) {
+        if (layers.remove(layer) != null) {
+            usedBytes -= layer.getBytes();
+        }
+        layer.image = null;
+    }
+
+    /**
+     * Discards the least recently used layers until the layers hold at
+     * most the maximum number of bytes.
+     */
+    protected void evict() {
+        Iterator i = layers.keySet().iterator();
+        while (usedBytes > maxBytes && i.hasNext()) {
+            Layer l = (Layer)i.next();
+            i.remove();
+            usedBytes -= l.getBytes();
+            l.image = null;
+            evictions++;
+        }
+    }
+
+    /**
+     * The rendering of a graphics node in device space.
+     */
+    public static class Layer {
+
+        /**
+         * The cache holding this layer, or null.
+         */
+        protected LayerCache cache;
+
+        /**
+         * The rendering, or null once the layer is discarded.
+         */
+        protected BufferedImage image;
+
+        /**
+         * The position of the image in device space, relative to the
+         * whole pixel translation of the device transform.
+         */
+        protected int x, y;
+
+        /**
+         * The device transform of the rendering, without its whole
+         * pixel translation.
+         */
+        protected AffineTransform transform;
+
+        /**
+         * The rendering hints of the rendering.
+         */
+        protected RenderingHints hints;
+
+        /**
+         * The number of bytes held by the image.
+         */
+        protected long bytes;
+
+        /**
+         * Creates a new Layer.
+         * @param image the rendering
+         * @param x the position of the image in device space, relative
+         *        to the whole pixel translation of the device transform
+         * @param y the position of the image in device space, relative
+         *        to the whole pixel translation of the device transform
+         * @param transform the device transform of the rendering,
+         *        without its whole pixel translation
+         * @param hints the rendering hints of the rendering
+         */
+        public Layer(BufferedImage image, int x, int y,
+                     AffineTransform transform, RenderingHints hints) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            this.transform = transform;
+            this.hints = hints;
+            bytes = (long)image.getWidth() * image.getHeight() * 4;
+        }
+
+        /**
+         * Returns the position of the image in device space, relative to
+         * the whole pixel translation of the device transform.
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * Returns the position of the image in device space, relative to
+         * the whole pixel translation of the device transform.
+         */
+        public int getY() {
+            return y;
+        }
+
+        /**
+         * Returns the number of bytes held by this layer.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns true if this layer is a rendering for the given
+         * transform and rendering hints.
+         * @param at the device transform, without its whole pixel
+         *        translation
+         * @param rh the rendering hints
+         */
+        public boolean matches(AffineTransform at, RenderingHints rh) {
+            return transform.equals(at) && hints.equals(rh);
+        }
+
+        /**
+         * Discards this layer.
+         */
+        public void discard() {
+            LayerCache c = cache;
+            if (c != null) {
+                c.remove(this);
+            } else {
+                image = null;
+            }
+        }
+    }
+}
@@ -27,6 +27,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.ColorModel;
 import java.awt.image.Raster;
 
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.image.PadMode;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.ext.awt.image.renderable.PadRable8Bit;
@@ -162,20 +163,31 @@ public class PatternPaint implements Paint {
             xform.concatenate(patternTransform);
         }
 
-        if ((lastContext!= null) &&
-            lastContext.getColorModel().equals(cm)) {
+        // A context is only used as is by the thread that created it,
+        // the others get a copy with their own working raster, as a
+        // document may be rendered by several threads.  The context moved
+        // for another translation is not used by those others, nor when
+        // the image is painted by bands on several threads, since the
+        // pixels would then depend on the painting order.
+        boolean parallel = (hints != null) &&
+            (hints.get(RenderingHintsKeyExt.KEY_WORKER_POOL) != null);
+
+        PatternPaintContext last = lastContext;
+        if ((last != null) &&
+            last.getColorModel().equals(cm)) {
 
             double[] p = new double[6];
             double[] q = new double[6];
             xform.getMatrix(p);
-            lastContext.getUsr2Dev().getMatrix(q);
+            last.getUsr2Dev().getMatrix(q);
             if ((p[0] == q[0]) && (p[1] == q[1]) &&
                 (p[2] == q[2]) && (p[3] == q[3])) {
+                PatternPaintContext ctx = last.forCurrentThread();
                 if ((p[4] == q[4]) && (p[5] == q[5]))
-                    return lastContext;
-                else
+                    return ctx;
+                else if (!parallel && (ctx == last))
                     return new PatternPaintContextWrapper
-                        (lastContext,
+                        (last,
                          (int)(q[4]-p[4]+0.5),
                          (int)(q[5]-p[5]+0.5));
             }
@@ -184,11 +196,12 @@ public class PatternPaint implements Paint {
         // System.out.println("CM : " + cm);
         // System.out.println("xForm : " + xform);
 
-        lastContext = new PatternPaintContext(cm, xform,
+        last = new PatternPaintContext(cm, xform,
                                        hints, tile,
                                        patternRegion,
                                        overflow);
-        return lastContext;
+        lastContext = last;
+        return last;
     }
 
     /**
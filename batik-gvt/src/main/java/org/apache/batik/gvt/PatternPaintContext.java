@@ -63,6 +63,12 @@ public class PatternPaintContext implements PaintContext {
 
     protected AffineTransform usr2dev;
 
+    /**
+     * The thread that created this context, the only one that uses its
+     * working raster.
+     */
+    protected Thread owner = Thread.currentThread();
+
     public AffineTransform getUsr2Dev() { return usr2dev; }
 
     private static Rectangle EVERYTHING = 
@@ -143,6 +149,30 @@ public class PatternPaintContext implements PaintContext {
         }
     }
 
+    /**
+     * Creates a context that shares the pattern rendering of the
+     * specified context but has its own working raster, so that both
+     * can be used at the same time.
+     *
+     * @param ctx the context to share the pattern rendering with
+     */
+    public PatternPaintContext(PatternPaintContext ctx) {
+        this.usr2dev  = ctx.usr2dev;
+        this.tiled    = ctx.tiled;
+        this.rasterCM = ctx.rasterCM;
+    }
+
+    /**
+     * Returns this context if it was created by the current thread, or
+     * else a context sharing its pattern rendering, so that the working
+     * raster is never used by two threads at the same time.
+     */
+    public PatternPaintContext forCurrentThread() {
+        if (owner == Thread.currentThread())
+            return this;
+        return new PatternPaintContext(this);
+    }
+
     public void dispose(){
         raster = null;
     }
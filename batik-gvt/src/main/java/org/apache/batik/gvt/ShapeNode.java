@@ -19,7 +19,10 @@
 package org.apache.batik.gvt;
 
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Shape;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
@@ -68,6 +71,18 @@ public class ShapeNode extends AbstractGraphicsNode {
      */
     private Shape sensitiveArea;
 
+    /**
+     * Internal Cache: The shape simplified for the last scale at which
+     * the node was painted with a level of detail.
+     */
+    private SimplifiedShape simplifiedShape;
+
+    /**
+     * Internal Cache: The shape painted when the node is smaller than
+     * the level of detail.
+     */
+    private Shape approximateShape;
+
     /**
      * Constructs a new empty <code>ShapeNode</code>.
      */
@@ -150,7 +165,237 @@ public class ShapeNode extends AbstractGraphicsNode {
      */
     public void primitivePaint(Graphics2D g2d) {
         if (shapePainter != null) {
-            shapePainter.paint(g2d);
+            float lod = getLevelOfDetail(g2d);
+            Shape s = null;
+            if (lod > 0) {
+                s = getSimplifiedShape(g2d, lod);
+            }
+            if (s != null) {
+                paintShape(g2d, shapePainter, s);
+            } else {
+                shapePainter.paint(g2d);
+            }
+        }
+    }
+
+    /**
+     * Paints the approximate shape of this node, with the fill and the
+     * stroke of this node.
+     *
+     * @param g2d the Graphics2D to use
+     */
+    protected void approximatePrimitivePaint(Graphics2D g2d) {
+        if (shapePainter == null) {
+            return;
+        }
+        Shape s = approximateShape;
+        if (s == null) {
+            s = computeApproximateShape();
+            approximateShape = s;
+        }
+        paintShape(g2d, shapePainter, s);
+    }
+
+    /**
+     * Returns a rectangle with the center and the proportions of the
+     * bounds of the shape of this node, and the area of the shape, so
+     * that it covers as many pixels.  The shape itself is returned when
+     * it covers less than a quarter of its bounds, as lines do.
+     */
+    protected Shape computeApproximateShape() {
+        Rectangle2D b = shape.getBounds2D();
+        double w = b.getWidth();
+        double h = b.getHeight();
+        double flatness = Math.max(w, h) / 100;
+        if (flatness <= 0) {
+            return shape;
+        }
+
+        // The area is the sum of the areas of the subpaths.
+        double area = 0;
+        double sum = 0;
+        double moveX = 0, moveY = 0, lastX = 0, lastY = 0;
+        float[] pts = new float[6];
+        for (PathIterator pi = shape.getPathIterator(null, flatness);
+             !pi.isDone(); pi.next()) {
+            int type = pi.currentSegment(pts);
+            if (type == PathIterator.SEG_MOVETO) {
+                sum += lastX * moveY - moveX * lastY;
+                area += Math.abs(sum);
+                sum = 0;
+                moveX = lastX = pts[0];
+                moveY = lastY = pts[1];
+            } else {
+                double x = moveX, y = moveY;
+                if (type == PathIterator.SEG_LINETO) {
+                    x = pts[0];
+                    y = pts[1];
+                }
+                sum += lastX * y - x * lastY;
+                lastX = x;
+                lastY = y;
+            }
+        }
+        sum += lastX * moveY - moveX * lastY;
+        area = (area + Math.abs(sum)) / 2;
+
+        double ratio = area / (w * h);
+        if (!(ratio >= 0.25)) {
+            return shape;
+        }
+        if (ratio >= 1) {
+            return b;
+        }
+        double k = Math.sqrt(ratio);
+        return new Rectangle2D.Double(b.getCenterX() - w * k / 2,
+                                      b.getCenterY() - h * k / 2,
+                                      w * k, h * k);
+    }
+
+    /**
+     * Paints the given shape instead of the shape of the given painter.
+     * The markers are painted as the painter does.
+     */
+    protected static void paintShape(Graphics2D g2d, ShapePainter painter,
+                                     Shape s) {
+        if (painter instanceof FillShapePainter) {
+            Paint paint = ((FillShapePainter)painter).getPaint();
+            if (paint != null) {
+                g2d.setPaint(paint);
+                g2d.fill(s);
+            }
+        } else if (painter instanceof StrokeShapePainter) {
+            StrokeShapePainter sp = (StrokeShapePainter)painter;
+            if (sp.getStroke() != null && sp.getPaint() != null) {
+                g2d.setPaint(sp.getPaint());
+                g2d.setStroke(sp.getStroke());
+                g2d.draw(s);
+            }
+        } else if (painter instanceof CompositeShapePainter) {
+            CompositeShapePainter cp = (CompositeShapePainter)painter;
+            for (int i=0; i < cp.getShapePainterCount(); ++i) {
+                paintShape(g2d, cp.getShapePainter(i), s);
+            }
+        } else {
+            painter.paint(g2d);
+        }
+    }
+
+    /**
+     * Returns the shape of this node flattened and simplified for the
+     * scale of the given Graphics2D, or null if the shape is not made
+     * simpler.  The points closer than a quarter of the level of detail
+     * to the previous one are dropped.  The result is kept for the scales
+     * of the same power of two.
+     *
+     * @param g2d the Graphics2D to use
+     * @param lod the level of detail, in device pixels
+     */
+    protected Shape getSimplifiedShape(Graphics2D g2d, float lod) {
+        double scale =
+            Math.sqrt(Math.abs(g2d.getTransform().getDeterminant()));
+        if (scale == 0 || Double.isInfinite(scale) || Double.isNaN(scale)) {
+            return null;
+        }
+        int exponent = Math.getExponent(scale);
+        SimplifiedShape ss = simplifiedShape;
+        if (ss != null && ss.exponent == exponent && ss.lod == lod) {
+            return ss.shape;
+        }
+
+        // The tolerance holds for all the scales of the power of two.
+        double tolerance = lod / 4 / Math.scalb(1.0, exponent + 1);
+        ss = new SimplifiedShape(exponent, lod, simplify(shape, tolerance));
+        simplifiedShape = ss;
+        return ss.shape;
+    }
+
+    /**
+     * Returns the given shape flattened with the given tolerance, without
+     * the points closer than the tolerance to the previous one, or null
+     * if less than a quarter of the points are dropped.
+     */
+    protected static Shape simplify(Shape s, double tolerance) {
+        double tol2 = tolerance * tolerance;
+        PathIterator pi = s.getPathIterator(null, tolerance);
+        GeneralPath path = new GeneralPath(pi.getWindingRule());
+        float[] pts = new float[6];
+        int total = 0;
+        int kept = 0;
+        float lastX = 0, lastY = 0;
+        float moveX = 0, moveY = 0;
+        float pendingX = 0, pendingY = 0;
+        boolean pending = false;
+        for (; !pi.isDone(); pi.next()) {
+            int type = pi.currentSegment(pts);
+            total++;
+            if (type == PathIterator.SEG_LINETO) {
+                float dx = pts[0] - lastX;
+                float dy = pts[1] - lastY;
+                if (dx * dx + dy * dy < tol2) {
+                    pendingX = pts[0];
+                    pendingY = pts[1];
+                    pending = true;
+                    continue;
+                }
+                path.lineTo(pts[0], pts[1]);
+                lastX = pts[0];
+                lastY = pts[1];
+                pending = false;
+                kept++;
+                continue;
+            }
+            // The last point of a subpath is always kept.
+            if (pending) {
+                path.lineTo(pendingX, pendingY);
+                pending = false;
+                kept++;
+            }
+            if (type == PathIterator.SEG_MOVETO) {
+                path.moveTo(pts[0], pts[1]);
+                moveX = lastX = pts[0];
+                moveY = lastY = pts[1];
+            } else {
+                path.closePath();
+                lastX = moveX;
+                lastY = moveY;
+            }
+            kept++;
+        }
+        if (pending) {
+            path.lineTo(pendingX, pendingY);
+            kept++;
+        }
+        if (kept * 4 > total * 3) {
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * A shape simplified for the scales of a power of two.
+     */
+    protected static class SimplifiedShape {
+
+        /**
+         * The exponent of the power of two.
+         */
+        public final int exponent;
+
+        /**
+         * The level of detail the shape was simplified for.
+         */
+        public final float lod;
+
+        /**
+         * The simplified shape, or null if the shape is not simplified.
+         */
+        public final Shape shape;
+
+        public SimplifiedShape(int exponent, float lod, Shape shape) {
+            this.exponent = exponent;
+            this.lod = lod;
+            this.shape = shape;
         }
     }
 
@@ -170,12 +415,17 @@ public class ShapeNode extends AbstractGraphicsNode {
         sensitiveBounds = null;
         paintedArea = null;
         sensitiveArea = null;
+        simplifiedShape = null;
+        approximateShape = null;
     }
 
     public void setPointerEventType(int pointerEventType) {
         super.setPointerEventType(pointerEventType);
         sensitiveBounds = null;
         sensitiveArea = null;
+        // The sensitive bounds of the parent depend on ours.
+        if (parent != null)
+            parent.invalidateGeometryCache();
     }
     /**
      * Returns true if the specified Point2D is inside the boundary of this
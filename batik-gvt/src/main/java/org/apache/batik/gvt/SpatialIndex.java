@@ -0,0 +1,258 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * A static R-tree over a list of rectangles, used by {@link
+ * CompositeGraphicsNode} to find the children that intersect a
+ * rectangle or contain a point without testing all of them.
+ *
+ * <p>The tree is packed once: the rectangles are sorted along a Hilbert
+ * curve through their centers, and grouped by {@link #NODE_SIZE} at each
+ * level.  A changed rectangle requires a new tree.  The queries return
+ * the positions of the rectangles in the list given to the constructor,
+ * in increasing order.</p>
+ *
+ * @version $Id$
+ */
+public class SpatialIndex {
+
+    /**
+     * The maximum number of entries of a node of the tree.
+     */
+    public static final int NODE_SIZE = 16;
+
+    /**
+     * The boxes of the tree, level by level from the rectangles to the
+     * root, as (minX, minY, maxX, maxY) quadruples.
+     */
+    protected double[] boxes;
+
+    /**
+     * The index of the first box of each level, followed by the number
+     * of boxes.
+     */
+    protected int[] levels;
+
+    /**
+     * The positions of the rectangles in the list, in tree order.
+     */
+    protected int[] items;
+
+    /**
+     * The number of rectangles in the tree.
+     */
+    protected int size;
+
+    /**
+     * Creates a new SpatialIndex.
+     * @param rects The rectangles to index.  The null ones are ignored.
+     * @param len The number of rectangles to index.
+     */
+    public SpatialIndex(Rectangle2D[] rects, int len) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < len; i++) {
+            Rectangle2D r = rects[i];
+            if (r != null) {
+                size++;
+                minX = Math.min(minX, r.getMinX());
+                minY = Math.min(minY, r.getMinY());
+                maxX = Math.max(maxX, r.getMaxX());
+                maxY = Math.max(maxY, r.getMaxY());
+            }
+        }
+
+        // Sorts the rectangles along the curve.  The position is kept in
+        // the low bits of the sort keys.
+        long[] keys = new long[size];
+        double sx = (maxX > minX) ? 0xFFFF / (maxX - minX) : 0;
+        double sy = (maxY > minY) ? 0xFFFF / (maxY - minY) : 0;
+        for (int i = 0, j = 0; i < len; i++) {
+            Rectangle2D r = rects[i];
+            if (r != null) {
+                int x = (int) ((r.getCenterX() - minX) * sx);
+                int y = (int) ((r.getCenterY() - minY) * sy);
+                keys[j++] = ((long) (hilbert(x, y) >>> 1) << 32) | i;
+            }
+        }
+        Arrays.sort(keys);
+
+        int levelCount = 1;
+        int total = size;
+        for (int n = size; n > 1; levelCount++) {
+            n = (n + NODE_SIZE - 1) / NODE_SIZE;
+            total += n;
+        }
+        boxes = new double[total * 4];
+        levels = new int[levelCount + 1];
+        items = new int[size];
+        for (int j = 0; j < size; j++) {
+            int i = (int) keys[j];
+            Rectangle2D r = rects[i];
+            items[j] = i;
+            boxes[j * 4]     = r.getMinX();
+            boxes[j * 4 + 1] = r.getMinY();
+            boxes[j * 4 + 2] = r.getMaxX();
+            boxes[j * 4 + 3] = r.getMaxY();
+        }
+
+        // Builds the upper levels.
+        int start = 0;
+        int n = size;
+        for (int l = 1; l < levelCount; l++) {
+            int next = start + n;
+            int m = (n + NODE_SIZE - 1) / NODE_SIZE;
+            for (int k = 0; k < m; k++) {
+                int b = (next + k) * 4;
+                boxes[b]     = Double.POSITIVE_INFINITY;
+                boxes[b + 1] = Double.POSITIVE_INFINITY;
+                boxes[b + 2] = Double.NEGATIVE_INFINITY;
+                boxes[b + 3] = Double.NEGATIVE_INFINITY;
+                int end = Math.min((k + 1) * NODE_SIZE, n);
+                for (int c = k * NODE_SIZE; c < end; c++) {
+                    int cb = (start + c) * 4;
+                    boxes[b]     = Math.min(boxes[b],     boxes[cb]);
+                    boxes[b + 1] = Math.min(boxes[b + 1], boxes[cb + 1]);
+                    boxes[b + 2] = Math.max(boxes[b + 2], boxes[cb + 2]);
+                    boxes[b + 3] = Math.max(boxes[b + 3], boxes[cb + 3]);
+                }
+            }
+            levels[l] = next;
+            start = next;
+            n = m;
+        }
+        levels[levelCount] = start + n;
+    }
+
+    /**
+     * Returns the number of rectangles in the tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the positions of the rectangles that intersect the given
+     * rectangle, including their edges.
+     * @param result An array to store the positions into, or null.  A new
+     *        array is allocated if it is too small.
+     * @return The positions, in increasing order, followed by -1 if the
+     *         array is not full.
+     */
+    public int[] query(double minX, double minY, double maxX, double maxY,
+                       int[] result) {
+        if (result == null || result.length < 16) {
+            result = new int[16];
+        }
+        int found = 0;
+        if (size > 0) {
+            int top = levels.length - 2;
+            int[] stack = new int[(top + 1) * NODE_SIZE * 2 + 2];
+            int sp = 0;
+            stack[sp++] = top;
+            stack[sp++] = levels[top];
+            while (sp > 0) {
+                int node = stack[--sp];
+                int level = stack[--sp];
+                int b = node * 4;
+                if (boxes[b] > maxX || boxes[b + 1] > maxY ||
+                    boxes[b + 2] < minX || boxes[b + 3] < minY) {
+                    continue;
+                }
+                if (level == 0) {
+                    if (found == result.length) {
+                        int[] t = new int[found * 2];
+                        System.arraycopy(result, 0, t, 0, found);
+                        result = t;
+                    }
+                    result[found++] = items[node];
+                    continue;
+                }
+                int k = node - levels[level];
+                int first = levels[level - 1] + k * NODE_SIZE;
+                int end = Math.min(first + NODE_SIZE, levels[level]);
+                for (int c = end - 1; c >= first; c--) {
+                    stack[sp++] = level - 1;
+                    stack[sp++] = c;
+                }
+            }
+        }
+        Arrays.sort(result, 0, found);
+        if (found < result.length) {
+            result[found] = -1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position of the given point on a Hilbert curve through
+     * a 65536x65536 grid.
+     */
+    protected static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int na = a | (b >> 1);
+        int nb = (a >> 1) ^ a;
+        int nc = ((c >> 1) ^ (b & (d >> 1))) ^ c;
+        int nd = ((a & (c >> 1)) ^ (d >> 1)) ^ d;
+
+        a = na; b = nb; c = nc; d = nd;
+        na = (a & (a >> 2)) ^ (b & (b >> 2));
+        nb = (a & (b >> 2)) ^ (b & ((a ^ b) >> 2));
+        nc ^= (a & (c >> 2)) ^ (b & (d >> 2));
+        nd ^= (b & (c >> 2)) ^ ((a ^ b) & (d >> 2));
+
+        a = na; b = nb; c = nc; d = nd;
+        na = (a & (a >> 4)) ^ (b & (b >> 4));
+        nb = (a & (b >> 4)) ^ (b & ((a ^ b) >> 4));
+        nc ^= (a & (c >> 4)) ^ (b & (d >> 4));
+        nd ^= (b & (c >> 4)) ^ ((a ^ b) & (d >> 4));
+
+        a = na; b = nb; c = nc; d = nd;
+        nc ^= (a & (c >> 8)) ^ (b & (d >> 8));
+        nd ^= (b & (c >> 8)) ^ ((a ^ b) & (d >> 8));
+
+        a = nc ^ (nc >> 1);
+        b = nd ^ (nd >> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
@@ -27,6 +27,8 @@ import java.awt.image.RenderedImage;
 import java.awt.image.renderable.RenderContext;
 import java.util.Map;
 
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.SVGComposite;
 import org.apache.batik.ext.awt.image.renderable.AbstractRable;
@@ -52,6 +54,8 @@ public class GraphicsNodeRable8Bit
     private AffineTransform cachedUsr2dev  = null;
     private CachableRed     cachedRed      = null;
     private Rectangle2D     cachedBounds = null;
+    private Object          cachedLevelOfDetail = null;
+    private Object          cachedLayerCache = null;
     /**
      * Should GraphicsNodeRable call primitivePaint or Paint.
      */
@@ -101,11 +105,13 @@ public class GraphicsNodeRable8Bit
     /**
      * Clear any cached Red.
      */
-    public void clearCache() {
+    public synchronized void clearCache() {
         cachedRed     = null;
         cachedUsr2dev = null;
         cachedGn2dev  = null;
         cachedBounds  = null;
+        cachedLevelOfDetail = null;
+        cachedLayerCache = null;
     }
 
     /**
@@ -240,7 +246,7 @@ public class GraphicsNodeRable8Bit
      * @param renderContext the RenderContext to use to produce the rendering.
      * @return a RenderedImage containing the rendered data.
      */
-    public RenderedImage createRendering(RenderContext renderContext){
+    public synchronized RenderedImage createRendering(RenderContext renderContext){
         // Get user space to device space transform
         AffineTransform usr2dev = renderContext.getTransform();
 
@@ -260,13 +266,30 @@ public class GraphicsNodeRable8Bit
 
         Rectangle2D bounds2D = getBounds2D();
 
+        // The rendering depends on the level of detail and on the
+        // layer cache, which are given by the hints.
+        Object lod = null;
+        Object lc = null;
+        boolean parallel = false;
+        if (renderContext.getRenderingHints() != null) {
+            lod = renderContext.getRenderingHints().get
+                (RenderingHintsKeyExt.KEY_LEVEL_OF_DETAIL);
+            lc = renderContext.getRenderingHints().get
+                (RenderingHintsKeyExt.KEY_LAYER_CACHE);
+            parallel = renderContext.getRenderingHints().get
+                (RenderingHintsKeyExt.KEY_WORKER_POOL) != null;
+        }
+
         if ((cachedBounds != null)                            &&
             (cachedGn2dev != null)                            &&
             (cachedBounds.equals(bounds2D))                   &&
             (gn2dev.getScaleX()  == cachedGn2dev.getScaleX()) &&
             (gn2dev.getScaleY()  == cachedGn2dev.getScaleY()) &&
             (gn2dev.getShearX()  == cachedGn2dev.getShearX()) &&
-            (gn2dev.getShearY()  == cachedGn2dev.getShearY()))
+            (gn2dev.getShearY()  == cachedGn2dev.getShearY()) &&
+            (lod == null ? cachedLevelOfDetail == null
+                         : lod.equals(cachedLevelOfDetail))   &&
+            (lc == cachedLayerCache))
         {
             // Just some form of Translation
             double deltaX = (usr2dev.getTranslateX() - 
@@ -282,8 +305,11 @@ public class GraphicsNodeRable8Bit
 
             // System.out.println("Delta: [" + deltaX + ", " + deltaY + "]");
 
-            // Integer translation in device space..
-            if ((deltaX == (int)deltaX) &&
+            // Integer translation in device space..  Not when the image
+            // is painted by bands on several threads: which band would
+            // render first would then change the pixels of the others.
+            if (!parallel &&
+                (deltaX == (int)deltaX) &&
                 (deltaY == (int)deltaY)) {
                 return new TranslateRed
                     (cachedRed, 
@@ -303,6 +329,8 @@ public class GraphicsNodeRable8Bit
             cachedUsr2dev = (AffineTransform)usr2dev.clone();
             cachedGn2dev  = gn2dev;
             cachedBounds  = bounds2D;
+            cachedLevelOfDetail = lod;
+            cachedLayerCache = lc;
             cachedRed =  new GraphicsNodeRed8Bit
                 (node, usr2dev, usePrimitivePaint, 
                  renderContext.getRenderingHints());
@@ -29,12 +29,15 @@ import java.awt.image.ColorModel;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.rendered.AbstractRed;
 import org.apache.batik.ext.awt.image.rendered.AbstractTiledRed;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.util.HaltingThread;
 import org.apache.batik.util.Platform;
+import org.apache.batik.util.WorkerPool;
 
 /**
  * This implementation of RenderableImage will render its input
@@ -119,6 +122,49 @@ public class GraphicsNodeRed8Bit extends AbstractRed {
     }
 
     public void genRect(WritableRaster wr) {
+        WorkerPool pool = null;
+        if (hints != null)
+            pool = (WorkerPool)hints.get
+                (RenderingHintsKeyExt.KEY_WORKER_POOL);
+        int bandH = AbstractTiledRed.getDefaultTileSize();
+        if ((pool == null) || (wr.getHeight() <= bandH)) {
+            paintRect(wr, null);
+            return;
+        }
+
+        // The rectangle is painted by bands of rows on the threads of
+        // the pool.  Each band is clipped to the whole rectangle, the
+        // area of interest of a serial paint, and only its own rows are
+        // written.  The bands do not depend on the number of threads,
+        // so neither does the result.
+        final Rectangle area = wr.getBounds();
+        final Thread caller = Thread.currentThread();
+        int nBands = (area.height + bandH - 1) / bandH;
+        Runnable[] bands = new Runnable[nBands];
+        for (int i = 0; i < nBands; i++) {
+            int y = area.y + i * bandH;
+            int h = Math.min(bandH, area.y + area.height - y);
+            final WritableRaster band = wr.createWritableChild
+                (area.x, y, area.width, h, area.x, y, null);
+            bands[i] = new Runnable() {
+                    public void run() {
+                        if (!HaltingThread.hasBeenHalted(caller))
+                            paintRect(band, area);
+                    }
+                };
+        }
+        pool.invokeAll(bands);
+    }
+
+    /**
+     * Paints the node in the given raster.
+     *
+     * @param wr the raster to paint
+     * @param area the clip of the paint in device space, which may be
+     *        larger than <code>wr</code>, or null to clip to
+     *        <code>wr</code>
+     */
+    protected void paintRect(WritableRaster wr, Rectangle area) {
         // System.out.println("  Rect: " + wr.getBounds());
         BufferedImage offScreen
             = new BufferedImage(cm, 
@@ -130,6 +176,9 @@ public class GraphicsNodeRed8Bit extends AbstractRed {
         g.setComposite(AlphaComposite.Clear);
         g.fillRect(0, 0, wr.getWidth(), wr.getHeight());
         g.setComposite(AlphaComposite.SrcOver);
+        if (area != null)
+            g.setClip(area.x - wr.getMinX(), area.y - wr.getMinY(),
+                      area.width, area.height);
         g.translate(-wr.getMinX(), -wr.getMinY());
 
         // Set transform
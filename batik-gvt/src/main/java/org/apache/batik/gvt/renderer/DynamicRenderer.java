@@ -36,6 +36,7 @@ import org.apache.batik.ext.awt.image.PadMode;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
 import org.apache.batik.ext.awt.image.rendered.PadRed;
 import org.apache.batik.util.HaltingThread;
+import org.apache.batik.util.WorkerPool;
 
 /**
  * Simple implementation of the Renderer that supports dynamic updates.
@@ -62,6 +63,12 @@ public class DynamicRenderer extends StaticRenderer {
 
     RectListManager damagedAreas;
 
+    /**
+     * The user to device transform of the current offscreen image when
+     * the whole image is up to date, or null.
+     */
+    protected AffineTransform renderedTransform;
+
     protected CachableRed setupCache(CachableRed img) {
         // Don't do any caching of content for dynamic case
         return img;
@@ -80,6 +87,143 @@ public class DynamicRenderer extends StaticRenderer {
         return;
     }
 
+    /**
+     * Sets up and clears the current offscreen buffer.
+     */
+    public void clearOffScreen() {
+        if (!isDoubleBuffered)
+            renderedTransform = null;
+        super.clearOffScreen();
+    }
+
+    /**
+     * Returns true if the current offscreen image can be reused by
+     * {@link #scroll} for the given transform and offscreen size.  This
+     * is the case when the whole image is up to date and the transform
+     * only differs from the one of the image by a translation.
+     */
+    public boolean isScrollable(AffineTransform usr2dev,
+                                int width, int height) {
+        AffineTransform rt = renderedTransform;
+        WritableRaster cr = currentRaster;
+        if ((rt == null) || (usr2dev == null) || (cr == null) ||
+            (rootCR == null) ||
+            (cr.getWidth() != width) || (cr.getHeight() != height))
+            return false;
+        if ((rt.getScaleX() != usr2dev.getScaleX()) ||
+            (rt.getShearY() != usr2dev.getShearY()) ||
+            (rt.getShearX() != usr2dev.getShearX()) ||
+            (rt.getScaleY() != usr2dev.getScaleY()))
+            return false;
+        int dx = getScrollX(rt, usr2dev);
+        int dy = getScrollY(rt, usr2dev);
+        return (Math.abs(dx) < width) && (Math.abs(dy) < height);
+    }
+
+    /**
+     * Moves the rendering to the given transform, keeping the pixels of
+     * the current offscreen image that remain visible and repainting
+     * only the newly exposed strips.  The root rendering is done without
+     * translation and then moved by whole pixels, so the kept pixels
+     * only differ from a full repaint where the antialiasing depends on
+     * the area repainted.
+     *
+     * If the repaint is halted, the offscreen image is left in the same
+     * state as after a halted {@link #repaint(RectListManager)}, and the
+     * next call to this method will fail.
+     *
+     * @param usr2dev the new user space to device space transform
+     * @param width the offscreen width
+     * @param height the offscreen height
+     * @return false if the offscreen image cannot be reused, in which
+     *         case nothing was done and a full repaint is needed
+     */
+    public boolean scroll(AffineTransform usr2dev, int width, int height) {
+        if (!isScrollable(usr2dev, width, height))
+            return false;
+
+        int dx = getScrollX(renderedTransform, usr2dev);
+        int dy = getScrollY(renderedTransform, usr2dev);
+        setTransform(usr2dev);
+        updateOffScreen(width, height);
+        updateWorkingBuffers();
+        if ((rootCR == null)           ||
+            (workingBaseRaster == null) ||
+            (currentRaster == null)) {
+            renderedTransform = null;
+            return false;
+        }
+
+        Rectangle dr = new Rectangle(0, 0, width, height);
+        Rectangle kept = dr.intersection
+            (new Rectangle(dx, dy, width, height));
+
+        // Ensure only one thread works on baseRaster at a time...
+        synchronized (workingBaseRaster) {
+            Raster src = currentRaster.createChild
+                (kept.x - dx, kept.y - dy, kept.width, kept.height,
+                 kept.x, kept.y, null);
+            if (currentRaster == workingRaster) {
+                // The pixels move inside the same raster.
+                WritableRaster tmp =
+                    currentRaster.createCompatibleWritableRaster(kept);
+                GraphicsUtil.copyData(src, tmp);
+                src = tmp;
+            }
+            GraphicsUtil.copyData(src, workingRaster);
+        }
+
+        // The exposed strips: above and below the kept pixels, then on
+        // their left and right.
+        RectListManager exposed = new RectListManager();
+        if (kept.y > 0)
+            exposed.add(new Rectangle(0, 0, width, kept.y));
+        if (kept.y + kept.height < height)
+            exposed.add(new Rectangle(0, kept.y + kept.height, width,
+                                      height - kept.y - kept.height));
+        if (kept.x > 0)
+            exposed.add(new Rectangle(0, kept.y, kept.x, kept.height));
+        if (kept.x + kept.width < width)
+            exposed.add(new Rectangle(kept.x + kept.width, kept.y,
+                                      width - kept.x - kept.width,
+                                      kept.height));
+
+        // The working buffer already holds the moved pixels, so nothing
+        // has to be copied from the current buffer.
+        damagedAreas = null;
+        renderedTransform = new AffineTransform(usr2dev);
+        repaint(exposed);
+
+        if (isDoubleBuffered) {
+            // The buffer that becomes the working one did not move, so
+            // it must be entirely copied by the next repaint.
+            damagedAreas = new RectListManager(dr);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the horizontal move in device pixels of the rendering
+     * from one transform to the other, as done by
+     * {@link #renderGNR()}.
+     */
+    protected static int getScrollX(AffineTransform from,
+                                    AffineTransform to) {
+        return Math.round((float)to.getTranslateX())
+            - Math.round((float)from.getTranslateX());
+    }
+
+    /**
+     * Returns the vertical move in device pixels of the rendering
+     * from one transform to the other, as done by
+     * {@link #renderGNR()}.
+     */
+    protected static int getScrollY(AffineTransform from,
+                                    AffineTransform to) {
+        return Math.round((float)to.getTranslateY())
+            - Math.round((float)from.getTranslateY());
+    }
+
     protected void updateWorkingBuffers() {
         if (rootFilter == null) {
             rootFilter = rootGN.getGraphicsNodeRable(true);
@@ -138,6 +282,10 @@ public class DynamicRenderer extends StaticRenderer {
      * the failed rendering will be visible in the image returned
      * by getOffscreen.
      *
+     * If a worker pool is set, the rectangles that do not overlap are
+     * rendered in parallel, see {@link #copyData(CachableRed,
+     * WritableRaster,RectListManager)}.
+     *
      * @param devRLM regions to be repainted, in the current
      * user space coordinate system.
      */
@@ -156,6 +304,11 @@ public class DynamicRenderer extends StaticRenderer {
         WritableRaster syncRaster;
         WritableRaster copyRaster;
 
+        // The image is up to date after this repaint if it was before
+        // for the same transform, or if it is entirely repainted.
+        AffineTransform rendered = renderedTransform;
+        renderedTransform = null;
+
         updateWorkingBuffers();
         if ((rootCR == null)           ||
             (workingBaseRaster == null)) {
@@ -238,21 +391,38 @@ public class DynamicRenderer extends StaticRenderer {
                 Color fillColor   = new Color( 255, 0, 0, 50 );
                 Color borderColor = new Color(   0, 0, 0, 50 );
 
-                Iterator iter = devRLM.iterator();
-                while (iter.hasNext()) {
-                    Rectangle r = (Rectangle)iter.next();
-                    if (!dr.intersects(r)) continue;
-                    r = dr.intersection(r);
-
-                    // System.err.println("Render: " + r);
-                    WritableRaster dst = copyRaster.createWritableChild
-                        (r.x, r.y, r.width, r.height, r.x, r.y, null);
-                    cr.copyData(dst);
+                if (workerPool != null) {
+                    // The rectangles are rendered in parallel.
+                    copyData(cr, copyRaster, devRLM);
                     if (g2d != null) {
-                        g2d.setPaint( fillColor );
-                        g2d.fill(r);
-                        g2d.setPaint( borderColor );
-                        g2d.draw(r);
+                        Iterator iter = devRLM.iterator();
+                        while (iter.hasNext()) {
+                            Rectangle r = (Rectangle)iter.next();
+                            if (!dr.intersects(r)) continue;
+                            r = dr.intersection(r);
+                            g2d.setPaint( fillColor );
+                            g2d.fill(r);
+                            g2d.setPaint( borderColor );
+                            g2d.draw(r);
+                        }
+                    }
+                } else {
+                    Iterator iter = devRLM.iterator();
+                    while (iter.hasNext()) {
+                        Rectangle r = (Rectangle)iter.next();
+                        if (!dr.intersects(r)) continue;
+                        r = dr.intersection(r);
+
+                        // System.err.println("Render: " + r);
+                        WritableRaster dst = copyRaster.createWritableChild
+                            (r.x, r.y, r.width, r.height, r.x, r.y, null);
+                        cr.copyData(dst);
+                        if (g2d != null) {
+                            g2d.setPaint( fillColor );
+                            g2d.fill(r);
+                            g2d.setPaint( borderColor );
+                            g2d.draw(r);
+                        }
                     }
                 }
             }
@@ -277,5 +447,134 @@ public class DynamicRenderer extends StaticRenderer {
         currentOffScreen  = tmpBI;
 
         damagedAreas = devRLM;
+
+        if (((rendered != null) && rendered.equals(usr2dev)) ||
+            contains(devRLM, dr)) {
+            renderedTransform = new AffineTransform(usr2dev);
+        }
+    }
+
+    /**
+     * Returns true if one of the rectangles of the given list contains
+     * the given rectangle.
+     */
+    protected static boolean contains(RectListManager rlm, Rectangle r) {
+        Iterator iter = rlm.iterator();
+        while (iter.hasNext()) {
+            if (((Rectangle)iter.next()).contains(r))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the data of <code>cr</code> under the given rectangles into
+     * <code>wr</code>, on the threads of the worker pool.  The rectangles
+     * that overlap, directly or through other rectangles, are rendered
+     * by the same task, in their order in the list, so that each pixel
+     * is written by a single thread and the result is the one of a
+     * serial repaint.  Each rectangle is rendered in its own child
+     * raster, with its own Graphics2D clipped to it.
+     */
+    protected void copyData(CachableRed cr, WritableRaster wr,
+                            RectListManager rlm) {
+        Rectangle dr = wr.getBounds();
+        Rectangle[] rects = new Rectangle[rlm.size()];
+        int n = 0;
+        Iterator iter = rlm.iterator();
+        while (iter.hasNext()) {
+            Rectangle r = (Rectangle)iter.next();
+            if (dr.intersects(r)) {
+                rects[n++] = dr.intersection(r);
+            }
+        }
+
+        // Groups the overlapping rectangles.  group[i] leads to the first
+        // rectangle of the group of rectangle i.
+        int[] group = new int[n];
+        for (int i = 0; i < n; i++) {
+            group[i] = i;
+            for (int j = 0; j < i; j++) {
+                if (rects[i].intersects(rects[j])) {
+                    int gi = findGroup(group, i);
+                    int gj = findGroup(group, j);
+                    group[Math.max(gi, gj)] = Math.min(gi, gj);
+                }
+            }
+        }
+
+        int nGroups = 0;
+        int[] task = new int[n];
+        for (int i = 0; i < n; i++) {
+            int g = findGroup(group, i);
+            task[i] = (g == i) ? nGroups++ : task[g];
+        }
+        int[] counts = new int[nGroups];
+        for (int i = 0; i < n; i++) {
+            counts[task[i]]++;
+        }
+        Rectangle[][] regions = new Rectangle[nGroups][];
+        for (int t = 0; t < nGroups; t++) {
+            regions[t] = new Rectangle[counts[t]];
+            counts[t] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            int t = task[i];
+            regions[t][counts[t]++] = rects[i];
+        }
+
+        Thread caller = Thread.currentThread();
+        Runnable[] tasks = new Runnable[nGroups];
+        for (int t = 0; t < nGroups; t++) {
+            tasks[t] = new RegionRenderer(cr, wr, regions[t], caller);
+        }
+        WorkerPool pool = workerPool;
+        if (pool == null) {
+            for (int t = 0; t < nGroups; t++) {
+                tasks[t].run();
+            }
+        } else {
+            pool.invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Returns the first rectangle of the group of the given rectangle.
+     */
+    private static int findGroup(int[] group, int i) {
+        while (group[i] != i) {
+            i = group[i] = group[group[i]];
+        }
+        return i;
+    }
+
+    /**
+     * Renders a group of overlapping rectangles of the offscreen image,
+     * unless the thread that requested the repaint has been halted.
+     */
+    protected static class RegionRenderer implements Runnable {
+        protected CachableRed cr;
+        protected WritableRaster wr;
+        protected Rectangle[] rects;
+        protected Thread caller;
+
+        public RegionRenderer(CachableRed cr, WritableRaster wr,
+                              Rectangle[] rects, Thread caller) {
+            this.cr     = cr;
+            this.wr     = wr;
+            this.rects  = rects;
+            this.caller = caller;
+        }
+
+        public void run() {
+            for (int i = 0; i < rects.length; i++) {
+                if (HaltingThread.hasBeenHalted(caller))
+                    return;
+                Rectangle r = rects[i];
+                WritableRaster dst = wr.createWritableChild
+                    (r.x, r.y, r.width, r.height, r.x, r.y, null);
+                cr.copyData(dst);
+            }
+        }
     }
 }
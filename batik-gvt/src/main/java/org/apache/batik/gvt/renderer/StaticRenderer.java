@@ -36,16 +36,20 @@ import java.lang.ref.SoftReference;
 import java.util.Collection;
 import java.util.Iterator;
 
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.geom.RectListManager;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.PadMode;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.rendered.LRUCache;
 import org.apache.batik.ext.awt.image.rendered.PadRed;
 import org.apache.batik.ext.awt.image.rendered.TileCacheRed;
 import org.apache.batik.ext.awt.image.rendered.TranslateRed;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.LayerCache;
 import org.apache.batik.util.HaltingThread;
+import org.apache.batik.util.WorkerPool;
 
 /**
  * Simple implementation of the Renderer that simply does static
@@ -84,6 +88,36 @@ public class StaticRenderer implements ImageRenderer {
     protected int offScreenWidth;
     protected int offScreenHeight;
 
+    /**
+     * The pool used to paint bands of the image in parallel, or null
+     * to render on the calling thread only.
+     */
+    protected WorkerPool workerPool;
+
+    /**
+     * The size in device pixels of the smallest details to render, or 0
+     * to render everything in full.
+     */
+    protected float levelOfDetail;
+
+    /**
+     * The cache holding the renderings of the expensive graphics nodes,
+     * or null to always paint them.
+     */
+    protected LayerCache layerCache;
+
+    /**
+     * The cache holding the tiles of the rendering, or null to use the
+     * shared cache.
+     */
+    protected LRUCache tileCache;
+
+    /**
+     * Whether the translation of the transform is rounded to whole
+     * device pixels instead of being given to the GVT tree.
+     */
+    protected boolean roundTranslation = true;
+
     /**
      * Passed to the GVT tree to describe the rendering environment
      */
@@ -254,6 +288,132 @@ public class StaticRenderer implements ImageRenderer {
         }
     }
 
+    /**
+     * Returns the pool used to render bands of tiles in parallel, or
+     * null if the rendering is done on the calling thread only.
+     */
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * Sets the pool used to paint bands of the image in parallel.  The
+     * pool is given to the rendering with the
+     * <code>RenderingHintsKeyExt.KEY_WORKER_POOL</code> hint.  Each
+     * band is a fixed number of rows painted with its own Graphics2D,
+     * so the result is the same whatever the number of threads of the
+     * pool.
+     *
+     * @param workerPool the pool to use, or null to render on the
+     *        calling thread only (the default)
+     */
+    public void setWorkerPool(WorkerPool workerPool) {
+        if (this.workerPool == workerPool)
+            return;
+        this.workerPool = workerPool;
+        rootCR = null;
+    }
+
+    /**
+     * Returns the size in device pixels of the smallest details to
+     * render, or 0 if everything is rendered in full.
+     */
+    public float getLevelOfDetail() {
+        return levelOfDetail;
+    }
+
+    /**
+     * Sets the size in device pixels of the smallest details to render.
+     * The graphics nodes smaller than this size are approximated, the
+     * shapes by rectangles of the same area, without their filter, mask
+     * and clip.  The text whose lines are less tall is drawn as boxes,
+     * and the shapes are painted flattened and simplified for the scale
+     * of the rendering.  This
+     * makes the thumbnails and the zoomed out views of dense drawings
+     * much cheaper.  It is given to the GVT tree with the
+     * <code>RenderingHintsKeyExt.KEY_LEVEL_OF_DETAIL</code> hint.
+     *
+     * @param levelOfDetail the size in device pixels, or 0 to render
+     *        everything in full (the default)
+     */
+    public void setLevelOfDetail(float levelOfDetail) {
+        if (this.levelOfDetail == levelOfDetail)
+            return;
+        this.levelOfDetail = levelOfDetail;
+        rootCR = null;
+    }
+
+    /**
+     * Returns the cache holding the renderings of the expensive graphics
+     * nodes, or null if they are always painted.
+     */
+    public LayerCache getLayerCache() {
+        return layerCache;
+    }
+
+    /**
+     * Sets the cache holding the renderings of the expensive graphics
+     * nodes, such as the nodes with a filter, a mask or a clip.  These
+     * nodes are then drawn from their renderings while they do not
+     * change, instead of being painted again on every repaint.  It is
+     * given to the GVT tree with the
+     * <code>RenderingHintsKeyExt.KEY_LAYER_CACHE</code> hint.
+     *
+     * @param layerCache the cache, for instance
+     *        <code>LayerCache.getDefault()</code>, or null to always
+     *        paint the nodes (the default)
+     */
+    public void setLayerCache(LayerCache layerCache) {
+        if (this.layerCache == layerCache)
+            return;
+        this.layerCache = layerCache;
+        rootCR = null;
+    }
+
+    /**
+     * Returns the cache holding the tiles of the rendering, or null if
+     * the shared cache is used.
+     */
+    public LRUCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * Sets the cache holding the tiles of the rendering, so that this
+     * renderer does not compete with others for the shared cache.
+     * @param tileCache the cache, or null to use the shared one
+     */
+    public void setTileCache(LRUCache tileCache) {
+        this.tileCache = tileCache;
+        lastCR    = null;
+        lastCache = null;
+    }
+
+    /**
+     * Tells whether the translation of the transform is rounded to whole
+     * device pixels.
+     */
+    public boolean isRoundTranslation() {
+        return roundTranslation;
+    }
+
+    /**
+     * Sets whether the translation of the transform is rounded to whole
+     * device pixels.  When it is, the rendering of the tree is only
+     * moved when the translation changes, which is what makes scrolling
+     * cheap.  Otherwise the whole transform is given to the GVT tree,
+     * which then renders the same pixels as when the transform is set
+     * on its root node.
+     *
+     * @param roundTranslation false to give the whole transform to the
+     *        GVT tree, true to round its translation (the default)
+     */
+    public void setRoundTranslation(boolean roundTranslation) {
+        if (this.roundTranslation == roundTranslation)
+            return;
+        this.roundTranslation = roundTranslation;
+        rootCR = null;
+    }
 
     /**
      * Update the size of the image to be returned by getOffScreen.
@@ -464,7 +624,10 @@ public class StaticRenderer implements ImageRenderer {
         if (o != null)
             return (CachableRed)o;
 
-        img       = new TileCacheRed(img);
+        if (tileCache == null)
+            img   = new TileCacheRed(img);
+        else
+            img   = new TileCacheRed(img, tileCache);
         lastCache = new SoftReference(img);
         return img;
     }
@@ -472,11 +635,27 @@ public class StaticRenderer implements ImageRenderer {
     protected CachableRed renderGNR() {
         AffineTransform at, rcAT;
         at = usr2dev;
-        rcAT = new AffineTransform(at.getScaleX(), at.getShearY(),
-                                   at.getShearX(), at.getScaleY(),
-                                   0, 0);
+        if (roundTranslation) {
+            rcAT = new AffineTransform(at.getScaleX(), at.getShearY(),
+                                       at.getShearX(), at.getScaleY(),
+                                       0, 0);
+        } else {
+            rcAT = at;
+        }
 
-        RenderContext rc = new RenderContext(rcAT, null, renderingHints);
+        RenderingHints rh = renderingHints;
+        if (workerPool != null || levelOfDetail > 0 || layerCache != null) {
+            rh = new RenderingHints(null);
+            rh.add(renderingHints);
+            if (workerPool != null)
+                rh.put(RenderingHintsKeyExt.KEY_WORKER_POOL, workerPool);
+            if (levelOfDetail > 0)
+                rh.put(RenderingHintsKeyExt.KEY_LEVEL_OF_DETAIL,
+                       new Float(levelOfDetail));
+            if (layerCache != null)
+                rh.put(RenderingHintsKeyExt.KEY_LAYER_CACHE, layerCache);
+        }
+        RenderContext rc = new RenderContext(rcAT, null, rh);
 
         RenderedImage ri = rootFilter.createRendering(rc);
         if (ri == null)
@@ -486,9 +665,11 @@ public class StaticRenderer implements ImageRenderer {
         ret = GraphicsUtil.wrap(ri);
         ret = setupCache(ret);
 
-        int dx = Math.round((float)at.getTranslateX());
-        int dy = Math.round((float)at.getTranslateY());
-        ret = new TranslateRed(ret, ret.getMinX()+dx, ret.getMinY()+dy);
+        if (roundTranslation) {
+            int dx = Math.round((float)at.getTranslateX());
+            int dy = Math.round((float)at.getTranslateY());
+            ret = new TranslateRed(ret, ret.getMinX()+dx, ret.getMinY()+dy);
+        }
         ret = GraphicsUtil.convertTosRGB(ret);
 
         return ret;
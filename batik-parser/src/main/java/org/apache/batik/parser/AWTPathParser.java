@@ -0,0 +1,805 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.MissingResourceException;
+
+import org.apache.batik.ext.awt.geom.ExtendedGeneralPath;
+import org.apache.batik.ext.awt.geom.ExtendedPathIterator;
+import org.apache.batik.i18n.LocalizableSupport;
+
+/**
+ * This class parses the value of a path's 'd' attribute into a Shape,
+ * as a {@link PathParser} reporting to an {@link AWTPathProducer}
+ * does, but without a reader or handler calls in between: the
+ * characters are read from the string, and the segments are stored
+ * into the arrays of types and coordinates the
+ * {@link ExtendedGeneralPath} is then built from.  The resulting
+ * shape is the same as the one of an <code>AWTPathProducer</code>.
+ *
+ * <p>Unlike a <code>PathParser</code>, this class stops at the first
+ * error.  It also rejects path data that does not start with a moveto
+ * command, and an arc ending at its start point right after a moveto,
+ * which would leave the moveto alone in the enclosed
+ * <code>GeneralPath</code> of the shape.  The path data can then be
+ * parsed again with a <code>PathParser</code> to have its errors
+ * reported.</p>
+ *
+ * @version $Id$
+ */
+public class AWTPathParser {
+
+    /**
+     * The winding rule to use to construct the path.
+     */
+    protected int windingRule;
+
+    /**
+     * The path built by the last parsing.
+     */
+    protected ExtendedGeneralPath path;
+
+    /**
+     * The string being parsed.
+     */
+    protected String string;
+
+    /**
+     * The length of the string being parsed.
+     */
+    protected int length;
+
+    /**
+     * The index of the current character.
+     */
+    protected int position;
+
+    /**
+     * The current character, or -1 at the end of the string.
+     */
+    protected int current;
+
+    /**
+     * The types of the segments of the path.
+     */
+    protected int[] types;
+
+    /**
+     * The number of segments of the path.
+     */
+    protected int numSeg;
+
+    /**
+     * The coordinates of the segments of the path.
+     */
+    protected float[] values;
+
+    /**
+     * The number of coordinates of the path.
+     */
+    protected int numVals;
+
+    /**
+     * The current point of the path, and the point of its last moveto.
+     */
+    protected float cx, cy, mx, my;
+
+    /**
+     * The current x position.
+     */
+    protected float currentX;
+
+    /**
+     * The current y position.
+     */
+    protected float currentY;
+
+    /**
+     * The reference x point for smooth arcs.
+     */
+    protected float xCenter;
+
+    /**
+     * The reference y point for smooth arcs.
+     */
+    protected float yCenter;
+
+    /**
+     * Utility method for creating an ExtendedGeneralPath.
+     * @param s The path specification.
+     * @param wr The winding rule to use for creating the path.
+     */
+    public static Shape createShape(String s, int wr) throws ParseException {
+        AWTPathParser p = new AWTPathParser();
+        p.setWindingRule(wr);
+        p.parse(s);
+        return p.getShape();
+    }
+
+    /**
+     * Sets the winding rule used to construct the path.
+     */
+    public void setWindingRule(int i) {
+        windingRule = i;
+    }
+
+    /**
+     * Returns the current winding rule.
+     */
+    public int getWindingRule() {
+        return windingRule;
+    }
+
+    /**
+     * Returns the Shape object built by the last parsing.
+     * @return the shape or null if the last parsing failed or if this
+     *         parser has not been used.
+     */
+    public Shape getShape() {
+        return path;
+    }
+
+    /**
+     * Parses the given path data.
+     */
+    public void parse(String s) throws ParseException {
+        path = null;
+        string = s;
+        length = s.length();
+        position = -1;
+        values = new float[length / 4 + 8];
+        types = new int[values.length / 2];
+        numSeg = 0;
+        numVals = 0;
+        cx = cy = mx = my = 0;
+        currentX = currentY = xCenter = yCenter = 0;
+        try {
+            doParse();
+            path = new ExtendedGeneralPath(windingRule, types, numSeg,
+                                           values, numVals);
+        } finally {
+            string = null;
+            types = null;
+            values = null;
+        }
+    }
+
+    /**
+     * Parses the path data.
+     */
+    protected void doParse() throws ParseException {
+        current = read();
+        loop: for (;;) {
+            switch (current) {
+            case 0xD:
+            case 0xA:
+            case 0x20:
+            case 0x9:
+                current = read();
+                continue loop;
+            case 'm':
+            case 'M':
+                parseMoveto(current);
+                continue loop;
+            case -1:
+                break loop;
+            }
+            if (numSeg == 0) {
+                reportUnexpectedCharacterError(current);
+            }
+            switch (current) {
+            case 'z':
+            case 'Z':
+                current = read();
+                closePath();
+                currentX = cx;
+                currentY = cy;
+                break;
+            case 'l': case 'L': case 'h': case 'H': case 'v': case 'V':
+            case 'c': case 'C': case 'q': case 'Q': case 's': case 'S':
+            case 't': case 'T': case 'a': case 'A':
+                parseCommand(current);
+                break;
+            default:
+                reportUnexpectedCharacterError(current);
+            }
+        }
+    }
+
+    /**
+     * Parses a 'm' or 'M' command, and the lineto segments following
+     * its coordinates.
+     */
+    protected void parseMoveto(int command) throws ParseException {
+        current = read();
+        skipSpaces();
+
+        float x = parseFloat();
+        skipCommaSpaces();
+        float y = parseFloat();
+        if (command == 'm') {
+            moveTo(xCenter = currentX += x, yCenter = currentY += y);
+        } else {
+            moveTo(xCenter = currentX = x, yCenter = currentY = y);
+        }
+
+        boolean expectNumber = skipCommaSpaces2();
+        parseSegments(command == 'm' ? 'l' : 'L', expectNumber);
+    }
+
+    /**
+     * Parses a command other than moveto and closepath.
+     */
+    protected void parseCommand(int command) throws ParseException {
+        current = read();
+        skipSpaces();
+        parseSegments(command, true);
+    }
+
+    /**
+     * Parses the segments of a command, as long as numbers follow.
+     * @param command the command letter
+     * @param expectNumber whether a number must follow
+     */
+    protected void parseSegments(int command, boolean expectNumber)
+        throws ParseException {
+        for (;;) {
+            switch (current) {
+            default:
+                if (expectNumber) {
+                    reportUnexpectedCharacterError(current);
+                }
+                return;
+            case '+': case '-': case '.':
+            case '0': case '1': case '2': case '3': case '4':
+            case '5': case '6': case '7': case '8': case '9':
+                break;
+            }
+            parseSegment(command);
+            expectNumber = skipCommaSpaces2();
+        }
+    }
+
+    /**
+     * Parses the coordinates of one segment and adds the segment to the
+     * path.
+     */
+    protected void parseSegment(int command) throws ParseException {
+        float x1, y1, x2, y2, x, y;
+        switch (command) {
+        case 'l':
+            x = parseFloat();
+            skipCommaSpaces();
+            y = parseFloat();
+            lineTo(xCenter = currentX += x, yCenter = currentY += y);
+            break;
+        case 'L':
+            x = parseFloat();
+            skipCommaSpaces();
+            y = parseFloat();
+            lineTo(xCenter = currentX = x, yCenter = currentY = y);
+            break;
+        case 'h':
+            x = parseFloat();
+            lineTo(xCenter = currentX += x, yCenter = currentY);
+            break;
+        case 'H':
+            x = parseFloat();
+            lineTo(xCenter = currentX = x, yCenter = currentY);
+            break;
+        case 'v':
+            y = parseFloat();
+            lineTo(xCenter = currentX, yCenter = currentY += y);
+            break;
+        case 'V':
+            y = parseFloat();
+            lineTo(xCenter = currentX, yCenter = currentY = y);
+            break;
+        case 'c':
+        case 'C':
+            x1 = parseFloat();
+            skipCommaSpaces();
+            y1 = parseFloat();
+            skipCommaSpaces();
+            x2 = parseFloat();
+            skipCommaSpaces();
+            y2 = parseFloat();
+            skipCommaSpaces();
+            x = parseFloat();
+            skipCommaSpaces();
+            y = parseFloat();
+            if (command == 'c') {
+                curveTo(currentX + x1, currentY + y1,
+                        xCenter = currentX + x2, yCenter = currentY + y2,
+                        currentX += x, currentY += y);
+            } else {
+                curveTo(x1, y1, xCenter = x2, yCenter = y2,
+                        currentX = x, currentY = y);
+            }
+            break;
+        case 'q':
+        case 'Q':
+            x1 = parseFloat();
+            skipCommaSpaces();
+            y1 = parseFloat();
+            skipCommaSpaces();
+            x = parseFloat();
+            skipCommaSpaces();
+            y = parseFloat();
+            if (command == 'q') {
+                quadTo(xCenter = currentX + x1, yCenter = currentY + y1,
+                       currentX += x, currentY += y);
+            } else {
+                quadTo(xCenter = x1, yCenter = y1,
+                       currentX = x, currentY = y);
+            }
+            break;
+        case 's':
+        case 'S':
+            x2 = parseFloat();
+            skipCommaSpaces();
+            y2 = parseFloat();
+            skipCommaSpaces();
+            x = parseFloat();
+            skipCommaSpaces();
+            y = parseFloat();
+            if (command == 's') {
+                curveTo(currentX * 2 - xCenter, currentY * 2 - yCenter,
+                        xCenter = currentX + x2, yCenter = currentY + y2,
+                        currentX += x, currentY += y);
+            } else {
+                curveTo(currentX * 2 - xCenter, currentY * 2 - yCenter,
+                        xCenter = x2, yCenter = y2,
+                        currentX = x, currentY = y);
+            }
+            break;
+        case 't':
+        case 'T':
+            x = parseFloat();
+            skipCommaSpaces();
+            y = parseFloat();
+            if (command == 't') {
+                quadTo(xCenter = currentX * 2 - xCenter,
+                       yCenter = currentY * 2 - yCenter,
+                       currentX += x, currentY += y);
+            } else {
+                quadTo(xCenter = currentX * 2 - xCenter,
+                       yCenter = currentY * 2 - yCenter,
+                       currentX = x, currentY = y);
+            }
+            break;
+        case 'a':
+        case 'A':
+            float rx = parseFloat();
+            skipCommaSpaces();
+            float ry = parseFloat();
+            skipCommaSpaces();
+            float ax = parseFloat();
+            skipCommaSpaces();
+            boolean laf = parseFlag();
+            boolean sf = parseFlag();
+            x = parseFloat();
+            skipCommaSpaces();
+            y = parseFloat();
+            if (command == 'a') {
+                arcTo(rx, ry, ax, laf, sf,
+                      xCenter = currentX += x, yCenter = currentY += y);
+            } else {
+                arcTo(rx, ry, ax, laf, sf,
+                      xCenter = currentX = x, yCenter = currentY = y);
+            }
+            break;
+        }
+    }
+
+    /**
+     * Parses an arc flag and the separator following it.
+     */
+    protected boolean parseFlag() throws ParseException {
+        boolean result;
+        switch (current) {
+        default:  reportUnexpectedCharacterError(current); return false;
+        case '0': result = false; break;
+        case '1': result = true;  break;
+        }
+        current = read();
+        skipCommaSpaces();
+        return result;
+    }
+
+    // Path construction ////////////////////////////////////////////////////
+
+    /**
+     * Adds a moveto segment, as {@link ExtendedGeneralPath#moveTo} does.
+     */
+    protected void moveTo(float x, float y) {
+        makeRoom(2);
+        types[numSeg++] = PathIterator.SEG_MOVETO;
+        cx = mx = values[numVals++] = x;
+        cy = my = values[numVals++] = y;
+    }
+
+    /**
+     * Adds a lineto segment, as {@link ExtendedGeneralPath#lineTo} does.
+     */
+    protected void lineTo(float x, float y) {
+        makeRoom(2);
+        types[numSeg++] = PathIterator.SEG_LINETO;
+        cx = values[numVals++] = x;
+        cy = values[numVals++] = y;
+    }
+
+    /**
+     * Adds a quadratic segment, as {@link ExtendedGeneralPath#quadTo}
+     * does.
+     */
+    protected void quadTo(float x1, float y1, float x2, float y2) {
+        makeRoom(4);
+        types[numSeg++] = PathIterator.SEG_QUADTO;
+        values[numVals++] = x1;
+        values[numVals++] = y1;
+        cx = values[numVals++] = x2;
+        cy = values[numVals++] = y2;
+    }
+
+    /**
+     * Adds a cubic segment, as {@link ExtendedGeneralPath#curveTo} does.
+     */
+    protected void curveTo(float x1, float y1,
+                           float x2, float y2,
+                           float x3, float y3) {
+        makeRoom(6);
+        types[numSeg++] = PathIterator.SEG_CUBICTO;
+        values[numVals++] = x1;
+        values[numVals++] = y1;
+        values[numVals++] = x2;
+        values[numVals++] = y2;
+        cx = values[numVals++] = x3;
+        cy = values[numVals++] = y3;
+    }
+
+    /**
+     * Adds an arc segment, as {@link ExtendedGeneralPath#arcTo} does.
+     */
+    protected void arcTo(float rx, float ry, float angle,
+                         boolean largeArcFlag, boolean sweepFlag,
+                         float x, float y) throws ParseException {
+        if (rx == 0 || ry == 0) {
+            lineTo(x, y);
+            return;
+        }
+        if (cx == x && cy == y) {
+            int t = types[numSeg - 1];
+            if (t == PathIterator.SEG_MOVETO ||
+                (t == PathIterator.SEG_CLOSE && numSeg > 1 &&
+                 types[numSeg - 2] == PathIterator.SEG_MOVETO)) {
+                reportError("path.unsupported",
+                            new Object[] { new Integer(current) });
+            }
+            return;
+        }
+        makeRoom(7);
+        types[numSeg++] = ExtendedPathIterator.SEG_ARCTO;
+        values[numVals++] = rx;
+        values[numVals++] = ry;
+        values[numVals++] = angle;
+        values[numVals++] = largeArcFlag ? 1 : 0;
+        values[numVals++] = sweepFlag ? 1 : 0;
+        cx = values[numVals++] = x;
+        cy = values[numVals++] = y;
+    }
+
+    /**
+     * Adds a closepath segment, as {@link ExtendedGeneralPath#closePath}
+     * does.
+     */
+    protected void closePath() {
+        if (types[numSeg - 1] != PathIterator.SEG_CLOSE) {
+            makeRoom(0);
+            types[numSeg++] = PathIterator.SEG_CLOSE;
+        }
+        cx = mx;
+        cy = my;
+    }
+
+    /**
+     * Makes room in the arrays for a segment of the given number of
+     * coordinates.
+     */
+    protected void makeRoom(int n) {
+        if (numVals + n > values.length) {
+            float[] a = new float[Math.max(values.length * 2, numVals + n)];
+            System.arraycopy(values, 0, a, 0, numVals);
+            values = a;
+        }
+        if (numSeg == types.length) {
+            int[] a = new int[types.length * 2];
+            System.arraycopy(types, 0, a, 0, numSeg);
+            types = a;
+        }
+    }
+
+    // Scanning /////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the next character of the string, or -1.
+     */
+    protected int read() {
+        return (++position < length) ? string.charAt(position) : -1;
+    }
+
+    /**
+     * Skips the whitespaces.
+     */
+    protected void skipSpaces() {
+        for (;;) {
+            switch (current) {
+            default:
+                return;
+            case 0x20:
+            case 0x09:
+            case 0x0D:
+            case 0x0A:
+            }
+            current = read();
+        }
+    }
+
+    /**
+     * Skips the whitespaces and an optional comma.
+     */
+    protected void skipCommaSpaces() {
+        skipCommaSpaces2();
+    }
+
+    /**
+     * Skips the whitespaces and an optional comma.
+     * @return true if comma was skipped.
+     */
+    protected boolean skipCommaSpaces2() {
+        skipSpaces();
+        if (current != ',') {
+            return false;
+        }
+        current = read();
+        skipSpaces();
+        return true;
+    }
+
+    /**
+     * Parses a number and converts it to a float, as
+     * {@link NumberParser#parseFloat()} does.
+     */
+    protected float parseFloat() throws ParseException {
+        int     mant     = 0;
+        int     mantDig  = 0;
+        boolean mantPos  = true;
+        boolean mantRead = false;
+
+        int     exp      = 0;
+        int     expDig   = 0;
+        int     expAdj   = 0;
+        boolean expPos   = true;
+
+        switch (current) {
+        case '-':
+            mantPos = false;
+            // fallthrough
+        case '+':
+            current = read();
+        }
+
+        m1: switch (current) {
+        default:
+            reportUnexpectedCharacterError(current);
+            return 0.0f;
+
+        case '.':
+            break;
+
+        case '0':
+            mantRead = true;
+            l: for (;;) {
+                current = read();
+                switch (current) {
+                case '1': case '2': case '3': case '4':
+                case '5': case '6': case '7': case '8': case '9':
+                    break l;
+                case '.': case 'e': case 'E':
+                    break m1;
+                default:
+                    return 0.0f;
+                case '0':
+                }
+            }
+
+        case '1': case '2': case '3': case '4':
+        case '5': case '6': case '7': case '8': case '9':
+            mantRead = true;
+            l: for (;;) {
+                if (mantDig < 9) {
+                    mantDig++;
+                    mant = mant * 10 + (current - '0');
+                } else {
+                    expAdj++;
+                }
+                current = read();
+                switch (current) {
+                default:
+                    break l;
+                case '0': case '1': case '2': case '3': case '4':
+                case '5': case '6': case '7': case '8': case '9':
+                }
+            }
+        }
+
+        if (current == '.') {
+            current = read();
+            m2: switch (current) {
+            default:
+            case 'e': case 'E':
+                if (!mantRead) {
+                    reportUnexpectedCharacterError(current);
+                    return 0.0f;
+                }
+                break;
+
+            case '0':
+                if (mantDig == 0) {
+                    l: for (;;) {
+                        current = read();
+                        expAdj--;
+                        switch (current) {
+                        case '1': case '2': case '3': case '4':
+                        case '5': case '6': case '7': case '8': case '9':
+                            break l;
+                        default:
+                            if (!mantRead) {
+                                return 0.0f;
+                            }
+                            break m2;
+                        case '0':
+                        }
+                    }
+                }
+            case '1': case '2': case '3': case '4':
+            case '5': case '6': case '7': case '8': case '9':
+                l: for (;;) {
+                    if (mantDig < 9) {
+                        mantDig++;
+                        mant = mant * 10 + (current - '0');
+                        expAdj--;
+                    }
+                    current = read();
+                    switch (current) {
+                    default:
+                        break l;
+                    case '0': case '1': case '2': case '3': case '4':
+                    case '5': case '6': case '7': case '8': case '9':
+                    }
+                }
+            }
+        }
+
+        switch (current) {
+        case 'e': case 'E':
+            current = read();
+            switch (current) {
+            default:
+                reportUnexpectedCharacterError(current);
+                return 0f;
+            case '-':
+                expPos = false;
+            case '+':
+                current = read();
+                switch (current) {
+                default:
+                    reportUnexpectedCharacterError(current);
+                    return 0f;
+                case '0': case '1': case '2': case '3': case '4':
+                case '5': case '6': case '7': case '8': case '9':
+                }
+            case '0': case '1': case '2': case '3': case '4':
+            case '5': case '6': case '7': case '8': case '9':
+            }
+
+            en: switch (current) {
+            case '0':
+                l: for (;;) {
+                    current = read();
+                    switch (current) {
+                    case '1': case '2': case '3': case '4':
+                    case '5': case '6': case '7': case '8': case '9':
+                        break l;
+                    default:
+                        break en;
+                    case '0':
+                    }
+                }
+
+            case '1': case '2': case '3': case '4':
+            case '5': case '6': case '7': case '8': case '9':
+                l: for (;;) {
+                    if (expDig < 3) {
+                        expDig++;
+                        exp = exp * 10 + (current - '0');
+                    }
+                    current = read();
+                    switch (current) {
+                    default:
+                        break l;
+                    case '0': case '1': case '2': case '3': case '4':
+                    case '5': case '6': case '7': case '8': case '9':
+                    }
+                }
+            }
+        default:
+        }
+
+        if (!expPos) {
+            exp = -exp;
+        }
+        exp += expAdj;
+        if (!mantPos) {
+            mant = -mant;
+        }
+
+        return NumberParser.buildFloat(mant, exp);
+    }
+
+    /**
+     * Throws a ParseException for an unexpected character.
+     */
+    protected void reportUnexpectedCharacterError(int currentChar)
+        throws ParseException {
+        reportError("character.unexpected",
+                    new Object[] { new Integer(currentChar) });
+    }
+
+    /**
+     * Throws a ParseException.
+     * @param key The message key in the resource bundle.
+     * @param args The message arguments.
+     */
+    protected void reportError(String key, Object[] args)
+        throws ParseException {
+        int line = 1;
+        int column = 1;
+        for (int i = 0; i < position && i < length; i++) {
+            if (string.charAt(i) == '\n') {
+                line++;
+                column = 1;
+            } else {
+                column++;
+            }
+        }
+        LocalizableSupport ls =
+            new LocalizableSupport(AbstractParser.BUNDLE_CLASSNAME,
+                                   AWTPathParser.class.getClassLoader());
+        String msg;
+        try {
+            msg = ls.formatMessage(key, args);
+        } catch (MissingResourceException e) {
+            msg = key;
+        }
+        throw new ParseException(msg, line, column);
+    }
+}
@@ -63,6 +63,26 @@ public class AWTPolylineProducer implements PointsHandler, ShapeProducer {
         return ph.getShape();
     }
 
+    /**
+     * Utility method for creating a polyline from the coordinates of its
+     * points.
+     * @param points The (x, y) coordinates of the points, as returned by
+     *        {@link ParsedValueCache#getPoints(String)}.
+     * @param wr The winding rule to use for creating the path.
+     */
+    public static Shape createShape(float[] points, int wr) {
+        AWTPolylineProducer ph = new AWTPolylineProducer();
+
+        ph.setWindingRule(wr);
+        ph.startPoints();
+        for (int i = 0; i < points.length; i += 2) {
+            ph.point(points[i], points[i + 1]);
+        }
+        ph.endPoints();
+
+        return ph.getShape();
+    }
+
     /**
      * Sets the winding rule used to construct the path.
      */
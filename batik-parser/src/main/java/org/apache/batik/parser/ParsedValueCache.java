@@ -0,0 +1,216 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.awt.geom.AffineTransform;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of the results of the parsing of attribute values, indexed by
+ * the values, so that the values repeated many times in a document, or
+ * in several documents, are parsed only once.
+ *
+ * <p>The caches can be used by several threads.  They hold at most a
+ * given number of results, and are emptied when they are full; the
+ * values longer than a given number of characters are never cached.
+ * Only the results of successful parsings are kept: the values that
+ * are malformed are parsed again, and throw a {@link ParseException},
+ * every time.</p>
+ *
+ * <p>The results are shared by every caller asking for the same value,
+ * and <em>must not be modified</em>.</p>
+ *
+ * @version $Id$
+ */
+public abstract class ParsedValueCache {
+
+    /**
+     * The default maximum number of results held by a cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * The default maximum length of the values held by a cache.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 256;
+
+    /**
+     * The cache of the transform lists.
+     */
+    protected static final ParsedValueCache transformCache =
+        new ParsedValueCache(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH) {
+            protected Object parse(String s) throws ParseException {
+                return AWTTransformProducer.createAffineTransform(s);
+            }
+        };
+
+    /**
+     * The cache of the lengths.
+     */
+    protected static final ParsedValueCache lengthCache =
+        new ParsedValueCache(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH) {
+            protected Object parse(String s) throws ParseException {
+                LengthParser p = new LengthParser();
+                UnitProcessor.UnitResolver ur =
+                    new UnitProcessor.UnitResolver();
+                p.setLengthHandler(ur);
+                p.parse(s);
+                return ur;
+            }
+        };
+
+    /**
+     * The cache of the number lists.
+     */
+    protected static final ParsedValueCache numberListCache =
+        new ParsedValueCache(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH) {
+            protected Object parse(String s) throws ParseException {
+                NumberListParser p = new NumberListParser();
+                FloatArrayProducer fap = new FloatArrayProducer();
+                p.setNumberListHandler(fap);
+                p.parse(s);
+                return fap.getFloatArray();
+            }
+        };
+
+    /**
+     * The cache of the point lists.  Point lists are longer than the
+     * other values, so longer values are cached.
+     */
+    protected static final ParsedValueCache pointsCache =
+        new ParsedValueCache(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH * 16) {
+            protected Object parse(String s) throws ParseException {
+                PointsParser p = new PointsParser();
+                FloatArrayProducer fap = new FloatArrayProducer();
+                p.setPointsHandler(fap);
+                p.parse(s);
+                return fap.getFloatArray();
+            }
+        };
+
+    /**
+     * Returns the transform described by the given transform list.
+     * The returned transform is shared and must not be modified.
+     */
+    public static AffineTransform getTransform(String s)
+        throws ParseException {
+        return (AffineTransform) transformCache.get(s);
+    }
+
+    /**
+     * Returns the value and the unit of the given length.  The returned
+     * object is shared and must not be modified.
+     */
+    public static UnitProcessor.UnitResolver getLength(String s)
+        throws ParseException {
+        return (UnitProcessor.UnitResolver) lengthCache.get(s);
+    }
+
+    /**
+     * Returns the numbers of the given number list.  The returned array
+     * is shared and must not be modified.
+     */
+    public static float[] getNumberList(String s) throws ParseException {
+        return (float[]) numberListCache.get(s);
+    }
+
+    /**
+     * Returns the coordinates of the points of the given point list, as
+     * a sequence of (x, y) pairs.  The returned array is shared and must
+     * not be modified.
+     */
+    public static float[] getPoints(String s) throws ParseException {
+        return (float[]) pointsCache.get(s);
+    }
+
+    /**
+     * Empties all the caches.
+     */
+    public static void clearAll() {
+        transformCache.clear();
+        lengthCache.clear();
+        numberListCache.clear();
+        pointsCache.clear();
+    }
+
+    /**
+     * The parsed values, indexed by the strings they were parsed from.
+     */
+    protected Map values = new ConcurrentHashMap();
+
+    /**
+     * The maximum number of results held by this cache.
+     */
+    protected int maxSize;
+
+    /**
+     * The maximum length of the values held by this cache.
+     */
+    protected int maxLength;
+
+    /**
+     * Creates a new ParsedValueCache.
+     * @param maxSize the maximum number of results held by the cache
+     * @param maxLength the maximum length of the values held by the cache
+     */
+    protected ParsedValueCache(int maxSize, int maxLength) {
+        this.maxSize = maxSize;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the result of the parsing of the given value, parsing it
+     * if it is not in the cache.
+     */
+    public Object get(String s) throws ParseException {
+        if (s.length() > maxLength) {
+            return parse(s);
+        }
+        Object result = values.get(s);
+        if (result == null) {
+            result = parse(s);
+            if (values.size() >= maxSize) {
+                values.clear();
+            }
+            values.put(s, result);
+        }
+        return result;
+    }
+
+    /**
+     * Empties this cache.
+     */
+    public void clear() {
+        values.clear();
+    }
+
+    /**
+     * Returns the number of results held by this cache.
+     */
+    public int getSize() {
+        return values.size();
+    }
+
+    /**
+     * Parses the given value.
+     * @throws ParseException if the value is malformed
+     */
+    protected abstract Object parse(String s) throws ParseException;
+}
@@ -71,10 +71,7 @@ public abstract class UnitProcessor {
                                                short d,
                                                Context ctx)
         throws ParseException {
-        LengthParser lengthParser = new LengthParser();
-        UnitResolver ur = new UnitResolver();
-        lengthParser.setLengthHandler(ur);
-        lengthParser.parse(s);
+        UnitResolver ur = ParsedValueCache.getLength(s);
         return svgToObjectBoundingBox(ur.value, ur.unit, d, ctx);
     }
 
@@ -133,10 +130,7 @@ public abstract class UnitProcessor {
                                        String attr,
                                        short d,
                                        Context ctx) throws ParseException {
-        LengthParser lengthParser = new LengthParser();
-        UnitResolver ur = new UnitResolver();
-        lengthParser.setLengthHandler(ur);
-        lengthParser.parse(s);
+        UnitResolver ur = ParsedValueCache.getLength(s);
         return svgToUserSpace(ur.value, ur.unit, d, ctx);
     }
 
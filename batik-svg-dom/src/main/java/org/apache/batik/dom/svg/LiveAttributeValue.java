@@ -23,6 +23,8 @@ import org.w3c.dom.Attr;
 /**
  * This interface should be implemented by all the attribute values
  * objects that must be updated when the attribute node is modified.
+ * The node passed to the methods is null when the attribute is stored
+ * by its element without Attr node.
  *
  * @author <a href="mailto:stephane@hillion.org">Stephane Hillion</a>
  * @version $Id$
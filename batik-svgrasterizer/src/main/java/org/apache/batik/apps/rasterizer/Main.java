@@ -511,6 +511,15 @@ public class Main implements SVGConverterController {
     public static String CL_OPTION_SECURITY_OFF_DESCRIPTION
         = Messages.get("Main.cl.option.security.off.description", "No description");
 
+    /**
+     * Option to specify the number of conversion threads
+     */
+    public static String CL_OPTION_THREADS
+        = Messages.get("Main.cl.option.threads", "-threads");
+
+    public static String CL_OPTION_THREADS_DESCRIPTION
+        = Messages.get("Main.cl.option.threads.description", "No description");
+
     /**
      * Static map containing all the option handlers able to analyze the
      * various options.
@@ -830,6 +839,23 @@ public class Main implements SVGConverterController {
                               return CL_OPTION_SECURITY_OFF_DESCRIPTION;
                           }
                       });
+
+        optionMap.put(CL_OPTION_THREADS,
+                      new FloatOptionHandler(){
+                              public void handleOption(float optionValue,
+                                                       SVGConverter c){
+                                  if (optionValue < 1
+                                      || optionValue != (int)optionValue){
+                                      throw new IllegalArgumentException();
+                                  }
+
+                                  c.setThreads((int)optionValue);
+                              }
+
+                              public String getOptionDescription(){
+                                  return CL_OPTION_THREADS_DESCRIPTION;
+                              }
+                          });
     }
 
     /**
@@ -20,6 +20,7 @@ package org.apache.batik.apps.rasterizer;
 
 import java.awt.Color;
 import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
@@ -29,9 +30,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.batik.transcoder.Transcoder;
 import org.apache.batik.transcoder.TranscoderInput;
@@ -90,6 +97,9 @@ import org.apache.batik.util.ParsedURL;
  *     SVG documents.</li>
  * <li>pixelUnitToMillimeter: defines the size of a pixel in millimeters
  *     to use when processing the SVG documents.</li>
+ * <li>threads: controls the number of worker threads used to convert
+ *     the sources. When greater than one, each source is converted
+ *     with its own <code>Transcoder</code> on a bounded worker pool.</li>
  * </ul>
  *
  * @version $Id$
@@ -204,6 +214,9 @@ public class SVGConverter {
     /** Default height */
     protected static final float DEFAULT_HEIGHT = -1;
 
+    /** Default number of conversion threads */
+    protected static final int DEFAULT_THREADS = 1;
+
     /** Result type */
     protected DestinationType destinationType = DEFAULT_RESULT_TYPE;
 
@@ -256,6 +269,9 @@ public class SVGConverter {
     /** Controls whether scripts should be run securely or not */
     protected boolean securityOff = false;
 
+    /** Number of threads used to convert the sources */
+    protected int threads = DEFAULT_THREADS;
+
     /** Sources files or URLs */
     protected List sources = null;
 
@@ -649,6 +665,21 @@ public class SVGConverter {
         return securityOff;
     }
 
+    /**
+     * Sets the number of threads used to convert the sources. A value
+     * of one (the default) converts the sources one after the other on
+     * the calling thread. Larger values convert the sources concurrently,
+     * each with its own <code>Transcoder</code> instance. Values less
+     * than one are treated as one.
+     */
+    public void setThreads(int threads){
+        this.threads = threads;
+    }
+
+    public int getThreads(){
+        return threads;
+    }
+
     /**
      * Returns true if f is a File. <code>f</code> is found to be a file if
      * it exists and is a file. If it does not exist, it is declared
@@ -706,6 +737,11 @@ public class SVGConverter {
             return;
         }
 
+        if (threads > 1 && sources.size() > 1) {
+            executeConcurrently(sources, dstFiles, hints);
+            return;
+        }
+
         // Convert files one by one
         for(int i = 0 ; i < sources.size() ; i++) {
             // Get the file from the vector.
@@ -718,6 +754,114 @@ public class SVGConverter {
         }
     }
 
+    /**
+     * Converts the sources on a pool of at most <code>threads</code>
+     * worker threads. Each conversion uses its own <code>Transcoder</code>
+     * (and therefore its own <code>BridgeContext</code>).
+     * <br />
+     * The calling thread asks <code>proceedWithSourceTranscoding</code>
+     * for each source, in order, then checks the source and opens its
+     * output file, as a conversion on the calling thread does. Only
+     * then is the source given to a worker, which transcodes it into
+     * memory. At most <code>threads</code> sources are converted ahead
+     * of the oldest one, whose result the calling thread writes before
+     * it reports its outcome. The outcomes are reported in the order of
+     * the sources, so a source that fails its checks is reported once
+     * the sources before it are written. If the controller decides not
+     * to proceed after a failure, the pending conversions are cancelled
+     * and the error is thrown.
+     */
+    protected void executeConcurrently(List sources,
+                                       List dstFiles,
+                                       Map hints)
+        throws SVGConverterException {
+        int n = sources.size();
+        ExecutorService pool
+            = Executors.newFixedThreadPool(Math.min(threads, n));
+        LinkedList pending = new LinkedList();
+        try {
+            for (int i = 0; i < n; i++) {
+                SVGConverterSource currentFile
+                    = (SVGConverterSource)sources.get(i);
+                File outputFile = (File)dstFiles.get(i);
+
+                createOutputDir(outputFile);
+                if (!controller.proceedWithSourceTranscoding(currentFile,
+                                                             outputFile)){
+                    continue;
+                }
+
+                OutputStream outputStream;
+                try {
+                    outputStream = openOutput(currentFile, outputFile);
+                } catch(SVGConverterException e){
+                    while (!pending.isEmpty()) {
+                        finish((PendingConversion)pending.removeFirst());
+                    }
+                    boolean proceed = controller.proceedOnSourceTranscodingFailure
+                        (currentFile, outputFile, e.getErrorCode());
+                    if (!proceed) {
+                        throw e;
+                    }
+                    continue;
+                }
+
+                Transcoder transcoder = destinationType.getTranscoder();
+                transcoder.setTranscodingHints(hints);
+                PendingConversion c = new PendingConversion
+                    (currentFile, outputFile, outputStream);
+                pending.addLast(c);
+                c.result = pool.submit(new TranscodeTask(currentFile,
+                                                         transcoder));
+                if (pending.size() > threads) {
+                    finish((PendingConversion)pending.removeFirst());
+                }
+            }
+            while (!pending.isEmpty()) {
+                finish((PendingConversion)pending.removeFirst());
+            }
+        } finally {
+            pool.shutdownNow();
+            while (!pending.isEmpty()) {
+                PendingConversion c = (PendingConversion)pending.removeFirst();
+                if (c.result != null) {
+                    c.result.cancel(true);
+                }
+                try {
+                    c.outputStream.close();
+                } catch(IOException ioe) {}
+            }
+        }
+    }
+
+    /**
+     * Writes the result of a conversion started by
+     * {@link #executeConcurrently} and reports its outcome to the
+     * controller.
+     *
+     * @throws SVGConverterException if the conversion failed and the
+     *         controller decided not to proceed.
+     */
+    protected void finish(PendingConversion c)
+        throws SVGConverterException {
+        boolean success;
+        try {
+            success = write(c.inputFile, c.outputFile, c.outputStream,
+                            c.result);
+        } catch(SVGConverterException e){
+            boolean proceed = controller.proceedOnSourceTranscodingFailure
+                (c.inputFile, c.outputFile, e.getErrorCode());
+            if (!proceed) {
+                throw e;
+            }
+            return;
+        }
+
+        if (success){
+            controller.onSourceTranscodingSuccess(c.inputFile, c.outputFile);
+        }
+    }
+
     /**
      * Populates a vector with destination files names
      * computed from the names of the files in the sources vector
@@ -940,52 +1084,17 @@ public class SVGConverter {
                              File outputFile,
                              Transcoder transcoder)
         throws SVGConverterException {
-        TranscoderInput input = null;
-        TranscoderOutput output = null;
-        OutputStream outputStream = null;
-
         if (!controller.proceedWithSourceTranscoding(inputFile,
                                                      outputFile)){
             return;
         }
 
+        boolean success;
         try {
-            if (inputFile.isSameAs(outputFile.getPath())) {
-                throw new SVGConverterException(ERROR_SOURCE_SAME_AS_DESTINATION,
-                                                 true /* fatal error */);
-            }
-
-            // Compute transcoder input.
-            if (!inputFile.isReadable()) {
-                throw new SVGConverterException(ERROR_CANNOT_READ_SOURCE,
-                                                 new Object[]{inputFile.getName()});
-            }
-
-            try {
-                InputStream in = inputFile.openStream();
-                in.close();
-            } catch(IOException ioe) {
-                throw new SVGConverterException(ERROR_CANNOT_OPEN_SOURCE,
-                                                 new Object[] {inputFile.getName(),
-                                                               ioe.toString()});
-                                                               }
-
-            input = new TranscoderInput(inputFile.getURI());
-
-            // Compute transcoder output.
-            if (!isWriteable(outputFile)) {
-                throw new SVGConverterException(ERROR_OUTPUT_NOT_WRITEABLE,
-                                                 new Object[] {outputFile.getName()});
-            }
-            try {
-                outputStream = new FileOutputStream(outputFile);
-            } catch(FileNotFoundException fnfe) {
-                throw new SVGConverterException(ERROR_CANNOT_OPEN_OUTPUT_FILE,
-                                                 new Object[] {outputFile.getName()});
-            }
-
-            output = new TranscoderOutput(outputStream);
+            success = convert(inputFile, outputFile, transcoder);
         } catch(SVGConverterException e){
+            // Report error to the controller. If controller decides
+            // to stop, throw the exception
             boolean proceed = controller.proceedOnSourceTranscodingFailure
                 (inputFile, outputFile, e.getErrorCode());
             if (proceed){
@@ -995,11 +1104,33 @@ public class SVGConverter {
             }
         }
 
+        if (success){
+            controller.onSourceTranscodingSuccess(inputFile, outputFile);
+        }
+    }
+
+    /**
+     * Converts the input image to the result image with the given
+     * transcoder, without notifying the controller. This method does
+     * not touch any state of the converter other than its read-only
+     * properties, so it can be called concurrently with different
+     * transcoder instances.
+     *
+     * @return true if the conversion succeeded, false if the output
+     *         stream could not be closed.
+     * @throws SVGConverterException if the conversion failed.
+     */
+    protected boolean convert(SVGConverterSource inputFile,
+                              File outputFile,
+                              Transcoder transcoder)
+        throws SVGConverterException {
+        OutputStream outputStream = openOutput(inputFile, outputFile);
+        TranscoderInput input = new TranscoderInput(inputFile.getURI());
+        TranscoderOutput output = new TranscoderOutput(outputStream);
+
         // Transcode now
-        boolean success = false;
         try {
             transcoder.transcode(input, output);
-            success = true;
         } catch(Exception te) {
             te.printStackTrace();
             try {
@@ -1007,16 +1138,72 @@ public class SVGConverter {
                 outputStream.close();
             } catch(IOException ioe) {}
 
-            // Report error to the controller. If controller decides
-            // to stop, throw an exception
-            boolean proceed = controller.proceedOnSourceTranscodingFailure
-                (inputFile, outputFile, ERROR_WHILE_RASTERIZING_FILE);
+            throw new SVGConverterException(ERROR_WHILE_RASTERIZING_FILE,
+                                             new Object[] {outputFile.getName(),
+                                                           te.getMessage()});
+        }
 
-            if (!proceed){
-                throw new SVGConverterException(ERROR_WHILE_RASTERIZING_FILE,
-                                                 new Object[] {outputFile.getName(),
-                                                               te.getMessage()});
+        // Close streams and clean up.
+        try {
+            outputStream.flush();
+            outputStream.close();
+        } catch(IOException ioe) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the result of a conversion made by a {@link TranscodeTask}
+     * to the output stream, opened by {@link #openOutput}, and closes
+     * it. The errors are the same as the ones of {@link #convert}. An
+     * <code>Error</code> thrown by the transcoder is thrown again, as
+     * it is when converting on the calling thread.
+     *
+     * @return true if the conversion succeeded, false if the output
+     *         stream could not be closed.
+     * @throws SVGConverterException if the conversion failed.
+     */
+    protected boolean write(SVGConverterSource inputFile,
+                            File outputFile,
+                            OutputStream outputStream,
+                            Future result)
+        throws SVGConverterException {
+        Exception error = null;
+        try {
+            Object r = result.get();
+            if (r instanceof Exception) {
+                error = (Exception)r;
+            } else {
+                ((ByteArrayOutputStream)r).writeTo(outputStream);
             }
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            error = ie;
+        } catch(ExecutionException ee) {
+            Throwable t = ee.getCause();
+            if (t instanceof Error) {
+                try {
+                    outputStream.close();
+                } catch(IOException ioe) {}
+                throw (Error)t;
+            }
+            error = (t instanceof Exception) ? (Exception)t : ee;
+        } catch(IOException ioe) {
+            error = ioe;
+        }
+
+        if (error != null) {
+            error.printStackTrace();
+            try {
+                outputStream.flush();
+                outputStream.close();
+            } catch(IOException ioe) {}
+
+            throw new SVGConverterException(ERROR_WHILE_RASTERIZING_FILE,
+                                             new Object[] {outputFile.getName(),
+                                                           error.getMessage()});
         }
 
         // Close streams and clean up.
@@ -1024,11 +1211,51 @@ public class SVGConverter {
             outputStream.flush();
             outputStream.close();
         } catch(IOException ioe) {
-            return;
+            return false;
         }
 
-        if (success){
-            controller.onSourceTranscodingSuccess(inputFile, outputFile);
+        return true;
+    }
+
+    /**
+     * Checks the source and the output file of a conversion, and opens
+     * the output file.
+     *
+     * @throws SVGConverterException if a check failed.
+     */
+    protected OutputStream openOutput(SVGConverterSource inputFile,
+                                      File outputFile)
+        throws SVGConverterException {
+        if (inputFile.isSameAs(outputFile.getPath())) {
+            throw new SVGConverterException(ERROR_SOURCE_SAME_AS_DESTINATION,
+                                             true /* fatal error */);
+        }
+
+        // Compute transcoder input.
+        if (!inputFile.isReadable()) {
+            throw new SVGConverterException(ERROR_CANNOT_READ_SOURCE,
+                                             new Object[]{inputFile.getName()});
+        }
+
+        try {
+            InputStream in = inputFile.openStream();
+            in.close();
+        } catch(IOException ioe) {
+            throw new SVGConverterException(ERROR_CANNOT_OPEN_SOURCE,
+                                             new Object[] {inputFile.getName(),
+                                                           ioe.toString()});
+        }
+
+        // Compute transcoder output.
+        if (!isWriteable(outputFile)) {
+            throw new SVGConverterException(ERROR_OUTPUT_NOT_WRITEABLE,
+                                             new Object[] {outputFile.getName()});
+        }
+        try {
+            return new FileOutputStream(outputFile);
+        } catch(FileNotFoundException fnfe) {
+            throw new SVGConverterException(ERROR_CANNOT_OPEN_OUTPUT_FILE,
+                                             new Object[] {outputFile.getName()});
         }
     }
 
@@ -1133,6 +1360,54 @@ public class SVGConverter {
     //   Inner classes
     // -----------------------------------------------------------------------
 
+    /**
+     * Transcoding of a single source into memory, run on a worker thread
+     * by {@link #executeConcurrently}. The result is the
+     * <code>ByteArrayOutputStream</code> holding the output, or the
+     * exception thrown by the transcoder.
+     */
+    protected static class TranscodeTask implements Callable {
+        protected SVGConverterSource inputFile;
+        protected Transcoder transcoder;
+
+        public TranscodeTask(SVGConverterSource inputFile,
+                             Transcoder transcoder){
+            this.inputFile = inputFile;
+            this.transcoder = transcoder;
+        }
+
+        public Object call(){
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                transcoder.transcode(new TranscoderInput(inputFile.getURI()),
+                                     new TranscoderOutput(out));
+            } catch(Exception te) {
+                return te;
+            }
+            return out;
+        }
+    }
+
+    /**
+     * A source given to a worker by {@link #executeConcurrently}, with
+     * its output file, already opened, and the result of its
+     * {@link TranscodeTask}.
+     */
+    protected static class PendingConversion {
+        protected SVGConverterSource inputFile;
+        protected File outputFile;
+        protected OutputStream outputStream;
+        protected Future result;
+
+        public PendingConversion(SVGConverterSource inputFile,
+                                 File outputFile,
+                                 OutputStream outputStream){
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.outputStream = outputStream;
+        }
+    }
+
     /**
      * Convenience class to filter svg files
      */
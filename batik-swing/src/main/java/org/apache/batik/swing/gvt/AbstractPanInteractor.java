@@ -63,6 +63,18 @@ public abstract class AbstractPanInteractor extends InteractorAdapter {
      */
     protected int yCurrent;
 
+    /**
+     * The mouse x position the rendering was last moved to, when the
+     * component pans incrementally.
+     */
+    protected int xPrevious;
+
+    /**
+     * The mouse y position the rendering was last moved to, when the
+     * component pans incrementally.
+     */
+    protected int yPrevious;
+
     /**
      * To store the previous cursor.
      */
@@ -90,6 +102,8 @@ public abstract class AbstractPanInteractor extends InteractorAdapter {
 
         xStart = e.getX();
         yStart = e.getY();
+        xPrevious = xStart;
+        yPrevious = yStart;
 
         JGVTComponent c = (JGVTComponent)e.getSource();
 
@@ -111,9 +125,13 @@ public abstract class AbstractPanInteractor extends InteractorAdapter {
         xCurrent = e.getX();
         yCurrent = e.getY();
 
+        // When panning incrementally the rendering already follows the
+        // mouse up to the previous position.
+        int x0 = c.getIncrementalPan() ? xPrevious : xStart;
+        int y0 = c.getIncrementalPan() ? yPrevious : yStart;
         AffineTransform at =
-            AffineTransform.getTranslateInstance(xCurrent - xStart,
-                                                 yCurrent - yStart);
+            AffineTransform.getTranslateInstance(xCurrent - x0,
+                                                 yCurrent - y0);
         AffineTransform rt =
             (AffineTransform)c.getRenderingTransform().clone();
         rt.preConcatenate(at);
@@ -152,6 +170,20 @@ public abstract class AbstractPanInteractor extends InteractorAdapter {
         xCurrent = e.getX();
         yCurrent = e.getY();
 
+        if (c.getIncrementalPan()) {
+            // The rendering is moved, only the exposed parts are
+            // rendered.
+            AffineTransform at =
+                AffineTransform.getTranslateInstance(xCurrent - xPrevious,
+                                                     yCurrent - yPrevious);
+            AffineTransform rt = c.getRenderingTransform();
+            rt.preConcatenate(at);
+            c.setRenderingTransform(rt);
+            xPrevious = xCurrent;
+            yPrevious = yCurrent;
+            return;
+        }
+
         AffineTransform at =
             AffineTransform.getTranslateInstance(xCurrent - xStart,
                                                  yCurrent - yStart);
@@ -25,6 +25,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.batik.bridge.InterruptedBridgeException;
+import org.apache.batik.gvt.renderer.DynamicRenderer;
 import org.apache.batik.gvt.renderer.ImageRenderer;
 import org.apache.batik.util.EventDispatcher;
 import org.apache.batik.util.EventDispatcher.Dispatcher;
@@ -69,6 +70,18 @@ public class GVTTreeRenderer extends HaltingThread {
      */
     protected boolean doubleBuffering;
 
+    /**
+     * Whether the pixels already rendered are kept when the transform
+     * only moves the rendering.
+     */
+    protected boolean incrementalPan;
+
+    /**
+     * Whether this renderer is only repainting the exposed parts of a
+     * moved rendering.
+     */
+    protected volatile boolean scrolling;
+
     /**
      * The listeners.
      */
@@ -94,12 +107,39 @@ public class GVTTreeRenderer extends HaltingThread {
         this.height = height;
     }
 
+    /**
+     * Sets whether the pixels already rendered are kept when the
+     * transform only moves the rendering, in which case only the exposed
+     * parts of the offscreen buffer are repainted.  This requires a
+     * <code>DynamicRenderer</code>.
+     */
+    public void setIncrementalPan(boolean b) {
+        incrementalPan = b;
+    }
+
+    /**
+     * Returns true if this renderer is only repainting the exposed parts
+     * of a moved rendering.
+     */
+    public boolean isScrolling() {
+        return scrolling;
+    }
+
     /**
      * Runs this renderer.
      */
     public void run() {
         GVTTreeRendererEvent ev = new GVTTreeRendererEvent(this, null);
         try {
+            if (incrementalPan && (renderer instanceof DynamicRenderer)) {
+                DynamicRenderer dr = (DynamicRenderer)renderer;
+                if ((dr.isDoubleBuffered() == doubleBuffering) &&
+                    dr.isScrollable(user2DeviceTransform, width, height)) {
+                    scrollRendering(dr);
+                    return;
+                }
+            }
+
             fireEvent(prepareDispatcher, ev);
 
             renderer.setTransform(user2DeviceTransform);
@@ -145,6 +185,38 @@ public class GVTTreeRenderer extends HaltingThread {
         }
     }
 
+    /**
+     * Moves the current rendering to the new transform.  The prepare
+     * event is not fired since the current image stays valid.
+     */
+    protected void scrollRendering(DynamicRenderer dr) {
+        scrolling = true;
+        GVTTreeRendererEvent ev =
+            new GVTTreeRendererEvent(this, dr.getOffScreen());
+        fireEvent(startedDispatcher, ev);
+
+        if (isHalted()) {
+            fireEvent(cancelledDispatcher, ev);
+            return;
+        }
+
+        if (!dr.scroll(user2DeviceTransform, width, height)) {
+            // The buffer could not be reused after all.
+            dr.setTransform(user2DeviceTransform);
+            dr.updateOffScreen(width, height);
+            dr.clearOffScreen();
+            dr.repaint(areaOfInterest);
+        }
+
+        if (isHalted()) {
+            fireEvent(cancelledDispatcher, ev);
+            return;
+        }
+
+        ev = new GVTTreeRendererEvent(this, dr.getOffScreen());
+        fireEvent(completedDispatcher, ev);
+    }
+
     public void fireEvent(Dispatcher dispatcher, Object event) {
         EventDispatcher.fireEvent(dispatcher, listeners, event, true);
     }
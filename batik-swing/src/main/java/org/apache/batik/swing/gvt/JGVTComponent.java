@@ -53,6 +53,7 @@ import javax.swing.JComponent;
 
 import org.apache.batik.bridge.Mark;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.LayerCache;
 import org.apache.batik.gvt.event.AWTEventDispatcher;
 import org.apache.batik.gvt.event.EventDispatcher;
 import org.apache.batik.gvt.event.SelectionAdapter;
@@ -60,8 +61,10 @@ import org.apache.batik.gvt.event.SelectionEvent;
 import org.apache.batik.gvt.renderer.ConcreteImageRendererFactory;
 import org.apache.batik.gvt.renderer.ImageRenderer;
 import org.apache.batik.gvt.renderer.ImageRendererFactory;
+import org.apache.batik.gvt.renderer.StaticRenderer;
 import org.apache.batik.util.HaltingThread;
 import org.apache.batik.util.Platform;
+import org.apache.batik.util.WorkerPool;
 
 /**
  * This class represents a component which can display a GVT tree.
@@ -173,6 +176,26 @@ public class JGVTComponent extends JComponent {
      */
     protected boolean doubleBufferedRendering;
 
+    /**
+     * The size in device pixels of the smallest details to render.
+     */
+    protected float levelOfDetail;
+
+    /**
+     * The cache holding the renderings of the expensive graphics nodes.
+     */
+    protected LayerCache layerCache;
+
+    /**
+     * The pool rendering the image in parallel.
+     */
+    protected WorkerPool workerPool;
+
+    /**
+     * Whether the pans keep the pixels already rendered.
+     */
+    protected boolean incrementalPan;
+
     /**
      * Whether the GVT tree should be reactive to mouse and key events.
      */
@@ -666,6 +689,90 @@ public class JGVTComponent extends JComponent {
         return doubleBufferedRendering;
     }
 
+    /**
+     * Sets the size in device pixels of the smallest details to render,
+     * or 0 to render everything in full.  Larger values make the zoomed
+     * out views of dense documents cheaper to render.  The change will be
+     * effective during the next rendering.
+     *
+     * @see StaticRenderer#setLevelOfDetail(float)
+     */
+    public void setLevelOfDetail(float lod) {
+        levelOfDetail = lod;
+    }
+
+    /**
+     * Returns the size in device pixels of the smallest details to
+     * render.
+     */
+    public float getLevelOfDetail() {
+        return levelOfDetail;
+    }
+
+    /**
+     * Sets the cache holding the renderings of the expensive graphics
+     * nodes, or null to always paint them.  With a cache, the nodes with
+     * a filter, a mask or a clip that did not change are drawn from
+     * their renderings during the animations and the interactions.  The
+     * change will be effective during the next rendering.
+     *
+     * @see StaticRenderer#setLayerCache(LayerCache)
+     */
+    public void setLayerCache(LayerCache lc) {
+        layerCache = lc;
+    }
+
+    /**
+     * Returns the cache holding the renderings of the expensive graphics
+     * nodes, or null if they are always painted.
+     */
+    public LayerCache getLayerCache() {
+        return layerCache;
+    }
+
+    /**
+     * Sets the pool rendering the image in parallel, or null to render
+     * on the rendering thread only.  With a pool, the first rendering is
+     * split into bands of tiles, and the disjoint regions updated by the
+     * animations and the interactions are repainted at the same time.
+     * The change will be effective during the next rendering.
+     *
+     * @see StaticRenderer#setWorkerPool(WorkerPool)
+     */
+    public void setWorkerPool(WorkerPool pool) {
+        workerPool = pool;
+    }
+
+    /**
+     * Returns the pool rendering the image in parallel, or null if the
+     * rendering is done on the rendering thread only.
+     */
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * Sets whether the pans keep the pixels already rendered.  When
+     * enabled, a change of the rendering transform that only moves the
+     * rendering shifts the offscreen buffer and renders the newly
+     * exposed strips only, and the pan interactors move the rendering
+     * while dragging instead of translating the previous image.  The
+     * renderers created after this call are <code>DynamicRenderer</code>s,
+     * which can keep their pixels.
+     *
+     * @see org.apache.batik.gvt.renderer.DynamicRenderer#scroll
+     */
+    public void setIncrementalPan(boolean b) {
+        incrementalPan = b;
+    }
+
+    /**
+     * Returns true if the pans keep the pixels already rendered.
+     */
+    public boolean getIncrementalPan() {
+        return incrementalPan;
+    }
+
     /**
      * Adds a GVTTreeRendererListener to this component.
      */
@@ -700,6 +807,9 @@ public class JGVTComponent extends JComponent {
      * Creates a new renderer.
      */
     protected ImageRenderer createImageRenderer() {
+        if (incrementalPan) {
+            return rendererFactory.createDynamicImageRenderer();
+        }
         return rendererFactory.createStaticImageRenderer();
     }
 
@@ -717,6 +827,11 @@ public class JGVTComponent extends JComponent {
             renderer = createImageRenderer();
             renderer.setTree(gvtRoot);
         }
+        if (renderer instanceof StaticRenderer) {
+            ((StaticRenderer)renderer).setLevelOfDetail(levelOfDetail);
+            ((StaticRenderer)renderer).setLayerCache(layerCache);
+            ((StaticRenderer)renderer).setWorkerPool(workerPool);
+        }
 
         // Area of interest computation.
         AffineTransform inv;
@@ -731,6 +846,7 @@ public class JGVTComponent extends JComponent {
         gvtTreeRenderer = new GVTTreeRenderer(renderer, renderingTransform,
                                               doubleBufferedRendering, s,
                                               visRect.width, visRect.height);
+        gvtTreeRenderer.setIncrementalPan(incrementalPan);
         gvtTreeRenderer.setPriority(Thread.MIN_PRIORITY);
 
         Iterator it = gvtTreeRendererListeners.iterator();
@@ -797,7 +913,11 @@ public class JGVTComponent extends JComponent {
     protected void scheduleGVTRendering() {
         if (gvtTreeRenderer != null) {
             needRender = true;
-            gvtTreeRenderer.halt();
+            // A pan completes quickly and is followed by the next one,
+            // which keeps its pixels.
+            if (!gvtTreeRenderer.isScrolling()) {
+                gvtTreeRenderer.halt();
+            }
         } else {
             renderGVTTree();
         }
@@ -897,6 +1017,11 @@ public class JGVTComponent extends JComponent {
 
             gvtTreeRenderer = null;
             if (needRender) {
+                // The incremental pans show each of their steps.
+                if (incrementalPan) {
+                    image = e.getImage();
+                    immediateRepaint();
+                }
                 renderGVTTree();
                 needRender = false;
             } else {
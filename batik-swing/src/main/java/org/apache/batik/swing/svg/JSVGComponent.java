@@ -72,6 +72,7 @@ import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.event.EventDispatcher;
 import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.StaticRenderer;
 import org.apache.batik.script.Interpreter;
 import org.apache.batik.swing.gvt.GVTTreeRendererEvent;
 import org.apache.batik.swing.gvt.JGVTComponent;
@@ -898,7 +899,7 @@ public class JSVGComponent extends JGVTComponent {
      * Creates a new renderer.
      */
     protected ImageRenderer createImageRenderer() {
-        if (isDynamicDocument) {
+        if (isDynamicDocument || incrementalPan) {
             return rendererFactory.createDynamicImageRenderer();
         } else {
             return rendererFactory.createStaticImageRenderer();
@@ -1133,6 +1134,19 @@ public class JSVGComponent extends JGVTComponent {
             public void run() {
                 if (!active) return;
 
+                if (renderer instanceof StaticRenderer) {
+                    ((StaticRenderer)renderer).setLevelOfDetail
+                        (levelOfDetail);
+                    ((StaticRenderer)renderer).setLayerCache
+                        (layerCache);
+                    ((StaticRenderer)renderer).setWorkerPool
+                        (workerPool);
+                }
+                if (incrementalPan &&
+                    updateManager.scrollRendering
+                    (at, doubleBuf, clearPaintTrans, width, height)) {
+                    return;
+                }
                 updateManager.updateRendering
                     (at, doubleBuf, clearPaintTrans, aoi, width, height);
             }
@@ -0,0 +1,168 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+/**
+ * Measures the time spent and the memory allocated in a phase of a
+ * transcoding, and reports them to a {@link TranscoderMetrics}.  A
+ * phase may be measured in several periods, each one delimited by
+ * <code>start</code> and <code>stop</code>.
+ *
+ * @version $Id$
+ */
+public class PhaseTimer {
+
+    /**
+     * The bean giving the bytes allocated by a thread, and its
+     * getThreadAllocatedBytes method, or null if not available.
+     */
+    protected static Object threadBean;
+    protected static Method allocatedBytesMethod;
+
+    static {
+        // The allocation counters are an extension of the Sun virtual
+        // machines, so they are looked up reflectively.
+        try {
+            Object bean = ManagementFactory.getThreadMXBean();
+            Class c = Class.forName("com.sun.management.ThreadMXBean");
+            if (c.isInstance(bean)) {
+                Method supported = c.getMethod
+                    ("isThreadAllocatedMemorySupported", new Class[0]);
+                Boolean b = (Boolean)supported.invoke(bean, new Object[0]);
+                if (b.booleanValue()) {
+                    allocatedBytesMethod = c.getMethod
+                        ("getThreadAllocatedBytes", new Class[] { long.class });
+                    threadBean = bean;
+                }
+            }
+        } catch (Exception ex) {
+            // Allocations are not reported.
+        } catch (LinkageError err) {
+            // Allocations are not reported.
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current
+     * thread, or -1 if the virtual machine cannot tell.
+     */
+    public static long getAllocatedBytes() {
+        if (allocatedBytesMethod == null) {
+            return -1;
+        }
+        try {
+            Object[] args = { new Long(Thread.currentThread().getId()) };
+            Long l = (Long)allocatedBytesMethod.invoke(threadBean, args);
+            return l.longValue();
+        } catch (Exception ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns a new timer for the given phase, already started, or null
+     * if there is no metrics listener.
+     * @param metrics the listener or null
+     * @param phase the phase to measure
+     */
+    public static PhaseTimer start(TranscoderMetrics metrics, String phase) {
+        if (metrics == null) {
+            return null;
+        }
+        PhaseTimer t = new PhaseTimer(metrics, phase);
+        t.start();
+        return t;
+    }
+
+    /**
+     * The listener to report to.
+     */
+    protected TranscoderMetrics metrics;
+
+    /**
+     * The measured phase.
+     */
+    protected String phase;
+
+    /**
+     * The time and allocations measured in the completed periods.
+     */
+    protected long nanos;
+    protected long allocatedBytes;
+
+    /**
+     * The start of the current period, if running.
+     */
+    protected long startNanos;
+    protected long startBytes;
+
+    /**
+     * Whether a period is being measured.
+     */
+    protected boolean running;
+
+    /**
+     * Creates a new PhaseTimer, not started.
+     * @param metrics the listener to report to
+     * @param phase the phase to measure
+     */
+    public PhaseTimer(TranscoderMetrics metrics, String phase) {
+        this.metrics = metrics;
+        this.phase = phase;
+    }
+
+    /**
+     * Starts a new period of the phase.
+     */
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startBytes = getAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the current period of the phase.
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        nanos += System.nanoTime() - startNanos;
+        if (startBytes < 0 || allocatedBytes < 0) {
+            allocatedBytes = -1;
+        } else {
+            allocatedBytes += getAllocatedBytes() - startBytes;
+        }
+    }
+
+    /**
+     * Ends the current period, if any, and reports the phase.
+     */
+    public void report() {
+        stop();
+        metrics.phaseCompleted(phase, nanos, allocatedBytes);
+    }
+}
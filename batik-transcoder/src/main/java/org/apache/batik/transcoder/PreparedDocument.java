@@ -0,0 +1,132 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder;
+
+import java.awt.geom.Dimension2D;
+
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.gvt.GraphicsNode;
+
+/**
+ * An SVG document that has been parsed and built into a GVT tree once
+ * by {@link SVGAbstractTranscoder#prepare}, and that can then be
+ * rendered many times, at different sizes, areas of interest and
+ * background colors, without parsing and building it again.
+ *
+ * <p>A prepared document is not modified when it is rendered, so it can
+ * be shared by several transcoders, each used by a single thread. The
+ * document and the GVT tree must not be modified once prepared.</p>
+ *
+ * @version $Id$
+ */
+public class PreparedDocument {
+
+    /**
+     * The SVG document.
+     */
+    protected SVGOMDocument document;
+
+    /**
+     * The URI of the document or null if any.
+     */
+    protected String uri;
+
+    /**
+     * The bridge context used to build the GVT tree.
+     */
+    protected BridgeContext ctx;
+
+    /**
+     * The root of the GVT tree.
+     */
+    protected GraphicsNode root;
+
+    /**
+     * The size of the document.
+     */
+    protected Dimension2D documentSize;
+
+    /**
+     * Creates a new PreparedDocument.
+     *
+     * @param document the SVG document
+     * @param uri the URI of the document or null if any
+     * @param ctx the bridge context used to build the GVT tree
+     * @param root the root of the GVT tree
+     */
+    public PreparedDocument(SVGOMDocument document,
+                            String uri,
+                            BridgeContext ctx,
+                            GraphicsNode root) {
+        this.document = document;
+        this.uri = uri;
+        this.ctx = ctx;
+        this.root = root;
+        this.documentSize = ctx.getDocumentSize();
+    }
+
+    /**
+     * Returns the SVG document.
+     */
+    public SVGOMDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * Returns the URI of the document or null if any.
+     */
+    public String getURI() {
+        return uri;
+    }
+
+    /**
+     * Returns the bridge context used to build the GVT tree.
+     */
+    public BridgeContext getBridgeContext() {
+        return ctx;
+    }
+
+    /**
+     * Returns the root of the GVT tree.
+     */
+    public GraphicsNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the size of the document, as given by its 'width' and
+     * 'height' attributes.
+     */
+    public Dimension2D getDocumentSize() {
+        return documentSize;
+    }
+
+    /**
+     * Releases the resources held by this document. It must not be
+     * rendered anymore after this call.
+     */
+    public void dispose() {
+        if (ctx != null) {
+            ctx.dispose();
+            ctx = null;
+        }
+        root = null;
+    }
+}
@@ -52,10 +52,14 @@ import org.apache.batik.transcoder.keys.FloatKey;
 import org.apache.batik.transcoder.keys.LengthKey;
 import org.apache.batik.transcoder.keys.Rectangle2DKey;
 import org.apache.batik.transcoder.keys.StringKey;
+import org.apache.batik.transcoder.keys.TranscoderMetricsKey;
+import org.apache.batik.transcoder.keys.WorkerPoolKey;
 import org.apache.batik.util.ParsedURL;
 import org.apache.batik.util.SVGConstants;
+import org.apache.batik.util.WorkerPool;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 import org.w3c.dom.svg.SVGSVGElement;
 
 /**
@@ -67,6 +71,8 @@ import org.w3c.dom.svg.SVGSVGElement;
  * <ul>
  *   <li><code>KEY_WIDTH, KEY_HEIGHT</code> can be used to specify how to scale the
  *       SVG image</li>
+ *   <li><code>KEY_METRICS</code> can be used to measure each phase of the
+ *       transcoding</li>
  * </ul>
  *
  * @author <a href="mailto:Thierry.Kormann@sophia.inria.fr">Thierry Kormann</a>
@@ -140,14 +146,91 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
     /**
      * Creates a <code>DocumentFactory</code> that is used to create an SVG DOM
      * tree. The specified DOM Implementation is ignored and the Batik
-     * SVG DOM Implementation is automatically used.
+     * SVG DOM Implementation is automatically used.  The documents are
+     * static, unless the onload event is executed.
      *
      * @param domImpl the DOM Implementation (not used)
      * @param parserClassname the XML parser classname
      */
     protected DocumentFactory createDocumentFactory(DOMImplementation domImpl,
                                                     String parserClassname) {
-        return new SAXSVGDocumentFactory(parserClassname);
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parserClassname);
+        f.setStatic(!(hints.containsKey(KEY_EXECUTE_ONLOAD) &&
+                      ((Boolean)hints.get(KEY_EXECUTE_ONLOAD)).booleanValue()));
+        return f;
+    }
+
+    /**
+     * Returns the document of the specified input, and reports the time
+     * spent parsing it and its contents to the metrics listener, if any.
+     *
+     * @param input the SVG input
+     * @return the document or null if it could not be created
+     * @exception TranscoderException if an error occured while parsing
+     */
+    protected Document createDocument(TranscoderInput input)
+            throws TranscoderException {
+
+        TranscoderMetrics metrics = getMetrics();
+        PhaseTimer timer =
+            PhaseTimer.start(metrics, TranscoderMetrics.PHASE_PARSE);
+        Document document = super.createDocument(input);
+        if (timer != null && document != null) {
+            timer.report();
+            reportDocument(metrics, document, input.getURI());
+        }
+        return document;
+    }
+
+    /**
+     * Returns the metrics listener of this transcoder, or null if any.
+     */
+    protected TranscoderMetrics getMetrics() {
+        return (TranscoderMetrics)hints.get(KEY_METRICS);
+    }
+
+    /**
+     * Counts the elements, filters and images of the specified document
+     * and reports them to the specified metrics listener.
+     *
+     * @param metrics the listener
+     * @param document the document to report
+     * @param uri the uri of the document or null if any
+     */
+    protected void reportDocument(TranscoderMetrics metrics,
+                                  Document document,
+                                  String uri) {
+        int elements = 0;
+        int filters = 0;
+        int images = 0;
+        Node n = document.getDocumentElement();
+        while (n != null) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                elements++;
+                if (SVGConstants.SVG_NAMESPACE_URI.equals
+                        (n.getNamespaceURI())) {
+                    String ln = n.getLocalName();
+                    if (SVGConstants.SVG_FILTER_TAG.equals(ln)) {
+                        filters++;
+                    } else if (SVGConstants.SVG_IMAGE_TAG.equals(ln)) {
+                        images++;
+                    }
+                }
+            }
+            // Depth first traversal, without recursion.
+            Node next = n.getFirstChild();
+            while (next == null && n != null) {
+                next = n.getNextSibling();
+                if (next == null) {
+                    n = n.getParentNode();
+                    if (n == document) {
+                        n = null;
+                    }
+                }
+            }
+            n = next;
+        }
+        metrics.documentLoaded(uri, elements, filters, images);
     }
 
     public void transcode(TranscoderInput input, TranscoderOutput output)
@@ -171,6 +254,117 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
                              TranscoderOutput output)
             throws TranscoderException {
 
+        SVGOMDocument svgDoc = toSVGDocument(document, uri);
+
+        if (hints.containsKey(KEY_WIDTH))
+            width = ((Float)hints.get(KEY_WIDTH)).floatValue();
+        if (hints.containsKey(KEY_HEIGHT))
+            height = ((Float)hints.get(KEY_HEIGHT)).floatValue();
+
+        ctx = createBridgeContext(svgDoc);
+        GraphicsNode gvtRoot = build(svgDoc);
+
+        // get the 'width' and 'height' attributes of the SVG document
+        float docWidth = (float)ctx.getDocumentSize().getWidth();
+        float docHeight = (float)ctx.getDocumentSize().getHeight();
+
+        AffineTransform Px =
+            computeViewingTransform(svgDoc, uri, docWidth, docHeight);
+
+        CanvasGraphicsNode cgn = getCanvasGraphicsNode(gvtRoot);
+        if (cgn != null) {
+            cgn.setViewingTransform(Px);
+            curTxf = new AffineTransform();
+        } else {
+            curTxf = Px;
+        }
+
+        this.root = gvtRoot;
+    }
+
+    /**
+     * Parses and builds the specified input once so that it can then be
+     * rendered any number of times, possibly concurrently, by
+     * transcoders that support prepared documents (see
+     * {@link org.apache.batik.transcoder.image.ImageTranscoder}).
+     * The hints that control how the document is processed (media,
+     * language, stylesheets, scripts...) are the ones of this
+     * transcoder at the time of the call.
+     *
+     * @param input the SVG input to prepare
+     * @return the prepared document or null if the input could not
+     *         be parsed
+     * @exception TranscoderException if an error occured while preparing
+     */
+    public PreparedDocument prepare(TranscoderInput input)
+            throws TranscoderException {
+
+        Document document = createDocument(input);
+        if (document == null) {
+            return null;
+        }
+        String uri = input.getURI();
+        SVGOMDocument svgDoc = toSVGDocument(document, uri);
+
+        ctx = createBridgeContext(svgDoc);
+        GraphicsNode gvtRoot;
+        try {
+            gvtRoot = build(svgDoc);
+        } catch (TranscoderException ex) {
+            ctx.dispose();
+            ctx = null;
+            throw ex;
+        }
+
+        // The viewing transform is part of the transform used to
+        // render the tree, so that the tree itself stays untouched.
+        CanvasGraphicsNode cgn = getCanvasGraphicsNode(gvtRoot);
+        if (cgn != null) {
+            cgn.setViewingTransform(new AffineTransform());
+        }
+
+        // Compute the lazily evaluated bounds now, so that rendering
+        // only reads the tree.
+        gvtRoot.getBounds();
+
+        PreparedDocument prepared =
+            new PreparedDocument(svgDoc, uri, ctx, gvtRoot);
+        ctx = null;
+        return prepared;
+    }
+
+    /**
+     * Sets up the image size, the current area of interest and the
+     * current transform to render the specified prepared document
+     * according to the hints, and returns the GVT tree to render.
+     *
+     * @param document the prepared document to render
+     */
+    protected GraphicsNode setupPrepared(PreparedDocument document) {
+        if (hints.containsKey(KEY_WIDTH))
+            width = ((Float)hints.get(KEY_WIDTH)).floatValue();
+        if (hints.containsKey(KEY_HEIGHT))
+            height = ((Float)hints.get(KEY_HEIGHT)).floatValue();
+
+        Dimension2D docSize = document.getDocumentSize();
+        // The viewing transform computation reads the DOM, which is
+        // not safe to share between threads.
+        synchronized (document) {
+            curTxf = computeViewingTransform
+                (document.getDocument(), document.getURI(),
+                 (float)docSize.getWidth(), (float)docSize.getHeight());
+        }
+        return document.getRoot();
+    }
+
+    /**
+     * Returns the specified document as a Batik SVG document, cloning
+     * it if it has been created by another DOM implementation.
+     *
+     * @param document the document to convert
+     * @param uri the uri of the document or null if any
+     */
+    protected SVGOMDocument toSVGDocument(Document document, String uri) {
         if ((document != null) &&
             !(document.getImplementation() instanceof SVGDOMImplementation)) {
             DOMImplementation impl;
@@ -182,16 +376,20 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
                 ((SVGOMDocument)document).setParsedURL(url);
             }
         }
+        return (SVGOMDocument)document;
+    }
 
-        if (hints.containsKey(KEY_WIDTH))
-            width = ((Float)hints.get(KEY_WIDTH)).floatValue();
-        if (hints.containsKey(KEY_HEIGHT))
-            height = ((Float)hints.get(KEY_HEIGHT)).floatValue();
-
+    /**
+     * Builds the GVT tree of the specified document with the current
+     * bridge context, and dispatches the 'onload' event if needed.
+     *
+     * @param svgDoc the document to build
+     * @exception TranscoderException if an error occured while building
+     */
+    protected GraphicsNode build(SVGOMDocument svgDoc)
+            throws TranscoderException {
 
-        SVGOMDocument svgDoc = (SVGOMDocument)document;
         SVGSVGElement root = svgDoc.getRootElement();
-        ctx = createBridgeContext(svgDoc);
 
         // build the GVT tree
         builder = new GVTBuilder();
@@ -200,10 +398,14 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
             hints.containsKey(KEY_EXECUTE_ONLOAD) &&
              ((Boolean)hints.get(KEY_EXECUTE_ONLOAD)).booleanValue();
 
+        PhaseTimer timer =
+            PhaseTimer.start(getMetrics(), TranscoderMetrics.PHASE_BUILD);
         GraphicsNode gvtRoot;
         try {
             if (isDynamic)
                 ctx.setDynamicState(BridgeContext.DYNAMIC);
+            else if (hints.containsKey(KEY_WORKER_POOL))
+                ctx.setWorkerPool((WorkerPool)hints.get(KEY_WORKER_POOL));
 
             gvtRoot = builder.build(ctx, svgDoc);
 
@@ -226,10 +428,27 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
             ex.printStackTrace();
             throw new TranscoderException(ex);
         }
+        if (timer != null) {
+            timer.report();
+        }
+        return gvtRoot;
+    }
 
-        // get the 'width' and 'height' attributes of the SVG document
-        float docWidth = (float)ctx.getDocumentSize().getWidth();
-        float docHeight = (float)ctx.getDocumentSize().getHeight();
+    /**
+     * Computes the image size according to the hints and returns the
+     * transform that maps the document, or the area of interest, to it.
+     * The current area of interest is updated.
+     *
+     * @param svgDoc the document to render
+     * @param uri the uri of the document or null if any
+     * @param docWidth the width of the document
+     * @param docHeight the height of the document
+     */
+    protected AffineTransform computeViewingTransform(SVGOMDocument svgDoc,
+                                                      String uri,
+                                                      float docWidth,
+                                                      float docHeight) {
+        SVGSVGElement root = svgDoc.getRootElement();
 
         setImageSize(docWidth, docHeight);
 
@@ -278,15 +497,7 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
             curAOI = new Rectangle2D.Float(0, 0, width, height);
         }
 
-        CanvasGraphicsNode cgn = getCanvasGraphicsNode(gvtRoot);
-        if (cgn != null) {
-            cgn.setViewingTransform(Px);
-            curTxf = new AffineTransform();
-        } else {
-            curTxf = Px;
-        }
-
-        this.root = gvtRoot;
+        return Px;
     }
 
     protected CanvasGraphicsNode getCanvasGraphicsNode(GraphicsNode gn) {
@@ -877,6 +1088,72 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
     public static final TranscodingHints.Key KEY_CONSTRAIN_SCRIPT_ORIGIN
         = new BooleanKey();
 
+    /**
+     * The metrics listener key.
+     *
+     * <table border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_METRICS</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">TranscoderMetrics</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">null</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">The listener told the time spent and the
+     *       memory allocated by each phase of the transcoding (parsing,
+     *       building, rendering and encoding), and the number of
+     *       elements, filters and images of the document.  Nothing is
+     *       measured when it is not set.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_METRICS
+        = new TranscoderMetricsKey();
+
+    /**
+     * The worker pool key.
+     *
+     * <table border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_WORKER_POOL</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">WorkerPool</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">null</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">The pool used to compute in parallel the
+     *       styles of all the elements of a static document before
+     *       its GVT tree is built.  When it is not set, the styles are
+     *       computed one element at a time while the tree is built.
+     *       </td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_WORKER_POOL
+        = new WorkerPoolKey();
+
 
     /**
      * A user agent implementation for <code>PrintTranscoder</code>.
@@ -0,0 +1,79 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder;
+
+/**
+ * A listener told how long each phase of a transcoding took, and what
+ * the transcoded document contains.  It is installed with the
+ * {@link SVGAbstractTranscoder#KEY_METRICS} hint; when no listener is
+ * installed, nothing is measured.
+ *
+ * <p>The phases are reported in the order they complete, by the thread
+ * that runs the transcoding.  The CSS cascade is done lazily while the
+ * GVT tree is built, so its time is part of the build phase, and the
+ * filters are evaluated while the tree is painted, so their time is
+ * part of the render phase.  When the image is written a strip of rows
+ * at a time, rendering and encoding are interleaved and each is
+ * reported with the sum of its parts.</p>
+ *
+ * @version $Id$
+ */
+public interface TranscoderMetrics {
+
+    /**
+     * The phase that parses the document.
+     */
+    String PHASE_PARSE = "parse";
+
+    /**
+     * The phase that resolves the styles and builds the GVT tree.
+     */
+    String PHASE_BUILD = "build";
+
+    /**
+     * The phase that paints the GVT tree, including its filters.
+     */
+    String PHASE_RENDER = "render";
+
+    /**
+     * The phase that encodes and writes the image.
+     */
+    String PHASE_ENCODE = "encode";
+
+    /**
+     * Called when a phase is complete.
+     * @param phase the phase, one of the <code>PHASE_*</code> constants
+     * @param nanos the wall time spent in the phase, in nanoseconds
+     * @param allocatedBytes the number of bytes allocated by the
+     *        transcoding thread during the phase, or -1 if the virtual
+     *        machine cannot tell.  Memory allocated by the threads of a
+     *        {@link org.apache.batik.util.WorkerPool} is not counted.
+     */
+    void phaseCompleted(String phase, long nanos, long allocatedBytes);
+
+    /**
+     * Called once the document to transcode is available.
+     * @param uri the URI of the document or null if any
+     * @param elementCount the number of elements of the document
+     * @param filterCount the number of SVG 'filter' elements
+     * @param imageCount the number of SVG 'image' elements
+     */
+    void documentLoaded(String uri, int elementCount, int filterCount,
+                        int imageCount);
+}
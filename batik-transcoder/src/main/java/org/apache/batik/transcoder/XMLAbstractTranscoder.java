@@ -72,6 +72,31 @@ public abstract class XMLAbstractTranscoder extends AbstractTranscoder {
     public void transcode(TranscoderInput input, TranscoderOutput output)
             throws TranscoderException {
 
+        Document document = createDocument(input);
+        // call the dedicated transcode method
+        if (document != null) {
+            try {
+                transcode(document, input.getURI(), output);
+            } catch(TranscoderException ex) {
+                // at this time, all TranscoderExceptions are fatal errors
+                handler.fatalError(ex);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the document of the specified XML input, parsing it if
+     * needed. Errors are reported as fatal errors to the
+     * <code>ErrorHandler</code>.
+     *
+     * @param input the XML input
+     * @return the document or null if it could not be created
+     * @exception TranscoderException if an error occured while parsing
+     */
+    protected Document createDocument(TranscoderInput input)
+            throws TranscoderException {
+
         Document document = null;
         String uri = input.getURI();
         if (input.getDocument() != null) {
@@ -92,23 +117,28 @@ public abstract class XMLAbstractTranscoder extends AbstractTranscoder {
             if (domImpl == null) {
                 handler.fatalError(new TranscoderException(
                     "Unspecified transcoding hints: KEY_DOM_IMPLEMENTATION"));
-                return;
+                return null;
             }
             if (namespaceURI == null) {
                 handler.fatalError(new TranscoderException(
                 "Unspecified transcoding hints: KEY_DOCUMENT_ELEMENT_NAMESPACE_URI"));
-                return;
+                return null;
             }
             if (documentElement == null) {
                 handler.fatalError(new TranscoderException(
                     "Unspecified transcoding hints: KEY_DOCUMENT_ELEMENT"));
-                return;
+                return null;
             }
             // parse the XML document
             DocumentFactory f = createDocumentFactory(domImpl, parserClassname);
             Object xmlParserValidating = hints.get(KEY_XML_PARSER_VALIDATING);
             boolean validating = xmlParserValidating != null && ((Boolean) xmlParserValidating).booleanValue();
             f.setValidating(validating);
+            Object xmlScanner = hints.get(KEY_XML_SCANNER);
+            if (xmlScanner != null && f instanceof SAXDocumentFactory) {
+                ((SAXDocumentFactory) f).setXMLScannerEnabled
+                    (((Boolean) xmlScanner).booleanValue());
+            }
             try {
                 if (input.getInputStream() != null) {
                     document = f.createDocument(namespaceURI,
@@ -136,16 +166,7 @@ public abstract class XMLAbstractTranscoder extends AbstractTranscoder {
                 handler.fatalError(new TranscoderException(ex));
             }
         }
-        // call the dedicated transcode method
-        if (document != null) {
-            try {
-                transcode(document, uri, output);
-            } catch(TranscoderException ex) {
-                // at this time, all TranscoderExceptions are fatal errors
-                handler.fatalError(ex);
-                return;
-            }
-        }
+        return document;
     }
 
     /**
@@ -235,6 +256,36 @@ public abstract class XMLAbstractTranscoder extends AbstractTranscoder {
     public static final TranscodingHints.Key KEY_XML_PARSER_VALIDATING
         = new BooleanKey();
 
+    /**
+     * The XML scanner mode.
+     * <table border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_XML_SCANNER</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Boolean</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">false</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">Specify whether the documents that need no DTD
+     *       processing are parsed by the Batik XML scanner instead of the
+     *       XML parser.  Ignored when the XML parser is validating.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_XML_SCANNER
+        = new BooleanKey();
+
     /**
      * Document element key.
      * <table border="0" cellspacing="0" cellpadding="1">
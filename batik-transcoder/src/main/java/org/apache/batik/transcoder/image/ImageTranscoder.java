@@ -21,23 +21,38 @@ package org.apache.batik.transcoder.image;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
 import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 
 import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.ext.awt.image.rendered.AbstractRed;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.renderer.ConcreteImageRendererFactory;
 import org.apache.batik.gvt.renderer.ImageRenderer;
 import org.apache.batik.gvt.renderer.ImageRendererFactory;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.transcoder.PhaseTimer;
+import org.apache.batik.transcoder.PreparedDocument;
 import org.apache.batik.transcoder.SVGAbstractTranscoder;
 import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderMetrics;
 import org.apache.batik.transcoder.TranscoderOutput;
 import org.apache.batik.transcoder.TranscodingHints;
 import org.apache.batik.transcoder.keys.BooleanKey;
+import org.apache.batik.transcoder.keys.FloatKey;
+import org.apache.batik.transcoder.keys.IntegerKey;
 import org.apache.batik.transcoder.keys.PaintKey;
+import org.apache.batik.util.WorkerPool;
 import org.w3c.dom.Document;
 
 /**
@@ -64,6 +79,17 @@ import org.w3c.dom.Document;
  * stylesheet, and <code>KEY_MM_PER_PIXEL</code> to specify the number of
  * millimeters in each pixel .
  *
+ * <p>The <code>KEY_PARALLEL_RENDERING</code> hint renders large images
+ * by bands of tiles on all the available processors, and the
+ * <code>KEY_STRIP_HEIGHT</code> hint renders and writes them a strip
+ * of rows at a time, so that the whole image is never held in memory.
+ * The <code>KEY_LEVEL_OF_DETAIL</code> hint approximates the details
+ * smaller than a number of pixels, which makes thumbnails cheaper.
+ *
+ * <p>A document that is rendered many times can be parsed and built
+ * once with {@link #prepare}, and then rendered with
+ * {@link #transcode(PreparedDocument,TranscoderOutput)}.
+ *
  * @author <a href="mailto:Thierry.Kormann@sophia.inria.fr">Thierry Kormann</a>
  * @version $Id$
  */
@@ -91,6 +117,46 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
         // Sets up root, curTxf & curAoi
         super.transcode(document, uri, output);
 
+        GraphicsNode gvtRoot = this.root;
+        this.root = null; // We're done with it...
+        transcode(gvtRoot, output);
+    }
+
+    /**
+     * Transcodes the specified prepared document as an image in the
+     * specified output. The image size, area of interest and background
+     * are computed from the hints of this transcoder, so the same
+     * prepared document can be rendered with different hints. Several
+     * transcoders can render the same prepared document concurrently.
+     *
+     * @param document the prepared document to transcode
+     * @param output the ouput where to transcode
+     * @exception TranscoderException if an error occured while transcoding
+     * @see #prepare
+     */
+    public void transcode(PreparedDocument document,
+                          TranscoderOutput output)
+            throws TranscoderException {
+        try {
+            transcode(setupPrepared(document), output);
+        } catch (TranscoderException ex) {
+            // at this time, all TranscoderExceptions are fatal errors
+            handler.fatalError(ex);
+        }
+    }
+
+    /**
+     * Paints the specified GVT tree with the current transform and
+     * writes the resulting image in the specified output.
+     *
+     * @param gvtRoot the GVT tree to paint
+     * @param output the ouput where to transcode
+     * @exception TranscoderException if an error occured while transcoding
+     */
+    protected void transcode(GraphicsNode gvtRoot,
+                             TranscoderOutput output)
+            throws TranscoderException {
+
         // prepare the image to be painted
         int w = (int)(width+0.5);
         int h = (int)(height+0.5);
@@ -98,13 +164,55 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
         // paint the SVG document using the bridge package
         // create the appropriate renderer
         ImageRenderer renderer = createRenderer();
-        renderer.updateOffScreen(w, h);
         // curTxf.translate(0.5, 0.5);
         renderer.setTransform(curTxf);
-        renderer.setTree(this.root);
-        this.root = null; // We're done with it...
+        renderer.setTree(gvtRoot);
+        if (renderer instanceof StaticRenderer) {
+            // The transform is the viewing transform of a prepared
+            // document, which must give the same pixels as when it is
+            // set on the canvas graphics node.
+            ((StaticRenderer)renderer).setRoundTranslation(false);
+        }
+        if (hints.containsKey(KEY_PARALLEL_RENDERING)
+                && renderer instanceof StaticRenderer) {
+            Boolean b = (Boolean)hints.get(KEY_PARALLEL_RENDERING);
+            if (b.booleanValue()) {
+                ((StaticRenderer)renderer).setWorkerPool
+                    (WorkerPool.getDefault());
+            }
+        }
+        if (hints.containsKey(KEY_LEVEL_OF_DETAIL)
+                && renderer instanceof StaticRenderer) {
+            Float lod = (Float)hints.get(KEY_LEVEL_OF_DETAIL);
+            ((StaticRenderer)renderer).setLevelOfDetail(lod.floatValue());
+        }
 
+        TranscoderMetrics metrics = getMetrics();
         try {
+            if (hints.containsKey(KEY_STRIP_HEIGHT)) {
+                int sh = ((Integer)hints.get(KEY_STRIP_HEIGHT)).intValue();
+                Paint bgcolor = (Paint)hints.get(KEY_BACKGROUND_COLOR);
+                StripRed strips =
+                    new StripRed(renderer, curTxf, w, h, sh, bgcolor);
+                PhaseTimer encodeTimer =
+                    PhaseTimer.start(metrics, TranscoderMetrics.PHASE_ENCODE);
+                if (encodeTimer != null) {
+                    strips.encodeTimer = encodeTimer;
+                    strips.renderTimer = new PhaseTimer
+                        (metrics, TranscoderMetrics.PHASE_RENDER);
+                }
+                writeRenderedImage(strips, output);
+                if (encodeTimer != null) {
+                    strips.renderTimer.report();
+                    encodeTimer.report();
+                }
+                return;
+            }
+
+            PhaseTimer timer =
+                PhaseTimer.start(metrics, TranscoderMetrics.PHASE_RENDER);
+            renderer.updateOffScreen(w, h);
+
             // now we are sure that the aoi is the image size
             Shape raoi = new Rectangle2D.Float(0, 0, width, height);
             // Warning: the renderer's AOI must be in user space
@@ -127,7 +235,17 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
             }
             g2d.dispose();
             rend = null; // We're done with it...
+            if (timer != null) {
+                timer.report();
+                timer = PhaseTimer.start
+                    (metrics, TranscoderMetrics.PHASE_ENCODE);
+            }
             writeImage(dest, output);
+            if (timer != null) {
+                timer.report();
+            }
+        } catch (TranscoderException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new TranscoderException(ex);
         }
@@ -200,6 +318,151 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
     public abstract void writeImage(BufferedImage img, TranscoderOutput output)
         throws TranscoderException;
 
+    /**
+     * Writes the specified image, which computes its pixels a strip of
+     * rows at a time, to the specified output.  This implementation
+     * copies the image in an image returned by <code>createImage</code>
+     * and writes it with <code>writeImage</code>; subclasses that can
+     * encode an image a strip at a time should override it.
+     * @param img the image to write
+     * @param output the output where to store the image
+     * @throws TranscoderException if an error occured while storing the image
+     */
+    public void writeRenderedImage(RenderedImage img, TranscoderOutput output)
+        throws TranscoderException {
+        BufferedImage dest = createImage(img.getWidth(), img.getHeight());
+        img.copyData(dest.getRaster());
+        writeImage(dest, output);
+    }
+
+    /**
+     * An image whose tiles are strips of rows of the final image,
+     * rendered on demand with the background color.  Only the last
+     * strip rendered is kept.
+     */
+    protected class StripRed extends AbstractRed {
+
+        /**
+         * The renderer used to render the strips.
+         */
+        protected ImageRenderer renderer;
+
+        /**
+         * The user space to device space transform of the whole image.
+         */
+        protected AffineTransform usr2dev;
+
+        /**
+         * The inverse of <code>usr2dev</code>.
+         */
+        protected AffineTransform dev2usr;
+
+        /**
+         * The background paint or null if any.
+         */
+        protected Paint background;
+
+        /**
+         * The last strip rendered, and its index.
+         */
+        protected Raster strip;
+        protected int stripIndex = -1;
+
+        /**
+         * The timers of the rendering and of the encoding, which are
+         * interleaved, or null if they are not measured.
+         */
+        protected PhaseTimer renderTimer;
+        protected PhaseTimer encodeTimer;
+
+        /**
+         * Creates a new StripRed.
+         * @param renderer the renderer, whose tree is already set
+         * @param usr2dev the user space to device space transform
+         * @param w the image width in pixels
+         * @param h the image height in pixels
+         * @param stripHeight the number of rows in a strip
+         * @param background the background paint or null if any
+         */
+        public StripRed(ImageRenderer renderer, AffineTransform usr2dev,
+                        int w, int h, int stripHeight, Paint background)
+            throws NoninvertibleTransformException {
+            this.renderer   = renderer;
+            this.usr2dev    = usr2dev;
+            this.dev2usr    = usr2dev.createInverse();
+            this.background = background;
+
+            if (stripHeight <= 0 || stripHeight > h) {
+                stripHeight = h;
+            }
+            BufferedImage bi = createImage(w, stripHeight);
+            init((CachableRed)null, new Rectangle(0, 0, w, h),
+                 bi.getColorModel(), bi.getSampleModel(), 0, 0, null);
+        }
+
+        public Raster getTile(int tileX, int tileY) {
+            if (tileY != stripIndex) {
+                strip = null; // Let it go before rendering the next one.
+                if (renderTimer != null) {
+                    encodeTimer.stop();
+                    renderTimer.start();
+                }
+                strip = renderStrip(tileY);
+                stripIndex = tileY;
+                if (renderTimer != null) {
+                    renderTimer.stop();
+                    encodeTimer.start();
+                }
+            }
+            return strip;
+        }
+
+        public WritableRaster copyData(WritableRaster wr) {
+            Rectangle r = wr.getBounds().intersection(bounds);
+            if (r.isEmpty()) {
+                return wr;
+            }
+            int minTY = getYTile(r.y);
+            int maxTY = getYTile(r.y + r.height - 1);
+            for (int ty = minTY; ty <= maxTY; ty++) {
+                GraphicsUtil.copyData(getTile(0, ty), wr);
+            }
+            return wr;
+        }
+
+        /**
+         * Renders the strip at the given index.
+         */
+        protected Raster renderStrip(int idx) {
+            int y = tileGridYOff + idx * tileHeight;
+            int w = bounds.width;
+            int h = Math.min(tileHeight, bounds.y + bounds.height - y);
+
+            // The renderer paints the strip as an image of its own, with
+            // the transform translated by a whole number of pixels.
+            AffineTransform at = AffineTransform.getTranslateInstance(0, -y);
+            at.concatenate(usr2dev);
+            renderer.updateOffScreen(w, h);
+            renderer.setTransform(at);
+            renderer.repaint(dev2usr.createTransformedShape
+                             (new Rectangle(0, y, w, h)));
+            BufferedImage rend = renderer.getOffScreen();
+
+            BufferedImage dest = createImage(w, h);
+            Graphics2D g2d = GraphicsUtil.createGraphics(dest);
+            if (background != null) {
+                g2d.setComposite(AlphaComposite.SrcOver);
+                g2d.setPaint(background);
+                g2d.fillRect(0, 0, w, h);
+            }
+            if (rend != null) { // might be null if the svg document is empty
+                g2d.drawRenderedImage(rend, new AffineTransform());
+            }
+            g2d.dispose();
+            return dest.getRaster().createTranslatedChild(0, y);
+        }
+    }
+
     // --------------------------------------------------------------------
     // Keys definition
     // --------------------------------------------------------------------
@@ -275,4 +538,105 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
      */
     public static final TranscodingHints.Key KEY_FORCE_TRANSPARENT_WHITE
         = new BooleanKey();
+
+    /**
+     * The parallel rendering key.
+     *
+     * <table border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_PARALLEL_RENDERING</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Boolean</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">false</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">Specify whether the image should be rendered
+     *       by bands of tiles on all the available processors, using
+     *       the shared {@link WorkerPool}.  The resulting image is the
+     *       same as when rendering on a single thread.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_PARALLEL_RENDERING
+        = new BooleanKey();
+
+    /**
+     * The strip height key.
+     *
+     * <table border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_STRIP_HEIGHT</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">none/whole image</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">Specify the number of rows of the image that
+     *       are rendered at a time.  The image is then never held in
+     *       memory as a whole by transcoders that can write it a strip
+     *       at a time, which makes it possible to produce very large
+     *       images.  A multiple of the tile size of the renderer (128
+     *       pixels by default) avoids rendering some tiles twice.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_STRIP_HEIGHT
+        = new IntegerKey();
+
+    /**
+     * The level of detail key.
+     *
+     * <table border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_LEVEL_OF_DETAIL</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Float</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">none/full detail</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">Specify the size in pixels of the smallest
+     *       details to render.  The elements smaller than this size are
+     *       drawn as rectangles of the same area, without their filters,
+     *       masks and clips, the text whose lines are less tall is drawn
+     *       as boxes, and the shapes are simplified for the scale of the
+     *       image.  Values around 1 give images close to the full
+     *       rendering, larger values are suited to thumbnails.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_LEVEL_OF_DETAIL
+        = new FloatKey();
 }
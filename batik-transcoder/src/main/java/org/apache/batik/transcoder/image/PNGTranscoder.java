@@ -19,6 +19,7 @@
 package org.apache.batik.transcoder.image;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.OutputStream;
 
@@ -107,6 +108,43 @@ public class PNGTranscoder extends ImageTranscoder {
             forceTransparentWhite(img, sppsm);
         }
 
+        WriteAdapter adapter = getWriteAdapter();
+        adapter.writeImage(this, img, output);
+    }
+
+    /**
+     * Writes the specified image, which computes its pixels a strip of
+     * rows at a time, to the specified output.  The image is encoded a
+     * strip at a time when the write adapter supports it and neither
+     * <code>KEY_INDEXED</code> nor <code>KEY_FORCE_TRANSPARENT_WHITE</code>,
+     * which need the whole image, is set.
+     * @param img the image to write
+     * @param output the output where to store the image
+     * @throws TranscoderException if an error occured while storing the image
+     */
+    public void writeRenderedImage(RenderedImage img, TranscoderOutput output)
+            throws TranscoderException {
+
+        WriteAdapter adapter = getWriteAdapter();
+        if (!(adapter instanceof StreamingWriteAdapter)
+                || hints.containsKey(KEY_INDEXED)
+                || Boolean.TRUE.equals
+                       (hints.get(KEY_FORCE_TRANSPARENT_WHITE))) {
+            super.writeRenderedImage(img, output);
+            return;
+        }
+
+        if (output.getOutputStream() == null) {
+            throw new TranscoderException(
+                Messages.formatMessage("png.badoutput", null));
+        }
+        ((StreamingWriteAdapter)adapter).writeRenderedImage(this, img, output);
+    }
+
+    /**
+     * Returns the adapter used to write PNG images.
+     */
+    private WriteAdapter getWriteAdapter() throws TranscoderException {
         WriteAdapter adapter = getWriteAdapter(
                 "org.apache.batik.ext.awt.image.codec.png.PNGTranscoderInternalCodecWriteAdapter");
         if (adapter == null) {
@@ -117,7 +155,7 @@ public class PNGTranscoder extends ImageTranscoder {
             throw new TranscoderException(
                     "Could not write PNG file because no WriteAdapter is availble");
         }
-        adapter.writeImage(this, img, output);
+        return adapter;
     }
     
     // --------------------------------------------------------------------
@@ -143,6 +181,28 @@ public class PNGTranscoder extends ImageTranscoder {
                 TranscoderOutput output) throws TranscoderException;
 
     }
+
+    /**
+     * This interface is implemented by the <code>WriteAdapter</code>s
+     * that can write an image a strip of rows at a time, without
+     * holding the whole image in memory.
+     *
+     * @version $Id$
+     */
+    public interface StreamingWriteAdapter extends WriteAdapter {
+
+        /**
+         * Writes the specified image to the specified output, reading
+         * its pixels a strip of rows at a time.
+         * @param transcoder the calling PNGTranscoder
+         * @param img the image to write
+         * @param output the output where to store the image
+         * @throws TranscoderException if an error occured while storing the image
+         */
+        void writeRenderedImage(PNGTranscoder transcoder, RenderedImage img,
+                TranscoderOutput output) throws TranscoderException;
+
+    }
     
 
     // --------------------------------------------------------------------
@@ -0,0 +1,259 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of daemon worker threads used to run groups of independent
+ * tasks in parallel.
+ *
+ * <p>The thread calling {@link #invokeAll} takes part in the work: it
+ * runs the tasks the workers have not yet picked up, so a group always
+ * completes even when all the workers are busy.  This makes it safe to
+ * call <code>invokeAll</code> from a task that is itself running in the
+ * pool.</p>
+ *
+ * @version $Id$
+ */
+public class WorkerPool {
+
+    /**
+     * The shared pool, created on demand.
+     */
+    protected static WorkerPool defaultPool;
+
+    /**
+     * Returns the shared pool, which has one worker per available
+     * processor.
+     */
+    public static synchronized WorkerPool getDefault() {
+        if (defaultPool == null) {
+            int n = Runtime.getRuntime().availableProcessors();
+            defaultPool = new WorkerPool(n);
+        }
+        return defaultPool;
+    }
+
+    /**
+     * The number of worker threads.
+     */
+    protected int threads;
+
+    /**
+     * The executor running the workers.
+     */
+    protected ExecutorService executor;
+
+    /**
+     * Creates a new WorkerPool.
+     * @param threads the number of worker threads, in addition to the
+     *        thread calling <code>invokeAll</code>
+     */
+    public WorkerPool(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("threads: " + threads);
+        }
+        this.threads = threads;
+        if (threads > 0) {
+            executor = new ThreadPoolExecutor
+                (threads, threads, 60L, TimeUnit.SECONDS,
+                 new LinkedBlockingQueue(), new WorkerFactory());
+            ((ThreadPoolExecutor)executor).allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Returns the number of worker threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the number of tasks that can run at the same time during
+     * a call to <code>invokeAll</code>, that is the number of workers
+     * plus the calling thread.
+     */
+    public int getParallelism() {
+        return threads + 1;
+    }
+
+    /**
+     * Runs the given tasks and returns when all of them have completed.
+     * If a task throws an exception, the tasks not yet started are
+     * skipped and the exception is rethrown once the running ones have
+     * completed.
+     * @param tasks the tasks to run, in no particular order
+     */
+    public void invokeAll(Runnable[] tasks) {
+        int n = tasks.length;
+        if (n == 0) {
+            return;
+        }
+        if (n == 1 || executor == null) {
+            for (int i = 0; i < n; i++) {
+                tasks[i].run();
+            }
+            return;
+        }
+
+        Batch batch = new Batch(tasks);
+        int helpers = Math.min(threads, n - 1);
+        try {
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(batch);
+            }
+        } catch (RuntimeException ex) {
+            // The pool has been disposed: run what is left here.
+        }
+        batch.run();
+        batch.await();
+    }
+
+    /**
+     * Stops the worker threads. The pool runs all the tasks on the
+     * calling thread after this call.
+     */
+    public void dispose() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A group of tasks shared by the workers and the calling thread.
+     */
+    protected static class Batch implements Runnable {
+
+        /**
+         * The tasks to run.
+         */
+        protected Runnable[] tasks;
+
+        /**
+         * The index of the next task to run.
+         */
+        protected int next;
+
+        /**
+         * The number of tasks started and not yet completed.
+         */
+        protected int running;
+
+        /**
+         * The first exception thrown by a task.
+         */
+        protected Throwable failure;
+
+        public Batch(Runnable[] tasks) {
+            this.tasks = tasks;
+        }
+
+        /**
+         * Runs tasks until there are none left.
+         */
+        public void run() {
+            Runnable r;
+            while ((r = nextTask()) != null) {
+                Throwable t = null;
+                try {
+                    r.run();
+                } catch (Throwable th) {
+                    t = th;
+                }
+                taskDone(t);
+            }
+        }
+
+        /**
+         * Returns the next task to run, or null if there are none left.
+         */
+        protected synchronized Runnable nextTask() {
+            if (next == tasks.length || failure != null) {
+                return null;
+            }
+            running++;
+            return tasks[next++];
+        }
+
+        /**
+         * Records the completion of a task.
+         */
+        protected synchronized void taskDone(Throwable t) {
+            if (t != null && failure == null) {
+                failure = t;
+            }
+            running--;
+            if (running == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Waits for the running tasks to complete, and rethrows the
+         * first exception thrown by a task, if any.
+         */
+        public void await() {
+            boolean interrupted = false;
+            synchronized (this) {
+                while (running > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ie) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException)failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error)failure;
+            }
+            if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+    }
+
+    /**
+     * Creates the daemon worker threads.
+     */
+    protected static class WorkerFactory implements ThreadFactory {
+
+        /**
+         * The number of threads created so far.
+         */
+        protected int count;
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Batik WorkerPool-" + (++count));
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
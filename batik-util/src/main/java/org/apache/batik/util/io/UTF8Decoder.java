@@ -109,7 +109,7 @@ public class UTF8Decoder extends AbstractCharDecoder {
             if ((b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80) {
                 charError("UTF-8");
             }
-            return ((b1 & 0x1f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x1f);
+            return ((b1 & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f);
 
         case 4:
             if (position == count) {
@@ -138,10 +138,10 @@ public class UTF8Decoder extends AbstractCharDecoder {
                 (b4 & 0xc0) != 0x80) {
                 charError("UTF-8");
             }
-            int c = ((b1 & 0x1f) << 18)
+            int c = ((b1 & 0x07) << 18)
                 | ((b2 & 0x3f) << 12)
-                | ((b3 & 0x1f) << 6)
-                | (b4 & 0x1f);
+                | ((b3 & 0x3f) << 6)
+                | (b4 & 0x3f);
             nextChar = (c - 0x10000) % 0x400 + 0xdc00;
             return (c - 0x10000) / 0x400 + 0xd800;
         }
@@ -0,0 +1,168 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+
+/**
+ * Checks that a WorkerPool runs every task once, really runs them at
+ * the same time, rethrows the exception of a failing task and still
+ * runs the tasks once disposed.
+ *
+ * @version $Id$
+ */
+public class WorkerPoolTest extends AbstractTest {
+
+    public static final String ERROR_TASK_COUNT =
+        "WorkerPoolTest.error.task.count";
+
+    public static final String ERROR_NOT_PARALLEL =
+        "WorkerPoolTest.error.not.parallel";
+
+    public static final String ERROR_NO_EXCEPTION =
+        "WorkerPoolTest.error.no.exception";
+
+    public static final String ERROR_DISPOSED =
+        "WorkerPoolTest.error.disposed";
+
+    /**
+     * The number of worker threads.
+     */
+    protected int threads;
+
+    public WorkerPoolTest(Integer threads) {
+        this.threads = threads.intValue();
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+        WorkerPool pool = new WorkerPool(threads);
+        try {
+            // Every task runs exactly once.
+            final int[] runs = new int[100];
+            Runnable[] tasks = new Runnable[runs.length];
+            for (int i = 0; i < tasks.length; i++) {
+                final int idx = i;
+                tasks[i] = new Runnable() {
+                        public void run() {
+                            synchronized (runs) {
+                                runs[idx]++;
+                            }
+                        }
+                    };
+            }
+            pool.invokeAll(tasks);
+            for (int i = 0; i < runs.length; i++) {
+                if (runs[i] != 1) {
+                    report.setErrorCode(ERROR_TASK_COUNT);
+                    report.setPassed(false);
+                    return report;
+                }
+            }
+
+            // As many tasks as the parallelism run at the same time: each
+            // one waits for all the others to have started.
+            final int n = pool.getParallelism();
+            final int[] started = new int[1];
+            final Set names = new HashSet();
+            tasks = new Runnable[n];
+            for (int i = 0; i < n; i++) {
+                tasks[i] = new Runnable() {
+                        public void run() {
+                            synchronized (started) {
+                                started[0]++;
+                                names.add(Thread.currentThread().getName());
+                                started.notifyAll();
+                                long end = System.currentTimeMillis() + 10000;
+                                long t;
+                                while (started[0] < n &&
+                                       (t = end - System.currentTimeMillis()) > 0) {
+                                    try {
+                                        started.wait(t);
+                                    } catch (InterruptedException ie) {
+                                        return;
+                                    }
+                                }
+                            }
+                        }
+                    };
+            }
+            pool.invokeAll(tasks);
+            if (names.size() != n) {
+                report.setErrorCode(ERROR_NOT_PARALLEL);
+                report.setPassed(false);
+                return report;
+            }
+
+            // The exception of a failing task is rethrown.
+            tasks = new Runnable[10];
+            for (int i = 0; i < tasks.length; i++) {
+                final int idx = i;
+                tasks[i] = new Runnable() {
+                        public void run() {
+                            if (idx == 3) {
+                                throw new IllegalStateException("task 3");
+                            }
+                        }
+                    };
+            }
+            boolean thrown = false;
+            try {
+                pool.invokeAll(tasks);
+            } catch (IllegalStateException ex) {
+                thrown = "task 3".equals(ex.getMessage());
+            }
+            if (!thrown) {
+                report.setErrorCode(ERROR_NO_EXCEPTION);
+                report.setPassed(false);
+                return report;
+            }
+        } finally {
+            pool.dispose();
+        }
+
+        // A disposed pool runs the tasks on the calling thread.
+        final Thread caller = Thread.currentThread();
+        final int[] here = new int[1];
+        Runnable[] tasks = new Runnable[10];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new Runnable() {
+                    public void run() {
+                        if (Thread.currentThread() == caller) {
+                            here[0]++;
+                        }
+                    }
+                };
+        }
+        pool.invokeAll(tasks);
+        if (here[0] != tasks.length) {
+            report.setErrorCode(ERROR_DISPOSED);
+            report.setPassed(false);
+            return report;
+        }
+
+        report.setPassed(true);
+        return report;
+    }
+}
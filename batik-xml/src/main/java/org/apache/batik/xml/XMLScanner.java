@@ -220,6 +220,20 @@ public class XMLScanner implements Localizable {
         }
     }
 
+    /**
+     * Creates a new XML scanner.
+     * @param r The normalizing reader to scan, which is used as is.
+     */
+    public XMLScanner(NormalizingReader r) throws XMLException {
+        context = DOCUMENT_START_CONTEXT;
+        try {
+            reader = r;
+            current = nextChar();
+        } catch (IOException e) {
+            throw new XMLException(e);
+        }
+    }
+
     /**
      * Creates a new XML scanner.
      * @param is The input stream to scan.
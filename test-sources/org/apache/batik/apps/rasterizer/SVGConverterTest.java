@@ -413,6 +413,19 @@ public class SVGConverterTest extends DefaultTestSuite {
         addTest(t);
         t.setId("OutputTest.reference");
 
+        // Concurrent conversion
+        t = new ConcurrentConverterTest(new String[] {
+                "samples/anne.svg",
+                "test-resources/org/apache/batik/apps/rasterizer/invalidSVG.svg",
+                "samples/batikLogo.svg",
+                "samples/barChart.svg",
+                "samples/doesNotExist.svg", // Source failing its checks
+                "samples/textRotate.svg" },
+            "samples/batikLogo.svg", // Source skipped by the controller
+            "test-reports/concurrent");
+        addTest(t);
+        t.setId("ConcurrentConverterTest");
+
     }
 }
 
@@ -1089,3 +1102,188 @@ class ConverterOutputTest extends AbstractTest {
         return r;
     }
 }
+
+/**
+ * This test converts several sources one after the other, then with
+ * two threads, and checks that the output files are identical and that
+ * the controller sees the same calls: it is asked about the sources in
+ * the same order, about each one before its outcome is reported, and
+ * the outcomes are the same, in the same order. The controller skips
+ * one of the sources.
+ */
+class ConcurrentConverterTest extends AbstractTest
+    implements SVGConverterController {
+
+    public static final String ERROR_DIFFERENT_CALLS
+        = "ConcurrentConverterTest.error.different.calls";
+
+    public static final String ERROR_DIFFERENT_OUTPUT
+        = "ConcurrentConverterTest.error.different.output";
+
+    public static final String ENTRY_KEY_SEQUENTIAL_CALLS
+        = "ConcurrentConverterTest.entry.key.sequential.calls";
+
+    public static final String ENTRY_KEY_CONCURRENT_CALLS
+        = "ConcurrentConverterTest.entry.key.concurrent.calls";
+
+    public static final String ENTRY_KEY_FILE
+        = "ConcurrentConverterTest.entry.key.file";
+
+    String[] sources;
+    String skippedSource;
+    String dst;
+
+    /**
+     * The calls made to the controller.
+     */
+    StringBuffer calls;
+
+    public ConcurrentConverterTest(String[] sources,
+                                   String skippedSource,
+                                   String dst){
+        this.sources = sources;
+        this.skippedSource = skippedSource;
+        this.dst = dst;
+    }
+
+    public TestReport runImpl() throws Exception {
+        File seqDir = new File(dst, "sequential");
+        File conDir = new File(dst, "concurrent");
+        String seqCalls = convert(1, seqDir);
+        String conCalls = convert(2, conDir);
+
+        try {
+            if (!select(seqCalls, "proceed", true).equals
+                    (select(conCalls, "proceed", true)) ||
+                !select(seqCalls, "proceed", false).equals
+                    (select(conCalls, "proceed", false)) ||
+                !proceedBeforeOutcome(conCalls)) {
+                TestReport report = reportError(ERROR_DIFFERENT_CALLS);
+                report.addDescriptionEntry(ENTRY_KEY_SEQUENTIAL_CALLS,
+                                           seqCalls);
+                report.addDescriptionEntry(ENTRY_KEY_CONCURRENT_CALLS,
+                                           conCalls);
+                return report;
+            }
+
+            File[] files = seqDir.listFiles();
+            for (int i = 0; i < files.length; i++) {
+                File f = new File(conDir, files[i].getName());
+                if (!Arrays.equals(read(files[i]), read(f))) {
+                    TestReport report = reportError(ERROR_DIFFERENT_OUTPUT);
+                    report.addDescriptionEntry(ENTRY_KEY_FILE,
+                                               files[i].getName());
+                    return report;
+                }
+            }
+            return reportSuccess();
+        } finally {
+            delete(seqDir);
+            delete(conDir);
+        }
+    }
+
+    /**
+     * Converts the sources with the given number of threads into the
+     * given directory, and returns the calls made to the controller.
+     */
+    protected String convert(int threads, File dir) throws Exception {
+        calls = new StringBuffer();
+        SVGConverter c = new SVGConverter(this);
+        c.setDestinationType(DestinationType.PNG);
+        c.setSources(sources);
+        c.setDst(dir);
+        c.setThreads(threads);
+        c.execute();
+        return calls.toString();
+    }
+
+    /**
+     * Returns the calls that start, or do not start, with the given
+     * prefix.
+     */
+    protected String select(String calls, String prefix, boolean matching) {
+        StringBuffer sb = new StringBuffer();
+        StringTokenizer st = new StringTokenizer(calls, "\n");
+        while (st.hasMoreTokens()) {
+            String call = st.nextToken();
+            if (call.startsWith(prefix) == matching) {
+                sb.append(call).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tells whether the controller is asked about each source before
+     * the outcome of its conversion is reported.
+     */
+    protected boolean proceedBeforeOutcome(String calls) {
+        Set asked = new HashSet();
+        StringTokenizer st = new StringTokenizer(calls, "\n");
+        while (st.hasMoreTokens()) {
+            String call = st.nextToken();
+            StringTokenizer words = new StringTokenizer(call, " ");
+            String kind = words.nextToken();
+            String name = words.nextToken();
+            if (kind.equals("proceed")) {
+                asked.add(name);
+            } else if (!kind.equals("task") && !asked.contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected byte[] read(File f) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(f);
+        try {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    protected void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+        }
+        dir.delete();
+    }
+
+    public boolean proceedWithComputedTask(Transcoder transcoder,
+                                           Map hints,
+                                           List sources,
+                                           List dest){
+        calls.append("task ").append(sources.size()).append('\n');
+        return true;
+    }
+
+    public boolean proceedWithSourceTranscoding(SVGConverterSource source,
+                                                File dest) {
+        calls.append("proceed ").append(source.getName()).append('\n');
+        return !skippedSource.endsWith(source.getName());
+    }
+
+    public boolean proceedOnSourceTranscodingFailure(SVGConverterSource source,
+                                                     File dest,
+                                                     String errorCode){
+        calls.append("failure ").append(source.getName())
+            .append(' ').append(errorCode).append('\n');
+        return true;
+    }
+
+    public void onSourceTranscodingSuccess(SVGConverterSource source,
+                                           File dest){
+        calls.append("success ").append(source.getName()).append('\n');
+    }
+}
@@ -0,0 +1,211 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.dom.util.DocumentDescriptor;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Checks that the loaders sharing a DocumentCache each get their own
+ * copy of a document, with the line numbers of the parsed one, that
+ * modifying a copy changes neither the cache nor the other copies, and
+ * that the cache drops the least recently used documents to stay below
+ * its byte limit.
+ *
+ * @version $Id$
+ */
+public class DocumentCacheTest extends AbstractTest {
+
+    public static final String ERROR_NOT_SHARED =
+        "DocumentCacheTest.error.not.shared";
+
+    public static final String ERROR_SAME_COPY =
+        "DocumentCacheTest.error.same.copy";
+
+    public static final String ERROR_COPY_MODIFIED =
+        "DocumentCacheTest.error.copy.modified";
+
+    public static final String ERROR_LINE_NUMBER =
+        "DocumentCacheTest.error.line.number";
+
+    public static final String ERROR_EVICTION =
+        "DocumentCacheTest.error.eviction";
+
+    public static final String ENTRY_KEY_CACHE =
+        "DocumentCacheTest.entry.key.cache";
+
+    /**
+     * The document loaded by the loaders.
+     */
+    protected static final String DOCUMENT = "samples/anne.svg";
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        String uri = new java.io.File(DOCUMENT).toURI().toString();
+        DocumentCache cache = new DocumentCache();
+        UserAgent ua = new UserAgentAdapter();
+        DocumentLoader l1 = new DocumentLoader(ua);
+        DocumentLoader l2 = new DocumentLoader(ua);
+        DocumentLoader l3 = new DocumentLoader(ua);
+        l1.setSharedCache(cache);
+        l2.setSharedCache(cache);
+        l3.setSharedCache(cache);
+
+        // The first loader parses the document, the second one gets it
+        // from the cache.
+        Document d1 = l1.loadDocument(uri);
+        Element e1 = lastElement(d1);
+        String original = e1.getAttributeNS(null, "id");
+        e1.setAttributeNS(null, "id", "modified");
+        Document d2 = l2.loadDocument(uri);
+        if (cache.getSize() != 1 || cache.getHits() != 1 ||
+            cache.getMisses() != 1) {
+            return fail(report, ERROR_NOT_SHARED, cache);
+        }
+        if (d2 == d1) {
+            return fail(report, ERROR_SAME_COPY, cache);
+        }
+
+        // The copy is the parsed document, not the modified one, and
+        // modifying it does not change the next copy.
+        Element e2 = lastElement(d2);
+        if (!e2.getAttributeNS(null, "id").equals(original)) {
+            return fail(report, ERROR_COPY_MODIFIED, cache);
+        }
+        e2.getParentNode().removeChild(e2);
+        Document d3 = l3.loadDocument(uri);
+        Element e3 = lastElement(d3);
+        if (d3 == d2 ||
+            count(d3) != count(d1) ||
+            !e3.getAttributeNS(null, "id").equals(original)) {
+            return fail(report, ERROR_COPY_MODIFIED, cache);
+        }
+
+        // The line numbers of the copies are the ones of the parsed
+        // document.
+        if (l3.getLineNumber(e3) <= 0 ||
+            l3.getLineNumber(e3) != l1.getLineNumber(e1) ||
+            l3.getLineNumber(d3.getDocumentElement()) !=
+            l1.getLineNumber(d1.getDocumentElement())) {
+            return fail(report, ERROR_LINE_NUMBER, cache);
+        }
+
+        // Three elements cost 4 * ELEMENT_SIZE bytes, so only two such
+        // documents fit.
+        cache = new DocumentCache(9 * DocumentCache.ELEMENT_SIZE,
+                                  new DocumentCache.LRUPolicy());
+        SAXSVGDocumentFactory f = createFactory();
+        Document small = f.createDocument
+            ("http://example.org/small.svg",
+             new StringReader("<svg xmlns='http://www.w3.org/2000/svg'>" +
+                              "<g/><g/></svg>"));
+        DocumentDescriptor desc = f.getDocumentDescriptor();
+        cache.put("a", small, desc);
+        cache.put("b", small, desc);
+        cache.get("a", null);
+        cache.put("c", small, desc);
+        if (cache.getSize() != 2 || cache.getEvictions() != 1 ||
+            cache.get("b", null) != null || cache.get("a", null) == null ||
+            cache.get("c", null) == null ||
+            cache.getUsedBytes() != 8 * DocumentCache.ELEMENT_SIZE) {
+            return fail(report, ERROR_EVICTION, cache);
+        }
+
+        // A document larger than the cache is not kept, and does not
+        // make the others go.
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'>");
+        for (int i = 0; i < 10; i++) {
+            sb.append("<g/>");
+        }
+        sb.append("</svg>");
+        Document big = f.createDocument("http://example.org/big.svg",
+                                        new StringReader(sb.toString()));
+        cache.put("big", big, f.getDocumentDescriptor());
+        if (cache.getSize() != 2 || cache.get("big", null) != null) {
+            return fail(report, ERROR_EVICTION, cache);
+        }
+        cache.setMaxBytes(4 * DocumentCache.ELEMENT_SIZE);
+        if (cache.getSize() != 1 || cache.get("c", null) == null) {
+            return fail(report, ERROR_EVICTION, cache);
+        }
+        cache.clear();
+        if (cache.getSize() != 0 || cache.getUsedBytes() != 0) {
+            return fail(report, ERROR_EVICTION, cache);
+        }
+
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Fills the report of a failed check.
+     */
+    protected TestReport fail(DefaultTestReport report, String code,
+                              DocumentCache cache) {
+        report.setErrorCode(code);
+        report.addDescriptionEntry
+            (ENTRY_KEY_CACHE,
+             cache.getSize() + " documents, " + cache.getUsedBytes() +
+             " bytes, " + cache.getHits() + " hits, " + cache.getMisses() +
+             " misses, " + cache.getEvictions() + " evictions");
+        report.setPassed(false);
+        return report;
+    }
+
+    /**
+     * Creates a factory that builds document descriptors.
+     */
+    protected static SAXSVGDocumentFactory createFactory() {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        return new SAXSVGDocumentFactory(parser, true);
+    }
+
+    /**
+     * Returns the last element of a document with an id.
+     */
+    protected static Element lastElement(Document doc) {
+        NodeList l = doc.getElementsByTagNameNS("*", "*");
+        for (int i = l.getLength() - 1; i >= 0; i--) {
+            Element e = (Element)l.item(i);
+            if (e.getAttributeNS(null, "id").length() != 0) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of elements of a document.
+     */
+    protected static int count(Document doc) {
+        return doc.getElementsByTagNameNS("*", "*").getLength();
+    }
+}
@@ -0,0 +1,252 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.ext.awt.geom.RectListManager;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.DynamicRenderer;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.util.RunnableQueue;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * Moves the rendering of a document with
+ * <code>UpdateManager.scrollRendering</code>, by whole and fractional
+ * offsets, and checks after each move that the update completed and
+ * that the offscreen image is the one of a fresh full render at the
+ * same transform.  A transform that does more than a translation must
+ * not be scrolled.  The documents must render the same pixels whatever
+ * the area repainted, which is not the case of all of them.
+ *
+ * @version $Id$
+ */
+public class ScrollRenderingTest extends AbstractTest {
+
+    public static final String ERROR_NOT_SCROLLED =
+        "ScrollRenderingTest.error.not.scrolled";
+
+    public static final String ERROR_SCROLLED =
+        "ScrollRenderingTest.error.scrolled";
+
+    public static final String ERROR_UPDATE_NOT_COMPLETED =
+        "ScrollRenderingTest.error.update.not.completed";
+
+    public static final String ERROR_DIFFERENT_FROM_FULL_RENDER =
+        "ScrollRenderingTest.error.different.from.full.render";
+
+    public static final String ENTRY_KEY_OFFSET =
+        "ScrollRenderingTest.entry.key.offset";
+
+    /**
+     * The offscreen size.
+     */
+    protected static final int WIDTH = 320;
+    protected static final int HEIGHT = 240;
+
+    /**
+     * The successive moves of the rendering, in device pixels.
+     */
+    protected static final double[][] OFFSETS = {
+        { 16, 0 }, { 0, -12 }, { -37, 25 }, { 0, 0 },
+        { 5.4, -3.6 }, { 0.25, 0.25 }, { -9.5, 14.75 }, { 319, -239 }
+    };
+
+    /**
+     * The URL of the document.
+     */
+    protected String svgURL;
+
+    /**
+     * Whether the rendering is double buffered.
+     */
+    protected boolean doubleBuffered;
+
+    /**
+     * Constructs a new <code>ScrollRenderingTest</code>.
+     *
+     * @param svgURL the document
+     * @param doubleBuffered whether the rendering is double buffered
+     */
+    public ScrollRenderingTest(String svgURL, Boolean doubleBuffered) {
+        this.svgURL = resolveURL(svgURL);
+        this.doubleBuffered = doubleBuffered.booleanValue();
+    }
+
+    /**
+     * Resolves the input string as follows.
+     * + First, try to interpret the string as a URL. If that fails,
+     *   try to interpret it as a file path.
+     */
+    protected String resolveURL(String url) {
+        try {
+            return new java.net.URL(url).toString();
+        } catch (java.net.MalformedURLException e) {
+            return new java.io.File(url).toURI().toString();
+        }
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        Document doc = f.createDocument(svgURL);
+
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDynamic(true);
+        final GraphicsNode gn = new GVTBuilder().build(ctx, doc);
+        final UpdateManager um = new UpdateManager(ctx, gn, doc);
+        final int[] completed = new int[1];
+        um.addUpdateManagerListener(new UpdateManagerAdapter() {
+                public void updateCompleted(UpdateManagerEvent e) {
+                    List l = e.getDirtyAreas();
+                    if (l != null && l.size() == 1 &&
+                        new Rectangle(0, 0, WIDTH, HEIGHT).equals(l.get(0))) {
+                        completed[0]++;
+                    }
+                }
+            });
+        DynamicRenderer renderer = new DynamicRenderer();
+        renderer.setTree(gn);
+        um.manageUpdates(renderer);
+
+        RunnableQueue rq = um.getUpdateRunnableQueue();
+        // The document is centered and three times larger than the
+        // offscreen image, so that it fills the image after each move.
+        Rectangle2D b = gn.getBounds();
+        double scale = 3 * Math.max(WIDTH / b.getWidth(),
+                                    HEIGHT / b.getHeight());
+        final AffineTransform[] at = { new AffineTransform() };
+        at[0].translate(WIDTH / 2 + 0.3, HEIGHT / 2 - 0.4);
+        at[0].scale(scale, scale);
+        at[0].translate(-b.getCenterX(), -b.getCenterY());
+        final boolean[] scrolled = new boolean[1];
+        final int[][] pixels = new int[2][];
+        try {
+            // The area of interest is the whole offscreen image, in user
+            // space.
+            final Shape aoi = at[0].createInverse().createTransformedShape
+                (new Rectangle(0, 0, WIDTH, HEIGHT));
+            rq.invokeAndWait(new Runnable() {
+                    public void run() {
+                        um.updateRendering(at[0], doubleBuffered, false, aoi,
+                                           WIDTH, HEIGHT);
+                    }
+                });
+
+            for (int i = 0; i < OFFSETS.length; i++) {
+                AffineTransform t = AffineTransform.getTranslateInstance
+                    (OFFSETS[i][0], OFFSETS[i][1]);
+                t.concatenate(at[0]);
+                at[0] = t;
+                int n = completed[0];
+                rq.invokeAndWait(new Runnable() {
+                        public void run() {
+                            scrolled[0] = um.scrollRendering
+                                (at[0], doubleBuffered, false, WIDTH, HEIGHT);
+                            pixels[0] = getPixels
+                                (um.getRepaintManager().getOffScreen());
+                            pixels[1] = render(gn, at[0]);
+                        }
+                    });
+                String offset = OFFSETS[i][0] + ", " + OFFSETS[i][1];
+                if (!scrolled[0]) {
+                    report.setErrorCode(ERROR_NOT_SCROLLED);
+                    report.addDescriptionEntry(ENTRY_KEY_OFFSET, offset);
+                    report.setPassed(false);
+                    return report;
+                }
+                if (completed[0] != n + 1) {
+                    report.setErrorCode(ERROR_UPDATE_NOT_COMPLETED);
+                    report.addDescriptionEntry(ENTRY_KEY_OFFSET, offset);
+                    report.setPassed(false);
+                    return report;
+                }
+                if (!Arrays.equals(pixels[0], pixels[1])) {
+                    report.setErrorCode(ERROR_DIFFERENT_FROM_FULL_RENDER);
+                    report.addDescriptionEntry(ENTRY_KEY_OFFSET, offset);
+                    report.setPassed(false);
+                    return report;
+                }
+            }
+
+            // A scale cannot be scrolled, and the rendering is left as
+            // it is.
+            int[] last = pixels[0];
+            rq.invokeAndWait(new Runnable() {
+                    public void run() {
+                        AffineTransform t = new AffineTransform(at[0]);
+                        t.scale(2, 2);
+                        scrolled[0] = um.scrollRendering
+                            (t, doubleBuffered, false, WIDTH, HEIGHT);
+                        pixels[0] = getPixels
+                            (um.getRepaintManager().getOffScreen());
+                    }
+                });
+            if (scrolled[0] || !Arrays.equals(pixels[0], last)) {
+                report.setErrorCode(ERROR_SCROLLED);
+                report.setPassed(false);
+                return report;
+            }
+        } finally {
+            rq.getThread().halt();
+            ctx.dispose();
+        }
+
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Renders the whole tree with a new renderer and returns the pixels.
+     */
+    protected int[] render(GraphicsNode gn, AffineTransform at) {
+        DynamicRenderer renderer = new DynamicRenderer();
+        renderer.setDoubleBuffered(doubleBuffered);
+        renderer.setTree(gn);
+        renderer.setTransform(at);
+        renderer.updateOffScreen(WIDTH, HEIGHT);
+        renderer.clearOffScreen();
+        renderer.repaint(new RectListManager
+                         (new Rectangle(0, 0, WIDTH, HEIGHT)));
+        int[] p = getPixels(renderer.getOffScreen());
+        renderer.dispose();
+        return p;
+    }
+
+    /**
+     * Returns the pixels of the given offscreen image.
+     */
+    protected static int[] getPixels(BufferedImage img) {
+        return img.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.CSSStylableElement;
+import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.test.svg.SelfContainedSVGOnLoadTest;
+import org.apache.batik.util.RunnableQueue;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Runs the 'onload' script of a self contained document in the update
+ * thread of an UpdateManager, with or without style batching, and checks
+ * the &lt;testResult&gt; element the script sets, like
+ * SelfContainedSVGOnLoadTest.  The style changes a script makes are
+ * then deferred, so this checks that the geometry it queries afterwards
+ * is nevertheless up to date.  A runnable modifying the document is
+ * then queued, as scripts and animations do after the load, and must
+ * run and update the style of the document.
+ *
+ * @version $Id$
+ */
+public class StyleBatchGeometryTest extends AbstractTest {
+
+    public static final String ERROR_RUNNABLE_NOT_RUN =
+        "StyleBatchGeometryTest.error.runnable.not.run";
+
+    public static final String ERROR_STYLE_NOT_UPDATED =
+        "StyleBatchGeometryTest.error.style.not.updated";
+
+    /**
+     * The fill the runnable queued after the load sets.
+     */
+    protected static final String FILL = "rgb(1, 2, 3)";
+
+    /**
+     * The URL of the document.
+     */
+    protected String svgURL;
+
+    /**
+     * Whether the style changes are batched.
+     */
+    protected boolean styleBatching;
+
+    /**
+     * Constructs a new <code>StyleBatchGeometryTest</code>.
+     *
+     * @param file the document, relative to the bridge test resources
+     * @param styleBatching whether the UpdateManager batches the style
+     *        changes
+     */
+    public StyleBatchGeometryTest(String file, Boolean styleBatching) {
+        this.svgURL = resolveURL
+            ("test-resources/org/apache/batik/bridge/" + file);
+        this.styleBatching = styleBatching.booleanValue();
+    }
+
+    /**
+     * Resolves the input string as follows.
+     * + First, try to interpret the string as a URL. If that fails,
+     *   try to interpret it as a file path.
+     */
+    protected String resolveURL(String url) {
+        try {
+            return new java.net.URL(url).toString();
+        } catch (java.net.MalformedURLException e) {
+            return new java.io.File(url).toURI().toString();
+        }
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        Document doc = f.createDocument(svgURL);
+
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDynamic(true);
+        GraphicsNode gn = new GVTBuilder().build(ctx, doc);
+        final UpdateManager um = new UpdateManager(ctx, gn, doc);
+        um.setStyleBatching(styleBatching);
+
+        // The script runs in a runnable of the update queue, which
+        // starts a style update batch when batching is on.
+        RunnableQueue rq = um.getUpdateRunnableQueue();
+        final Exception[] failure = new Exception[1];
+        final boolean[] ran = new boolean[1];
+        final String[] fill = new String[1];
+        try {
+            rq.resumeExecution();
+            rq.invokeAndWait(new Runnable() {
+                    public void run() {
+                        try {
+                            um.dispatchSVGLoadEvent();
+                        } catch (Exception e) {
+                            failure[0] = e;
+                        }
+                    }
+                });
+
+            // The runnables queued after the load start a batch too.
+            rq.invokeAndWait(new Runnable() {
+                    public void run() {
+                        Element root = um.getDocument().getDocumentElement();
+                        root.setAttributeNS(null, "fill", FILL);
+                        ran[0] = true;
+                    }
+                });
+            rq.invokeAndWait(new Runnable() {
+                    public void run() {
+                        Document d = um.getDocument();
+                        CSSEngine eng = ((SVGOMDocument)d).getCSSEngine();
+                        fill[0] = eng.getComputedStyle
+                            ((CSSStylableElement)d.getDocumentElement(),
+                             null, SVGCSSEngine.FILL_INDEX).getCssText();
+                    }
+                });
+        } finally {
+            rq.getThread().halt();
+            ctx.dispose();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        if (!ran[0]) {
+            report.setErrorCode(ERROR_RUNNABLE_NOT_RUN);
+            report.setPassed(false);
+            return report;
+        }
+        if (!FILL.equals(fill[0])) {
+            report.setErrorCode(ERROR_STYLE_NOT_UPDATED);
+            report.setPassed(false);
+            return report;
+        }
+
+        NodeList results = doc.getElementsByTagNameNS
+            (SelfContainedSVGOnLoadTest.testNS,
+             SelfContainedSVGOnLoadTest.TAG_TEST_RESULT);
+        if (results.getLength() != 1) {
+            report.setErrorCode(SelfContainedSVGOnLoadTest
+                                .ERROR_UNEXPECTED_NUMBER_OF_TEST_RESULT_ELEMENTS);
+            report.setPassed(false);
+            return report;
+        }
+        Element result = (Element)results.item(0);
+        if (SelfContainedSVGOnLoadTest.TEST_RESULT_PASSED.equals
+            (result.getAttributeNS
+             (null, SelfContainedSVGOnLoadTest.ATTRIBUTE_RESULT))) {
+            report.setPassed(true);
+            return report;
+        }
+
+        report.setErrorCode(result.getAttributeNS(null, "errorCode"));
+        NodeList desc = result.getElementsByTagNameNS
+            (SelfContainedSVGOnLoadTest.testNS,
+             SelfContainedSVGOnLoadTest.TAG_ERROR_DESCRIPTION_ENTRY);
+        for (int i = 0; i < desc.getLength(); i++) {
+            Element entry = (Element)desc.item(i);
+            report.addDescriptionEntry
+                (entry.getAttributeNS
+                 (null, SelfContainedSVGOnLoadTest.ATTRIBUTE_KEY),
+                 entry.getAttributeNS
+                 (null, SelfContainedSVGOnLoadTest.ATTRIBUTE_VALUE));
+        }
+        report.setPassed(false);
+        return report;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.css.engine.sac.ExtendedSelector;
+import org.apache.batik.dom.AbstractStylableDocument;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.css.sac.SelectorList;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Checks the SelectorIndex of every style sheet of a document.  The
+ * selectors must be numbered in the document order of the sheet,
+ * including its media and imported rules.  The candidates of every
+ * element must be in increasing order and include all the selectors a
+ * linear scan finds to match the element.
+ *
+ * @version $Id$
+ */
+public class SelectorIndexTest extends AbstractTest {
+
+    public static final String ERROR_WRONG_NUMBERING =
+        "SelectorIndexTest.error.wrong.numbering";
+
+    public static final String ERROR_UNSORTED_CANDIDATES =
+        "SelectorIndexTest.error.unsorted.candidates";
+
+    public static final String ERROR_MISSING_CANDIDATE =
+        "SelectorIndexTest.error.missing.candidate";
+
+    public static final String ENTRY_KEY_ELEMENT =
+        "SelectorIndexTest.entry.key.element";
+
+    public static final String ENTRY_KEY_SELECTOR =
+        "SelectorIndexTest.entry.key.selector";
+
+    /**
+     * The URI of the document.
+     */
+    protected String inputURI;
+
+    /**
+     * Constructs a new <code>SelectorIndexTest</code>.
+     *
+     * @param inputURI the document, relative to the root of the project
+     */
+    public SelectorIndexTest(String inputURI) {
+        this.inputURI = new java.io.File(inputURI).toURI().toString();
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        Document doc = f.createDocument(inputURI);
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        try {
+            new GVTBuilder().build(ctx, doc);
+            CSSEngine eng = ((AbstractStylableDocument)doc).getCSSEngine();
+
+            List sheets = new ArrayList();
+            if (eng.userAgentStyleSheet != null) {
+                sheets.add(eng.userAgentStyleSheet);
+            }
+            List nodes = eng.getStyleSheetNodes();
+            for (int i = 0; i < nodes.size(); i++) {
+                StyleSheet ss =
+                    ((CSSStyleSheetNode)nodes.get(i)).getCSSStyleSheet();
+                if (ss != null) {
+                    sheets.add(ss);
+                }
+            }
+
+            NodeList elts = doc.getElementsByTagNameNS("*", "*");
+            for (int i = 0; i < sheets.size(); i++) {
+                StyleSheet ss = (StyleSheet)sheets.get(i);
+                SelectorIndex si = ss.getSelectorIndex();
+
+                List rules = new ArrayList();
+                List selectors = new ArrayList();
+                addSelectors(ss, rules, selectors);
+                if (selectors.size() != si.getSize()) {
+                    report.setErrorCode(ERROR_WRONG_NUMBERING);
+                    report.setPassed(false);
+                    return report;
+                }
+                for (int j = 0; j < si.getSize(); j++) {
+                    if (si.getSelector(j) != selectors.get(j) ||
+                        si.getRule(j) != rules.get(j)) {
+                        report.setErrorCode(ERROR_WRONG_NUMBERING);
+                        report.addDescriptionEntry(ENTRY_KEY_SELECTOR,
+                                                   selectors.get(j));
+                        report.setPassed(false);
+                        return report;
+                    }
+                }
+
+                for (int k = 0; k < elts.getLength(); k++) {
+                    Element elt = (Element)elts.item(k);
+                    int[] c = si.getCandidates(elt);
+                    for (int j = 1; j < c.length; j++) {
+                        if (c[j] <= c[j - 1]) {
+                            report.setErrorCode(ERROR_UNSORTED_CANDIDATES);
+                            report.addDescriptionEntry(ENTRY_KEY_ELEMENT,
+                                                       describe(elt));
+                            report.setPassed(false);
+                            return report;
+                        }
+                    }
+                    for (int j = 0; j < si.getSize(); j++) {
+                        if (si.getSelector(j).match(elt, null) &&
+                            !contains(c, j)) {
+                            report.setErrorCode(ERROR_MISSING_CANDIDATE);
+                            report.addDescriptionEntry(ENTRY_KEY_ELEMENT,
+                                                       describe(elt));
+                            report.addDescriptionEntry(ENTRY_KEY_SELECTOR,
+                                                       si.getSelector(j));
+                            report.setPassed(false);
+                            return report;
+                        }
+                    }
+                }
+            }
+        } finally {
+            ctx.dispose();
+        }
+
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Adds to the given lists, in document order, the selectors of the
+     * given sheet and their style rules.
+     */
+    protected static void addSelectors(StyleSheet ss, List rules,
+                                       List selectors) {
+        for (int i = 0; i < ss.getSize(); i++) {
+            Rule r = ss.getRule(i);
+            switch (r.getType()) {
+            case StyleRule.TYPE:
+                StyleRule sr = (StyleRule)r;
+                SelectorList sl = sr.getSelectorList();
+                for (int j = 0; j < sl.getLength(); j++) {
+                    rules.add(sr);
+                    selectors.add((ExtendedSelector)sl.item(j));
+                }
+                break;
+            case MediaRule.TYPE:
+            case ImportRule.TYPE:
+                addSelectors((MediaRule)r, rules, selectors);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Tells whether the given sorted array contains the given value.
+     */
+    protected static boolean contains(int[] a, int v) {
+        return Arrays.binarySearch(a, v) >= 0;
+    }
+
+    /**
+     * Describes an element.
+     */
+    protected static String describe(Element elt) {
+        return elt.getNodeName() + " id='" + elt.getAttributeNS(null, "id") +
+            "' class='" + elt.getAttributeNS(null, "class") + "'";
+    }
+}
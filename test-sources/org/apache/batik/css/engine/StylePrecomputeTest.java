@@ -0,0 +1,178 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.dom.AbstractStylableDocument;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.util.WorkerPool;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Checks that the computed values of all the properties of all the
+ * elements of a document are the same when the styles are computed
+ * lazily while the GVT tree is built and when they are precomputed
+ * with a pool of the given number of threads.
+ *
+ * @version $Id$
+ */
+public class StylePrecomputeTest extends AbstractTest {
+
+    public static final String ERROR_ELEMENT_COUNT =
+        "StylePrecomputeTest.error.element.count";
+
+    public static final String ERROR_VALUE_DIFFER =
+        "StylePrecomputeTest.error.value.differ";
+
+    public static final String ENTRY_KEY_LAZY =
+        "StylePrecomputeTest.entry.key.lazy";
+
+    public static final String ENTRY_KEY_PRECOMPUTED =
+        "StylePrecomputeTest.entry.key.precomputed";
+
+    /**
+     * The URI of the document.
+     */
+    protected String inputURI;
+
+    /**
+     * The number of worker threads of the pool.
+     */
+    protected int threads;
+
+    /**
+     * Constructs a new <code>StylePrecomputeTest</code>.
+     *
+     * @param inputURI the document, relative to the root of the project
+     * @param threads the number of worker threads of the pool
+     */
+    public StylePrecomputeTest(String inputURI, Integer threads) {
+        this.inputURI = resolveURL(inputURI);
+        this.threads = threads.intValue();
+    }
+
+    /**
+     * Resolves the input string as follows.
+     * + First, try to interpret the string as a URL. If that fails,
+     *   try to interpret it as a file path.
+     */
+    protected String resolveURL(String url) {
+        try {
+            return new java.net.URL(url).toString();
+        } catch (java.net.MalformedURLException e) {
+            return new java.io.File(url).toURI().toString();
+        }
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        List lazy = computeValues(null);
+        List precomputed;
+        WorkerPool pool = new WorkerPool(threads);
+        try {
+            precomputed = computeValues(pool);
+        } finally {
+            pool.dispose();
+        }
+
+        if (lazy.size() != precomputed.size()) {
+            report.setErrorCode(ERROR_ELEMENT_COUNT);
+            report.addDescriptionEntry(ENTRY_KEY_LAZY,
+                                       new Integer(lazy.size()));
+            report.addDescriptionEntry(ENTRY_KEY_PRECOMPUTED,
+                                       new Integer(precomputed.size()));
+            report.setPassed(false);
+            return report;
+        }
+        for (int i = 0; i < lazy.size(); i++) {
+            if (!lazy.get(i).equals(precomputed.get(i))) {
+                report.setErrorCode(ERROR_VALUE_DIFFER);
+                report.addDescriptionEntry(ENTRY_KEY_LAZY, lazy.get(i));
+                report.addDescriptionEntry(ENTRY_KEY_PRECOMPUTED,
+                                           precomputed.get(i));
+                report.setPassed(false);
+                return report;
+            }
+        }
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Builds the GVT tree of the document and returns the computed
+     * values of its elements, one string per element in document order.
+     * @param pool the pool that precomputes the styles, or null to let
+     *        the GVT builder compute them as it goes
+     */
+    protected List computeValues(WorkerPool pool) throws Exception {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        Document doc = f.createDocument(inputURI);
+
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setWorkerPool(pool);
+        try {
+            new GVTBuilder().build(ctx, doc);
+            CSSEngine eng = ((AbstractStylableDocument)doc).getCSSEngine();
+            List result = new ArrayList();
+            addValues(eng, doc.getDocumentElement(), result);
+            return result;
+        } finally {
+            ctx.dispose();
+        }
+    }
+
+    /**
+     * Adds to the given list the computed values of the elements of the
+     * given subtree.
+     */
+    protected void addValues(CSSEngine eng, Node n, List l) {
+        if (n instanceof CSSStylableElement) {
+            CSSStylableElement elt = (CSSStylableElement)n;
+            StringBuffer sb = new StringBuffer();
+            sb.append(l.size());
+            sb.append(' ');
+            sb.append(elt.getNodeName());
+            for (int i = 0; i < eng.getNumberOfProperties(); i++) {
+                sb.append("; ");
+                sb.append(eng.getPropertyName(i));
+                sb.append(": ");
+                sb.append(eng.getComputedStyle(elt, null, i).getCssText());
+            }
+            l.add(sb.toString());
+        }
+        for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+            if (c.getNodeType() == Node.ELEMENT_NODE) {
+                addValues(eng, c, l);
+            }
+        }
+    }
+}
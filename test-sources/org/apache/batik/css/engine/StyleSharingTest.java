@@ -0,0 +1,177 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.dom.AbstractStylableDocument;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * Tests the sharing of style maps between similar siblings: which
+ * siblings share a map, and that a shared map is copied before the
+ * style of one of them changes, so that the others keep their values.
+ *
+ * @version $Id$
+ */
+public class StyleSharingTest extends AbstractTest {
+
+    private static final String SVG_HEAD =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='100' height='100'>" +
+        "<style type='text/css'><![CDATA[ .a { fill: red } ";
+
+    private static final String DOC =
+        SVG_HEAD + "]]></style>" +
+        "<g id='g' fill-opacity='0.5'>" +
+        "<rect id='r0' class='a' x='0' width='1' height='1'/>" +
+        "<rect id='r1' class='a' x='1' width='1' height='1'/>" +
+        "<rect id='r2' class='a' x='2' width='1' height='1'/>" +
+        "<rect id='r3' class='a' x='3' width='1' height='1'/>" +
+        "<rect id='r4' class='a' x='4' width='1' height='1' stroke='green'/>" +
+        "<circle id='c0' class='a' r='1'/>" +
+        "<rect id='p0' stroke-width='10%' width='1' height='1'/>" +
+        "<rect id='p1' stroke-width='10%' width='1' height='1'/>" +
+        "</g></svg>";
+
+    private static final String SIBLING_DOC =
+        SVG_HEAD + "rect + rect { stroke: blue } ]]></style>" +
+        "<g>" +
+        "<rect id='r0' class='a' width='1' height='1'/>" +
+        "<rect id='r1' class='a' width='1' height='1'/>" +
+        "</g></svg>";
+
+    public boolean runImplBasic() throws Exception {
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDynamic(true);
+        Document doc = build(ctx, DOC);
+        try {
+            CSSEngine eng = ((AbstractStylableDocument)doc).getCSSEngine();
+
+            // (1) Siblings with the same style attributes share their map,
+            // whatever their other attributes.
+            ensure(1, map(doc, "r0") == map(doc, "r1"));
+            ensure(1, map(doc, "r1") == map(doc, "r2"));
+            ensure(1, map(doc, "r2") == map(doc, "r3"));
+            ensure(1, map(doc, "r0").isShared());
+
+            // (2) A presentation attribute, another element name or the
+            // parent make the maps different.
+            ensure(2, map(doc, "r4") != map(doc, "r3"));
+            ensure(2, map(doc, "c0") != map(doc, "r0"));
+            ensure(2, map(doc, "g") != map(doc, "r0"));
+            ensure(2, value(eng, doc, "r4", SVGCSSEngine.STROKE_INDEX)
+                      .equals("rgb(0, 128, 0)"));
+
+            // (3) Changing an attribute of a sibling copies its map; the
+            // others keep theirs and their values.
+            elt(doc, "r1").setAttributeNS(null, "stroke", "blue");
+            ensure(3, map(doc, "r1") != map(doc, "r0"));
+            ensure(3, map(doc, "r0") == map(doc, "r2"));
+            ensure(3, value(eng, doc, "r1", SVGCSSEngine.STROKE_INDEX)
+                      .equals("rgb(0, 0, 255)"));
+            ensure(3, value(eng, doc, "r0", SVGCSSEngine.STROKE_INDEX)
+                      .equals("none"));
+            ensure(3, value(eng, doc, "r2", SVGCSSEngine.STROKE_INDEX)
+                      .equals("none"));
+
+            // (4) The same with the style attribute.
+            elt(doc, "r2").setAttributeNS(null, "style", "fill: blue");
+            ensure(4, map(doc, "r2") != map(doc, "r0"));
+            ensure(4, value(eng, doc, "r2", SVGCSSEngine.FILL_INDEX)
+                      .equals("rgb(0, 0, 255)"));
+            ensure(4, value(eng, doc, "r0", SVGCSSEngine.FILL_INDEX)
+                      .equals("rgb(255, 0, 0)"));
+            ensure(4, value(eng, doc, "r3", SVGCSSEngine.FILL_INDEX)
+                      .equals("rgb(255, 0, 0)"));
+
+            // (5) A change of the parent reaches all the siblings,
+            // sharing or not.
+            elt(doc, "g").setAttributeNS(null, "fill-opacity", "0.25");
+            String[] ids = { "r0", "r1", "r2", "r3", "r4" };
+            for (int i = 0; i < ids.length; i++) {
+                ensure(5, value(eng, doc, ids[i],
+                                SVGCSSEngine.FILL_OPACITY_INDEX)
+                          .equals("0.25"));
+            }
+
+            // (6) A value relative to the viewport is computed in a map
+            // of its own.
+            String sw0 = value(eng, doc, "p0", SVGCSSEngine.STROKE_WIDTH_INDEX);
+            String sw1 = value(eng, doc, "p1", SVGCSSEngine.STROKE_WIDTH_INDEX);
+            ensure(6, map(doc, "p0") != map(doc, "p1"));
+            ensure(6, !map(doc, "p0").isShared());
+            ensure(6, sw0.equals(sw1));
+        } finally {
+            ctx.dispose();
+        }
+
+        // (7) Nothing is shared when a selector depends on the siblings.
+        ctx = new BridgeContext(new UserAgentAdapter());
+        doc = build(ctx, SIBLING_DOC);
+        try {
+            CSSEngine eng = ((AbstractStylableDocument)doc).getCSSEngine();
+            ensure(7, map(doc, "r0") != map(doc, "r1"));
+            ensure(7, value(eng, doc, "r0", SVGCSSEngine.STROKE_INDEX)
+                      .equals("none"));
+            ensure(7, value(eng, doc, "r1", SVGCSSEngine.STROKE_INDEX)
+                      .equals("rgb(0, 0, 255)"));
+        } finally {
+            ctx.dispose();
+        }
+        return true;
+    }
+
+    /**
+     * Parses the given document and builds its GVT tree.
+     */
+    protected Document build(BridgeContext ctx, String s) throws Exception {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        Document doc = f.createDocument("http://example.org/sharing.svg",
+                                        new StringReader(s));
+        new GVTBuilder().build(ctx, doc);
+        return doc;
+    }
+
+    protected static CSSStylableElement elt(Document doc, String id) {
+        return (CSSStylableElement)doc.getElementById(id);
+    }
+
+    protected static StyleMap map(Document doc, String id) {
+        return elt(doc, id).getComputedStyleMap(null);
+    }
+
+    protected static String value(CSSEngine eng, Document doc, String id,
+                                  int idx) {
+        return eng.getComputedStyle(elt(doc, id), null, idx).getCssText();
+    }
+
+    protected void ensure(int subTestNumber, boolean b) {
+        if (!b) {
+            throw new RuntimeException("Assertion failure in sub-test " + subTestNumber);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom;
+
+import java.io.StringReader;
+
+import org.apache.batik.dom.util.SAXDocumentFactory;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+
+/**
+ * Tests the attribute map of {@link AbstractElement}: the parsed
+ * attributes have no Attr node until one is asked for, lookups give the
+ * same result below and above the size from which the map is indexed,
+ * also after attributes are removed and added again.
+ *
+ * @version $Id$
+ */
+public class NamedNodeHashMapTest extends AbstractTest {
+
+    private static final String NS = "http://example.org/ns";
+
+    /**
+     * The number of attributes of the element in no namespace.
+     */
+    private static final int N = 20;
+
+    public boolean runImplBasic() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<a xmlns:p='" + NS + "'");
+        for (int i = 0; i < N; i++) {
+            sb.append(" a" + i + "='v" + i + "'");
+        }
+        sb.append(" p:a0='p0' p:a1='p1'/>");
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXDocumentFactory df = new SAXDocumentFactory
+            (GenericDOMImplementation.getDOMImplementation(), parser);
+        Document doc = df.createDocument("http://example.org/",
+                                         new StringReader(sb.toString()));
+
+        AbstractElement a = (AbstractElement)doc.getDocumentElement();
+        AbstractElement.NamedNodeHashMap map =
+            (AbstractElement.NamedNodeHashMap)a.attributes;
+
+        // (1) The attributes are in document order, without Attr node.
+        ensure(1, map.getLength() == N + 3);
+        for (int i = 0; i < N; i++) {
+            int idx = map.indexOf(null, "a" + i);
+            ensure(1, idx == i + 1);
+            ensure(1, map.getName(idx).equals("a" + i));
+            ensure(1, map.getValue(idx).equals("v" + i));
+            ensure(1, map.getSpecified(idx));
+            ensure(1, !map.hasNode(idx));
+        }
+
+        // (2) The same local name in another namespace is another
+        // attribute.
+        ensure(2, a.getAttributeNS(NS, "a0").equals("p0"));
+        ensure(2, a.getAttributeNS(NS, "a1").equals("p1"));
+        ensure(2, a.getAttribute("a0").equals("v0"));
+        ensure(2, !a.hasAttributeNS(NS, "a2"));
+        ensure(2, !a.hasAttribute("p:a2"));
+        ensure(2, a.getAttribute("a" + N).length() == 0);
+
+        // (3) Reading the values creates no Attr node; asking for one
+        // creates it once, with the same value.
+        int idx = map.indexOf(null, "a5");
+        ensure(3, !map.hasNode(idx));
+        Attr attr = a.getAttributeNode("a5");
+        ensure(3, map.hasNode(idx));
+        ensure(3, attr.getValue().equals("v5"));
+        ensure(3, attr.getSpecified());
+        ensure(3, attr.getOwnerElement() == a);
+        ensure(3, a.getAttributeNode("a5") == attr);
+        ensure(3, !map.hasNode(map.indexOf(null, "a6")));
+
+        // (4) The value set through the Attr node is the attribute value.
+        attr.setValue("w5");
+        ensure(4, a.getAttribute("a5").equals("w5"));
+
+        // (5) Removed attributes, with and without Attr node, are gone
+        // and the others are still found.
+        a.removeAttribute("a5");
+        a.removeAttribute("a0");
+        a.removeAttributeNS(NS, "a1");
+        ensure(5, map.getLength() == N);
+        ensure(5, attr.getOwnerElement() == null);
+        ensure(5, !a.hasAttribute("a5"));
+        ensure(5, !a.hasAttribute("a0"));
+        ensure(5, !a.hasAttributeNS(NS, "a1"));
+        ensure(5, a.getAttributeNS(NS, "a0").equals("p0"));
+        for (int i = 1; i < N; i++) {
+            if (i != 5) {
+                ensure(5, a.getAttribute("a" + i).equals("v" + i));
+            }
+        }
+
+        // (6) An attribute added again comes last.
+        a.setAttribute("a0", "x0");
+        a.setAttributeNS(NS, "p:a1", "q1");
+        ensure(6, a.getAttribute("a0").equals("x0"));
+        ensure(6, a.getAttributeNS(NS, "a1").equals("q1"));
+        ensure(6, map.indexOf(NS, "a1") == map.getLength() - 1);
+        ensure(6, map.indexOf(null, "a0") == map.getLength() - 2);
+        NamedNodeMap attrs = a.getAttributes();
+        ensure(6, attrs.item(attrs.getLength() - 1).getNodeValue().equals("q1"));
+
+        // (7) The same with fewer attributes than the index needs.
+        for (int i = 1; i < N - 2; i++) {
+            if (i != 5) {
+                a.removeAttribute("a" + i);
+            }
+        }
+        ensure(7, map.getLength() == 6);
+        ensure(7, a.getAttribute("a18").equals("v18"));
+        ensure(7, a.getAttribute("a19").equals("v19"));
+        ensure(7, a.getAttribute("a0").equals("x0"));
+        ensure(7, a.getAttributeNS(NS, "a0").equals("p0"));
+        ensure(7, a.getAttributeNS(NS, "a1").equals("q1"));
+        ensure(7, !a.hasAttribute("a1"));
+        for (int i = 0; i < N; i++) {
+            a.setAttribute("b" + i, "y" + i);
+        }
+        for (int i = 0; i < N; i++) {
+            ensure(7, a.getAttribute("b" + i).equals("y" + i));
+        }
+        ensure(7, a.getAttribute("a19").equals("v19"));
+
+        // (8) A clone has the same attributes, with an Attr node only
+        // where the element has one.
+        AbstractElement c = (AbstractElement)a.cloneNode(false);
+        AbstractElement.NamedNodeHashMap cmap =
+            (AbstractElement.NamedNodeHashMap)c.attributes;
+        ensure(8, cmap.getLength() == map.getLength());
+        for (int i = 0; i < map.getLength(); i++) {
+            ensure(8, cmap.getName(i).equals(map.getName(i)));
+            ensure(8, cmap.getValue(i).equals(map.getValue(i)));
+            ensure(8, cmap.indexOf(cmap.getNamespaceURI(i),
+                                   cmap.getLocalName(i)) == i);
+            ensure(8, cmap.hasNode(i) == map.hasNode(i));
+        }
+        return true;
+    }
+
+    protected void ensure(int subTestNumber, boolean b) {
+        if (!b) {
+            throw new RuntimeException("Assertion failure in sub-test " + subTestNumber);
+        }
+    }
+}
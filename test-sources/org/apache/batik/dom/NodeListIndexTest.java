@@ -0,0 +1,203 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.test.AbstractTest;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Tests the indexed node lists: the child lists, whose array must follow
+ * the insertions, removals and replacements of children, and the
+ * document-level element lists, which share the element index of the
+ * document and must see the elements added to or removed from any
+ * depth of the tree.
+ *
+ * @version $Id$
+ */
+public class NodeListIndexTest extends AbstractTest {
+
+    private static final String NS = "http://example.org/ns";
+
+    public boolean runImplBasic() throws Exception {
+        Document doc = GenericDOMImplementation.getDOMImplementation()
+            .createDocument(null, "root", null);
+        Element root = doc.getDocumentElement();
+        for (int i = 0; i < 10; i++) {
+            root.appendChild(doc.createElementNS(null, "a"));
+            root.appendChild(doc.createTextNode("t" + i));
+        }
+        NodeList children = root.getChildNodes();
+
+        // (1) The items are the linked siblings.
+        ensure(1, sameChildren(root));
+        ensure(1, children.item(-1) == null);
+        ensure(1, children.item(children.getLength()) == null);
+
+        // (2) Appending after the array is built, past its capacity.
+        for (int i = 0; i < 40; i++) {
+            root.appendChild(doc.createElementNS(null, "b"));
+            ensure(2, sameChildren(root));
+        }
+
+        // (3) Inserting, removing and replacing in the middle.
+        Node mid = children.item(children.getLength() / 2);
+        root.insertBefore(doc.createElementNS(null, "c"), mid);
+        ensure(3, sameChildren(root));
+        root.removeChild(children.item(3));
+        ensure(3, sameChildren(root));
+        root.replaceChild(doc.createComment("c"), children.item(7));
+        ensure(3, sameChildren(root));
+        root.removeChild(root.getFirstChild());
+        root.removeChild(root.getLastChild());
+        ensure(3, sameChildren(root));
+        root.insertBefore(doc.createElementNS(null, "c"), root.getFirstChild());
+        ensure(3, sameChildren(root));
+
+        // (4) Moving a child to the end of its parent.
+        root.appendChild(children.item(5));
+        ensure(4, sameChildren(root));
+        ensure(4, root.getLastChild() == children.item(children.getLength() - 1));
+
+        // (5) The document-level lists are the elements in document order.
+        NodeList as = doc.getElementsByTagName("a");
+        NodeList bs = doc.getElementsByTagNameNS(null, "b");
+        NodeList all = doc.getElementsByTagName("*");
+        NodeList allNS = doc.getElementsByTagNameNS("*", "*");
+        NodeList anyNS = doc.getElementsByTagNameNS("*", "b");
+        NodeList ps = doc.getElementsByTagNameNS(NS, "b");
+        ensure(5, sameElements(doc, as, null, "a", false));
+        ensure(5, sameElements(doc, bs, null, "b", true));
+        ensure(5, sameElements(doc, all, null, "*", false));
+        ensure(5, sameElements(doc, allNS, "*", "*", true));
+        ensure(5, sameElements(doc, anyNS, "*", "b", true));
+        ensure(5, ps.getLength() == 0);
+        ensure(5, as.item(as.getLength()) == null);
+        ensure(5, doc.getElementsByTagName("none").getLength() == 0);
+
+        // (6) The lists see the elements added deep in the tree,
+        // including the descendants of an inserted subtree.
+        Element sub = doc.createElementNS(null, "b");
+        sub.appendChild(doc.createElementNS(NS, "p:b"));
+        sub.appendChild(doc.createElementNS(null, "a"));
+        Element a = (Element)as.item(2);
+        a.appendChild(sub);
+        ensure(6, sameElements(doc, as, null, "a", false));
+        ensure(6, sameElements(doc, bs, null, "b", true));
+        ensure(6, sameElements(doc, all, null, "*", false));
+        ensure(6, sameElements(doc, anyNS, "*", "b", true));
+        ensure(6, ps.getLength() == 1);
+        ensure(6, doc.getElementsByTagName("p:b").getLength() == 1);
+
+        // (7) The same after the subtree is removed, replaced and
+        // renamed.
+        a.removeChild(sub);
+        ensure(7, sameElements(doc, as, null, "a", false));
+        ensure(7, ps.getLength() == 0);
+        a.appendChild(sub);
+        Element d = doc.createElementNS(NS, "p:b");
+        sub.replaceChild(d, sub.getFirstChild());
+        ensure(7, ps.getLength() == 1 && ps.item(0) == d);
+        ensure(7, sameElements(doc, allNS, "*", "*", true));
+        doc.renameNode(d, null, "a");
+        ensure(7, ps.getLength() == 0);
+        ensure(7, sameElements(doc, as, null, "a", false));
+
+        // (8) Lists rooted at an element only see its subtree.
+        NodeList subAs = sub.getElementsByTagName("a");
+        ensure(8, subAs.getLength() == 2);
+        ensure(8, sameElements(sub, subAs, null, "a", false));
+        return true;
+    }
+
+    /**
+     * Tells whether the child list of the given node gives the linked
+     * siblings.
+     */
+    protected static boolean sameChildren(Node n) {
+        NodeList l = n.getChildNodes();
+        int i = 0;
+        for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+            if (l.item(i++) != c) {
+                return false;
+            }
+        }
+        return i == l.getLength() && l.item(i) == null;
+    }
+
+    /**
+     * Tells whether the given list has the elements of the subtree with
+     * the given names, in document order.
+     * @param ns the namespace URI, when <code>useNS</code> is true
+     * @param name the qualified name, or the local name when
+     *        <code>useNS</code> is true
+     */
+    protected static boolean sameElements(Node root, NodeList l, String ns,
+                                          String name, boolean useNS) {
+        List expected = new ArrayList();
+        collect(root, ns, name, useNS, expected);
+        if (l.getLength() != expected.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (l.item(i) != expected.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the descendant elements of a node with the given names.
+     */
+    protected static void collect(Node n, String ns, String name,
+                                  boolean useNS, List result) {
+        for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+            if (c.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            boolean match;
+            if (useNS) {
+                String cns = c.getNamespaceURI();
+                String cln = (cns == null) ? c.getNodeName() : c.getLocalName();
+                match = ("*".equals(ns) ||
+                         (ns == null ? cns == null : ns.equals(cns))) &&
+                    ("*".equals(name) || name.equals(cln));
+            } else {
+                match = "*".equals(name) || name.equals(c.getNodeName());
+            }
+            if (match) {
+                result.add(c);
+            }
+            collect(c, ns, name, useNS, result);
+        }
+    }
+
+    protected void ensure(int subTestNumber, boolean b) {
+        if (!b) {
+            throw new RuntimeException("Assertion failure in sub-test " + subTestNumber);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.apache.batik.dom.util.DocumentDescriptor;
+import org.apache.batik.dom.util.SAXDocumentFactory;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Checks that a document parsed by a SAXDocumentFactory with the XML
+ * scanner enabled is the same as the one parsed with the SAX parser:
+ * same nodes, names, namespaces, values and attributes, and the same
+ * element lines in the document descriptor.  When the SAX parser
+ * rejects the document, the scanner must throw the same exception.
+ * This covers the documents the scanner hands over to the SAX parser,
+ * such as the ones with an internal subset, in XML 1.1, not in UTF-8
+ * or malformed.
+ *
+ * @version $Id$
+ */
+public class ScannerParserTest extends AbstractTest {
+
+    public static final String ERROR_DIFFERENT_NODES =
+        "ScannerParserTest.error.different.nodes";
+
+    public static final String ERROR_DIFFERENT_LINES =
+        "ScannerParserTest.error.different.lines";
+
+    public static final String ERROR_DIFFERENT_EXCEPTIONS =
+        "ScannerParserTest.error.different.exceptions";
+
+    public static final String ENTRY_KEY_SAX =
+        "ScannerParserTest.entry.key.sax";
+
+    public static final String ENTRY_KEY_SCANNER =
+        "ScannerParserTest.entry.key.scanner";
+
+    /**
+     * The file to parse.
+     */
+    protected String file;
+
+    /**
+     * The charset of the reader the document is read from, or the empty
+     * string to give the parsers the bytes of the file.
+     */
+    protected String charset;
+
+    /**
+     * The first difference found.
+     */
+    protected String saxDifference, scannerDifference;
+
+    /**
+     * Constructs a new <code>ScannerParserTest</code>.
+     *
+     * @param file the document to parse
+     * @param charset the charset of the reader the document is read
+     *        from, or the empty string to parse its bytes
+     */
+    public ScannerParserTest(String file, String charset) {
+        this.file = file;
+        this.charset = charset;
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        SAXDocumentFactory sax = createFactory(false);
+        SAXDocumentFactory scanner = createFactory(true);
+        Document saxDoc = null;
+        Document scannerDoc = null;
+        Exception saxEx = null;
+        Exception scannerEx = null;
+        try {
+            saxDoc = parse(sax);
+        } catch (Exception e) {
+            saxEx = e;
+        }
+        try {
+            scannerDoc = parse(scanner);
+        } catch (Exception e) {
+            scannerEx = e;
+        }
+
+        if (saxEx != null || scannerEx != null) {
+            if (saxEx == null || scannerEx == null ||
+                saxEx.getClass() != scannerEx.getClass() ||
+                !String.valueOf(saxEx.getMessage()).equals
+                    (String.valueOf(scannerEx.getMessage()))) {
+                report.setErrorCode(ERROR_DIFFERENT_EXCEPTIONS);
+                report.addDescriptionEntry(ENTRY_KEY_SAX,
+                                           String.valueOf(saxEx));
+                report.addDescriptionEntry(ENTRY_KEY_SCANNER,
+                                           String.valueOf(scannerEx));
+                report.setPassed(false);
+                return report;
+            }
+            report.setPassed(true);
+            return report;
+        }
+
+        if (!sameNode(saxDoc, scannerDoc)) {
+            report.setErrorCode(ERROR_DIFFERENT_NODES);
+            report.addDescriptionEntry(ENTRY_KEY_SAX, saxDifference);
+            report.addDescriptionEntry(ENTRY_KEY_SCANNER, scannerDifference);
+            report.setPassed(false);
+            return report;
+        }
+        if (!sameLines(sax.getDocumentDescriptor(),
+                       saxDoc.getDocumentElement(),
+                       scanner.getDocumentDescriptor(),
+                       scannerDoc.getDocumentElement())) {
+            report.setErrorCode(ERROR_DIFFERENT_LINES);
+            report.addDescriptionEntry(ENTRY_KEY_SAX, saxDifference);
+            report.addDescriptionEntry(ENTRY_KEY_SCANNER, scannerDifference);
+            report.setPassed(false);
+            return report;
+        }
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Creates a factory that builds a document descriptor.
+     * @param scanner whether the XML scanner is enabled
+     */
+    protected SAXDocumentFactory createFactory(boolean scanner) {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXDocumentFactory f = new SAXDocumentFactory
+            (GenericDOMImplementation.getDOMImplementation(), parser, true);
+        f.setXMLScannerEnabled(scanner);
+        return f;
+    }
+
+    /**
+     * Parses the document with the given factory.
+     */
+    protected Document parse(SAXDocumentFactory f) throws Exception {
+        File fl = new File(file);
+        String uri = fl.toURI().toString();
+        InputStream in = new FileInputStream(fl);
+        try {
+            if (charset.length() == 0) {
+                return f.createDocument(uri, in);
+            }
+            return f.createDocument(uri, new InputStreamReader(in, charset));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Tells whether the two subtrees are the same.
+     */
+    protected boolean sameNode(Node n1, Node n2) {
+        if (!describe(n1).equals(describe(n2))) {
+            saxDifference = describe(n1);
+            scannerDifference = describe(n2);
+            return false;
+        }
+        if (n1.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+            DocumentType dt1 = (DocumentType)n1;
+            DocumentType dt2 = (DocumentType)n2;
+            String s1 = dt1.getPublicId() + " " + dt1.getSystemId();
+            String s2 = dt2.getPublicId() + " " + dt2.getSystemId();
+            if (!s1.equals(s2)) {
+                saxDifference = s1;
+                scannerDifference = s2;
+                return false;
+            }
+        }
+        if (n1.getNodeType() == Node.ELEMENT_NODE) {
+            String a1 = describeAttributes((Element)n1);
+            String a2 = describeAttributes((Element)n2);
+            if (!a1.equals(a2)) {
+                saxDifference = a1;
+                scannerDifference = a2;
+                return false;
+            }
+        }
+        Node c1 = n1.getFirstChild();
+        Node c2 = n2.getFirstChild();
+        while (c1 != null && c2 != null) {
+            if (!sameNode(c1, c2)) {
+                return false;
+            }
+            c1 = c1.getNextSibling();
+            c2 = c2.getNextSibling();
+        }
+        if (c1 != null || c2 != null) {
+            saxDifference = (c1 == null) ? "no more children" : describe(c1);
+            scannerDifference = (c2 == null) ? "no more children" : describe(c2);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Describes a node without its attributes and children.
+     */
+    protected static String describe(Node n) {
+        return n.getNodeType() + " " + n.getNodeName() +
+            " {" + n.getNamespaceURI() + "}" + n.getLocalName() +
+            " [" + n.getNodeValue() + "]";
+    }
+
+    /**
+     * Describes the attributes of an element, in order.
+     */
+    protected static String describeAttributes(Element e) {
+        StringBuffer sb = new StringBuffer();
+        NamedNodeMap attrs = e.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr a = (Attr)attrs.item(i);
+            sb.append(describe(a));
+            sb.append(a.getSpecified() ? " specified; " : " default; ");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tells whether the elements of the two subtrees have the same lines
+     * in the document descriptors.  The columns are not compared, since
+     * they may differ for start tags with attribute values on several
+     * lines.
+     */
+    protected boolean sameLines(DocumentDescriptor dd1, Element e1,
+                                DocumentDescriptor dd2, Element e2) {
+        int l1 = dd1.getLocationLine(e1);
+        int l2 = dd2.getLocationLine(e2);
+        if (l1 != l2) {
+            saxDifference = e1.getNodeName() + " line " + l1;
+            scannerDifference = e2.getNodeName() + " line " + l2;
+            return false;
+        }
+        Node c1 = e1.getFirstChild();
+        Node c2 = e2.getFirstChild();
+        for (; c1 != null; c1 = c1.getNextSibling(),
+                 c2 = c2.getNextSibling()) {
+            if (c1.getNodeType() == Node.ELEMENT_NODE &&
+                !sameLines(dd1, (Element)c1, dd2, (Element)c2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+
+import org.apache.batik.ext.awt.image.renderable.Filter;
+import org.apache.batik.ext.awt.image.renderable.FloodRable8Bit;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.util.ParsedURL;
+
+/**
+ * Checks that when several threads request the same URL from a
+ * URLImageCache at the same time, a single one is put on the hook to
+ * decode the image and all the others wake up with that image, also
+ * when the first one gives up with <code>clear</code>.
+ *
+ * @version $Id$
+ */
+public class URLImageCacheTest extends AbstractTest {
+
+    public static final String ERROR_DECODE_COUNT =
+        "URLImageCacheTest.error.decode.count";
+
+    public static final String ERROR_WRONG_IMAGE =
+        "URLImageCacheTest.error.wrong.image";
+
+    public static final String ERROR_TIMEOUT =
+        "URLImageCacheTest.error.timeout";
+
+    public static final String ENTRY_KEY_DECODES =
+        "URLImageCacheTest.entry.key.decodes";
+
+    /**
+     * The number of threads requesting the URL.
+     */
+    protected int threads;
+
+    /**
+     * Whether the first thread on the hook gives up and clears the URL.
+     */
+    protected boolean clearFirst;
+
+    /**
+     * Constructs a new <code>URLImageCacheTest</code>.
+     *
+     * @param threads the number of threads requesting the URL
+     * @param clearFirst whether the first thread on the hook clears the
+     *        URL instead of putting the image
+     */
+    public URLImageCacheTest(Integer threads, Boolean clearFirst) {
+        this.threads = threads.intValue();
+        this.clearFirst = clearFirst.booleanValue();
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        final URLImageCache cache = new URLImageCache();
+        final ParsedURL purl = new ParsedURL("http://example.org/image.png");
+        final int[] decodes = new int[1];
+        final Filter[] results = new Filter[threads];
+        final Object start = new Object();
+        final boolean[] started = new boolean[1];
+
+        Thread[] ts = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int idx = i;
+            ts[i] = new Thread() {
+                    public void run() {
+                        synchronized (start) {
+                            while (!started[0]) {
+                                try {
+                                    start.wait();
+                                } catch (InterruptedException ie) {
+                                    return;
+                                }
+                            }
+                        }
+                        Filter f = cache.request(purl);
+                        if (f == null) {
+                            // On the hook: let the other threads pile up
+                            // on the entry before decoding the image.
+                            int n;
+                            synchronized (decodes) {
+                                n = ++decodes[0];
+                            }
+                            try {
+                                Thread.sleep(100);
+                            } catch (InterruptedException ie) {
+                            }
+                            if (clearFirst && n == 1) {
+                                cache.clear(purl);
+                                f = cache.request(purl);
+                                if (f == null) {
+                                    synchronized (decodes) {
+                                        decodes[0]++;
+                                    }
+                                    f = createImage();
+                                    cache.put(purl, f);
+                                }
+                            } else {
+                                f = createImage();
+                                cache.put(purl, f);
+                            }
+                        }
+                        results[idx] = f;
+                    }
+                };
+            ts[i].start();
+        }
+        synchronized (start) {
+            started[0] = true;
+            start.notifyAll();
+        }
+        for (int i = 0; i < threads; i++) {
+            ts[i].join(10000);
+            if (ts[i].isAlive()) {
+                report.setErrorCode(ERROR_TIMEOUT);
+                report.setPassed(false);
+                return report;
+            }
+        }
+
+        int expected = clearFirst ? 2 : 1;
+        if (decodes[0] != expected) {
+            report.setErrorCode(ERROR_DECODE_COUNT);
+            report.addDescriptionEntry(ENTRY_KEY_DECODES,
+                                       new Integer(decodes[0]));
+            report.setPassed(false);
+            return report;
+        }
+        Filter image = cache.request(purl);
+        for (int i = 0; i < threads; i++) {
+            if ((image == null) || (results[i] != image)) {
+                report.setErrorCode(ERROR_WRONG_IMAGE);
+                report.setPassed(false);
+                return report;
+            }
+        }
+
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Creates the image of the URL.
+     */
+    protected Filter createImage() {
+        return new FloodRable8Bit(new Rectangle2D.Double(0, 0, 10, 10),
+                                  Color.red);
+    }
+}
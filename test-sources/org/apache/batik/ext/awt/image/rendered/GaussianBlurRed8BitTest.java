@@ -0,0 +1,188 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.util.WorkerPool;
+
+/**
+ * Blurs a raster with a GaussianBlurRed8Bit, on the calling thread
+ * and with worker pools of several sizes, and checks that the pixels
+ * are the same, and the same as the ones of the implementation without
+ * worker pool, whose checksum is given.  The raster is large enough
+ * for the box filter passes to be split in stripes, and its size is
+ * not a multiple of the stripes or of the column blocks.
+ *
+ * @version $Id$
+ */
+public class GaussianBlurRed8BitTest extends AbstractTest {
+
+    public static final String ERROR_DIFFERENT_FROM_REFERENCE =
+        "GaussianBlurRed8BitTest.error.different.from.reference";
+
+    public static final String ERROR_DIFFERENT_WITH_POOL =
+        "GaussianBlurRed8BitTest.error.different.with.pool";
+
+    public static final String ENTRY_KEY_CHECKSUM =
+        "GaussianBlurRed8BitTest.entry.key.checksum";
+
+    public static final String ENTRY_KEY_WORKERS =
+        "GaussianBlurRed8BitTest.entry.key.workers";
+
+    /**
+     * The sizes of the worker pools to blur with.
+     */
+    protected static final int[] WORKERS = { 0, 1, 3 };
+
+    protected double stdDevX;
+    protected double stdDevY;
+    protected int width;
+    protected int height;
+
+    /**
+     * The checksum of the pixels blurred without worker pool, as an
+     * hexadecimal string.
+     */
+    protected String checksum;
+
+    /**
+     * Creates a new GaussianBlurRed8BitTest.
+     * @param stdDevX the standard deviation in X
+     * @param stdDevY the standard deviation in Y
+     * @param width the width of the raster to blur
+     * @param height the height of the raster to blur
+     * @param checksum the CRC32 of the blurred pixels, in hexadecimal
+     */
+    public GaussianBlurRed8BitTest(Float stdDevX, Float stdDevY,
+                                   Integer width, Integer height,
+                                   String checksum) {
+        this.stdDevX = stdDevX.doubleValue();
+        this.stdDevY = stdDevY.doubleValue();
+        this.width = width.intValue();
+        this.height = height.intValue();
+        this.checksum = checksum;
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+        CachableRed src = createSource(width, height);
+
+        GaussianBlurRed8Bit blur =
+            new GaussianBlurRed8Bit(src, stdDevX, stdDevY, null);
+        Rectangle all = blur.getBounds();
+        Rectangle part = new Rectangle(all.x + 37, all.y + 23,
+                                       all.width - 80, all.height - 50);
+        int[] expected = blur(blur, all);
+        int[] expectedPart = blur(blur, part);
+
+        String sum = checksum(expected);
+        if (!sum.equals(checksum)) {
+            report.setErrorCode(ERROR_DIFFERENT_FROM_REFERENCE);
+            report.addDescriptionEntry(ENTRY_KEY_CHECKSUM, sum);
+            report.setPassed(false);
+            return report;
+        }
+
+        for (int i = 0; i < WORKERS.length; i++) {
+            WorkerPool pool = new WorkerPool(WORKERS[i]);
+            try {
+                RenderingHints rh = new RenderingHints(null);
+                rh.put(RenderingHintsKeyExt.KEY_WORKER_POOL, pool);
+                blur = new GaussianBlurRed8Bit(src, stdDevX, stdDevY, rh);
+                if (!Arrays.equals(blur(blur, all), expected) ||
+                    !Arrays.equals(blur(blur, part), expectedPart)) {
+                    report.setErrorCode(ERROR_DIFFERENT_WITH_POOL);
+                    report.addDescriptionEntry(ENTRY_KEY_WORKERS,
+                                               new Integer(WORKERS[i]));
+                    report.setPassed(false);
+                    return report;
+                }
+            } finally {
+                pool.dispose();
+            }
+        }
+
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Creates a premultiplied raster of random pixels, with runs of
+     * identical pixels and transparent rows.
+     */
+    protected static CachableRed createSource(int w, int h) {
+        BufferedImage bi =
+            new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        int[] data =
+            ((DataBufferInt)bi.getRaster().getDataBuffer()).getData();
+        Random rnd = new Random(w * 31 + h);
+        int p = 0;
+        for (int i = 0; i < data.length; i++) {
+            if ((i / w) % 29 == 5) {
+                p = 0;
+            } else if (rnd.nextInt(4) != 0) {
+                int a = rnd.nextInt(256);
+                p = ((a << 24) |
+                     (rnd.nextInt(a + 1) << 16) |
+                     (rnd.nextInt(a + 1) << 8) |
+                     rnd.nextInt(a + 1));
+            }
+            data[i] = p;
+        }
+        return GraphicsUtil.wrap(bi);
+    }
+
+    /**
+     * Returns the pixels of the given area of the blurred image.
+     */
+    protected static int[] blur(GaussianBlurRed8Bit blur, Rectangle r) {
+        WritableRaster wr = blur.getColorModel()
+            .createCompatibleWritableRaster(r.width, r.height);
+        blur.copyData(wr.createWritableTranslatedChild(r.x, r.y));
+        return ((DataBufferInt)wr.getDataBuffer()).getData();
+    }
+
+    /**
+     * Returns the CRC32 of the given pixels, in hexadecimal.
+     */
+    protected static String checksum(int[] pixels) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            crc.update(p >>> 24);
+            crc.update(p >>> 16);
+            crc.update(p >>> 8);
+            crc.update(p);
+        }
+        return Long.toHexString(crc.getValue());
+    }
+}
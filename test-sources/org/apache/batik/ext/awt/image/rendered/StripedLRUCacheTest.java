@@ -0,0 +1,255 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+
+/**
+ * Checks that the limits of a StripedLRUCache on the number of objects
+ * and of bytes apply to the whole cache, also when objects are added
+ * by several threads, that the least recently used object of a segment
+ * is the one dropped, and that the hits and misses are all counted.
+ *
+ * @version $Id$
+ */
+public class StripedLRUCacheTest extends AbstractTest {
+
+    public static final String ERROR_SIZE_LIMIT =
+        "StripedLRUCacheTest.error.size.limit";
+
+    public static final String ERROR_BYTE_LIMIT =
+        "StripedLRUCacheTest.error.byte.limit";
+
+    public static final String ERROR_NOT_LRU =
+        "StripedLRUCacheTest.error.not.lru";
+
+    public static final String ERROR_COUNTERS =
+        "StripedLRUCacheTest.error.counters";
+
+    public static final String ENTRY_KEY_USED =
+        "StripedLRUCacheTest.entry.key.used";
+
+    /**
+     * The number of segments of the caches.
+     */
+    protected static final int SEGMENTS = 4;
+
+    /**
+     * The number of threads used for the concurrent checks.
+     */
+    protected static final int THREADS = 4;
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        // setSize is the number of objects of the whole cache, not of
+        // each segment.
+        StripedLRUCache cache = new StripedLRUCache(Long.MAX_VALUE, SEGMENTS);
+        cache.setSize(10);
+        Obj[] objs = new Obj[25];
+        for (int i = 0; i < objs.length; i++) {
+            objs[i] = new Obj(1);
+            cache.add(objs[i]);
+        }
+        if ((cache.getUsed() != 10) || (count(objs) != 10) ||
+            !objs[objs.length - 1].inCache ||
+            (cache.getEvictions() != objs.length - 10)) {
+            return fail(report, ERROR_SIZE_LIMIT, cache);
+        }
+        cache.setSize(4);
+        if ((cache.getUsed() != 4) || (count(objs) != 4)) {
+            return fail(report, ERROR_SIZE_LIMIT, cache);
+        }
+
+        // The byte limit is shared by the segments, also when the size of
+        // an object grows.
+        cache = new StripedLRUCache(1000, SEGMENTS);
+        objs = new Obj[30];
+        for (int i = 0; i < objs.length; i++) {
+            objs[i] = new Obj(100);
+            cache.add(objs[i]);
+        }
+        if ((cache.getUsedBytes() != 1000) || (count(objs) != 10) ||
+            (bytes(objs) != 1000)) {
+            return fail(report, ERROR_BYTE_LIMIT, cache);
+        }
+        Obj last = objs[objs.length - 1];
+        last.size = 700;
+        cache.add(last);
+        if (!last.inCache || (cache.getUsedBytes() > 1000) ||
+            (cache.getUsedBytes() != bytes(objs))) {
+            return fail(report, ERROR_BYTE_LIMIT, cache);
+        }
+
+        // The same with objects added and removed by several threads.
+        final StripedLRUCache shared = new StripedLRUCache(5000, SEGMENTS);
+        final Obj[][] added = new Obj[THREADS][1000];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final Obj[] mine = added[t];
+            threads[t] = new Thread() {
+                    public void run() {
+                        for (int i = 0; i < mine.length; i++) {
+                            mine[i] = new Obj(10 + i % 90);
+                            shared.add(mine[i]);
+                            if (i % 7 == 0) {
+                                shared.remove(mine[i / 2]);
+                            }
+                        }
+                    }
+                };
+            threads[t].start();
+        }
+        for (int t = 0; t < THREADS; t++) {
+            threads[t].join();
+        }
+        long inCache = 0;
+        int n = 0;
+        for (int t = 0; t < THREADS; t++) {
+            inCache += bytes(added[t]);
+            n += count(added[t]);
+        }
+        if ((shared.getUsedBytes() > 5000) ||
+            (shared.getUsedBytes() != inCache) ||
+            (shared.getUsed() != n)) {
+            return fail(report, ERROR_BYTE_LIMIT, shared);
+        }
+
+        // With a single segment the cache is a true LRU cache.
+        cache = new StripedLRUCache(Long.MAX_VALUE, 1);
+        cache.setSize(5);
+        objs = new Obj[6];
+        for (int i = 0; i < 5; i++) {
+            objs[i] = new Obj(1);
+            cache.add(objs[i]);
+        }
+        cache.touch(objs[0]);
+        objs[5] = new Obj(1);
+        cache.add(objs[5]);
+        if (!objs[0].inCache || objs[1].inCache || (count(objs) != 5)) {
+            return fail(report, ERROR_NOT_LRU, cache);
+        }
+
+        // The hits and misses recorded by all the threads are counted.
+        threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread() {
+                    public void run() {
+                        for (int i = 0; i < 1000; i++) {
+                            shared.recordHit();
+                            if (i % 2 == 0) {
+                                shared.recordMiss();
+                            }
+                        }
+                    }
+                };
+            threads[t].start();
+        }
+        for (int t = 0; t < THREADS; t++) {
+            threads[t].join();
+        }
+        if ((shared.getHits() != THREADS * 1000) ||
+            (shared.getMisses() != THREADS * 500)) {
+            return fail(report, ERROR_COUNTERS, shared);
+        }
+        shared.resetStatistics();
+        if ((shared.getHits() != 0) || (shared.getMisses() != 0) ||
+            (shared.getEvictions() != 0)) {
+            return fail(report, ERROR_COUNTERS, shared);
+        }
+
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Fills the report of a failed check.
+     */
+    protected TestReport fail(DefaultTestReport report, String code,
+                              LRUCache cache) {
+        report.setErrorCode(code);
+        report.addDescriptionEntry
+            (ENTRY_KEY_USED,
+             cache.getUsed() + " objects, " + cache.getUsedBytes() +
+             " bytes, " + cache.getHits() + " hits, " + cache.getMisses() +
+             " misses, " + cache.getEvictions() + " evictions");
+        report.setPassed(false);
+        return report;
+    }
+
+    /**
+     * Returns the number of the given objects in their cache.
+     */
+    protected static int count(Obj[] objs) {
+        int n = 0;
+        for (int i = 0; i < objs.length; i++) {
+            if (objs[i] != null && objs[i].inCache) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of bytes of the given objects in their cache.
+     */
+    protected static long bytes(Obj[] objs) {
+        long n = 0;
+        for (int i = 0; i < objs.length; i++) {
+            if (objs[i] != null && objs[i].inCache) {
+                n += objs[i].size;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * An object of a given size, which knows whether it is in its
+     * cache.
+     */
+    protected static class Obj implements LRUCache.LRUSizedObj {
+        protected LRUCache.LRUNode node;
+        protected volatile boolean inCache;
+        protected long size;
+
+        public Obj(long size) {
+            this.size = size;
+        }
+
+        public void lruSet(LRUCache.LRUNode nde) {
+            node = nde;
+            inCache = true;
+        }
+
+        public LRUCache.LRUNode lruGet() {
+            return node;
+        }
+
+        public void lruRemove() {
+            node = null;
+            inCache = false;
+        }
+
+        public long lruSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.batik.ext.awt.geom.RectListManager;
+import org.apache.batik.gvt.renderer.DynamicRenderer;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.WorkerPool;
+
+/**
+ * Tests the repaint of a DynamicRenderer with a worker pool: after a
+ * change of the tree, repainting a list of overlapping rectangles or a
+ * list of disjoint ones must give the same offscreen image as the
+ * serial repaint, single and double buffered.
+ *
+ * @version $Id$
+ */
+public class DynamicRendererRepaintTest extends AbstractTest {
+
+    /**
+     * The sizes of the worker pools to repaint with.
+     */
+    private static final int[] WORKERS = { 0, 1, 3 };
+
+    /**
+     * The offscreen size.
+     */
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    /**
+     * Overlapping rectangles, some of them only through another one,
+     * and one partly outside of the offscreen image.
+     */
+    private static final Rectangle[] OVERLAPPING = {
+        new Rectangle(10, 10, 80, 60),
+        new Rectangle(60, 40, 80, 60),
+        new Rectangle(130, 90, 50, 50),
+        new Rectangle(200, 20, 40, 40),
+        new Rectangle(220, 40, 40, 40),
+        new Rectangle(250, 150, 100, 100)
+    };
+
+    /**
+     * Disjoint rectangles, some of them touching.
+     */
+    private static final Rectangle[] DISJOINT = {
+        new Rectangle(0, 0, 50, 50),
+        new Rectangle(50, 0, 50, 50),
+        new Rectangle(120, 30, 30, 100),
+        new Rectangle(170, 110, 120, 60),
+        new Rectangle(20, 150, 90, 40)
+    };
+
+    public boolean runImplBasic() throws Exception {
+        for (int b = 0; b < 2; b++) {
+            boolean doubleBuffered = (b == 1);
+
+            // (1) Overlapping rectangles.
+            int[] expected = repaint(null, doubleBuffered, OVERLAPPING);
+            for (int i = 0; i < WORKERS.length; i++) {
+                WorkerPool pool = new WorkerPool(WORKERS[i]);
+                try {
+                    ensure(1, Arrays.equals(repaint(pool, doubleBuffered,
+                                                    OVERLAPPING),
+                                            expected));
+                } finally {
+                    pool.dispose();
+                }
+            }
+
+            // (2) Disjoint rectangles.
+            expected = repaint(null, doubleBuffered, DISJOINT);
+            for (int i = 0; i < WORKERS.length; i++) {
+                WorkerPool pool = new WorkerPool(WORKERS[i]);
+                try {
+                    ensure(2, Arrays.equals(repaint(pool, doubleBuffered,
+                                                    DISJOINT),
+                                            expected));
+                } finally {
+                    pool.dispose();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renders a tree entirely, changes it, repaints the given
+     * rectangles and returns the pixels of the offscreen image.
+     * @param pool the worker pool, or null
+     */
+    protected static int[] repaint(WorkerPool pool, boolean doubleBuffered,
+                                   Rectangle[] rects) {
+        CompositeGraphicsNode root = new CompositeGraphicsNode();
+        Random rnd = new Random(7);
+        for (int i = 0; i < 60; i++) {
+            root.add(createNode(rnd));
+        }
+
+        DynamicRenderer renderer = new DynamicRenderer();
+        renderer.setDoubleBuffered(doubleBuffered);
+        renderer.setWorkerPool(pool);
+        renderer.setTree(root);
+        AffineTransform at = AffineTransform.getTranslateInstance(-5.25, 3.5);
+        at.scale(1.25, 1.25);
+        renderer.setTransform(at);
+        renderer.updateOffScreen(WIDTH, HEIGHT);
+        renderer.clearOffScreen();
+        renderer.repaint(new RectListManager
+                         (new Rectangle(0, 0, WIDTH, HEIGHT)));
+
+        // Every third node changes color, every fifth one moves.
+        for (int i = 0; i < root.size(); i++) {
+            ShapeNode sn = (ShapeNode)root.get(i);
+            if (i % 3 == 0) {
+                FillShapePainter p = new FillShapePainter(sn.getShape());
+                p.setPaint(new Color(rnd.nextInt(0xFFFFFF)));
+                sn.setShapePainter(p);
+            }
+            if (i % 5 == 0) {
+                sn.setTransform(AffineTransform.getTranslateInstance
+                                (rnd.nextDouble() * 20, rnd.nextDouble() * 20));
+            }
+        }
+        renderer.repaint(new RectListManager(rects));
+
+        BufferedImage img = renderer.getOffScreen();
+        int[] pixels = img.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+        renderer.dispose();
+        return pixels;
+    }
+
+    /**
+     * Creates a translucent antialiased disc node, in a 250x170 area.
+     */
+    protected static ShapeNode createNode(Random rnd) {
+        ShapeNode sn = new ShapeNode();
+        Ellipse2D e = new Ellipse2D.Double(rnd.nextDouble() * 230,
+                                           rnd.nextDouble() * 150,
+                                           5 + rnd.nextDouble() * 40,
+                                           5 + rnd.nextDouble() * 40);
+        FillShapePainter p = new FillShapePainter(e);
+        p.setPaint(new Color(rnd.nextInt(0xFFFFFF)));
+        sn.setShape(e);
+        sn.setShapePainter(p);
+        sn.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+                                                   0.75f));
+        sn.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                            RenderingHints.VALUE_ANTIALIAS_ON);
+        return sn;
+    }
+
+    protected void ensure(int subTestNumber, boolean b) {
+        if (!b) {
+            throw new RuntimeException("Assertion failure in sub-test " + subTestNumber);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.batik.ext.awt.geom.RectListManager;
+import org.apache.batik.gvt.renderer.DynamicRenderer;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Tests the scrolling of a DynamicRenderer: after each move of the
+ * rendering by whole or fractional offsets, the offscreen image must
+ * be the one of a fresh full render at the same transform, single and
+ * double buffered.  The rendering must not be scrollable when the
+ * image is not up to date, when the transform does more than a
+ * translation, or when nothing would be kept.
+ *
+ * @version $Id$
+ */
+public class DynamicRendererScrollTest extends AbstractTest {
+
+    /**
+     * The offscreen size.
+     */
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    /**
+     * The successive moves of the rendering, in device pixels.
+     */
+    private static final double[][] OFFSETS = {
+        { 12, 0 }, { 0, -9 }, { -20, 14 }, { 0, 0 },
+        { 3.4, -2.6 }, { 0.3, 0.2 }, { -7.75, 11.5 }, { 0.5, -0.5 },
+        { 299, 0 }, { -299, -199 }
+    };
+
+    public boolean runImplBasic() throws Exception {
+        GraphicsNode root = createTree();
+        for (int b = 0; b < 2; b++) {
+            boolean doubleBuffered = (b == 1);
+            AffineTransform at = AffineTransform.getTranslateInstance
+                (-10.3, 5.6);
+            at.scale(1.5, 1.5);
+
+            // (1) Nothing can be scrolled before a full render.
+            DynamicRenderer renderer = createRenderer(root, doubleBuffered);
+            renderer.setTransform(at);
+            renderer.updateOffScreen(WIDTH, HEIGHT);
+            ensure(1, !renderer.isScrollable(at, WIDTH, HEIGHT));
+            renderer.repaint(new RectListManager
+                             (new Rectangle(10, 10, 50, 50)));
+            ensure(1, !renderer.isScrollable(at, WIDTH, HEIGHT));
+            renderer.repaint(new RectListManager
+                             (new Rectangle(0, 0, WIDTH, HEIGHT)));
+            ensure(1, renderer.isScrollable(at, WIDTH, HEIGHT));
+
+            // (2) Each move gives the image of a full render.
+            for (int i = 0; i < OFFSETS.length; i++) {
+                AffineTransform t = AffineTransform.getTranslateInstance
+                    (OFFSETS[i][0], OFFSETS[i][1]);
+                t.concatenate(at);
+                at = t;
+                ensure(2, renderer.isScrollable(at, WIDTH, HEIGHT));
+                ensure(2, renderer.scroll(at, WIDTH, HEIGHT));
+                ensure(2, Arrays.equals(getPixels(renderer),
+                                        render(root, doubleBuffered, at)));
+            }
+
+            // (3) A repaint after the moves still gives the image of a
+            // full render, and the rendering can still be scrolled.
+            renderer.repaint(new RectListManager
+                             (new Rectangle(40, 30, 100, 80)));
+            ensure(3, Arrays.equals(getPixels(renderer),
+                                    render(root, doubleBuffered, at)));
+            ensure(3, renderer.isScrollable(at, WIDTH, HEIGHT));
+
+            // (4) A scale, a rotation, a move that keeps nothing or
+            // another size cannot be scrolled; nothing is then done.
+            int[] pixels = getPixels(renderer);
+            AffineTransform t = new AffineTransform(at);
+            t.scale(1.01, 1.01);
+            ensure(4, !renderer.isScrollable(t, WIDTH, HEIGHT));
+            ensure(4, !renderer.scroll(t, WIDTH, HEIGHT));
+            t = new AffineTransform(at);
+            t.rotate(0.1);
+            ensure(4, !renderer.scroll(t, WIDTH, HEIGHT));
+            t = AffineTransform.getTranslateInstance(WIDTH, 0);
+            t.concatenate(at);
+            ensure(4, !renderer.scroll(t, WIDTH, HEIGHT));
+            t = AffineTransform.getTranslateInstance(0, -HEIGHT);
+            t.concatenate(at);
+            ensure(4, !renderer.scroll(t, WIDTH, HEIGHT));
+            ensure(4, !renderer.scroll(at, WIDTH + 1, HEIGHT));
+            ensure(4, renderer.getTransform().equals(at));
+            ensure(4, Arrays.equals(getPixels(renderer), pixels));
+            renderer.dispose();
+        }
+        return true;
+    }
+
+    /**
+     * Creates a tree of translucent antialiased discs, some of them
+     * crossing the edges of the offscreen image.
+     */
+    protected static GraphicsNode createTree() {
+        CompositeGraphicsNode root = new CompositeGraphicsNode();
+        Random rnd = new Random(11);
+        for (int i = 0; i < 80; i++) {
+            ShapeNode sn = new ShapeNode();
+            Ellipse2D e = new Ellipse2D.Double(rnd.nextDouble() * 260 - 30,
+                                               rnd.nextDouble() * 180 - 30,
+                                               5 + rnd.nextDouble() * 40,
+                                               5 + rnd.nextDouble() * 40);
+            FillShapePainter p = new FillShapePainter(e);
+            p.setPaint(new Color(rnd.nextInt(0xFFFFFF)));
+            sn.setShape(e);
+            sn.setShapePainter(p);
+            sn.setComposite(AlphaComposite.getInstance
+                            (AlphaComposite.SRC_OVER, 0.75f));
+            sn.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                RenderingHints.VALUE_ANTIALIAS_ON);
+            root.add(sn);
+        }
+        return root;
+    }
+
+    /**
+     * Creates a renderer of the given tree.
+     */
+    protected static DynamicRenderer createRenderer(GraphicsNode root,
+                                                    boolean doubleBuffered) {
+        DynamicRenderer renderer = new DynamicRenderer();
+        renderer.setDoubleBuffered(doubleBuffered);
+        renderer.setTree(root);
+        return renderer;
+    }
+
+    /**
+     * Renders the whole tree with a new renderer and returns the pixels.
+     */
+    protected static int[] render(GraphicsNode root, boolean doubleBuffered,
+                                  AffineTransform at) {
+        DynamicRenderer renderer = createRenderer(root, doubleBuffered);
+        renderer.setTransform(at);
+        renderer.updateOffScreen(WIDTH, HEIGHT);
+        renderer.clearOffScreen();
+        renderer.repaint(new RectListManager
+                         (new Rectangle(0, 0, WIDTH, HEIGHT)));
+        int[] pixels = getPixels(renderer);
+        renderer.dispose();
+        return pixels;
+    }
+
+    /**
+     * Returns the pixels of the offscreen image of the renderer.
+     */
+    protected static int[] getPixels(DynamicRenderer renderer) {
+        BufferedImage img = renderer.getOffScreen();
+        return img.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+    }
+
+    protected void ensure(int subTestNumber, boolean b) {
+        if (!b) {
+            throw new RuntimeException("Assertion failure in sub-test " + subTestNumber);
+        }
+    }
+}
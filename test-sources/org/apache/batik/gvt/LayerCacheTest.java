@@ -0,0 +1,197 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Tests the LayerCache: the layers are counted in bytes and the least
+ * recently used ones are discarded to stay within the maximum, and a
+ * node painted through the cache looks the same as when it is painted
+ * directly, from its layer as long as it does not change.
+ *
+ * @version $Id$
+ */
+public class LayerCacheTest extends AbstractTest {
+
+    /**
+     * The number of bytes of a 10x10 layer.
+     */
+    private static final long LAYER_BYTES = 10 * 10 * 4;
+
+    public boolean runImplBasic() throws Exception {
+        // (1) The layers are counted in bytes; the least recently used
+        // one is discarded when a new one does not fit.
+        LayerCache cache = new LayerCache(2 * LAYER_BYTES + 10);
+        LayerCache.Layer a = createLayer();
+        LayerCache.Layer b = createLayer();
+        LayerCache.Layer c = createLayer();
+        ensure(1, a.getBytes() == LAYER_BYTES);
+        cache.add(a);
+        cache.add(b);
+        ensure(1, cache.getSize() == 2);
+        ensure(1, cache.getUsedBytes() == 2 * LAYER_BYTES);
+        ensure(1, cache.getImage(a) != null);
+        cache.add(c);
+        ensure(1, cache.getSize() == 2);
+        ensure(1, cache.getEvictions() == 1);
+        ensure(1, cache.getImage(b) == null);
+        ensure(1, cache.getImage(a) != null);
+        ensure(1, cache.getImage(c) != null);
+        ensure(1, cache.getHits() == 3);
+        ensure(1, cache.getUsedBytes() == 2 * LAYER_BYTES);
+
+        // (2) A layer added twice is counted once; a discarded layer
+        // gives its bytes back.
+        cache.add(a);
+        ensure(2, cache.getUsedBytes() == 2 * LAYER_BYTES);
+        a.discard();
+        ensure(2, cache.getSize() == 1);
+        ensure(2, cache.getUsedBytes() == LAYER_BYTES);
+        ensure(2, cache.getImage(a) == null);
+        LayerCache.Layer d = createLayer();
+        d.discard();
+        cache.add(d);
+        ensure(2, cache.getSize() == 1);
+
+        // (3) Lowering the maximum discards the layers that no longer
+        // fit; a layer may use a quarter of the cache.
+        cache.add(createLayer());
+        ensure(3, cache.getSize() == 2);
+        cache.setMaxBytes(LAYER_BYTES);
+        ensure(3, cache.getSize() == 1);
+        ensure(3, cache.getImage(c) == null);
+        ensure(3, cache.getUsedBytes() == LAYER_BYTES);
+        ensure(3, cache.canHold(LAYER_BYTES / 4));
+        ensure(3, !cache.canHold(LAYER_BYTES / 4 + 1));
+        cache.flush();
+        ensure(3, cache.getSize() == 0 && cache.getUsedBytes() == 0);
+        cache.resetStatistics();
+        ensure(3, cache.getHits() == 0 && cache.getMisses() == 0 &&
+                  cache.getEvictions() == 0);
+
+        // (4) A translucent node is rendered once, then drawn from its
+        // layer at any whole pixel translation, and looks the same as
+        // when painted directly.
+        cache = new LayerCache(LayerCache.DEFAULT_MAX_BYTES);
+        CompositeGraphicsNode root = new CompositeGraphicsNode();
+        ShapeNode sn = createNode(Color.blue);
+        root.add(sn);
+        ensure(4, samePixels(paint(root, null, 0), paint(root, cache, 0)));
+        ensure(4, cache.getMisses() == 1 && cache.getHits() == 0);
+        ensure(4, samePixels(paint(root, null, 0), paint(root, cache, 0)));
+        ensure(4, samePixels(paint(root, null, 7), paint(root, cache, 7)));
+        ensure(4, cache.getMisses() == 1 && cache.getHits() == 2);
+        ensure(4, cache.getSize() == 1);
+
+        // (5) A change of the node discards its layer.
+        FillShapePainter p = new FillShapePainter(sn.getShape());
+        p.setPaint(Color.red);
+        sn.setShapePainter(p);
+        ensure(5, cache.getSize() == 0 && cache.getUsedBytes() == 0);
+        ensure(5, samePixels(paint(root, null, 0), paint(root, cache, 0)));
+        ensure(5, cache.getMisses() == 2);
+
+        // (6) A node too large for the cache is painted directly.
+        cache = new LayerCache(LAYER_BYTES);
+        ensure(6, samePixels(paint(root, null, 0), paint(root, cache, 0)));
+        ensure(6, cache.getMisses() == 0 && cache.getSize() == 0);
+        return true;
+    }
+
+    /**
+     * Creates a 10x10 layer.
+     */
+    protected static LayerCache.Layer createLayer() {
+        BufferedImage img =
+            new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB_PRE);
+        return new LayerCache.Layer(img, 0, 0, new AffineTransform(),
+                                    new RenderingHints(null));
+    }
+
+    /**
+     * Creates a translucent antialiased disc node.
+     */
+    protected static ShapeNode createNode(Color color) {
+        ShapeNode sn = new ShapeNode();
+        Ellipse2D e = new Ellipse2D.Double(10.3, 10.6, 40, 30);
+        FillShapePainter p = new FillShapePainter(e);
+        p.setPaint(color);
+        sn.setShape(e);
+        sn.setShapePainter(p);
+        sn.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+                                                   0.5f));
+        sn.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                            RenderingHints.VALUE_ANTIALIAS_ON);
+        return sn;
+    }
+
+    /**
+     * Paints the node on a white image, translated by the given number
+     * of pixels, and returns the pixels.
+     * @param cache the layer cache, or null
+     */
+    protected static int[] paint(GraphicsNode gn, LayerCache cache, int t) {
+        BufferedImage img =
+            new BufferedImage(80, 80, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = GraphicsUtil.createGraphics(img);
+        g.setColor(Color.white);
+        g.fillRect(0, 0, 80, 80);
+        if (cache != null) {
+            g.setRenderingHint(RenderingHintsKeyExt.KEY_LAYER_CACHE, cache);
+        }
+        g.translate(t, t);
+        gn.paint(g);
+        g.dispose();
+        return img.getRGB(0, 0, 80, 80, null, 0, 80);
+    }
+
+    /**
+     * Tells whether the two images have the same pixels, up to the
+     * rounding of the compositing of the layer.
+     */
+    protected static boolean samePixels(int[] p1, int[] p2) {
+        for (int i = 0; i < p1.length; i++) {
+            for (int s = 0; s < 32; s += 8) {
+                int c1 = (p1[i] >>> s) & 0xFF;
+                int c2 = (p2[i] >>> s) & 0xFF;
+                if (Math.abs(c1 - c2) > 2) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    protected void ensure(int subTestNumber, boolean b) {
+        if (!b) {
+            throw new RuntimeException("Assertion failure in sub-test " + subTestNumber);
+        }
+    }
+}
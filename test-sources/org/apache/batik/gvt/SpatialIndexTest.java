@@ -0,0 +1,262 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Tests the SpatialIndex: its queries must return the rectangles a
+ * linear scan finds, for any number of rectangles, including empty,
+ * identical and missing ones.  A CompositeGraphicsNode must then hit
+ * and paint the same children with and without its indexes, also
+ * after its children moved, were added or were removed.
+ *
+ * @version $Id$
+ */
+public class SpatialIndexTest extends AbstractTest {
+
+    /**
+     * The numbers of rectangles indexed, around the node size.
+     */
+    private static final int[] SIZES = { 0, 1, 2, 15, 16, 17, 255, 256, 257, 1000 };
+
+    public boolean runImplBasic() throws Exception {
+        Random rnd = new Random(42);
+
+        // (1) The queries return the rectangles a linear scan finds.
+        for (int s = 0; s < SIZES.length; s++) {
+            Rectangle2D[] rects = createRects(rnd, SIZES[s]);
+            SpatialIndex index = new SpatialIndex(rects, rects.length);
+            int[] result = new int[1];
+            for (int q = 0; q < 200; q++) {
+                double x = rnd.nextDouble() * 1200 - 100;
+                double y = rnd.nextDouble() * 1200 - 100;
+                double w = (q % 4 == 0) ? 0 : rnd.nextDouble() * 300;
+                double h = (q % 4 == 0) ? 0 : rnd.nextDouble() * 300;
+                result = index.query(x, y, x + w, y + h, result);
+                ensure(1, sameResult(result, scan(rects, x, y, x + w, y + h)));
+            }
+
+            // (2) The whole plane finds every rectangle, an empty area
+            // none.
+            int[] all = index.query(-1e9, -1e9, 1e9, 1e9, null);
+            ensure(2, sameResult(all, scan(rects, -1e9, -1e9, 1e9, 1e9)));
+            ensure(2, index.size() == count(all));
+            ensure(2, count(index.query(5000, 5000, 6000, 6000, null)) == 0);
+
+            // (3) The rectangle edges count as intersecting.
+            for (int i = 0; i < rects.length; i++) {
+                Rectangle2D r = rects[i];
+                if (r != null) {
+                    int[] res = index.query(r.getMaxX(), r.getMaxY(),
+                                            r.getMaxX(), r.getMaxY(), null);
+                    ensure(3, Arrays.binarySearch(res, 0, count(res), i) >= 0);
+                }
+            }
+        }
+
+        int threshold = CompositeGraphicsNode.getSpatialIndexThreshold();
+        try {
+            CompositeGraphicsNode cgn = new CompositeGraphicsNode();
+            for (int i = 0; i < 300; i++) {
+                cgn.add(createNode(rnd));
+            }
+
+            // (4) The same children are hit and painted with and without
+            // the indexes.
+            ensure(4, sameHits(cgn, rnd));
+            ensure(4, samePainting(cgn));
+
+            // (5) The same after a child moved.
+            GraphicsNode moved = (GraphicsNode)cgn.get(10);
+            moved.setTransform(AffineTransform.getTranslateInstance(300, 200));
+            ensure(5, sameHits(cgn, rnd));
+            ensure(5, samePainting(cgn));
+
+            // (6) The same after children were added and removed.
+            for (int i = 0; i < 20; i++) {
+                cgn.add(createNode(rnd));
+                cgn.remove(rnd.nextInt(cgn.size()));
+            }
+            cgn.add(0, createNode(rnd));
+            ensure(6, sameHits(cgn, rnd));
+            ensure(6, samePainting(cgn));
+        } finally {
+            CompositeGraphicsNode.setSpatialIndexThreshold(threshold);
+        }
+        return true;
+    }
+
+    /**
+     * Creates rectangles in a 1000x1000 area, a few of them null, empty
+     * or repeated.
+     */
+    protected static Rectangle2D[] createRects(Random rnd, int n) {
+        Rectangle2D[] rects = new Rectangle2D[n];
+        for (int i = 0; i < n; i++) {
+            switch (rnd.nextInt(20)) {
+            case 0:
+                break;
+            case 1:
+                rects[i] = new Rectangle2D.Double(rnd.nextInt(1000),
+                                                  rnd.nextInt(1000), 0, 0);
+                break;
+            case 2:
+                rects[i] = (i > 0 && rects[i - 1] != null)
+                    ? (Rectangle2D)rects[i - 1].clone()
+                    : new Rectangle2D.Double(500, 500, 10, 10);
+                break;
+            default:
+                rects[i] = new Rectangle2D.Double(rnd.nextDouble() * 1000,
+                                                  rnd.nextDouble() * 1000,
+                                                  rnd.nextDouble() * 100,
+                                                  rnd.nextDouble() * 100);
+            }
+        }
+        return rects;
+    }
+
+    /**
+     * Returns the positions of the rectangles that intersect the given
+     * area, edges included, in increasing order.
+     */
+    protected static int[] scan(Rectangle2D[] rects, double minX,
+                                double minY, double maxX, double maxY) {
+        int[] t = new int[rects.length];
+        int n = 0;
+        for (int i = 0; i < rects.length; i++) {
+            Rectangle2D r = rects[i];
+            if (r != null &&
+                r.getMinX() <= maxX && r.getMaxX() >= minX &&
+                r.getMinY() <= maxY && r.getMaxY() >= minY) {
+                t[n++] = i;
+            }
+        }
+        int[] result = new int[n];
+        System.arraycopy(t, 0, result, 0, n);
+        return result;
+    }
+
+    /**
+     * Returns the number of positions of the result of a query.
+     */
+    protected static int count(int[] result) {
+        int n = 0;
+        while (n < result.length && result[n] >= 0) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Tells whether the result of a query has the expected positions.
+     */
+    protected static boolean sameResult(int[] result, int[] expected) {
+        if (count(result) != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (result[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a filled rectangle node, in a 400x300 area.
+     */
+    protected static ShapeNode createNode(Random rnd) {
+        ShapeNode sn = new ShapeNode();
+        Rectangle2D r = new Rectangle2D.Double(rnd.nextDouble() * 390,
+                                               rnd.nextDouble() * 290,
+                                               1 + rnd.nextDouble() * 30,
+                                               1 + rnd.nextDouble() * 30);
+        FillShapePainter p = new FillShapePainter(r);
+        p.setPaint(new Color(rnd.nextInt(0xFFFFFF)));
+        sn.setShape(r);
+        sn.setShapePainter(p);
+        return sn;
+    }
+
+    /**
+     * Tells whether the node hits the same children at random points
+     * with and without the hit index.
+     */
+    protected static boolean sameHits(CompositeGraphicsNode cgn, Random rnd) {
+        Point2D[] pts = new Point2D[500];
+        for (int i = 0; i < pts.length; i++) {
+            pts[i] = new Point2D.Double(rnd.nextDouble() * 420 - 10,
+                                        rnd.nextDouble() * 320 - 10);
+        }
+        GraphicsNode[] expected = new GraphicsNode[pts.length];
+        CompositeGraphicsNode.setSpatialIndexThreshold(Integer.MAX_VALUE);
+        for (int i = 0; i < pts.length; i++) {
+            expected[i] = cgn.nodeHitAt(pts[i]);
+        }
+        CompositeGraphicsNode.setSpatialIndexThreshold(1);
+        for (int i = 0; i < pts.length; i++) {
+            if (cgn.nodeHitAt(pts[i]) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether the node paints the same pixels through a clip with
+     * and without the paint index.
+     */
+    protected static boolean samePainting(CompositeGraphicsNode cgn) {
+        CompositeGraphicsNode.setSpatialIndexThreshold(Integer.MAX_VALUE);
+        int[] expected = paint(cgn);
+        CompositeGraphicsNode.setSpatialIndexThreshold(1);
+        return Arrays.equals(paint(cgn), expected);
+    }
+
+    /**
+     * Paints the node through a clip, with a scale, and returns the
+     * pixels.
+     */
+    protected static int[] paint(CompositeGraphicsNode cgn) {
+        BufferedImage img =
+            new BufferedImage(200, 150, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.scale(0.5, 0.5);
+        g.clip(new Rectangle2D.Double(50.5, 40.25, 200, 150));
+        cgn.paint(g);
+        g.dispose();
+        return img.getRGB(0, 0, 200, 150, null, 0, 200);
+    }
+
+    protected void ensure(int subTestNumber, boolean b) {
+        if (!b) {
+            throw new RuntimeException("Assertion failure in sub-test " + subTestNumber);
+        }
+    }
+}
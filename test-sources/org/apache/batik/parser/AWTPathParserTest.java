@@ -0,0 +1,156 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.io.StringReader;
+
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+
+/**
+ * Checks that the AWTPathParser builds the same shape as a PathParser
+ * reporting to an AWTPathProducer, and that it rejects the path data
+ * the PathParser rejects.
+ *
+ * @version $Id$
+ */
+public class AWTPathParserTest extends AbstractTest {
+
+    public static final String ERROR_NOT_REJECTED =
+        "AWTPathParserTest.error.not.rejected";
+
+    public static final String ERROR_REJECTED =
+        "AWTPathParserTest.error.rejected";
+
+    public static final String ERROR_DIFFERENT_SHAPES =
+        "AWTPathParserTest.error.different.shapes";
+
+    public static final String ENTRY_KEY_INPUT =
+        "AWTPathParserTest.entry.key.input";
+
+    public static final String ENTRY_KEY_PRODUCER =
+        "AWTPathParserTest.entry.key.producer";
+
+    public static final String ENTRY_KEY_PARSER =
+        "AWTPathParserTest.entry.key.parser";
+
+    protected String sourcePath;
+
+    /**
+     * Creates a new AWTPathParserTest.
+     * @param spath The path to parse.
+     */
+    public AWTPathParserTest(String spath) {
+        sourcePath = spath;
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+        report.addDescriptionEntry(ENTRY_KEY_INPUT, sourcePath);
+
+        Shape expected = null;
+        Exception expectedEx = null;
+        try {
+            expected = AWTPathProducer.createShape
+                (new StringReader(sourcePath), PathIterator.WIND_EVEN_ODD);
+        } catch (Exception e) {
+            // A path without an initial moveto makes the GeneralPath
+            // throw an IllegalPathStateException.
+            expectedEx = e;
+        }
+        Shape actual = null;
+        Exception actualEx = null;
+        try {
+            actual = AWTPathParser.createShape(sourcePath,
+                                               PathIterator.WIND_EVEN_ODD);
+        } catch (ParseException e) {
+            actualEx = e;
+        }
+
+        if (expectedEx != null) {
+            if (actualEx == null) {
+                report.setErrorCode(ERROR_NOT_REJECTED);
+                report.addDescriptionEntry(ENTRY_KEY_PRODUCER,
+                                           expectedEx.getMessage());
+                report.setPassed(false);
+                return report;
+            }
+            report.setPassed(true);
+            return report;
+        }
+        if (actualEx != null) {
+            report.setErrorCode(ERROR_REJECTED);
+            report.addDescriptionEntry(ENTRY_KEY_PARSER,
+                                       actualEx.getMessage());
+            report.setPassed(false);
+            return report;
+        }
+
+        String e = describe(expected);
+        String a = describe(actual);
+        if (!e.equals(a)) {
+            report.setErrorCode(ERROR_DIFFERENT_SHAPES);
+            report.addDescriptionEntry(ENTRY_KEY_PRODUCER, e);
+            report.addDescriptionEntry(ENTRY_KEY_PARSER, a);
+            report.setPassed(false);
+            return report;
+        }
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Describes the winding rule and the segments of a shape.
+     */
+    protected static String describe(Shape s) {
+        StringBuffer sb = new StringBuffer();
+        PathIterator it = s.getPathIterator(null);
+        sb.append(it.getWindingRule());
+        float[] coords = new float[6];
+        while (!it.isDone()) {
+            int type = it.currentSegment(coords);
+            int n;
+            switch (type) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                n = 2;
+                break;
+            case PathIterator.SEG_QUADTO:
+                n = 4;
+                break;
+            case PathIterator.SEG_CUBICTO:
+                n = 6;
+                break;
+            default:
+                n = 0;
+            }
+            sb.append(';');
+            sb.append(type);
+            for (int i = 0; i < n; i++) {
+                sb.append(' ');
+                sb.append(coords[i]);
+            }
+            it.next();
+        }
+        return sb.toString();
+    }
+}
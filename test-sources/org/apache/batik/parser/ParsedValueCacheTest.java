@@ -0,0 +1,156 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+import org.apache.batik.test.AbstractTest;
+
+import org.w3c.dom.svg.SVGLength;
+
+/**
+ * Tests the ParsedValueCache: the cached results are the ones of the
+ * parsers and are shared, the malformed values throw every time and
+ * are not kept, long values are never kept and a full cache is
+ * emptied.  Several threads then use a small cache at the same time.
+ *
+ * @version $Id$
+ */
+public class ParsedValueCacheTest extends AbstractTest {
+
+    /**
+     * The number of threads sharing a cache.
+     */
+    private static final int THREADS = 4;
+
+    public boolean runImplBasic() throws Exception {
+        // (1) The shared caches give the results of the parsers, and
+        // the same object for the same value.
+        String ts = "translate(1,2) scale(3) rotate(45)";
+        AffineTransform t = ParsedValueCache.getTransform(ts);
+        ensure(1, t.equals(AWTTransformProducer.createAffineTransform(ts)));
+        ensure(1, ParsedValueCache.getTransform(new String(ts)) == t);
+
+        UnitProcessor.UnitResolver ur = ParsedValueCache.getLength("12.5mm");
+        ensure(1, ur.value == 12.5f);
+        ensure(1, ur.unit == SVGLength.SVG_LENGTHTYPE_MM);
+        ensure(1, ParsedValueCache.getLength("12.5mm") == ur);
+
+        float[] nl = ParsedValueCache.getNumberList("0 0 100,50.5");
+        ensure(1, Arrays.equals(nl, new float[] { 0, 0, 100, 50.5f }));
+        ensure(1, ParsedValueCache.getNumberList("0 0 100,50.5") == nl);
+
+        float[] pts = ParsedValueCache.getPoints("1,2 3,4 5 6");
+        ensure(1, Arrays.equals(pts, new float[] { 1, 2, 3, 4, 5, 6 }));
+        ensure(1, ParsedValueCache.getPoints("1,2 3,4 5 6") == pts);
+
+        // (2) A malformed value throws every time and is not kept.
+        CountingCache c = new CountingCache(4, 16);
+        for (int i = 0; i < 2; i++) {
+            try {
+                c.get("1 x");
+                ensure(2, false);
+            } catch (ParseException e) {
+            }
+        }
+        ensure(2, c.parsings == 2);
+        ensure(2, c.getSize() == 0);
+
+        // (3) A value is parsed once, unless it is too long.
+        c = new CountingCache(4, 16);
+        float[] r = (float[])c.get("1 2");
+        ensure(3, c.get("1 2") == r);
+        ensure(3, c.parsings == 1);
+        String lng = "1 2 3 4 5 6 7 8 9";
+        ensure(3, c.get(lng) != c.get(lng));
+        ensure(3, c.parsings == 3);
+        ensure(3, c.getSize() == 1);
+
+        // (4) A full cache is emptied before a new value is added.
+        for (int i = 0; i < 10; i++) {
+            c.get(String.valueOf(i));
+            ensure(4, c.getSize() <= 4);
+        }
+        ensure(4, c.getSize() == 3);
+        c.clear();
+        ensure(4, c.getSize() == 0);
+
+        // (5) Threads sharing a cache that is emptied again and again
+        // all get the right results.
+        final CountingCache sc = new CountingCache(8, 16);
+        final boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int offset = i;
+            threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 2000; j++) {
+                                int v = (j + offset) % 50;
+                                float[] a = (float[])sc.get(v + " " + -v);
+                                if (a.length != 2 || a[0] != v ||
+                                    a[1] != -v) {
+                                    failed[0] = true;
+                                }
+                            }
+                        } catch (Exception e) {
+                            failed[0] = true;
+                        }
+                    }
+                };
+            threads[i].start();
+        }
+        for (int i = 0; i < THREADS; i++) {
+            threads[i].join();
+        }
+        ensure(5, !failed[0]);
+        return true;
+    }
+
+    /**
+     * A cache of number lists that counts its parsings.
+     */
+    protected static class CountingCache extends ParsedValueCache {
+
+        /**
+         * The number of parsings.
+         */
+        public volatile int parsings;
+
+        public CountingCache(int maxSize, int maxLength) {
+            super(maxSize, maxLength);
+        }
+
+        protected Object parse(String s) throws ParseException {
+            parsings++;
+            NumberListParser p = new NumberListParser();
+            FloatArrayProducer fap = new FloatArrayProducer();
+            p.setNumberListHandler(fap);
+            p.parse(s);
+            return fap.getFloatArray();
+        }
+    }
+
+    protected void ensure(int subTestNumber, boolean b) {
+        if (!b) {
+            throw new RuntimeException("Assertion failure in sub-test " + subTestNumber);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.transcoder.PreparedDocument;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+
+/**
+ * Renders one prepared document on several threads at the same time,
+ * each thread with its own size, area of interest or background color,
+ * and checks that every image is the same as the one of a fresh
+ * transcoding with the same hints.
+ *
+ * @version $Id$
+ */
+public class ConcurrentPreparedDocumentTest extends AbstractTest {
+
+    /**
+     * Error when an image differs from the fresh transcoding.
+     * {0} = the index of the hints
+     */
+    public static final String ERROR_IMAGE_DIFFER =
+        "ConcurrentPreparedDocumentTest.error.image.differ";
+
+    /**
+     * Error when a rendering thread failed.
+     */
+    public static final String ERROR_TRANSCODING =
+        "ConcurrentPreparedDocumentTest.error.transcoding";
+
+    public static final String ENTRY_KEY_HINTS =
+        "ConcurrentPreparedDocumentTest.entry.key.hints";
+
+    /** The URI of the input image. */
+    protected String inputURI;
+
+    /** The number of rendering threads. */
+    protected Integer threads;
+
+    /** The hints of the renderings. */
+    protected Map[] hints;
+
+    /**
+     * Constructs a new <code>ConcurrentPreparedDocumentTest</code>.
+     *
+     * @param inputURI the URI of the input image
+     * @param threads the number of rendering threads
+     */
+    public ConcurrentPreparedDocumentTest(String inputURI, Integer threads) {
+        this.inputURI = inputURI;
+        this.threads = threads;
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+        hints = createTranscodingHints();
+
+        // The images of fresh transcodings.
+        BufferedImage[] refs = new BufferedImage[hints.length];
+        for (int i = 0; i < hints.length; i++) {
+            ImageCapture t = new ImageCapture();
+            t.setTranscodingHints(hints[i]);
+            t.transcode(createTranscoderInput(), null);
+            refs[i] = t.image;
+        }
+
+        PreparedDocument document =
+            new PNGTranscoder().prepare(createTranscoderInput());
+
+        int n = threads.intValue();
+        final RenderThread[] ts = new RenderThread[n];
+        final Object lock = new Object();
+        final boolean[] start = new boolean[1];
+        for (int i = 0; i < n; i++) {
+            ts[i] = new RenderThread(document, hints[i % hints.length],
+                                     lock, start);
+            ts[i].start();
+        }
+        // Let all the threads render at the same time.
+        synchronized (lock) {
+            start[0] = true;
+            lock.notifyAll();
+        }
+        for (int i = 0; i < n; i++) {
+            ts[i].join();
+        }
+        document.dispose();
+
+        for (int i = 0; i < n; i++) {
+            int h = i % hints.length;
+            if (ts[i].error != null) {
+                report.setErrorCode(ERROR_TRANSCODING);
+                report.addDescriptionEntry(ERROR_TRANSCODING,
+                                           toString(ts[i].error));
+                report.setPassed(false);
+                return report;
+            }
+            for (int j = 0; j < ts[i].images.length; j++) {
+                if (!sameImage(refs[h], ts[i].images[j])) {
+                    report.setErrorCode(ERROR_IMAGE_DIFFER);
+                    report.addDescriptionEntry(ENTRY_KEY_HINTS,
+                                               hints[h].toString());
+                    report.setPassed(false);
+                    return report;
+                }
+            }
+        }
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Creates the <code>TranscoderInput</code>.
+     */
+    protected TranscoderInput createTranscoderInput() {
+        return new TranscoderInput(resolveURL(inputURI).toString());
+    }
+
+    /**
+     * Returns the URL of the given file name or URL.
+     */
+    protected java.net.URL resolveURL(String url) {
+        try {
+            return new java.io.File(url).toURI().toURL();
+        } catch (java.net.MalformedURLException e) {
+            throw new IllegalArgumentException(url);
+        }
+    }
+
+    /**
+     * Creates the hints of the renderings.
+     */
+    protected Map[] createTranscodingHints() {
+        Map[] result = new Map[4];
+        result[0] = new HashMap();
+        result[0].put(ImageTranscoder.KEY_WIDTH, new Float(200));
+
+        result[1] = new HashMap();
+        result[1].put(ImageTranscoder.KEY_WIDTH, new Float(450));
+        result[1].put(ImageTranscoder.KEY_BACKGROUND_COLOR, Color.yellow);
+
+        result[2] = new HashMap();
+        result[2].put(ImageTranscoder.KEY_WIDTH, new Float(300));
+        result[2].put(ImageTranscoder.KEY_AOI,
+                      new Rectangle(40, 60, 120, 80));
+
+        result[3] = new HashMap();
+        result[3].put(ImageTranscoder.KEY_HEIGHT, new Float(250));
+        result[3].put(ImageTranscoder.KEY_AOI,
+                      new Rectangle(0, 0, 100, 200));
+        result[3].put(ImageTranscoder.KEY_BACKGROUND_COLOR,
+                      new Color(0, 0, 255, 128));
+        return result;
+    }
+
+    /**
+     * Tells whether the two images have the same size and pixels.
+     */
+    protected static boolean sameImage(BufferedImage a, BufferedImage b) {
+        int w = a.getWidth();
+        int h = a.getHeight();
+        if (w != b.getWidth() || h != b.getHeight()) {
+            return false;
+        }
+        return Arrays.equals(a.getRGB(0, 0, w, h, null, 0, w),
+                             b.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    /**
+     * Gives the specified exception as a string.
+     */
+    protected static String toString(Exception ex) {
+        return AbstractImageTranscoderTest.toString(ex);
+    }
+
+    /**
+     * An ImageTranscoder that keeps the image it renders.
+     */
+    protected static class ImageCapture extends ImageTranscoder {
+
+        /** The last image rendered. */
+        protected BufferedImage image;
+
+        public BufferedImage createImage(int w, int h) {
+            return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        public void writeImage(BufferedImage img, TranscoderOutput output)
+            throws TranscoderException {
+            image = img;
+        }
+    }
+
+    /**
+     * A thread that renders a prepared document twice with the given
+     * hints.
+     */
+    protected static class RenderThread extends Thread {
+
+        protected PreparedDocument document;
+        protected Map hints;
+        protected Object lock;
+        protected boolean[] start;
+
+        /** The images rendered. */
+        protected BufferedImage[] images = new BufferedImage[2];
+
+        /** The exception thrown while rendering, if any. */
+        protected Exception error;
+
+        public RenderThread(PreparedDocument document, Map hints,
+                            Object lock, boolean[] start) {
+            this.document = document;
+            this.hints = hints;
+            this.lock = lock;
+            this.start = start;
+        }
+
+        public void run() {
+            try {
+                synchronized (lock) {
+                    while (!start[0]) {
+                        lock.wait();
+                    }
+                }
+                for (int i = 0; i < images.length; i++) {
+                    ImageCapture t = new ImageCapture();
+                    t.setTranscodingHints(hints);
+                    t.transcode(document, null);
+                    images[i] = t.image;
+                }
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+    }
+}
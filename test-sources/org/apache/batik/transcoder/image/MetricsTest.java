@@ -0,0 +1,114 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.transcoder.SVGAbstractTranscoder;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderMetrics;
+import org.apache.batik.transcoder.TranscoderOutput;
+
+/**
+ * Test the ImageTranscoder with the KEY_METRICS transcoding hint: each
+ * phase must be reported once, in order, with the document contents.
+ *
+ * @version $Id$
+ */
+public class MetricsTest extends AbstractTest {
+
+    /** The phases expected, in order. */
+    protected static final List PHASES = Arrays.asList(new String[] {
+        TranscoderMetrics.PHASE_PARSE,
+        TranscoderMetrics.PHASE_BUILD,
+        TranscoderMetrics.PHASE_RENDER,
+        TranscoderMetrics.PHASE_ENCODE
+    });
+
+    /** The URI of the input image. */
+    protected String inputURI;
+
+    /** The number of rows rendered at a time, or 0. */
+    protected Integer stripHeight;
+
+    /** The expected number of elements, filters and images. */
+    protected Integer elements;
+    protected Integer filters;
+    protected Integer images;
+
+    /**
+     * Constructs a new <code>MetricsTest</code>.
+     *
+     * @param inputURI the URI of the input image
+     * @param stripHeight the number of rows rendered at a time, or 0
+     * @param elements the number of elements of the document
+     * @param filters the number of filters of the document
+     * @param images the number of images of the document
+     */
+    public MetricsTest(String inputURI,
+                       Integer stripHeight,
+                       Integer elements,
+                       Integer filters,
+                       Integer images) {
+        this.inputURI = inputURI;
+        this.stripHeight = stripHeight;
+        this.elements = elements;
+        this.filters = filters;
+        this.images = images;
+    }
+
+    public boolean runImplBasic() throws Exception {
+        final List phases = new ArrayList();
+        final int[] counts = new int[3];
+        TranscoderMetrics metrics = new TranscoderMetrics() {
+                public void phaseCompleted(String phase, long nanos,
+                                           long allocatedBytes) {
+                    if (nanos >= 0) {
+                        phases.add(phase);
+                    }
+                }
+                public void documentLoaded(String uri, int elementCount,
+                                           int filterCount, int imageCount) {
+                    counts[0] = elementCount;
+                    counts[1] = filterCount;
+                    counts[2] = imageCount;
+                }
+            };
+
+        PNGTranscoder t = new PNGTranscoder();
+        t.addTranscodingHint(SVGAbstractTranscoder.KEY_METRICS, metrics);
+        if (stripHeight.intValue() > 0) {
+            t.addTranscodingHint(ImageTranscoder.KEY_STRIP_HEIGHT,
+                                 stripHeight);
+        }
+        String uri = new File(inputURI).toURI().toString();
+        t.transcode(new TranscoderInput(uri),
+                    new TranscoderOutput(new ByteArrayOutputStream()));
+
+        return phases.equals(PHASES)
+            && counts[0] == elements.intValue()
+            && counts[1] == filters.intValue()
+            && counts[2] == images.intValue();
+    }
+}
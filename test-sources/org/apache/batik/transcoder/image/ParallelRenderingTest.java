@@ -0,0 +1,206 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.util.WorkerPool;
+
+/**
+ * Renders a document by bands with the <code>KEY_PARALLEL_RENDERING</code>
+ * hint and with worker pools of several sizes, and checks that all the
+ * parallel images have the same pixels, and look like the serial
+ * rendering.  The bands are clipped and translated, so the antialiasing
+ * of the edges may differ slightly from the serial rendering, depending
+ * on the rasterizer of the JDK: only a small part of the pixels may
+ * differ from it by more than the rounding.  The filters of some
+ * documents give other pixels at the band edges: for them, only the
+ * parallel renderings are compared.
+ *
+ * @version $Id$
+ */
+public class ParallelRenderingTest extends AbstractTest {
+
+    /**
+     * Error when a parallel rendering differs from the serial one, or
+     * from the other parallel renderings.
+     */
+    public static final String ERROR_IMAGE_DIFFER =
+        "ParallelRenderingTest.error.image.differ";
+
+    /**
+     * The number of workers of the differing rendering, or -1 for the
+     * shared pool of the <code>KEY_PARALLEL_RENDERING</code> hint.
+     */
+    public static final String ENTRY_KEY_WORKERS =
+        "ParallelRenderingTest.entry.key.workers";
+
+    /**
+     * The number of pixels differing from the serial rendering, when
+     * there are too many.
+     */
+    public static final String ENTRY_KEY_DIFFERENT_PIXELS =
+        "ParallelRenderingTest.entry.key.different.pixels";
+
+    /**
+     * The largest difference of a color component of a pixel that is
+     * not counted as a difference from the serial rendering.
+     */
+    protected static final int COMPONENT_TOLERANCE = 2;
+
+    /**
+     * The largest fraction of the pixels that may differ from the
+     * serial rendering.
+     */
+    protected static final double MAX_DIFFERENT_PIXELS = 0.01;
+
+    /**
+     * The sizes of the worker pools to render with.
+     */
+    protected static final int[] WORKERS = { 0, 1, 3 };
+
+    /** The URI of the input image. */
+    protected String inputURI;
+
+    /** The width of the image. */
+    protected Float width;
+
+    /** Whether the parallel renderings must look like the serial one. */
+    protected boolean sameAsSerial;
+
+    /**
+     * Constructs a new <code>ParallelRenderingTest</code>.
+     *
+     * @param inputURI the URI of the input image
+     * @param width the image width
+     * @param sameAsSerial whether the parallel renderings must look like
+     *        the serial one, or only have the same pixels as each other
+     */
+    public ParallelRenderingTest(String inputURI, Float width,
+                                 Boolean sameAsSerial) {
+        this.inputURI = inputURI;
+        this.width = width;
+        this.sameAsSerial = sameAsSerial.booleanValue();
+    }
+
+    public TestReport runImpl() throws Exception {
+        DefaultTestReport report = new DefaultTestReport(this);
+
+        BufferedImage reference = render(null, true);
+        if (sameAsSerial) {
+            int n = countDifferentPixels(render(null, false), reference);
+            int w = reference.getWidth();
+            int h = reference.getHeight();
+            if (n < 0 || n > MAX_DIFFERENT_PIXELS * w * h) {
+                report.setErrorCode(ERROR_IMAGE_DIFFER);
+                report.addDescriptionEntry(ENTRY_KEY_WORKERS,
+                                           new Integer(-1));
+                report.addDescriptionEntry(ENTRY_KEY_DIFFERENT_PIXELS,
+                                           new Integer(n));
+                report.setPassed(false);
+                return report;
+            }
+        }
+
+        BufferedImage parallel;
+
+        for (int i = 0; i < WORKERS.length; i++) {
+            WorkerPool pool = new WorkerPool(WORKERS[i]);
+            try {
+                parallel = render(pool, false);
+            } finally {
+                pool.dispose();
+            }
+            if (!ConcurrentPreparedDocumentTest.sameImage(reference,
+                                                          parallel)) {
+                report.setErrorCode(ERROR_IMAGE_DIFFER);
+                report.addDescriptionEntry(ENTRY_KEY_WORKERS,
+                                           new Integer(WORKERS[i]));
+                report.setPassed(false);
+                return report;
+            }
+        }
+
+        report.setPassed(true);
+        return report;
+    }
+
+    /**
+     * Returns the number of pixels of the two images whose color
+     * components differ by more than <code>COMPONENT_TOLERANCE</code>,
+     * or -1 if the images do not have the same size.
+     */
+    protected static int countDifferentPixels(BufferedImage a,
+                                              BufferedImage b) {
+        int w = a.getWidth();
+        int h = a.getHeight();
+        if (w != b.getWidth() || h != b.getHeight()) {
+            return -1;
+        }
+        int[] pa = a.getRGB(0, 0, w, h, null, 0, w);
+        int[] pb = b.getRGB(0, 0, w, h, null, 0, w);
+        int n = 0;
+        for (int i = 0; i < pa.length; i++) {
+            for (int s = 0; s < 32; s += 8) {
+                int ca = (pa[i] >>> s) & 0xFF;
+                int cb = (pb[i] >>> s) & 0xFF;
+                if (Math.abs(ca - cb) > COMPONENT_TOLERANCE) {
+                    n++;
+                    break;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Renders the document.
+     *
+     * @param pool the pool to render with, or null
+     * @param hint whether to set the <code>KEY_PARALLEL_RENDERING</code>
+     *        hint
+     */
+    protected BufferedImage render(final WorkerPool pool, boolean hint)
+        throws Exception {
+        ConcurrentPreparedDocumentTest.ImageCapture t =
+            new ConcurrentPreparedDocumentTest.ImageCapture() {
+                protected ImageRenderer createRenderer() {
+                    ImageRenderer r = super.createRenderer();
+                    if (pool != null) {
+                        ((StaticRenderer)r).setWorkerPool(pool);
+                    }
+                    return r;
+                }
+            };
+        t.addTranscodingHint(ImageTranscoder.KEY_WIDTH, width);
+        if (hint) {
+            t.addTranscodingHint(ImageTranscoder.KEY_PARALLEL_RENDERING,
+                                 Boolean.TRUE);
+        }
+        t.transcode(new TranscoderInput
+                    (new java.io.File(inputURI).toURI().toString()), null);
+        return t.image;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.transcoder.PreparedDocument;
+import org.apache.batik.transcoder.TranscoderInput;
+
+/**
+ * Test the ImageTranscoder with a document that is prepared once and
+ * rendered several times.
+ *
+ * @version $Id$
+ */
+public class PreparedDocumentTest extends AbstractImageTranscoderTest {
+
+    /** The URI of the input image. */
+    protected String inputURI;
+
+    /** The URI of the reference image. */
+    protected String refImageURI;
+
+    /** The width of the image. */
+    protected Float width;
+
+    /**
+     * Constructs a new <code>PreparedDocumentTest</code>.
+     *
+     * @param inputURI the URI of the input image
+     * @param refImageURI the URI of the reference image
+     * @param width the image width
+     */
+    public PreparedDocumentTest(String inputURI,
+                                String refImageURI,
+                                Float width) {
+        this.inputURI = inputURI;
+        this.refImageURI = refImageURI;
+        this.width = width;
+    }
+
+    /**
+     * Prepares the document with a transcoder that has no size hint, then
+     * renders it twice with the size of the reference image.
+     */
+    public TestReport runImpl() throws Exception {
+        report = new DefaultTestReport(this);
+
+        try {
+            PreparedDocument document =
+                new PNGTranscoder().prepare(createTranscoderInput());
+
+            DiffImageTranscoder transcoder =
+                new DiffImageTranscoder(getReferenceImageData());
+            transcoder.setTranscodingHints(createTranscodingHints());
+
+            transcoder.transcode(document, null);
+            transcoder.transcode(document, null);
+            document.dispose();
+        } catch (Exception ex) {
+            report.setErrorCode(ERROR_TRANSCODING);
+            report.addDescriptionEntry(ERROR_TRANSCODING, toString(ex));
+            ex.printStackTrace();
+            report.setPassed(false);
+        }
+
+        return report;
+    }
+
+    /**
+     * Creates the <code>TranscoderInput</code>.
+     */
+    protected TranscoderInput createTranscoderInput() {
+        return new TranscoderInput(resolveURL(inputURI).toString());
+    }
+
+    /**
+     * Creates a Map that contains additional transcoding hints.
+     */
+    protected Map createTranscodingHints() {
+        Map hints = new HashMap(7);
+        hints.put(ImageTranscoder.KEY_WIDTH, width);
+        return hints;
+    }
+
+    /**
+     * Returns the reference image for this test.
+     */
+    protected byte [] getReferenceImageData() {
+        return createBufferedImageData(resolveURL(refImageURI));
+    }
+}
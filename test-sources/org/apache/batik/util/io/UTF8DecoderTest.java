@@ -0,0 +1,65 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.util.io;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that UTF8Decoder decodes the sequences of 1 to 4 bytes,
+ * including those that straddle the end of its buffer.
+ *
+ * @version $Id$
+ */
+public class UTF8DecoderTest extends AbstractTest {
+
+    /**
+     * Characters encoded with 1, 2, 3 and 4 bytes.  U+222B was decoded
+     * as U+220B by the wrong masks of the 3 bytes sequences.
+     */
+    protected static final String CHARS =
+        "a\u00e9\u07ff\u0800\u222b\u20ac\uffef" +
+        "\ud800\udc00\ud83d\ude00\udbff\udfff";
+
+    public boolean runImplBasic() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        // Shift the characters by one byte for each pass, so that every
+        // sequence is cut at each of its bytes by the end of the buffer.
+        for (int i = 0; i < 32; i++) {
+            for (int j = sb.length();
+                 j < AbstractCharDecoder.BUFFER_SIZE - 32 + i;
+                 j++) {
+                sb.append('x');
+            }
+            sb.append(CHARS);
+            String s = sb.toString();
+            byte[] bytes = s.getBytes("UTF-8");
+            UTF8Decoder d = new UTF8Decoder(new ByteArrayInputStream(bytes));
+            StringBuffer res = new StringBuffer();
+            int c;
+            while ((c = d.readChar()) != CharDecoder.END_OF_STREAM) {
+                res.append((char)c);
+            }
+            assertEquals(s, res.toString());
+            sb.setLength(0);
+        }
+        return true;
+    }
+}